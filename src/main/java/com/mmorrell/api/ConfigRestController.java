@@ -1,14 +1,22 @@
 package com.mmorrell.api;
 
 import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.execution.ComputeUnitProfiler;
+import com.mmorrell.execution.LandingTracker;
 import com.mmorrell.strategies.openbook.sol.OpenBookSolUsdc;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.mmorrell.config.OpenBookConfig.ALLOWED_PRICING_BPS_MISMATCH;
 import static com.mmorrell.config.OpenBookConfig.ASK_API_TUNING_FACTOR;
@@ -19,23 +27,20 @@ import static com.mmorrell.config.OpenBookConfig.PYTH_CONFIDENCE_INTERVAL_CONFID
 import static com.mmorrell.config.OpenBookConfig.PYTH_PREDICTIVE_FACTOR;
 import static com.mmorrell.config.OpenBookConfig.USDC_THRESHOLD_TO_LEAN_WSOL;
 import static com.mmorrell.config.OpenBookConfig.WSOL_THRESHOLD_TO_LEAN_USDC;
-import static com.mmorrell.config.OpenBookConfig.resetAsks;
-import static com.mmorrell.config.OpenBookConfig.resetBids;
-import static com.mmorrell.config.OpenBookConfig.tightenAsks;
-import static com.mmorrell.config.OpenBookConfig.tightenAsksHalf;
-import static com.mmorrell.config.OpenBookConfig.tightenBids;
-import static com.mmorrell.config.OpenBookConfig.tightenBidsHalf;
-import static com.mmorrell.config.OpenBookConfig.widenAsks;
-import static com.mmorrell.config.OpenBookConfig.widenBids;
 
 @RestController
 public class ConfigRestController {
 
     private final OpenBookSolUsdc openBookSolUsdc;
+    private final LandingTracker landingTracker;
+    private final ComputeUnitProfiler computeUnitProfiler;
 
     @Autowired
-    public ConfigRestController(OpenBookSolUsdc openBookSolUsdc) {
+    public ConfigRestController(OpenBookSolUsdc openBookSolUsdc, LandingTracker landingTracker,
+                                ComputeUnitProfiler computeUnitProfiler) {
         this.openBookSolUsdc = openBookSolUsdc;
+        this.landingTracker = landingTracker;
+        this.computeUnitProfiler = computeUnitProfiler;
     }
 
     @GetMapping(value = "/1337pwn/1337status")
@@ -53,6 +58,7 @@ public class ConfigRestController {
         ));
         results.put("priority", Map.of(
                 "rate", String.format("%d", PRIORITY_MICRO_LAMPORTS_DEFAULT),
+                "fixedRate", String.format("%d", OpenBookConfig.PRIORITY_MICRO_LAMPORTS),
                 "limit", String.format("%d", OpenBookConfig.PRIORITY_UNITS)
         ));
 //        results.put("defaultBidSpread", String.format("%.6f", OpenBookConfig.DEFAULT_BID_SPREAD_MULTIPLIER));
@@ -78,25 +84,35 @@ public class ConfigRestController {
         return results;
     }
 
+    @GetMapping(value = "/1337pwn/landing")
+    public Map<String, Object> landing() {
+        return landingTracker.getStats();
+    }
+
+    @GetMapping(value = "/1337pwn/compute")
+    public Map<String, Object> compute() {
+        return computeUnitProfiler.getStats();
+    }
+
     @GetMapping(value = "/1337pwn/increaseBaseRate")
     public Map<String, String> increaseBaseRate() {
         final Map<String, String> results = new HashMap<>();
-        double original = OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
+        final double original = OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
         results.put("old", String.valueOf(original));
-        original += (float) 10_000;
-        OpenBookConfig.setPriorityMicroLamportsDefault((int) original);
-        results.put("new", String.valueOf(original));
+        final double increased = original + (float) 10_000;
+        tune(() -> setBaseRate((int) increased));
+        results.put("new", String.valueOf(increased));
         return results;
     }
 
     @GetMapping(value = "/1337pwn/reduceBaseRate")
     public Map<String, String> reduceBaseRate() {
         final Map<String, String> results = new HashMap<>();
-        double original = OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
+        final double original = OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
         results.put("old", String.valueOf(original));
-        original -= (float) 10_000;
-        OpenBookConfig.setPriorityMicroLamportsDefault((int) original);
-        results.put("new", String.valueOf(original));
+        final double reduced = original - (float) 10_000;
+        tune(() -> setBaseRate((int) reduced));
+        results.put("new", String.valueOf(reduced));
         return results;
     }
 
@@ -105,7 +121,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.BID_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        widenBids();
+        tune(OpenBookConfig::widenBids);
         results.put("new", String.valueOf(OpenBookConfig.BID_API_TUNING_FACTOR));
         return results;
     }
@@ -115,7 +131,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.BID_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        tightenBids();
+        tune(OpenBookConfig::tightenBids);
         results.put("new", String.valueOf(OpenBookConfig.BID_API_TUNING_FACTOR));
         return results;
     }
@@ -125,7 +141,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.BID_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        tightenBidsHalf();
+        tune(OpenBookConfig::tightenBidsHalf);
         results.put("new", String.valueOf(OpenBookConfig.BID_API_TUNING_FACTOR));
         return results;
     }
@@ -135,7 +151,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = ASK_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        tightenAsksHalf();
+        tune(OpenBookConfig::tightenAsksHalf);
         results.put("new", String.valueOf(OpenBookConfig.ASK_API_TUNING_FACTOR));
         return results;
     }
@@ -145,7 +161,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.BID_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        resetBids();
+        tune(OpenBookConfig::resetBids);
         results.put("new", String.valueOf(OpenBookConfig.BID_API_TUNING_FACTOR));
         return results;
     }
@@ -155,7 +171,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = ASK_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        resetAsks();
+        tune(OpenBookConfig::resetAsks);
         results.put("new", String.valueOf(OpenBookConfig.ASK_API_TUNING_FACTOR));
         return results;
     }
@@ -165,7 +181,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.ASK_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        widenAsks();
+        tune(OpenBookConfig::widenAsks);
         results.put("new", String.valueOf(OpenBookConfig.ASK_API_TUNING_FACTOR));
         return results;
     }
@@ -175,7 +191,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.ASK_API_TUNING_FACTOR;
         results.put("old", String.valueOf(original));
-        tightenAsks();
+        tune(OpenBookConfig::tightenAsks);
         results.put("new", String.valueOf(OpenBookConfig.ASK_API_TUNING_FACTOR));
         return results;
     }
@@ -187,7 +203,7 @@ public class ConfigRestController {
         final Map<String, String> results = new HashMap<>();
         double original = OpenBookConfig.SOL_QUOTE_SIZE;
         results.put("old", String.valueOf(original));
-        OpenBookConfig.setQuoteSize(floatSize);
+        tune(() -> OpenBookConfig.setQuoteSize(floatSize));
         results.put("new", String.valueOf(OpenBookConfig.SOL_QUOTE_SIZE));
         return results;
     }
@@ -214,5 +230,33 @@ public class ConfigRestController {
         return Map.of("status", "done");
     }
 
+    // The fee model falls back to the default, the strategies without one pay the default plus a premium
+    private static void setBaseRate(int rate) {
+        OpenBookConfig.setPriorityMicroLamportsDefault(rate);
+        OpenBookConfig.setPriorityMicroLamports(rate + OpenBookConfig.PRIORITY_MICRO_LAMPORTS_PREMIUM);
+    }
 
+    // The quoting thread owns everything it reads, tuning is applied there between iterations
+    private void tune(Runnable command) {
+        openBookSolUsdc.submit(command)
+                .orTimeout(OpenBookConfig.QUOTE_COMMAND_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .join();
+    }
+
+    // Only tune() joins here, so this is a command that timed out or threw on the quoting thread
+    @ExceptionHandler(CompletionException.class)
+    public ResponseEntity<Map<String, String>> tuneFailed(CompletionException e) {
+        final Throwable cause = e.getCause() == null ? e : e.getCause();
+        if (cause instanceof TimeoutException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                    "status", "error",
+                    "error", "Quoting thread didn't apply the change within "
+                            + OpenBookConfig.QUOTE_COMMAND_TIMEOUT_MS + "ms, it stays queued for the next iteration"
+            ));
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                "status", "error",
+                "error", "Change rejected: " + cause.getMessage()
+        ));
+    }
 }
@@ -0,0 +1,26 @@
+package com.mmorrell.book;
+
+import org.p2p.solanaj.core.PublicKey;
+
+/**
+ * Receives the order level changes {@link BookDiff} finds between two snapshots of the same book side.
+ * Called on the diffing thread, keep it cheap.
+ */
+@FunctionalInterface
+public interface BookDeltaListener {
+
+    /**
+     * @param bids               true for the bid side
+     * @param type               one of {@link BookDiff#ADD}, {@link BookDiff#CANCEL}, {@link BookDiff#MODIFY},
+     *                           {@link BookDiff#FILL}
+     * @param owner              open orders account of the order
+     * @param clientOrderId      client order id, 0 if unset
+     * @param priceLots          price of the order, the new price for a modify
+     * @param quantityLots       quantity left on the book after the change, 0 once removed
+     * @param quantityChangeLots signed change in resting quantity
+     * @param slot               slot of the update that produced the newer snapshot
+     */
+    void onBookDelta(boolean bids, byte type, PublicKey owner, long clientOrderId, long priceLots,
+                     long quantityLots, long quantityChangeLots, long slot);
+
+}
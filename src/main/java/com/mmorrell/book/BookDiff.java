@@ -0,0 +1,176 @@
+package com.mmorrell.book;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Diffs two snapshots of the same book side by order id (price lots + sequence number) and reports each
+ * change to the registered {@link BookDeltaListener}s.
+ * <p>
+ * Fills are inferred, not observed: a quantity decrease is a partial fill (OpenBook orders can't be resized),
+ * and a removed order priced at or through the new top of book counts as filled. Orders removed behind the new
+ * top of book are cancels. A removed and an added order with the same owner and client order id, i.e. a
+ * cancel/replace in the same update, are reported as one modify.
+ * <p>
+ * Both snapshots are walked once in price order, so the cost is linear in book size. Not thread-safe.
+ */
+public class BookDiff {
+
+    public static final byte ADD = 0;
+    public static final byte CANCEL = 1;
+    public static final byte MODIFY = 2;
+    public static final byte FILL = 3;
+
+    private final List<BookDeltaListener> listeners = new CopyOnWriteArrayList<>();
+    private final long[] totals = new long[4];
+
+    // Scratch, indexes into the previous (removed) and current (added, matched) snapshot
+    private int[] removed = new int[64];
+    private int removedCount;
+    private int[] added = new int[64];
+    private int addedCount;
+    private boolean[] matched = new boolean[256];
+
+    public void addListener(BookDeltaListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return number of deltas of the given type reported since creation
+     */
+    public long total(byte type) {
+        return totals[type];
+    }
+
+    /**
+     * @return number of deltas reported, 0 if the side is unchanged
+     */
+    public int diff(BookSnapshot previous, BookSnapshot current, long slot) {
+        final boolean bids = current.isBids();
+        removedCount = 0;
+        addedCount = 0;
+        if (matched.length < current.size()) {
+            matched = new boolean[Math.max(current.size(), matched.length * 2)];
+        }
+
+        int deltas = 0;
+        int i = 0;
+        int j = 0;
+        while (i < previous.size() || j < current.size()) {
+            if (j == current.size() || (i < previous.size() &&
+                    isBetter(bids, previous.priceLots(i), current.priceLots(j)))) {
+                addRemoved(i++);
+            } else if (i == previous.size() || isBetter(bids, current.priceLots(j), previous.priceLots(i))) {
+                addAdded(j++);
+            } else {
+                // Same price level on both sides, match orders within it by sequence number
+                long priceLots = current.priceLots(j);
+                int levelEnd = j;
+                while (levelEnd < current.size() && current.priceLots(levelEnd) == priceLots) {
+                    matched[levelEnd++] = false;
+                }
+                for (; i < previous.size() && previous.priceLots(i) == priceLots; i++) {
+                    int match = find(current, j, levelEnd, previous.sequenceNumber(i));
+                    if (match == BookSnapshot.NONE) {
+                        addRemoved(i);
+                        continue;
+                    }
+                    matched[match] = true;
+                    long change = current.quantityLots(match) - previous.quantityLots(i);
+                    if (change != 0) {
+                        emit(bids, change < 0 ? FILL : MODIFY, current, match, current.quantityLots(match), change,
+                                slot);
+                        deltas++;
+                    }
+                }
+                for (; j < levelEnd; j++) {
+                    if (!matched[j]) {
+                        addAdded(j);
+                    }
+                }
+            }
+        }
+
+        deltas += pairReplacements(bids, previous, current, slot);
+        for (int r = 0; r < removedCount; r++) {
+            int index = removed[r];
+            if (index == BookSnapshot.NONE) {
+                continue;
+            }
+            boolean filled = current.size() == 0 ||
+                    !isBetter(bids, current.priceLots(0), previous.priceLots(index));
+            emit(bids, filled ? FILL : CANCEL, previous, index, 0, -previous.quantityLots(index), slot);
+            deltas++;
+        }
+        for (int a = 0; a < addedCount; a++) {
+            int index = added[a];
+            if (index == BookSnapshot.NONE) {
+                continue;
+            }
+            emit(bids, ADD, current, index, current.quantityLots(index), current.quantityLots(index), slot);
+            deltas++;
+        }
+        return deltas;
+    }
+
+    private int pairReplacements(boolean bids, BookSnapshot previous, BookSnapshot current, long slot) {
+        int deltas = 0;
+        for (int r = 0; r < removedCount; r++) {
+            int oldIndex = removed[r];
+            if (previous.clientOrderId(oldIndex) == 0) {
+                continue;
+            }
+            for (int a = 0; a < addedCount; a++) {
+                int newIndex = added[a];
+                if (newIndex != BookSnapshot.NONE &&
+                        current.ownerId(newIndex) == previous.ownerId(oldIndex) &&
+                        current.clientOrderId(newIndex) == previous.clientOrderId(oldIndex)) {
+                    emit(bids, MODIFY, current, newIndex, current.quantityLots(newIndex),
+                            current.quantityLots(newIndex) - previous.quantityLots(oldIndex), slot);
+                    removed[r] = BookSnapshot.NONE;
+                    added[a] = BookSnapshot.NONE;
+                    deltas++;
+                    break;
+                }
+            }
+        }
+        return deltas;
+    }
+
+    private static boolean isBetter(boolean bids, long priceLots, long otherPriceLots) {
+        return bids ? priceLots > otherPriceLots : priceLots < otherPriceLots;
+    }
+
+    private static int find(BookSnapshot book, int from, int to, long sequenceNumber) {
+        for (int i = from; i < to; i++) {
+            if (book.sequenceNumber(i) == sequenceNumber) {
+                return i;
+            }
+        }
+        return BookSnapshot.NONE;
+    }
+
+    private void addRemoved(int index) {
+        if (removedCount == removed.length) {
+            removed = Arrays.copyOf(removed, removedCount * 2);
+        }
+        removed[removedCount++] = index;
+    }
+
+    private void addAdded(int index) {
+        if (addedCount == added.length) {
+            added = Arrays.copyOf(added, addedCount * 2);
+        }
+        added[addedCount++] = index;
+    }
+
+    private void emit(boolean bids, byte type, BookSnapshot book, int index, long quantityLots,
+                      long quantityChangeLots, long slot) {
+        totals[type]++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onBookDelta(bids, type, book.owner(index), book.clientOrderId(index),
+                    book.priceLots(index), quantityLots, quantityChangeLots, slot);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.mmorrell.book;
+
+import com.mmorrell.serum.model.OrderBook;
+import com.mmorrell.serum.model.SerumUtils;
+import com.mmorrell.serum.model.SlabLeafNode;
+import com.mmorrell.serum.model.SlabNode;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One side of an OpenBook order book, decoded into parallel primitive arrays sorted best price first
+ * (highest bid / lowest ask at index 0), with a per-owner index and the owner's {@link OwnerClass} tag per order.
+ * <p>
+ * Instances are meant to be reused: {@code decode} overwrites the previous contents and only allocates when the
+ * book outgrows the arrays, so a quoting loop can decode and query every tick without producing garbage.
+ * Not thread-safe, decode and query from the same thread.
+ */
+public class BookSnapshot {
+
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int HEADER_SIZE = 45;
+    private static final int NODE_SIZE = 72;
+    private static final int LEAF_NODE_TAG = 2;
+    private static final int BUMP_INDEX_OFFSET = 13;
+    // Sort keys pack the price above the unsorted index
+    private static final int INDEX_BITS = 16;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private final boolean bids;
+    private final OwnerIndex owners;
+
+    private int size;
+    private long[] priceLots = new long[INITIAL_CAPACITY];
+    private long[] quantityLots = new long[INITIAL_CAPACITY];
+    private long[] sequenceNumbers = new long[INITIAL_CAPACITY];
+    private long[] clientOrderIds = new long[INITIAL_CAPACITY];
+    private float[] prices = new float[INITIAL_CAPACITY];
+    private float[] quantities = new float[INITIAL_CAPACITY];
+    private int[] ownerIds = new int[INITIAL_CAPACITY];
+    private byte[] ownerClasses = new byte[INITIAL_CAPACITY];
+    private int[] nextByOwner = new int[INITIAL_CAPACITY];
+    private int[] bestByOwner = newOwnerIndex(64);
+
+    // Unsorted decode scratch, permuted into the arrays above
+    private long[] sortKeys = new long[INITIAL_CAPACITY];
+    private long[] rawPriceLots = new long[INITIAL_CAPACITY];
+    private long[] rawQuantityLots = new long[INITIAL_CAPACITY];
+    private long[] rawSequenceNumbers = new long[INITIAL_CAPACITY];
+    private long[] rawClientOrderIds = new long[INITIAL_CAPACITY];
+    private int[] rawOwnerIds = new int[INITIAL_CAPACITY];
+
+    public BookSnapshot(boolean bids, OwnerIndex owners) {
+        this.bids = bids;
+        this.owners = owners;
+    }
+
+    /**
+     * Decodes raw bids/asks account data, as received from {@code getAccountInfo} or {@code accountSubscribe}.
+     */
+    public void decode(byte[] slabData, byte baseDecimals, byte quoteDecimals, long baseLotSize, long quoteLotSize) {
+        ByteBuffer buffer = ByteBuffer.wrap(slabData).order(ByteOrder.LITTLE_ENDIAN);
+        int nodeCount = (int) Math.min(buffer.getLong(BUMP_INDEX_OFFSET), (slabData.length - HEADER_SIZE) / NODE_SIZE);
+
+        int count = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            int offset = HEADER_SIZE + node * NODE_SIZE;
+            if (buffer.getInt(offset) != LEAF_NODE_TAG) {
+                continue;
+            }
+            ensureCapacity(count + 1);
+            rawSequenceNumbers[count] = buffer.getLong(offset + 8);
+            rawPriceLots[count] = buffer.getLong(offset + 16);
+            rawOwnerIds[count] = owners.intern(slabData, offset + 24);
+            rawQuantityLots[count] = buffer.getLong(offset + 56);
+            rawClientOrderIds[count] = buffer.getLong(offset + 64);
+            count++;
+        }
+        sort(count, baseDecimals, quoteDecimals, baseLotSize, quoteLotSize);
+    }
+
+    /**
+     * Decodes an order book already parsed by the serum library, without building its {@code Order} list.
+     */
+    public void decode(OrderBook orderBook) {
+        List<SlabNode> nodes = orderBook.getSlab().getSlabNodes();
+        int count = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i) instanceof SlabLeafNode leaf) {
+                ensureCapacity(count + 1);
+                rawSequenceNumbers[count] = sequenceNumber(leaf.getKey());
+                rawPriceLots[count] = leaf.getPrice();
+                rawOwnerIds[count] = owners.intern(leaf.getOwner());
+                rawQuantityLots[count] = leaf.getQuantity();
+                rawClientOrderIds[count] = leaf.getClientOrderId();
+                count++;
+            }
+        }
+        sort(count, orderBook.getBaseDecimals(), orderBook.getQuoteDecimals(), orderBook.getBaseLotSize(),
+                orderBook.getQuoteLotSize());
+    }
+
+    private void sort(int count, byte baseDecimals, byte quoteDecimals, long baseLotSize, long quoteLotSize) {
+        for (int i = 0; i < count; i++) {
+            sortKeys[i] = (rawPriceLots[i] << INDEX_BITS) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        // Same arithmetic as SerumUtils.priceLotsToNumber() and OrderBook.getOrders(), so prices compare equal to
+        // Order.getFloatPrice(), with the Math.pow() multipliers hoisted out of the loop
+        double baseMultiplier = SerumUtils.getBaseSplTokenMultiplier(baseDecimals);
+        double priceDenominator = (double) baseLotSize * SerumUtils.getQuoteSplTokenMultiplier(quoteDecimals);
+        clearOwners();
+        for (int i = 0; i < count; i++) {
+            int raw = (int) (sortKeys[bids ? count - 1 - i : i] & INDEX_MASK);
+            priceLots[i] = rawPriceLots[raw];
+            quantityLots[i] = rawQuantityLots[raw];
+            sequenceNumbers[i] = rawSequenceNumbers[raw];
+            clientOrderIds[i] = rawClientOrderIds[raw];
+            ownerIds[i] = rawOwnerIds[raw];
+            ownerClasses[i] = owners.ownerClass(ownerIds[i]);
+            prices[i] = (float) ((double) (priceLots[i] * quoteLotSize) * baseMultiplier / priceDenominator);
+            quantities[i] = (float) ((double) (quantityLots[i] * baseLotSize) / baseMultiplier);
+        }
+        size = count;
+        indexOwners();
+    }
+
+    // Low 64 bits of the little-endian u128 order key, the price is the high 64 bits
+    private static long sequenceNumber(byte[] key) {
+        long sequenceNumber = 0;
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            sequenceNumber = (sequenceNumber << 8) | (key[i] & 0xFF);
+        }
+        return sequenceNumber;
+    }
+
+    // Only the owners of the previous decode can be set, the rest of the index is already NONE
+    private void clearOwners() {
+        for (int i = 0; i < size; i++) {
+            bestByOwner[ownerIds[i]] = NONE;
+        }
+    }
+
+    private void indexOwners() {
+        if (bestByOwner.length < owners.size()) {
+            final int[] grown = newOwnerIndex(Math.max(owners.size(), bestByOwner.length * 2));
+            System.arraycopy(bestByOwner, 0, grown, 0, bestByOwner.length);
+            bestByOwner = grown;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            nextByOwner[i] = bestByOwner[ownerIds[i]];
+            bestByOwner[ownerIds[i]] = i;
+        }
+    }
+
+    private static int[] newOwnerIndex(int capacity) {
+        final int[] index = new int[capacity];
+        Arrays.fill(index, NONE);
+        return index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= rawPriceLots.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, rawPriceLots.length * 2);
+        if (newCapacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Order book too large for snapshot: " + capacity);
+        }
+        priceLots = Arrays.copyOf(priceLots, newCapacity);
+        quantityLots = Arrays.copyOf(quantityLots, newCapacity);
+        sequenceNumbers = Arrays.copyOf(sequenceNumbers, newCapacity);
+        clientOrderIds = Arrays.copyOf(clientOrderIds, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        ownerIds = Arrays.copyOf(ownerIds, newCapacity);
+        ownerClasses = Arrays.copyOf(ownerClasses, newCapacity);
+        nextByOwner = Arrays.copyOf(nextByOwner, newCapacity);
+        sortKeys = Arrays.copyOf(sortKeys, newCapacity);
+        rawPriceLots = Arrays.copyOf(rawPriceLots, newCapacity);
+        rawQuantityLots = Arrays.copyOf(rawQuantityLots, newCapacity);
+        rawSequenceNumbers = Arrays.copyOf(rawSequenceNumbers, newCapacity);
+        rawClientOrderIds = Arrays.copyOf(rawClientOrderIds, newCapacity);
+        rawOwnerIds = Arrays.copyOf(rawOwnerIds, newCapacity);
+    }
+
+    public boolean isBids() {
+        return bids;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long priceLots(int i) {
+        return priceLots[i];
+    }
+
+    public long quantityLots(int i) {
+        return quantityLots[i];
+    }
+
+    /**
+     * Order id together with {@link #priceLots(int)}: the low half of the slab key.
+     */
+    public long sequenceNumber(int i) {
+        return sequenceNumbers[i];
+    }
+
+    public long clientOrderId(int i) {
+        return clientOrderIds[i];
+    }
+
+    public float price(int i) {
+        return prices[i];
+    }
+
+    public float quantity(int i) {
+        return quantities[i];
+    }
+
+    public int ownerId(int i) {
+        return ownerIds[i];
+    }
+
+    public byte ownerClass(int i) {
+        return ownerClasses[i];
+    }
+
+    public PublicKey owner(int i) {
+        return owners.owner(ownerIds[i]);
+    }
+
+    /**
+     * @return index of the top of book, or {@link #NONE} if the side is empty
+     */
+    public int best() {
+        return size > 0 ? 0 : NONE;
+    }
+
+    /**
+     * @return index of the owner's best priced order, or {@link #NONE}
+     */
+    public int bestOf(int ownerId) {
+        return ownerId >= 0 && ownerId < bestByOwner.length && size > 0 ? bestByOwner[ownerId] : NONE;
+    }
+
+    /**
+     * @return index of the owner's next order after {@code i}, in price priority, or {@link #NONE}
+     */
+    public int nextOfSameOwner(int i) {
+        return nextByOwner[i];
+    }
+
+    public boolean hasOrders(int ownerId) {
+        return bestOf(ownerId) != NONE;
+    }
+
+    public int countOf(int ownerId) {
+        int count = 0;
+        for (int i = bestOf(ownerId); i != NONE; i = nextByOwner[i]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return index of the best order whose owner has any of the {@link OwnerClass} bits, or {@link #NONE}
+     */
+    public int bestIn(int classMask) {
+        for (int i = 0; i < size; i++) {
+            if ((ownerClasses[i] & classMask) != 0) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return index of the best order whose owner has none of the {@link OwnerClass} bits, or {@link #NONE}
+     */
+    public int bestNotIn(int classMask) {
+        for (int i = 0; i < size; i++) {
+            if ((ownerClasses[i] & classMask) == 0) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return index of the worst priced order among the first {@code end} orders whose owner has any of the
+     * {@link OwnerClass} bits, i.e. the one closest to the price that {@code end} was computed for, or {@link #NONE}
+     */
+    public int lastIn(int classMask, int end) {
+        for (int i = Math.min(end, size) - 1; i >= 0; i--) {
+            if ((ownerClasses[i] & classMask) != 0) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return number of orders priced at or better than {@code price} (bids: {@code >=}, asks: {@code <=})
+     */
+    public int countAtOrBetter(float price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bids ? prices[mid] >= price : prices[mid] <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return number of orders priced strictly better than {@code price} (bids: {@code >}, asks: {@code <})
+     */
+    public int countBetter(float price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bids ? prices[mid] > price : prices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mmorrell.book;
+
+/**
+ * Owner classification bits, stored as a byte tag per owner in {@link OwnerIndex} and per order in
+ * {@link BookSnapshot}. An owner can carry several bits (ASX is also a sharp), queries take a mask.
+ */
+public final class OwnerClass {
+
+    public static final byte OTHER = 0;
+    public static final byte SELF = 1;
+    public static final byte FISH = 1 << 1;
+    public static final byte SHARP = 1 << 2;
+    public static final byte ASX = 1 << 3;
+    // Only treated as a sharp when we're pricing asks
+    public static final byte ASK_SHARP = 1 << 4;
+
+    private OwnerClass() {
+    }
+}
@@ -0,0 +1,121 @@
+package com.mmorrell.book;
+
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Interns order owners (open orders accounts) to small, stable int ids and keeps an {@link OwnerClass} tag per
+ * owner, so book snapshots filter on a byte instead of list scans and {@link PublicKey#equals}.
+ * <p>
+ * Lookups go through an open-addressing table keyed on the raw 32 byte key, so decoding straight from slab data
+ * never allocates a {@link PublicKey} for owners already seen. Ids are never reused.
+ * Not thread-safe, classify up front and intern from the thread that decodes snapshots.
+ */
+public class OwnerIndex {
+
+    private static final int KEY_SIZE = 32;
+    private static final int EMPTY = 0;
+
+    private PublicKey[] owners = new PublicKey[64];
+    private byte[] classes = new byte[64];
+    private int size;
+    // Open addressing, linear probing. Slots hold ownerId + 1, so 0 means empty
+    private int[] slots = new int[128];
+
+    public int size() {
+        return size;
+    }
+
+    public PublicKey owner(int ownerId) {
+        return owners[ownerId];
+    }
+
+    public byte ownerClass(int ownerId) {
+        return classes[ownerId];
+    }
+
+    /**
+     * Adds the class bits to every given owner.
+     */
+    public void classify(List<PublicKey> owners, int ownerClass) {
+        owners.forEach(owner -> classify(owner, ownerClass));
+    }
+
+    public int classify(PublicKey owner, int ownerClass) {
+        int ownerId = intern(owner);
+        classes[ownerId] |= ownerClass;
+        return ownerId;
+    }
+
+    public int intern(PublicKey owner) {
+        return intern(owner.toByteArray(), 0);
+    }
+
+    /**
+     * @param data   buffer holding a 32 byte public key
+     * @param offset start of the key in {@code data}
+     */
+    public int intern(byte[] data, int offset) {
+        int ownerId = find(data, offset);
+        if (ownerId >= 0) {
+            return ownerId;
+        }
+        if (size == owners.length) {
+            owners = Arrays.copyOf(owners, size * 2);
+            classes = Arrays.copyOf(classes, size * 2);
+        }
+        ownerId = size++;
+        owners[ownerId] = new PublicKey(Arrays.copyOfRange(data, offset, offset + KEY_SIZE));
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insert(ownerId);
+        }
+        return ownerId;
+    }
+
+    /**
+     * @return id of the owner, or -1 if it hasn't been seen
+     */
+    public int find(PublicKey owner) {
+        return find(owner.toByteArray(), 0);
+    }
+
+    private int find(byte[] data, int offset) {
+        int mask = slots.length - 1;
+        for (int slot = hash(data, offset) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int ownerId = slots[slot] - 1;
+            if (Arrays.equals(owners[ownerId].toByteArray(), 0, KEY_SIZE, data, offset, offset + KEY_SIZE)) {
+                return ownerId;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int ownerId) {
+        int mask = slots.length - 1;
+        int slot = hash(owners[ownerId].toByteArray(), 0) & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = ownerId + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int ownerId = 0; ownerId < size; ownerId++) {
+            insert(ownerId);
+        }
+    }
+
+    // Public keys are uniformly distributed, the first 8 bytes are a good enough hash
+    private static int hash(byte[] data, int offset) {
+        long bits = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            bits = (bits << 8) | (data[offset + i] & 0xFF);
+        }
+        return (int) (bits ^ (bits >>> 32));
+    }
+}
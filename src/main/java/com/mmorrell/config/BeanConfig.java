@@ -1,19 +1,26 @@
 package com.mmorrell.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mmorrell.pyth.manager.PythManager;
+import com.mmorrell.rpc.PooledRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.p2p.solanaj.rpc.RpcClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @Component
 @EnableScheduling
@@ -26,27 +33,42 @@ public class BeanConfig {
 
     @Bean
     public RpcClient rpcClient() {
-        int readTimeoutMs = 0;
-        int connectTimeoutMs = 0;
-        int writeTimeoutMs = 0;
-        return new RpcClient(
-                openBookConfig.getRPC_URL(),
-                readTimeoutMs,
-                connectTimeoutMs,
-                writeTimeoutMs
-        );
+        PooledRpcClient rpcClient = new PooledRpcClient(openBookConfig.getRPC_URL(), orderHttpClient());
+        rpcClient.warmUp();
+        return rpcClient;
     }
 
     @Bean(name = "data")
     public RpcClient dataRpcClient() {
-        int readTimeoutMs = 0;
-        int connectTimeoutMs = 0;
-        int writeTimeoutMs = 0;
-        return new RpcClient(
-                openBookConfig.getRPC_URL(),
-                readTimeoutMs,
-                connectTimeoutMs,
-                writeTimeoutMs
+        PooledRpcClient rpcClient = new PooledRpcClient(openBookConfig.getRPC_URL(), dataHttpClient());
+        rpcClient.warmUp();
+        return rpcClient;
+    }
+
+    /**
+     * Order path transport. Own connection pool and dispatcher, so order sends never wait behind data reads, and
+     * short timeouts so a stuck node can't hold an order thread.
+     */
+    @Bean(name = "orderHttp")
+    public OkHttpClient orderHttpClient() {
+        return rpcHttpClient(
+                OpenBookConfig.ORDER_HTTP_CONNECT_TIMEOUT_MS,
+                OpenBookConfig.ORDER_HTTP_READ_WRITE_TIMEOUT_MS,
+                OpenBookConfig.ORDER_HTTP_CALL_TIMEOUT_MS,
+                OpenBookConfig.ORDER_HTTP_MAX_IDLE_CONNECTIONS
+        );
+    }
+
+    /**
+     * Balances, accounts and other reads.
+     */
+    @Bean(name = "dataHttp")
+    public OkHttpClient dataHttpClient() {
+        return rpcHttpClient(
+                OpenBookConfig.DATA_HTTP_CONNECT_TIMEOUT_MS,
+                OpenBookConfig.DATA_HTTP_READ_WRITE_TIMEOUT_MS,
+                OpenBookConfig.DATA_HTTP_CALL_TIMEOUT_MS,
+                OpenBookConfig.DATA_HTTP_MAX_IDLE_CONNECTIONS
         );
     }
 
@@ -56,6 +78,7 @@ public class BeanConfig {
     }
 
     @Bean
+    @Primary
     public OkHttpClient okHttpClient() {
         return new OkHttpClient();
     }
@@ -65,15 +88,29 @@ public class BeanConfig {
         return new ObjectMapper();
     }
 
-    @Bean
-    public PythManager pythManager() {
-        return new PythManager(dataRpcClient());
-    }
-
     @Bean
     public OpenBookConfig openBookConfigBean() {
         return openBookConfig;
     }
 
+    // HTTP/2 where the node offers it (ALPN), one multiplexed connection per host is then enough
+    private static OkHttpClient rpcHttpClient(long connectTimeoutMs, long readWriteTimeoutMs, long callTimeoutMs,
+                                              int maxIdleConnections) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(128);
+        dispatcher.setMaxRequestsPerHost(64);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, OpenBookConfig.HTTP_KEEP_ALIVE_MS,
+                        TimeUnit.MILLISECONDS))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .pingInterval(OpenBookConfig.HTTP2_PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readWriteTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readWriteTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
 
 }
@@ -10,6 +10,7 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @PropertySource("classpath:openbook.properties")
@@ -24,6 +25,12 @@ public class OpenBookConfig {
     @Value("${solana.data.rpc.url}")
     private String DATA_RPC_URL;
 
+    @Value("${solana.rpc.broadcast.urls:${solana.rpc.url}}")
+    private List<String> BROADCAST_URLS;
+
+    @Value("${solana.ws.url}")
+    private String WS_URL;
+
     @Value("${solana.wallet.keypair.json.path}")
     private String KEYPAIR_PATH;
 
@@ -41,6 +48,14 @@ public class OpenBookConfig {
         return DATA_RPC_URL;
     }
 
+    public List<String> getBROADCAST_URLS() {
+        return BROADCAST_URLS;
+    }
+
+    public String getWS_URL() {
+        return WS_URL;
+    }
+
     public String getQUOTE_WALLET() {
         return QUOTE_WALLET;
     }
@@ -94,10 +109,63 @@ public class OpenBookConfig {
     public static final float ALLOWED_PRICING_BPS_MISMATCH = 0.00002f; // widen to lower quote rate: 0.000052f;
     public static final int EVENT_QUEUE_SIZE_THRESHOLD_FOR_WIDEN = 430;
     public static final float EVENT_QUEUE_SIZE_ASK_WIDEN = 1.0003f;
-    public static final int EVENT_LOOP_DURATION_MS = 10065;
-    public static final long ORDER_BOOK_POLL_INTERVAL = 210L;
-    public static final long LEAN_CALCULATION_INITIAL_DELAY = 1000L;
-    public static final long LEAN_CALCULATION_INTERVAL = 9_000L;
+    public static final int EVENT_LOOP_DURATION_MS = 10065; // max idle time, loop is driven by book/oracle changes
+    public static final long QUOTE_MIN_INTERVAL_MS = 150L;
+    public static final long QUOTE_DEBOUNCE_MS = 15L;
+    public static final long QUOTE_COMMAND_TIMEOUT_MS = 2_000L; // REST tuning waits this long for the quoting thread
+    public static final long ORDER_BOOK_POLL_INTERVAL = 210L; // fallback only, when the websocket feed is down
+    public static final long ORDER_BOOK_FEED_RECONNECT_MS = 2_000L;
+    public static final long MARKET_DATA_REFRESH_MS = ORDER_BOOK_POLL_INTERVAL; // one getMultipleAccounts per tick
+    public static final long BOOK_MAX_AGE_MS = 2_000L; // polled books older than this aren't quoted off
+    public static final long BOOK_MAX_AGE_SLOTS = 10L;
+    public static final long PYTH_FALLBACK_POLL_MS = 400L; // one getMultipleAccounts for oracles not streaming
+    public static final long PYTH_MAX_AGE_MS = 5_000L; // older oracle prices aren't quoted off
+    public static final long PYTH_MAX_AGE_SLOTS = 25L;
+    public static final String JUPITER_PRICE_URL = "https://price.jup.ag/v4/price";
+    public static final long JUPITER_REFRESH_MS = 6_000L; // one request for every tracked id
+    public static final long JUPITER_VS_AMOUNT = 500L; // USDC size Jupiter prices are routed for
+    public static final long JUPITER_MAX_AGE_MS = 30_000L; // older Jupiter prices aren't quoted off
+    public static final double JUPITER_UNCERTAINTY_BPS = 10.0; // Jupiter routes come without a confidence
+    public static final double FAIR_VALUE_DRIFT_BPS_PER_SEC = 2.0; // uncertainty a source gains per second of age
+    public static final double FAIR_VALUE_MIN_UNCERTAINTY_BPS = 0.1; // a locked book or tight oracle isn't exact
+    public static final long ORACLE_WIDEN_AGE_MS = PYTH_MAX_AGE_MS; // quotes widen once Pyth is this old
+    public static final long ORACLE_PAUSE_AGE_MS = 30_000L; // and stop once it's this old
+    public static final long ORACLE_WIDEN_SLOTS = PYTH_MAX_AGE_SLOTS;
+    public static final long ORACLE_PAUSE_SLOTS = 150L;
+    public static final double ORACLE_WIDEN_DIVERGENCE_BPS = 30.0; // between Pyth, Jupiter and the book mid
+    public static final double ORACLE_PAUSE_DIVERGENCE_BPS = 100.0;
+    public static final double ORACLE_WIDEN_BPS = 5.0; // quotes move this much further out while widened
+    public static final long ORACLE_PAUSE_CANCEL_RETRY_MS = 2_000L; // paused quotes still on the book are re-cancelled
+    public static final long EVENT_QUEUE_POLL_MS = 400L; // one getMultipleAccounts for every followed event queue
+    public static final long BLOCKHASH_REFRESH_SLOTS = 5L;
+    public static final long BLOCKHASH_REFRESH_MS = 2_000L; // fallback when no slots are seen
+    public static final long BLOCKHASH_MAX_AGE_MS = 20_000L; // blockhashes expire after 150 blocks, ~60s
+    public static final int BROADCAST_FAN_OUT = 3; // endpoints per order, best scored first
+    public static final double BROADCAST_EXPLORE_RATE = 0.1; // chance to swap in a lower scored endpoint
+    public static final long BROADCAST_TIMEOUT_MS = 5_000L;
+    public static final long BROADCAST_DEDUPE_WINDOW_MS = 90_000L;
+    public static final int ORDER_MAX_IN_FLIGHT_PER_SIDE = 2; // newer quotes replace a waiting one past this
+    public static final long LANDING_POLL_INTERVAL_MS = 400L; // one getSignatureStatuses batch per tick
+    public static final long LANDING_EXPIRY_MS = 90_000L; // blockhash lifetime, unconfirmed by then means expired
+    public static final long PRIORITY_FEE_SAMPLE_MS = 2_000L; // getRecentPrioritizationFees per watched market
+    public static final double PRIORITY_FEE_TARGET_LANDING_RATE = 0.9; // fees rise while a class lands less often
+    public static final int PRIORITY_FEE_FLOOR = 10_000; // micro-lamports per CU
+    public static final int PRIORITY_FEE_CAP = 2_000_000;
+    public static final long CU_PROFILE_CHECK_MS = 60_000L; // program upgrade check, re-profiles on a new deploy
+    public static final double CU_PROFILE_MARGIN = 0.15; // compute limit = simulated units plus this share
+    public static final long ORDER_HTTP_CONNECT_TIMEOUT_MS = 2_000L;
+    public static final long ORDER_HTTP_READ_WRITE_TIMEOUT_MS = 3_000L;
+    public static final long ORDER_HTTP_CALL_TIMEOUT_MS = 4_500L; // under BROADCAST_TIMEOUT_MS
+    public static final int ORDER_HTTP_MAX_IDLE_CONNECTIONS = 8;
+    public static final long DATA_HTTP_CONNECT_TIMEOUT_MS = 5_000L;
+    public static final long DATA_HTTP_READ_WRITE_TIMEOUT_MS = 10_000L;
+    public static final long DATA_HTTP_CALL_TIMEOUT_MS = 15_000L;
+    public static final int DATA_HTTP_MAX_IDLE_CONNECTIONS = 4;
+    public static final long HTTP_KEEP_ALIVE_MS = 300_000L;
+    public static final long HTTP2_PING_INTERVAL_MS = 10_000L; // keeps idle HTTP/2 connections open between orders
+    public static final long RPC_BATCH_WINDOW_MS = 5L; // reads within this window share one JSON-RPC batch
+    public static final int RPC_BATCH_MAX_SIZE = 100;
+    public static final long INVENTORY_RECONCILE_MS = 30_000L; // fills move inventory, this re-reads the chain
     public static final long BID_CLIENT_ID = 113371L;
     public static final long ASK_CLIENT_ID = 14201L;
     public static final int EVENT_LOOP_INITIAL_DELAY_MS = 0;
@@ -114,9 +182,9 @@ public class OpenBookConfig {
     public static int PRIORITY_MICRO_LAMPORTS_DEFAULT = 101_420; //Rate
     public static final int NEW_ORDER_DELAY_DURATION_SECONDS = 16; // DEJ sniped me when this was at 14
     public static final int PRIORITY_UNITS = 54_800; // Limit
-    public static final double ADVERSITY_BASE_PRIORITY_RATE_TO_ADD = 11_500.0;
-    public static final double ADVERSITY_BASE_REDUCTION = 55_000.0;
-    public static int PRIORITY_MICRO_LAMPORTS = PRIORITY_MICRO_LAMPORTS_DEFAULT + 12_000; // Rate
+    public static final int PRIORITY_MICRO_LAMPORTS_PREMIUM = 12_000; // Over the default, strategies without a fee model
+    public static volatile int PRIORITY_MICRO_LAMPORTS =
+            PRIORITY_MICRO_LAMPORTS_DEFAULT + PRIORITY_MICRO_LAMPORTS_PREMIUM; // Rate
     public static float BID_API_TUNING_FACTOR = 1f;
     public static float ASK_API_TUNING_FACTOR = 1f;
     public static Optional<Double> USDC_BALANCE = Optional.empty();
@@ -143,6 +211,15 @@ public class OpenBookConfig {
             PublicKey.valueOf("7pYyuhKrMTswQqZ9eXx813Qsx99yzvnbaUD3mUvX7wFm")  //ground
     );
 
+    // Pyth price accounts by symbol, served by the OracleRegistry
+    public static final Map<String, PublicKey> PYTH_PRICE_ACCOUNTS = Map.of(
+            "SOL", PublicKey.valueOf("H6ARHf6YXhGYeQfUzQNGk6rDNnLBQKrenN712K4AQJEG"),
+            "ETH", PublicKey.valueOf("JBu1AL4obBcCMqKBBxhpWCNUt136ijcuMZLFvTP7iWdB"),
+            "mSOL", PublicKey.valueOf("E4v1BBgoso9s64TQvmyownAVJbhbEPGyzA3qn4n46qj9"),
+            "stSOL", PublicKey.valueOf("Bt1hEbY62aMriY1SyQqbeZbm8VmSbQVGBFzSzMuVNWzN"),
+            "JitoSOL", PublicKey.valueOf("7yyaeuJ1GGtVBLT2z2xub5ZWYKaNhF28mj1RdV4VDFVk")
+    );
+
     public static double generateLeanFactor(String token) {
         double leanFactor = 1.1;  // closer to 1 for longer afk
         log.info("Leaning " + token + ": " + leanFactor + "x");
@@ -17,9 +17,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 @Configuration
 public class SchedulerConfig implements SchedulingConfigurer, AsyncConfigurer {
     /**
-     * The pool size.
+     * The pool size. A handful of @Scheduled tasks, order sends have their own OrderDispatcher threads.
      */
-    private final int POOL_SIZE = 128;
+    private final int POOL_SIZE = 8;
 
     /**
      * Configures the scheduler to allow multiple pools.
@@ -41,8 +41,8 @@ public class SchedulerConfig implements SchedulingConfigurer, AsyncConfigurer {
     public Executor getAsyncExecutor() {
         ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
         threadPoolTaskExecutor.setQueueCapacity(0);
-        threadPoolTaskExecutor.setMaxPoolSize(128);
-        threadPoolTaskExecutor.setCorePoolSize(64);
+        threadPoolTaskExecutor.setMaxPoolSize(16);
+        threadPoolTaskExecutor.setCorePoolSize(2);
         threadPoolTaskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy());
         threadPoolTaskExecutor.setThreadNamePrefix("async-");
         threadPoolTaskExecutor.initialize();
@@ -0,0 +1,185 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.config.OpenBookConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bitcoinj.core.Base58;
+import org.p2p.solanaj.rpc.RpcClient;
+import org.p2p.solanaj.rpc.RpcException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Keeps the latest blockhash in memory so sending an order is a single RPC call.
+ * <p>
+ * Refreshed in the background every {@link OpenBookConfig#BLOCKHASH_REFRESH_SLOTS} slots, as reported by
+ * {@link #onSlot} from the order book feed, with a timer as fallback. A blockhash older than the max age is never
+ * handed out, the caller fetches a fresh one inline instead. Fetched from the order RPC node so the node we send to
+ * has always seen it.
+ */
+@Component
+@Slf4j
+public class BlockhashProvider {
+
+    private static final long STATS_LOG_INTERVAL_MS = 60_000L;
+
+    private final RpcClient rpcClient;
+    private final long refreshSlots;
+    private final long refreshIntervalMs;
+    private final long maxAgeMs;
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private volatile Blockhash latest;
+    private volatile long latestSlot;
+
+    // Blockhash age at hand out, in ms
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong servedAgeTotalMs = new AtomicLong();
+    private final LongAccumulator servedAgeMaxMs = new LongAccumulator(Math::max, 0);
+    private final AtomicLong staleFetches = new AtomicLong();
+    private final AtomicLong refreshErrors = new AtomicLong();
+
+    @Autowired
+    public BlockhashProvider(RpcClient rpcClient) {
+        this(rpcClient, OpenBookConfig.BLOCKHASH_REFRESH_SLOTS, OpenBookConfig.BLOCKHASH_REFRESH_MS,
+                OpenBookConfig.BLOCKHASH_MAX_AGE_MS);
+    }
+
+    public BlockhashProvider(RpcClient rpcClient, long refreshSlots, long refreshIntervalMs, long maxAgeMs) {
+        this.rpcClient = rpcClient;
+        this.refreshSlots = refreshSlots;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        refreshExecutor.scheduleWithFixedDelay(this::refreshIfDue, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        refreshExecutor.scheduleAtFixedRate(this::logStats, STATS_LOG_INTERVAL_MS, STATS_LOG_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Latest slot seen anywhere (account notifications, responses). Schedules a refresh once the cached
+     * blockhash is {@code refreshSlots} behind.
+     */
+    public void onSlot(long slot) {
+        if (slot > latestSlot) {
+            latestSlot = slot;
+        }
+        final Blockhash blockhash = latest;
+        if (blockhash != null && slot - blockhash.slot() >= refreshSlots && refreshPending.compareAndSet(false, true)) {
+            refreshExecutor.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * @return base58 blockhash for a send
+     */
+    public String getBlockhash() throws RpcException {
+        return current().blockhash();
+    }
+
+    /**
+     * @return raw 32 byte blockhash for a send, callers must not modify it
+     */
+    public byte[] getBlockhashBytes() throws RpcException {
+        return current().bytes();
+    }
+
+    /**
+     * @return highest slot reported to {@link #onSlot} or seen on a refresh, 0 before the first
+     */
+    public long getLatestSlot() {
+        return latestSlot;
+    }
+
+    public long getServedCount() {
+        return served.get();
+    }
+
+    public long getStaleFetchCount() {
+        return staleFetches.get();
+    }
+
+    public long getMaxServedAgeMs() {
+        return servedAgeMaxMs.get();
+    }
+
+    private Blockhash current() throws RpcException {
+        Blockhash blockhash = latest;
+        if (blockhash == null || ageMs(blockhash) > maxAgeMs) {
+            staleFetches.incrementAndGet();
+            blockhash = refresh();
+        }
+        final long ageMs = ageMs(blockhash);
+        served.incrementAndGet();
+        servedAgeTotalMs.addAndGet(ageMs);
+        servedAgeMaxMs.accumulate(ageMs);
+        return blockhash;
+    }
+
+    private void refreshIfDue() {
+        final Blockhash blockhash = latest;
+        if (blockhash == null || ageMs(blockhash) >= refreshIntervalMs) {
+            refreshQuietly();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            refreshErrors.incrementAndGet();
+            log.error("Blockhash refresh error: " + e.getMessage());
+        } finally {
+            refreshPending.set(false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Blockhash refresh() throws RpcException {
+        final Map<String, Object> response = rpcClient.call("getLatestBlockhash",
+                List.of(Map.of("commitment", "processed")), Map.class);
+        final Map<String, Object> context = (Map<String, Object>) response.get("context");
+        final Map<String, Object> value = (Map<String, Object>) response.get("value");
+        final String hash = (String) value.get("blockhash");
+        final long slot = ((Number) context.get("slot")).longValue();
+        final Blockhash blockhash = new Blockhash(hash, Base58.decode(hash), slot, System.currentTimeMillis());
+        final Blockhash previous = latest;
+        if (previous == null || slot >= previous.slot()) {
+            latest = blockhash;
+        }
+        onSlot(slot);
+        return blockhash;
+    }
+
+    private void logStats() {
+        final long count = served.get();
+        log.info("Blockhash: served " + count + ", avg age " + (count == 0 ? 0 : servedAgeTotalMs.get() / count) +
+                "ms, max age " + servedAgeMaxMs.get() + "ms, stale fetches " + staleFetches.get() +
+                ", refresh errors " + refreshErrors.get() + ", slot " + latestSlot);
+    }
+
+    private static long ageMs(Blockhash blockhash) {
+        return System.currentTimeMillis() - blockhash.fetchedAtMs();
+    }
+
+    private record Blockhash(String blockhash, byte[] bytes, long slot, long fetchedAtMs) {
+    }
+}
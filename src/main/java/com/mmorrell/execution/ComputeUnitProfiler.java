@@ -0,0 +1,269 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.SerumUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sizes the compute unit limit of each transaction shape from what a simulation of it consumed.
+ * <p>
+ * A strategy registers a sample transaction per {@link Shape}, built with {@link #SIMULATION_UNIT_LIMIT}. All
+ * samples are simulated in one batch; the limit of a shape is its simulated units plus
+ * {@link OpenBookConfig#CU_PROFILE_MARGIN}. A tight limit makes the same priority fee per CU cost less, and lets the
+ * scheduler pack the transaction sooner. Until a shape simulates cleanly it keeps the fallback limit it was
+ * registered with. Samples are simulated again whenever the OpenBook program is redeployed, seen from the slot in
+ * its program data account.
+ */
+@Component
+@Slf4j
+public class ComputeUnitProfiler {
+
+    /**
+     * Highest limit a transaction can request, samples are built with it so the simulation never runs out.
+     */
+    public static final int SIMULATION_UNIT_LIMIT = 1_400_000;
+
+    // Upgradeable loader state: program is [u32 tag][programdata key], programdata is [u32 tag][u64 deploy slot]...
+    private static final int PROGRAM_DATA_KEY_OFFSET = 4;
+    private static final int DEPLOY_SLOT_OFFSET = 4;
+    private static final int DEPLOY_SLOT_END = DEPLOY_SLOT_OFFSET + Long.BYTES;
+
+    /**
+     * Transaction layouts the strategy sends, each with its own compute profile.
+     */
+    public enum Shape {
+        /** Consume events, settle, place */
+        PLACE,
+        /** Consume events, cancel by client id, consume events, settle, place */
+        CANCEL_PLACE,
+        /** Consume events, settle, IOC place, settle */
+        MARKET_SELL,
+        /** Create and initialize a WSOL account, cancel by client id, settle, close */
+        HARD_CANCEL
+    }
+
+    @FunctionalInterface
+    public interface Sample {
+        /**
+         * @return signed wire bytes of a transaction of the shape, built with {@link #SIMULATION_UNIT_LIMIT}
+         */
+        byte[] build() throws Exception;
+    }
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final PublicKey programId;
+    private final long checkIntervalMs;
+    private final double margin;
+    private final ScheduledExecutorService profileExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Shape, Profile> profiles = new EnumMap<>(Shape.class);
+    private final AtomicLong profileCount = new AtomicLong();
+    private final AtomicLong simulationErrors = new AtomicLong();
+    // Only touched on the profile thread
+    private PublicKey programDataKey;
+    private volatile long deploySlot = -1;
+    private volatile boolean started;
+
+    @Autowired
+    public ComputeUnitProfiler(BatchingRpcClient batchingRpcClient) {
+        this(batchingRpcClient, SerumUtils.SERUM_PROGRAM_ID_V3, OpenBookConfig.CU_PROFILE_CHECK_MS,
+                OpenBookConfig.CU_PROFILE_MARGIN);
+    }
+
+    public ComputeUnitProfiler(BatchingRpcClient batchingRpcClient, PublicKey programId, long checkIntervalMs,
+                               double margin) {
+        this.batchingRpcClient = batchingRpcClient;
+        this.programId = programId;
+        this.checkIntervalMs = checkIntervalMs;
+        this.margin = margin;
+        for (Shape shape : Shape.values()) {
+            profiles.put(shape, new Profile());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        started = true;
+        profileExecutor.scheduleWithFixedDelay(this::refreshQuietly, checkIntervalMs, checkIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        profileExecutor.shutdownNow();
+    }
+
+    /**
+     * Profiles the shape soon, and again on every redeploy.
+     *
+     * @param fallbackUnits limit used until the shape is profiled
+     * @param sample        called on the profile thread
+     */
+    public void register(Shape shape, int fallbackUnits, Sample sample) {
+        final Profile profile = profiles.get(shape);
+        profile.fallbackUnits = fallbackUnits;
+        profile.sample = sample;
+        if (started) {
+            profileExecutor.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * @return compute unit limit for a transaction of the shape
+     */
+    public int limitFor(Shape shape) {
+        final Profile profile = profiles.get(shape);
+        final long units = profile.units;
+        if (units <= 0) {
+            return profile.fallbackUnits;
+        }
+        return (int) Math.min(SIMULATION_UNIT_LIMIT, Math.round(units * (1 + margin)));
+    }
+
+    /**
+     * @return units the last clean simulation of the shape consumed, 0 if it wasn't profiled yet
+     */
+    public long getUnits(Shape shape) {
+        return profiles.get(shape).units;
+    }
+
+    public long getDeploySlot() {
+        return deploySlot;
+    }
+
+    public long getProfileCount() {
+        return profileCount.get();
+    }
+
+    public long getSimulationErrorCount() {
+        return simulationErrors.get();
+    }
+
+    /**
+     * Profiles every registered shape again if the program was redeployed, or if a shape isn't profiled yet.
+     */
+    public void refresh() throws Exception {
+        final long slot = readDeploySlot();
+        final boolean upgraded = slot != deploySlot;
+        if (upgraded && deploySlot >= 0) {
+            log.info("OpenBook program redeployed at slot " + slot + ", re-profiling compute units");
+        }
+        deploySlot = slot;
+        if (upgraded || profiles.values().stream().anyMatch(profile -> profile.sample != null && profile.units <= 0)) {
+            profile();
+        }
+    }
+
+    /**
+     * Simulates a sample of every registered shape in one round trip and updates their limits.
+     */
+    public void profile() throws Exception {
+        final List<Shape> shapes = new ArrayList<>();
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        for (Shape shape : Shape.values()) {
+            final Sample sample = profiles.get(shape).sample;
+            if (sample == null) {
+                continue;
+            }
+            final byte[] transaction;
+            try {
+                transaction = sample.build();
+            } catch (Exception e) {
+                simulationErrors.incrementAndGet();
+                log.debug("CU sample error for " + shape + ": " + e.getMessage());
+                continue;
+            }
+            shapes.add(shape);
+            calls.add(batchingRpcClient.call("simulateTransaction", List.of(
+                    Base64.getEncoder().encodeToString(transaction),
+                    Map.of("encoding", "base64", "sigVerify", false, "replaceRecentBlockhash", true,
+                            "commitment", "processed"))));
+        }
+        for (int i = 0; i < shapes.size(); i++) {
+            final JsonNode value = batchingRpcClient.await(calls.get(i)).path("value");
+            final long units = value.path("unitsConsumed").asLong();
+            // A failed simulation stops early, its units say nothing about a transaction that succeeds
+            if (!value.path("err").isNull() || units <= 0) {
+                simulationErrors.incrementAndGet();
+                log.debug("CU simulation of " + shapes.get(i) + " failed: " + value.path("err"));
+                continue;
+            }
+            profiles.get(shapes.get(i)).units = units;
+            log.info("CU profile " + shapes.get(i) + ": " + units + " units, limit " + limitFor(shapes.get(i)));
+        }
+        profileCount.incrementAndGet();
+    }
+
+    /**
+     * @return units and limit per shape, for the status API
+     */
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        for (Shape shape : Shape.values()) {
+            stats.put(shape.name(), Map.of("units", getUnits(shape), "limit", limitFor(shape)));
+        }
+        stats.put("deploySlot", deploySlot);
+        stats.put("profiles", profileCount.get());
+        stats.put("simulationErrors", simulationErrors.get());
+        return stats;
+    }
+
+    private long readDeploySlot() throws Exception {
+        if (programDataKey == null) {
+            final byte[] program = batchingRpcClient.await(batchingRpcClient.getAccountData(programId));
+            if (program == null || program.length < PROGRAM_DATA_KEY_OFFSET + 32) {
+                throw new IllegalStateException("Not an upgradeable program: " + programId.toBase58());
+            }
+            programDataKey = new PublicKey(Arrays.copyOfRange(program, PROGRAM_DATA_KEY_OFFSET,
+                    PROGRAM_DATA_KEY_OFFSET + 32));
+        }
+        // Only the header, program data holds the whole executable
+        final JsonNode result = batchingRpcClient.await(batchingRpcClient.call("getAccountInfo", List.of(
+                programDataKey.toBase58(),
+                Map.of("encoding", "base64", "commitment", "processed",
+                        "dataSlice", Map.of("offset", 0, "length", DEPLOY_SLOT_END)))));
+        final byte[] header = Base64.getDecoder().decode(result.path("value").path("data").path(0).asText());
+        if (header.length < DEPLOY_SLOT_END) {
+            throw new IllegalStateException("Program data missing for " + programId.toBase58());
+        }
+        long slot = 0;
+        for (int i = DEPLOY_SLOT_END - 1; i >= DEPLOY_SLOT_OFFSET; i--) {
+            slot = (slot << 8) | (header[i] & 0xFF);
+        }
+        return slot;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            simulationErrors.incrementAndGet();
+            log.debug("CU profile error: " + e.getMessage());
+        }
+    }
+
+    private static final class Profile {
+        private volatile int fallbackUnits = OpenBookConfig.PRIORITY_UNITS;
+        private volatile Sample sample;
+        private volatile long units;
+    }
+}
@@ -0,0 +1,261 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows sent transactions until they land, fail or expire, with one batched {@code getSignatureStatuses} call
+ * per tick for every pending signature.
+ * <p>
+ * A transaction's outcome is decided once it reaches confirmed: landed, or failed if it landed with an error. One
+ * that isn't confirmed within the expiry has expired. Outcomes are reported to the {@link TransactionBroadcaster}
+ * for endpoint scoring and to the listener given to {@link #track}. Time from tracking to processed, confirmed and
+ * finalized is recorded per commitment level, to the resolution of the poll interval.
+ */
+@Component
+@Slf4j
+public class LandingTracker {
+
+    // getSignatureStatuses limit, more signatures are split over several calls in the same batch
+    private static final int MAX_SIGNATURES_PER_CALL = 256;
+
+    public enum Outcome {
+        LANDED,
+        FAILED,
+        EXPIRED
+    }
+
+    @FunctionalInterface
+    public interface LandingListener {
+        /**
+         * Called once per signature, on the tracker thread.
+         *
+         * @param slot slot the transaction landed in, 0 if it expired
+         */
+        void onOutcome(String signature, Outcome outcome, long slot);
+    }
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final TransactionBroadcaster transactionBroadcaster;
+    private final long pollIntervalMs;
+    private final long expiryMs;
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final LatencyHistogram processedLatency = new LatencyHistogram();
+    private final LatencyHistogram confirmedLatency = new LatencyHistogram();
+    private final LatencyHistogram finalizedLatency = new LatencyHistogram();
+    private final AtomicLong landed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong pollErrors = new AtomicLong();
+
+    @Autowired
+    public LandingTracker(BatchingRpcClient batchingRpcClient, TransactionBroadcaster transactionBroadcaster) {
+        this(batchingRpcClient, transactionBroadcaster, OpenBookConfig.LANDING_POLL_INTERVAL_MS,
+                OpenBookConfig.LANDING_EXPIRY_MS);
+    }
+
+    public LandingTracker(BatchingRpcClient batchingRpcClient, TransactionBroadcaster transactionBroadcaster,
+                          long pollIntervalMs, long expiryMs) {
+        this.batchingRpcClient = batchingRpcClient;
+        this.transactionBroadcaster = transactionBroadcaster;
+        this.pollIntervalMs = pollIntervalMs;
+        this.expiryMs = expiryMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        pollExecutor.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollExecutor.shutdownNow();
+    }
+
+    /**
+     * Follows the signature until it lands, fails or expires. A signature that is already tracked keeps its first
+     * listener.
+     */
+    public void track(String signature, LandingListener listener) {
+        tracked.putIfAbsent(signature, new Tracked(System.currentTimeMillis(), listener));
+    }
+
+    /**
+     * Reads the status of every tracked signature in one round trip and reports what was decided.
+     */
+    public void poll() throws Exception {
+        final List<String> signatures = new ArrayList<>(tracked.keySet());
+        if (signatures.isEmpty()) {
+            return;
+        }
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        for (int from = 0; from < signatures.size(); from += MAX_SIGNATURES_PER_CALL) {
+            calls.add(batchingRpcClient.call("getSignatureStatuses", List.of(
+                    signatures.subList(from, Math.min(from + MAX_SIGNATURES_PER_CALL, signatures.size())),
+                    Map.of("searchTransactionHistory", false))));
+        }
+        final long now = System.currentTimeMillis();
+        int index = 0;
+        for (CompletableFuture<JsonNode> call : calls) {
+            for (JsonNode status : batchingRpcClient.await(call).path("value")) {
+                update(signatures.get(index++), status, now);
+            }
+        }
+    }
+
+    public long getLandedCount() {
+        return landed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public int getPendingCount() {
+        return tracked.size();
+    }
+
+    /**
+     * @return share of decided transactions that landed without error, 0 before any was decided
+     */
+    public double getLandingRate() {
+        final long decided = landed.get() + failed.get() + expired.get();
+        return decided == 0 ? 0 : (double) landed.get() / decided;
+    }
+
+    /**
+     * @param commitment processed, confirmed or finalized
+     */
+    public LatencyHistogram getLatency(String commitment) {
+        return switch (commitment) {
+            case "processed" -> processedLatency;
+            case "confirmed" -> confirmedLatency;
+            case "finalized" -> finalizedLatency;
+            default -> throw new IllegalArgumentException("Unknown commitment: " + commitment);
+        };
+    }
+
+    /**
+     * @return outcome counts, landing rate and latency per commitment level, for the status API
+     */
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("landed", landed.get());
+        stats.put("failed", failed.get());
+        stats.put("expired", expired.get());
+        stats.put("pending", tracked.size());
+        stats.put("landingRate", String.format("%.4f", getLandingRate()));
+        for (String commitment : List.of("processed", "confirmed", "finalized")) {
+            final LatencyHistogram latency = getLatency(commitment);
+            stats.put(commitment, Map.of(
+                    "p50Ms", latency.quantileMs(0.5),
+                    "p99Ms", latency.quantileMs(0.99),
+                    "buckets", latency.toMap()
+            ));
+        }
+        stats.put("pollErrors", pollErrors.get());
+        return stats;
+    }
+
+    private void update(String signature, JsonNode status, long now) {
+        final Tracked transaction = tracked.get(signature);
+        if (transaction == null) {
+            return;
+        }
+        final long latencyMs = now - transaction.trackedAtMs;
+        if (status == null || status.isNull()) {
+            if (latencyMs > expiryMs) {
+                tracked.remove(signature);
+                if (transaction.outcome == null) {
+                    decide(signature, transaction, Outcome.EXPIRED, 0);
+                }
+            }
+            return;
+        }
+        final String commitment = status.path("confirmationStatus").asText("processed");
+        if (!transaction.processed) {
+            transaction.processed = true;
+            processedLatency.record(latencyMs);
+        }
+        if (transaction.outcome == null && !commitment.equals("processed")) {
+            confirmedLatency.record(latencyMs);
+            decide(signature, transaction, status.path("err").isNull() ? Outcome.LANDED : Outcome.FAILED,
+                    status.path("slot").asLong());
+        }
+        if (commitment.equals("finalized")) {
+            finalizedLatency.record(latencyMs);
+            tracked.remove(signature);
+        } else if (latencyMs > expiryMs) {
+            // Decided but never seen finalized, or stuck at processed and never confirmed
+            tracked.remove(signature);
+            if (transaction.outcome == null) {
+                decide(signature, transaction, Outcome.EXPIRED, 0);
+            }
+        }
+    }
+
+    private void decide(String signature, Tracked transaction, Outcome outcome, long slot) {
+        transaction.outcome = outcome;
+        switch (outcome) {
+            case LANDED -> landed.incrementAndGet();
+            case FAILED -> failed.incrementAndGet();
+            case EXPIRED -> expired.incrementAndGet();
+        }
+        // A failed transaction still landed, the endpoint did its job
+        if (outcome == Outcome.EXPIRED) {
+            transactionBroadcaster.onExpired(signature);
+        } else {
+            transactionBroadcaster.onLanded(signature);
+        }
+        try {
+            transaction.listener.onOutcome(signature, outcome, slot);
+        } catch (Exception e) {
+            log.error("Landing listener error: " + e.getMessage());
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            pollErrors.incrementAndGet();
+            log.debug("Landing poll error: " + e.getMessage());
+        }
+    }
+
+    private static final class Tracked {
+        private final long trackedAtMs;
+        private final LandingListener listener;
+        // Only touched on the poll thread
+        private boolean processed;
+        private Outcome outcome;
+
+        private Tracked(long trackedAtMs, LandingListener listener) {
+            this.trackedAtMs = trackedAtMs;
+            this.listener = listener;
+        }
+    }
+}
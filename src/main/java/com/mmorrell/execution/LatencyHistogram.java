@@ -0,0 +1,71 @@
+package com.mmorrell.execution;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies into doubling millisecond buckets (up to 50ms, 100ms, ... 25.6s, over). Lock-free, safe to record
+ * from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final long FIRST_BUCKET_MS = 50L;
+    private static final int BUCKETS = 11;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long latencyMs) {
+        int bucket = 0;
+        long upperMs = FIRST_BUCKET_MS;
+        while (latencyMs > upperMs && bucket < BUCKETS - 1) {
+            upperMs *= 2;
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return upper bound of the bucket the quantile falls in, -1 if nothing was recorded or it's in the last bucket
+     */
+    public long quantileMs(double quantile) {
+        final long count = getCount();
+        if (count == 0) {
+            return -1;
+        }
+        final long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBoundMs(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return count per bucket keyed by its upper bound, e.g. "<=200ms"
+     */
+    public Map<String, Long> toMap() {
+        final Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            buckets.put("<=" + upperBoundMs(i) + "ms", counts.get(i));
+        }
+        buckets.put(">" + upperBoundMs(BUCKETS - 2) + "ms", counts.get(BUCKETS - 1));
+        return buckets;
+    }
+
+    private static long upperBoundMs(int bucket) {
+        return FIRST_BUCKET_MS << bucket;
+    }
+}
@@ -0,0 +1,200 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.config.OpenBookConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends orders with at most {@code maxInFlightPerSide} sends running per market and side.
+ * <p>
+ * While a side is at its limit, one order waits for the next free slot. A newer order for that side replaces the
+ * waiting one, whose future completes with {@code null} without it being built or sent. The superseded quote was
+ * already obsolete, so sending it would only have paid a priority fee.
+ * <p>
+ * Sends block on the broadcast, so each running send holds a thread. There are never more of them than sides times
+ * the limit, threads are reused across sends.
+ */
+@Component
+@Slf4j
+public class OrderDispatcher {
+
+    private final int maxInFlightPerSide;
+    private final ExecutorService sendExecutor;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    @Autowired
+    public OrderDispatcher() {
+        this(OpenBookConfig.ORDER_MAX_IN_FLIGHT_PER_SIDE);
+    }
+
+    public OrderDispatcher(int maxInFlightPerSide) {
+        if (maxInFlightPerSide < 1) {
+            throw new IllegalArgumentException("maxInFlightPerSide must be at least 1");
+        }
+        this.maxInFlightPerSide = maxInFlightPerSide;
+        this.sendExecutor = Executors.newCachedThreadPool(new DispatchThreadFactory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Sends a single order, building its transaction only once a slot is free so it picks up the latest blockhash.
+     */
+    @FunctionalInterface
+    public interface OrderSend {
+        /**
+         * @return transaction signature
+         */
+        String send() throws RpcException;
+    }
+
+    /**
+     * @param bid side of the book the order quotes, each side of each market is limited separately
+     * @return completes with the signature, with {@code null} if a newer order for the side superseded this one
+     * before it was sent, or exceptionally with the send's error
+     */
+    public CompletableFuture<String> dispatch(PublicKey market, boolean bid, OrderSend send) {
+        final Lane lane = lanes.computeIfAbsent(laneName(market, bid), Lane::new);
+        final Queued queued = new Queued(send);
+        final boolean start;
+        Queued replaced = null;
+        synchronized (lane) {
+            start = lane.inFlight < maxInFlightPerSide;
+            if (start) {
+                lane.inFlight++;
+            } else {
+                replaced = lane.waiting;
+                lane.waiting = queued;
+            }
+        }
+        if (start) {
+            sendExecutor.execute(() -> drain(lane, queued));
+        } else if (replaced != null) {
+            superseded.incrementAndGet();
+            replaced.result.complete(null);
+        }
+        return queued.result;
+    }
+
+    /**
+     * Drops the orders waiting on both sides of the market, their futures complete with {@code null}. Sends already
+     * running are left to finish.
+     *
+     * @return orders dropped
+     */
+    public int drop(PublicKey market) {
+        int dropped = 0;
+        for (boolean bid : new boolean[]{true, false}) {
+            final Lane lane = lanes.get(laneName(market, bid));
+            if (lane == null) {
+                continue;
+            }
+            final Queued waiting;
+            synchronized (lane) {
+                waiting = lane.waiting;
+                lane.waiting = null;
+            }
+            if (waiting != null) {
+                superseded.incrementAndGet();
+                waiting.result.complete(null);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    /**
+     * @return sends currently running for the market and side
+     */
+    public int getInFlight(PublicKey market, boolean bid) {
+        final Lane lane = lanes.get(laneName(market, bid));
+        if (lane == null) {
+            return 0;
+        }
+        synchronized (lane) {
+            return lane.inFlight;
+        }
+    }
+
+    // Sends, then keeps the slot for whatever order is waiting on the side
+    private void drain(Lane lane, Queued first) {
+        Queued next = first;
+        while (next != null) {
+            try {
+                next.result.complete(next.send.send());
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                log.debug("Order send failed on " + lane.name + ": " + e.getMessage());
+                next.result.completeExceptionally(e);
+            }
+            synchronized (lane) {
+                next = lane.waiting;
+                lane.waiting = null;
+                if (next == null) {
+                    lane.inFlight--;
+                }
+            }
+        }
+    }
+
+    private static String laneName(PublicKey market, boolean bid) {
+        return market.toBase58() + (bid ? ":bid" : ":ask");
+    }
+
+    private static final class Lane {
+        private final String name;
+        // Both guarded by the lane
+        private int inFlight;
+        private Queued waiting;
+
+        private Lane(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Queued {
+        private final OrderSend send;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Queued(OrderSend send) {
+            this.send = send;
+        }
+    }
+
+    private static final class DispatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "order-dispatch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
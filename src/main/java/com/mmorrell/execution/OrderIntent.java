@@ -0,0 +1,27 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.serum.model.Order;
+import org.p2p.solanaj.core.PublicKey;
+
+/**
+ * The quote a strategy wants resting on one side of a market, in lots as sent on chain.
+ *
+ * @param cancel whether the send also cancels our current order on the side
+ */
+public record OrderIntent(PublicKey market, boolean bid, long priceLots, long quantityLots, boolean cancel) {
+
+    /**
+     * @param order with lot prices already set, see {@code SerumManager.setOrderPrices}
+     */
+    public static OrderIntent of(PublicKey market, Order order, boolean cancel) {
+        return new OrderIntent(market, order.isBuy(), order.getPrice(), order.getQuantity(), cancel);
+    }
+
+    /**
+     * @return true if both would rest the same order on the book
+     */
+    public boolean sameQuote(OrderIntent other) {
+        return other != null && bid == other.bid && priceLots == other.priceLots &&
+                quantityLots == other.quantityLots && market.equals(other.market);
+    }
+}
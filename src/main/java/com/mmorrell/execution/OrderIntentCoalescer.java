@@ -0,0 +1,153 @@
+package com.mmorrell.execution;
+
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps only the latest {@link OrderIntent} per market and side on its way to the chain.
+ * <p>
+ * An intent that quotes the same order as one still pending on the side is not sent again. A newer intent replaces
+ * an older one still waiting in the {@link OrderDispatcher}. Sends can complete out of order, so the side
+ * remembers the signature of the newest intent that was sent. That signature is authoritative for what we expect
+ * to rest on the book, signatures of older intents are not.
+ */
+@Component
+public class OrderIntentCoalescer {
+
+    private final OrderDispatcher orderDispatcher;
+    private final Map<String, Side> sides = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    public OrderIntentCoalescer(OrderDispatcher orderDispatcher) {
+        this.orderDispatcher = orderDispatcher;
+    }
+
+    /**
+     * @param send builds and sends the intent's transaction, only called if the intent wasn't superseded
+     * @return completes with the signature, or with {@code null} if a newer intent for the side superseded this one
+     * before it was sent. A repeat of the pending intent gets the pending intent's future.
+     */
+    public CompletableFuture<String> submit(OrderIntent intent, OrderDispatcher.OrderSend send) {
+        final Side side = sides.computeIfAbsent(sideName(intent.market(), intent.bid()), name -> new Side());
+        final long sequence;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        synchronized (side) {
+            if (intent.sameQuote(side.latest) && !side.latestResult.isDone()) {
+                coalesced.incrementAndGet();
+                return side.latestResult;
+            }
+            sequence = ++side.latestSequence;
+            side.latest = intent;
+            side.latestResult = result;
+        }
+        orderDispatcher.dispatch(intent.market(), intent.bid(), send).whenComplete((signature, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (signature == null) {
+                superseded.incrementAndGet();
+            } else {
+                sent(side, sequence, intent, signature);
+            }
+            result.complete(signature);
+        });
+        return result;
+    }
+
+    /**
+     * Drops the market's intents still waiting in the {@link OrderDispatcher}, e.g. when quoting is paused. The next
+     * intent is sent even if it repeats a dropped one.
+     *
+     * @return intents dropped
+     */
+    public int drop(PublicKey market) {
+        for (boolean bid : new boolean[]{true, false}) {
+            final Side side = sides.get(sideName(market, bid));
+            if (side != null) {
+                synchronized (side) {
+                    side.latest = null;
+                }
+            }
+        }
+        return orderDispatcher.drop(market);
+    }
+
+    /**
+     * @return signature of the newest intent sent on the side, null if none was
+     */
+    public String getAuthoritativeSignature(PublicKey market, boolean bid) {
+        final Side side = sides.get(sideName(market, bid));
+        if (side == null) {
+            return null;
+        }
+        synchronized (side) {
+            return side.authoritativeSignature;
+        }
+    }
+
+    /**
+     * @return the intent behind {@link #getAuthoritativeSignature}, null if none was sent
+     */
+    public OrderIntent getAuthoritativeIntent(PublicKey market, boolean bid) {
+        final Side side = sides.get(sideName(market, bid));
+        if (side == null) {
+            return null;
+        }
+        synchronized (side) {
+            return side.authoritativeIntent;
+        }
+    }
+
+    /**
+     * @return true if the signature is the authoritative one of its side
+     */
+    public boolean isAuthoritative(PublicKey market, boolean bid, String signature) {
+        return signature != null && signature.equals(getAuthoritativeSignature(market, bid));
+    }
+
+    /**
+     * @return intents not sent because the same quote was still pending
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return intents replaced by a newer one before they were sent
+     */
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    private void sent(Side side, long sequence, OrderIntent intent, String signature) {
+        synchronized (side) {
+            // An older intent's send can finish after a newer one's
+            if (sequence > side.authoritativeSequence) {
+                side.authoritativeSequence = sequence;
+                side.authoritativeSignature = signature;
+                side.authoritativeIntent = intent;
+            }
+        }
+    }
+
+    private static String sideName(PublicKey market, boolean bid) {
+        return market.toBase58() + (bid ? ":bid" : ":ask");
+    }
+
+    private static final class Side {
+        // All guarded by the side
+        private long latestSequence;
+        private OrderIntent latest;
+        private CompletableFuture<String> latestResult = CompletableFuture.completedFuture(null);
+        private long authoritativeSequence;
+        private String authoritativeSignature;
+        private OrderIntent authoritativeIntent;
+    }
+}
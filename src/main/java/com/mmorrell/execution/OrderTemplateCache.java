@@ -0,0 +1,43 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.Order;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quoting transaction templates per market, side, client id and cancel flag. A market's accounts never change, so a
+ * template is compiled on first use and reused for every later order.
+ */
+public class OrderTemplateCache {
+
+    private final Account owner;
+    private final int computeUnitLimit;
+    private final Map<Key, OrderTransactionTemplate> templates = new ConcurrentHashMap<>();
+
+    public OrderTemplateCache(Account owner, int computeUnitLimit) {
+        this.owner = owner;
+        this.computeUnitLimit = computeUnitLimit;
+    }
+
+    /**
+     * @param order order to send, its side and client id pick the template. Order type and self trade behavior are
+     *              fixed by the first order seen for that key
+     */
+    public OrderTransactionTemplate get(Market market, PublicKey openOrders, PublicKey baseWallet,
+                                        PublicKey quoteWallet, Order order, boolean cancel) {
+        final Key key = new Key(market.getOwnAddress().toBase58(), order.isBuy(), order.getClientOrderId(), cancel);
+        return templates.computeIfAbsent(key, k -> new OrderTransactionTemplate(owner, market, openOrders,
+                baseWallet, quoteWallet, order, cancel, computeUnitLimit));
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    private record Key(String market, boolean buy, long clientOrderId, boolean cancel) {
+    }
+}
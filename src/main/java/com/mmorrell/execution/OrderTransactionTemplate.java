@@ -0,0 +1,92 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.Order;
+import com.mmorrell.serum.program.SerumProgram;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.core.TransactionInstruction;
+import org.p2p.solanaj.programs.ComputeBudgetProgram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The quoting transaction for one side of a market: priority fee, compute limit, consume events, optional cancel by
+ * client id, consume events, settle, place order. Compiled once; each order only patches the priority fee, the
+ * compute limit and the order's price, quantities and client id before signing.
+ */
+public class OrderTransactionTemplate {
+
+    // setComputeUnitPrice data: [3][u64 micro lamports]
+    private static final int COMPUTE_UNIT_PRICE_OFFSET = 1;
+    // setComputeUnitLimit data: [2][u32 units]
+    private static final int COMPUTE_UNIT_LIMIT_OFFSET = 1;
+    // newOrderV3 data: version u8, instruction u32, side u32, limit price u64, max base u64, max quote u64,
+    // self trade u32, order type u32, client id u64, limit u16
+    private static final int LIMIT_PRICE_OFFSET = 9;
+    private static final int MAX_BASE_QUANTITY_OFFSET = 17;
+    private static final int MAX_QUOTE_QUANTITY_OFFSET = 25;
+    private static final int CLIENT_ORDER_ID_OFFSET = 41;
+
+    private final TransactionTemplate template;
+    private final int computeUnitPriceOffset;
+    private final int computeUnitLimitOffset;
+    private final int computeUnitLimit;
+    private final int orderOffset;
+
+    /**
+     * @param order  prototype for the side, order type, self trade behavior and client id, prices are patched later
+     * @param cancel true to cancel the resting order with the prototype's client id first
+     */
+    public OrderTransactionTemplate(Account owner, Market market, PublicKey openOrders, PublicKey baseWallet,
+                                    PublicKey quoteWallet, Order order, boolean cancel, int computeUnitLimit) {
+        final List<TransactionInstruction> instructions = new ArrayList<>();
+        instructions.add(ComputeBudgetProgram.setComputeUnitPrice(0));
+        instructions.add(ComputeBudgetProgram.setComputeUnitLimit(computeUnitLimit));
+        instructions.add(SerumProgram.consumeEvents(owner.getPublicKey(), List.of(openOrders), market, baseWallet,
+                quoteWallet));
+        if (cancel) {
+            instructions.add(SerumProgram.cancelOrderByClientId(market, openOrders, owner.getPublicKey(),
+                    order.getClientOrderId()));
+        }
+        // Settle - base wallet gets created first then closed after
+        instructions.add(SerumProgram.consumeEvents(owner.getPublicKey(), List.of(openOrders), market, baseWallet,
+                quoteWallet));
+        instructions.add(SerumProgram.settleFunds(market, openOrders, owner.getPublicKey(), baseWallet,
+                quoteWallet));
+        instructions.add(SerumProgram.placeOrder(owner, order.isBuy() ? quoteWallet : baseWallet, openOrders, market,
+                order));
+
+        this.template = new TransactionTemplate(owner, instructions);
+        this.computeUnitPriceOffset = template.dataOffset(0) + COMPUTE_UNIT_PRICE_OFFSET;
+        this.computeUnitLimitOffset = template.dataOffset(1) + COMPUTE_UNIT_LIMIT_OFFSET;
+        this.computeUnitLimit = computeUnitLimit;
+        this.orderOffset = template.dataOffset(instructions.size() - 1);
+    }
+
+    /**
+     * Builds with the compute limit the template was compiled with.
+     *
+     * @param order order with lot prices set, see {@code SerumManager#setOrderPrices}
+     * @return signed wire bytes
+     */
+    public byte[] build(Order order, long priorityMicroLamports, byte[] recentBlockhash) {
+        return build(order, priorityMicroLamports, computeUnitLimit, recentBlockhash);
+    }
+
+    /**
+     * @param computeUnitLimit e.g. from {@link ComputeUnitProfiler#limitFor}
+     * @return signed wire bytes
+     */
+    public byte[] build(Order order, long priorityMicroLamports, int computeUnitLimit, byte[] recentBlockhash) {
+        final byte[] message = template.newMessage();
+        TransactionTemplate.putLong(message, computeUnitPriceOffset, priorityMicroLamports);
+        TransactionTemplate.putInt(message, computeUnitLimitOffset, computeUnitLimit);
+        TransactionTemplate.putLong(message, orderOffset + LIMIT_PRICE_OFFSET, order.getPrice());
+        TransactionTemplate.putLong(message, orderOffset + MAX_BASE_QUANTITY_OFFSET, order.getQuantity());
+        TransactionTemplate.putLong(message, orderOffset + MAX_QUOTE_QUANTITY_OFFSET, order.getMaxQuoteQuantity());
+        TransactionTemplate.putLong(message, orderOffset + CLIENT_ORDER_ID_OFFSET, order.getClientOrderId());
+        return template.sign(message, recentBlockhash);
+    }
+}
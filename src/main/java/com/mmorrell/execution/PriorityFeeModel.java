@@ -0,0 +1,216 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prices priority fees per market and order urgency from what it recently took to land on the market's accounts.
+ * <p>
+ * Every tick the recent prioritization fees of each watched market's writable accounts (market, bids, asks, event
+ * queue) are read in one batch. An urgency class bids a percentile of those fees, scaled by a multiplier that
+ * follows our own landing outcomes: raised on each miss while that class lands below the target rate, eased back
+ * while it lands comfortably above it. That keeps each class near the cheapest fee that still lands. The result is
+ * clamped to {@link OpenBookConfig#PRIORITY_FEE_FLOOR} and {@link OpenBookConfig#PRIORITY_FEE_CAP}, and falls back to
+ * {@link OpenBookConfig#PRIORITY_MICRO_LAMPORTS_DEFAULT} until the first sample.
+ */
+@Component
+@Slf4j
+public class PriorityFeeModel {
+
+    // Weight of the newest outcome in the landing rate moving average
+    private static final double LANDING_ALPHA = 0.1;
+    // Above target by this much, fees are eased back
+    private static final double EASE_MARGIN = 0.05;
+    private static final double RAISE_FACTOR = 1.15;
+    private static final double EASE_FACTOR = 0.98;
+    private static final double MIN_MULTIPLIER = 0.5;
+    private static final double MAX_MULTIPLIER = 4.0;
+
+    /**
+     * How much an order needs to land soon.
+     */
+    public enum Urgency {
+        /** Re-quote of an order that's still fine, e.g. the idle heartbeat */
+        PASSIVE(0.5),
+        /** Fresh order or one the market moved away from */
+        REQUOTE(0.75),
+        /** Our resting order is about to be picked off, or someone is quoting in front of us */
+        ADVERSE(0.9);
+
+        private final double percentile;
+
+        Urgency(double percentile) {
+            this.percentile = percentile;
+        }
+    }
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final long sampleIntervalMs;
+    private final double targetLandingRate;
+    private final ScheduledExecutorService sampleExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, MarketFees> markets = new ConcurrentHashMap<>();
+    private final AtomicLong sampleErrors = new AtomicLong();
+
+    @Autowired
+    public PriorityFeeModel(BatchingRpcClient batchingRpcClient) {
+        this(batchingRpcClient, OpenBookConfig.PRIORITY_FEE_SAMPLE_MS,
+                OpenBookConfig.PRIORITY_FEE_TARGET_LANDING_RATE);
+    }
+
+    public PriorityFeeModel(BatchingRpcClient batchingRpcClient, long sampleIntervalMs, double targetLandingRate) {
+        this.batchingRpcClient = batchingRpcClient;
+        this.sampleIntervalMs = sampleIntervalMs;
+        this.targetLandingRate = targetLandingRate;
+    }
+
+    @PostConstruct
+    public void start() {
+        sampleExecutor.scheduleWithFixedDelay(this::sampleQuietly, 0, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sampleExecutor.shutdownNow();
+    }
+
+    /**
+     * Starts sampling fees for the accounts our orders on the market write to.
+     */
+    public void watch(Market market) {
+        markets.computeIfAbsent(market.getOwnAddress().toBase58(), key -> new MarketFees(List.of(
+                market.getOwnAddress().toBase58(),
+                market.getBids().toBase58(),
+                market.getAsks().toBase58(),
+                market.getEventQueueKey().toBase58()
+        )));
+    }
+
+    /**
+     * @return priority fee in micro-lamports per CU for an order on the market
+     */
+    public int feeFor(PublicKey market, Urgency urgency) {
+        final MarketFees fees = markets.get(market.toBase58());
+        final long[] sampled = fees == null ? null : fees.sampled;
+        if (sampled == null) {
+            return OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
+        }
+        final double fee = sampled[urgency.ordinal()] * fees.multiplier(urgency);
+        return (int) Math.max(OpenBookConfig.PRIORITY_FEE_FLOOR, Math.min(OpenBookConfig.PRIORITY_FEE_CAP, fee));
+    }
+
+    /**
+     * Feeds back whether an order sent with {@link #feeFor} made it into a block. Failed transactions landed too.
+     */
+    public void onOutcome(PublicKey market, Urgency urgency, boolean landed) {
+        final MarketFees fees = markets.get(market.toBase58());
+        if (fees != null) {
+            fees.onOutcome(urgency, landed);
+        }
+    }
+
+    /**
+     * @return moving average landing rate of the class, 1 before any outcome
+     */
+    public double getLandingRate(PublicKey market, Urgency urgency) {
+        final MarketFees fees = markets.get(market.toBase58());
+        return fees == null ? 1.0 : fees.landingRate(urgency);
+    }
+
+    public long getSampleErrorCount() {
+        return sampleErrors.get();
+    }
+
+    /**
+     * Reads recent prioritization fees of every watched market in one round trip.
+     */
+    public void sample() throws Exception {
+        final List<MarketFees> watched = new ArrayList<>(markets.values());
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        for (MarketFees fees : watched) {
+            calls.add(batchingRpcClient.call("getRecentPrioritizationFees", List.of(fees.accounts)));
+        }
+        for (int i = 0; i < watched.size(); i++) {
+            final JsonNode result = batchingRpcClient.await(calls.get(i));
+            final long[] recent = new long[result.size()];
+            for (int slot = 0; slot < recent.length; slot++) {
+                recent[slot] = result.get(slot).path("prioritizationFee").asLong();
+            }
+            if (recent.length > 0) {
+                watched.get(i).sampled = percentiles(recent);
+            }
+        }
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (Exception e) {
+            sampleErrors.incrementAndGet();
+            log.debug("Priority fee sample error: " + e.getMessage());
+        }
+    }
+
+    // Fee at each urgency's percentile, indexed by ordinal
+    private static long[] percentiles(long[] recent) {
+        Arrays.sort(recent);
+        final Urgency[] urgencies = Urgency.values();
+        final long[] fees = new long[urgencies.length];
+        for (Urgency urgency : urgencies) {
+            final int index = (int) Math.ceil(urgency.percentile * recent.length) - 1;
+            fees[urgency.ordinal()] = recent[Math.max(0, index)];
+        }
+        return fees;
+    }
+
+    private final class MarketFees {
+        private final List<String> accounts;
+        private volatile long[] sampled;
+        // Per urgency ordinal, guarded by this
+        private final double[] multipliers = new double[Urgency.values().length];
+        private final double[] landingRates = new double[Urgency.values().length];
+
+        private MarketFees(List<String> accounts) {
+            this.accounts = accounts;
+            Arrays.fill(multipliers, 1.0);
+            Arrays.fill(landingRates, 1.0);
+        }
+
+        private synchronized double multiplier(Urgency urgency) {
+            return multipliers[urgency.ordinal()];
+        }
+
+        private synchronized double landingRate(Urgency urgency) {
+            return landingRates[urgency.ordinal()];
+        }
+
+        private synchronized void onOutcome(Urgency urgency, boolean landed) {
+            final int i = urgency.ordinal();
+            landingRates[i] += LANDING_ALPHA * ((landed ? 1.0 : 0.0) - landingRates[i]);
+            // Only a miss raises, the average lags so landings right after a raise would otherwise compound it
+            if (!landed && landingRates[i] < targetLandingRate) {
+                multipliers[i] = Math.min(MAX_MULTIPLIER, multipliers[i] * RAISE_FACTOR);
+            } else if (landed && landingRates[i] > targetLandingRate + EASE_MARGIN) {
+                multipliers[i] = Math.max(MIN_MULTIPLIER, multipliers[i] * EASE_FACTOR);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.Order;
+import com.mmorrell.serum.program.SerumProgram;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.core.Transaction;
+import org.p2p.solanaj.programs.ComputeBudgetProgram;
+import org.p2p.solanaj.rpc.RpcClient;
+import org.p2p.solanaj.rpc.RpcException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Pulls our resting quotes off a market while its outside prices are paused: every order of ours the book shows is
+ * cancelled by client id and the funds settled, in one transaction sent off the caller's thread.
+ * <p>
+ * The quoting loops call it on every paused run. A market is cancelled at most once per
+ * {@link OpenBookConfig#ORACLE_PAUSE_CANCEL_RETRY_MS}, later runs still catch an order that was already on its way
+ * when the first cancel went out.
+ */
+@Component
+@Slf4j
+public class QuoteCanceller {
+
+    private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final long retryMs;
+    private final ExecutorService sendExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Long> lastCancelNanos = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+
+    @Autowired
+    public QuoteCanceller(RpcClient rpcClient, BlockhashProvider blockhashProvider) {
+        this(rpcClient, blockhashProvider, OpenBookConfig.ORACLE_PAUSE_CANCEL_RETRY_MS);
+    }
+
+    public QuoteCanceller(RpcClient rpcClient, BlockhashProvider blockhashProvider, long retryMs) {
+        this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.retryMs = retryMs;
+    }
+
+    @PreDestroy
+    public void stop() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Cancels the orders {@code openOrders} has resting in {@code book} and settles into the given wallets.
+     *
+     * @param owner signs the transaction and owns {@code openOrders}
+     * @return false if nothing was sent, because none of our orders are resting or the market was cancelled within
+     * the retry interval
+     */
+    public boolean cancel(Market market, MarketSnapshot book, PublicKey openOrders, Account owner,
+                          PublicKey baseWallet, PublicKey quoteWallet) {
+        final List<Long> clientOrderIds = Stream.concat(book.bids().getOrders().stream(),
+                        book.asks().getOrders().stream())
+                .filter(order -> order.getOwner().equals(openOrders))
+                .map(Order::getClientOrderId)
+                .distinct()
+                .toList();
+        if (clientOrderIds.isEmpty() || !claim(market)) {
+            return false;
+        }
+
+        final Transaction cancelTx = new Transaction();
+        cancelTx.addInstruction(ComputeBudgetProgram.setComputeUnitPrice(OpenBookConfig.PRIORITY_MICRO_LAMPORTS));
+        cancelTx.addInstruction(ComputeBudgetProgram.setComputeUnitLimit(OpenBookConfig.PRIORITY_UNITS));
+        for (long clientOrderId : clientOrderIds) {
+            cancelTx.addInstruction(
+                    SerumProgram.cancelOrderByClientId(market, openOrders, owner.getPublicKey(), clientOrderId)
+            );
+        }
+        cancelTx.addInstruction(
+                SerumProgram.settleFunds(market, openOrders, owner.getPublicKey(), baseWallet, quoteWallet)
+        );
+
+        final String marketId = market.getOwnAddress().toBase58();
+        sendExecutor.submit(() -> {
+            try {
+                final String cancelTxId = rpcClient.getApi().sendTransaction(cancelTx, owner,
+                        blockhashProvider.getBlockhash());
+                sent.incrementAndGet();
+                log.info(marketId + " paused, cancelled " + clientOrderIds + ": " + cancelTxId);
+            } catch (RpcException e) {
+                log.error(marketId + " pause cancel error: " + e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return cancel transactions the node accepted
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    // Each market is only cancelled from its own loop, the check and the stamp don't race
+    private boolean claim(Market market) {
+        final long now = System.nanoTime();
+        final String key = market.getOwnAddress().toBase58();
+        final Long last = lastCancelNanos.get(key);
+        if (last != null && now - last < TimeUnit.MILLISECONDS.toNanos(retryMs)) {
+            return false;
+        }
+        lastCancelNanos.put(key, now);
+        return true;
+    }
+}
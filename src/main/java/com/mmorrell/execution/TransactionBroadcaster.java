@@ -0,0 +1,299 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.PooledRpcClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.bitcoinj.core.Base58;
+import org.p2p.solanaj.rpc.RpcException;
+import org.p2p.solanaj.rpc.types.config.RpcSendTransactionConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Races signed transactions across several RPC endpoints. The same wire bytes go to the best scored endpoints
+ * concurrently, the first acceptance wins.
+ * <p>
+ * Each endpoint tracks acceptance latency and, once {@link #onLanded}/{@link #onExpired} report outcomes, the share
+ * of its accepted transactions that landed. Endpoints are ranked by landing rate over latency, with an occasional
+ * lower ranked endpoint swapped in so rankings keep up with the network. A transaction is only broadcast once per
+ * signature within the dedupe window, resends return the original signature.
+ */
+@Component
+@Slf4j
+public class TransactionBroadcaster {
+
+    private static final int SIGNATURE_OFFSET = 1;
+    private static final int SIGNATURE_LENGTH = 64;
+    // Weight of the newest sample in the latency moving average
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final int fanOut;
+    private final double exploreRate;
+    private final long timeoutMs;
+    private final long dedupeWindowMs;
+    private final ExecutorService sendExecutor = Executors.newCachedThreadPool();
+    private final Map<String, Broadcast> broadcasts = new ConcurrentHashMap<>();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    @Autowired
+    public TransactionBroadcaster(OpenBookConfig openBookConfig, @Qualifier("orderHttp") OkHttpClient httpClient) {
+        this(openBookConfig.getBROADCAST_URLS(), httpClient, OpenBookConfig.BROADCAST_FAN_OUT,
+                OpenBookConfig.BROADCAST_EXPLORE_RATE, OpenBookConfig.BROADCAST_TIMEOUT_MS,
+                OpenBookConfig.BROADCAST_DEDUPE_WINDOW_MS);
+    }
+
+    public TransactionBroadcaster(List<String> urls, OkHttpClient httpClient, int fanOut, double exploreRate,
+                                  long timeoutMs, long dedupeWindowMs) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No broadcast endpoints");
+        }
+        final List<String> distinctUrls = urls.stream().map(String::trim).distinct().toList();
+        final List<Endpoint> built = new ArrayList<>();
+        for (int i = 0; i < distinctUrls.size(); i++) {
+            built.add(new Endpoint(i, distinctUrls.get(i), new PooledRpcClient(distinctUrls.get(i), httpClient)));
+        }
+        this.endpoints = List.copyOf(built);
+        this.fanOut = Math.min(fanOut, endpoints.size());
+        this.exploreRate = exploreRate;
+        this.timeoutMs = timeoutMs;
+        this.dedupeWindowMs = dedupeWindowMs;
+        log.info("Broadcasting orders to " + endpoints.size() + " endpoints, " + this.fanOut + " per order");
+    }
+
+    @PostConstruct
+    public void start() {
+        endpoints.forEach(endpoint -> endpoint.client.warmUp());
+    }
+
+    @PreDestroy
+    public void stop() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Sends the transaction to the best {@code fanOut} endpoints and waits for the first to accept it.
+     *
+     * @param transaction signed wire bytes, see {@link TransactionTemplate#sign}
+     * @return transaction signature
+     * @throws RpcException if every endpoint rejected it or none answered in time
+     */
+    public String broadcast(byte[] transaction) throws RpcException {
+        final String signature = Base58.encode(Arrays.copyOfRange(transaction, SIGNATURE_OFFSET,
+                SIGNATURE_OFFSET + SIGNATURE_LENGTH));
+        final long now = System.currentTimeMillis();
+        pruneBroadcasts(now);
+        final Broadcast broadcast = new Broadcast(now, endpoints.size());
+        if (broadcasts.putIfAbsent(signature, broadcast) != null) {
+            duplicates.incrementAndGet();
+            return signature;
+        }
+
+        final String encoded = Base64.getEncoder().encodeToString(transaction);
+        final List<Endpoint> targets = pickTargets();
+        final CompletableFuture<String> firstAccepted = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        for (Endpoint endpoint : targets) {
+            sendExecutor.execute(() -> {
+                try {
+                    send(endpoint, encoded, broadcast);
+                    firstAccepted.complete(signature);
+                } catch (Exception e) {
+                    if (failures.incrementAndGet() == targets.size()) {
+                        firstAccepted.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+        try {
+            return firstAccepted.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            forget(signature, broadcast);
+            throw new RpcException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            forget(signature, broadcast);
+            throw new RpcException("Broadcast timed out after " + timeoutMs + "ms");
+        } catch (InterruptedException e) {
+            forget(signature, broadcast);
+            Thread.currentThread().interrupt();
+            throw new RpcException("Broadcast interrupted");
+        }
+    }
+
+    // Nothing accepted it, so a resend of the same bytes has to go out again instead of being deduplicated
+    private void forget(String signature, Broadcast broadcast) {
+        broadcasts.remove(signature, broadcast);
+    }
+
+    /**
+     * Credits every endpoint that accepted the transaction with a landing.
+     */
+    public void onLanded(String signature) {
+        settle(signature, true);
+    }
+
+    /**
+     * Counts the transaction as not landed for every endpoint that accepted it.
+     */
+    public void onExpired(String signature) {
+        settle(signature, false);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    private void send(Endpoint endpoint, String encoded, Broadcast broadcast) throws RpcException {
+        final long start = System.nanoTime();
+        endpoint.sent.incrementAndGet();
+        try {
+            endpoint.client.call("sendTransaction", List.of(encoded, new RpcSendTransactionConfig()), String.class);
+        } catch (RpcException e) {
+            endpoint.errors.incrementAndGet();
+            throw e;
+        }
+        endpoint.recordAcceptance((System.nanoTime() - start) / 1_000_000.0);
+        broadcast.acceptedAtMs.set(endpoint.index, System.currentTimeMillis());
+    }
+
+    private List<Endpoint> pickTargets() {
+        if (fanOut == endpoints.size()) {
+            return endpoints;
+        }
+        final List<Endpoint> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator.comparingDouble(Endpoint::getScore).reversed());
+        final List<Endpoint> targets = new ArrayList<>(ranked.subList(0, fanOut));
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < exploreRate) {
+            targets.set(fanOut - 1, ranked.get(fanOut + random.nextInt(ranked.size() - fanOut)));
+        }
+        return targets;
+    }
+
+    private void settle(String signature, boolean landed) {
+        final Broadcast broadcast = broadcasts.get(signature);
+        if (broadcast == null || broadcast.settled) {
+            return;
+        }
+        broadcast.settled = true;
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (broadcast.acceptedAtMs.get(i) != 0) {
+                (landed ? endpoints.get(i).landed : endpoints.get(i).expired).incrementAndGet();
+            }
+        }
+    }
+
+    private void pruneBroadcasts(long now) {
+        broadcasts.values().removeIf(broadcast -> now - broadcast.sentAtMs > dedupeWindowMs);
+    }
+
+    private static final class Broadcast {
+        private final long sentAtMs;
+        // Per endpoint index, 0 until it accepted
+        private final AtomicLongArray acceptedAtMs;
+        private volatile boolean settled;
+
+        private Broadcast(long sentAtMs, int endpoints) {
+            this.sentAtMs = sentAtMs;
+            this.acceptedAtMs = new AtomicLongArray(endpoints);
+        }
+    }
+
+    /**
+     * One RPC endpoint and what it did with our transactions.
+     */
+    public static final class Endpoint {
+        private final int index;
+        private final String url;
+        private final PooledRpcClient client;
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong landed = new AtomicLong();
+        private final AtomicLong expired = new AtomicLong();
+        private volatile double latencyMs;
+
+        private Endpoint(int index, String url, PooledRpcClient client) {
+            this.index = index;
+            this.url = url;
+            this.client = client;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getSent() {
+            return sent.get();
+        }
+
+        public long getAccepted() {
+            return accepted.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getLanded() {
+            return landed.get();
+        }
+
+        /**
+         * @return moving average of acceptance latency, 0 until the first acceptance
+         */
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+
+        /**
+         * @return share of accepted transactions that landed, with a prior of one landed and one expired.
+         * Acceptance rate stands in until landings are reported.
+         */
+        public double getLandingRate() {
+            final long settled = landed.get() + expired.get();
+            if (settled == 0) {
+                return (accepted.get() + 1.0) / (sent.get() + 2.0);
+            }
+            return (landed.get() + 1.0) / (settled + 2.0);
+        }
+
+        /**
+         * @return landing rate discounted by latency, higher is better
+         */
+        public double getScore() {
+            return getLandingRate() / (1.0 + latencyMs / 100.0);
+        }
+
+        private synchronized void recordAcceptance(double latencyMs) {
+            this.latencyMs = accepted.getAndIncrement() == 0 ? latencyMs :
+                    this.latencyMs + LATENCY_ALPHA * (latencyMs - this.latencyMs);
+        }
+    }
+}
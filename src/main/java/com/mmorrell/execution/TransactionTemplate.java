@@ -0,0 +1,118 @@
+package com.mmorrell.execution;
+
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.Transaction;
+import org.p2p.solanaj.core.TransactionInstruction;
+import org.p2p.solanaj.utils.TweetNaclFast;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A legacy transaction compiled once for a fixed list of instructions and a single signer (the fee payer).
+ * <p>
+ * The message is compiled by solanaj itself, so account ordering and header bytes are identical to
+ * {@link Transaction#serialize()}. Only the offsets of the blockhash and of each instruction's data are recorded,
+ * callers copy the message, patch instruction data in place and {@link #sign} it. Immutable and thread-safe.
+ */
+public class TransactionTemplate {
+
+    private static final int KEY_LENGTH = 32;
+    private static final int MESSAGE_HEADER_LENGTH = 3;
+    // All-zero blockhash, overwritten on every sign
+    private static final String EMPTY_BLOCKHASH = "11111111111111111111111111111111";
+
+    private final Account signer;
+    private final byte[] message;
+    private final int blockhashOffset;
+    private final int[] dataOffsets;
+    private final int[] dataLengths;
+
+    public TransactionTemplate(Account signer, List<TransactionInstruction> instructions) {
+        this.signer = signer;
+        final Transaction transaction = new Transaction();
+        instructions.forEach(transaction::addInstruction);
+        transaction.setRecentBlockHash(EMPTY_BLOCKHASH);
+        transaction.sign(signer);
+        final byte[] wire = transaction.serialize();
+        // One signer, so the wire format is [0x01][signature][message]
+        this.message = Arrays.copyOfRange(wire, 1 + Transaction.SIGNATURE_LENGTH, wire.length);
+
+        final int[] cursor = {MESSAGE_HEADER_LENGTH};
+        final int accountCount = readLength(message, cursor);
+        this.blockhashOffset = cursor[0] + accountCount * KEY_LENGTH;
+        cursor[0] = blockhashOffset + KEY_LENGTH;
+        final int instructionCount = readLength(message, cursor);
+        this.dataOffsets = new int[instructionCount];
+        this.dataLengths = new int[instructionCount];
+        for (int i = 0; i < instructionCount; i++) {
+            cursor[0]++; // program id index
+            final int accounts = readLength(message, cursor);
+            cursor[0] += accounts;
+            dataLengths[i] = readLength(message, cursor);
+            dataOffsets[i] = cursor[0];
+            cursor[0] += dataLengths[i];
+        }
+    }
+
+    public int instructionCount() {
+        return dataOffsets.length;
+    }
+
+    /**
+     * @return offset of the instruction's data within the message
+     */
+    public int dataOffset(int instruction) {
+        return dataOffsets[instruction];
+    }
+
+    public int dataLength(int instruction) {
+        return dataLengths[instruction];
+    }
+
+    /**
+     * @return a private copy of the compiled message, ready to patch
+     */
+    public byte[] newMessage() {
+        return message.clone();
+    }
+
+    /**
+     * Sets the blockhash on a message from {@link #newMessage()} and signs it.
+     *
+     * @return wire bytes, as {@link Transaction#serialize()} would produce them
+     */
+    public byte[] sign(byte[] message, byte[] recentBlockhash) {
+        System.arraycopy(recentBlockhash, 0, message, blockhashOffset, KEY_LENGTH);
+        final byte[] signature = new TweetNaclFast.Signature(new byte[0], signer.getSecretKey()).detached(message);
+        final byte[] wire = new byte[1 + signature.length + message.length];
+        wire[0] = 1;
+        System.arraycopy(signature, 0, wire, 1, signature.length);
+        System.arraycopy(message, 0, wire, 1 + signature.length, message.length);
+        return wire;
+    }
+
+    public static void putLong(byte[] data, int offset, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            data[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    public static void putInt(byte[] data, int offset, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            data[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    // Compact-u16, see ShortvecEncoding
+    private static int readLength(byte[] data, int[] cursor) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = data[cursor[0]++] & 0xFF;
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mmorrell.feeds;
+
+/**
+ * Callback for raw account updates streamed by {@link OrderBookFeed}.
+ */
+@FunctionalInterface
+public interface AccountListener {
+
+    /**
+     * Called on the websocket thread for every update of the subscribed account.
+     *
+     * @param data the account data
+     * @param slot the slot the account update was observed at
+     */
+    void onAccountUpdate(byte[] data, long slot);
+
+}
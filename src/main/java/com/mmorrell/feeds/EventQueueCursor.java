@@ -0,0 +1,144 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.book.OwnerIndex;
+import com.mmorrell.serum.model.Market;
+import org.p2p.solanaj.core.PublicKey;
+
+/**
+ * Follows one market's event queue by sequence number and decodes only the events pushed since the last read,
+ * instead of the whole ring on every read.
+ * <p>
+ * The program appends at head + count and bumps the sequence number, cranking advances the head. Events since the
+ * last read are therefore the newest ones behind head + count. If more were pushed than the queue still holds,
+ * the cranked ones are gone and counted as missed. The first read only positions the cursor, history isn't
+ * reported. Owners are interned into the given {@link OwnerIndex} for their class, so events of accounts already
+ * seen don't allocate a {@link PublicKey}. Not thread-safe, like the index.
+ */
+public class EventQueueCursor {
+
+    // Account: "serum" padding, flags u64, head u64, count u64, seq num u64, events, "padding"
+    private static final int HEAD_OFFSET = 13;
+    private static final int COUNT_OFFSET = 21;
+    private static final int SEQ_NUM_OFFSET = 29;
+    private static final int EVENTS_OFFSET = 37;
+    private static final int TAIL_PADDING = 7;
+    // Event: flags u8, owner slot u8, fee tier u8, 5 padding, released u64, paid u64, fee or rebate u64,
+    // order id u128, owner, client order id u64
+    static final int EVENT_SIZE = 88;
+    private static final int RELEASED_OFFSET = 8;
+    private static final int PAID_OFFSET = 16;
+    private static final int FEE_OFFSET = 24;
+    private static final int OWNER_OFFSET = 48;
+    private static final int CLIENT_ORDER_ID_OFFSET = 80;
+    static final int FLAG_FILL = 1;
+    static final int FLAG_OUT = 1 << 1;
+    static final int FLAG_BID = 1 << 2;
+    static final int FLAG_MAKER = 1 << 3;
+
+    private final Market market;
+    private final OwnerIndex owners;
+    private final double baseMultiplier;
+    private final double quoteMultiplier;
+    private long seqNum = -1;
+    // Written on the reading thread only
+    private volatile long missed;
+
+    public EventQueueCursor(Market market, OwnerIndex owners) {
+        this.market = market;
+        this.owners = owners;
+        this.baseMultiplier = Math.pow(10, market.getBaseDecimals());
+        this.quoteMultiplier = Math.pow(10, market.getQuoteDecimals());
+    }
+
+    /**
+     * Reports the fills and outs pushed since the previous read.
+     *
+     * @param data raw event queue account
+     * @param slot slot the account was read at
+     * @return number of events reported
+     */
+    public int advance(byte[] data, long slot, EventQueueListener listener) {
+        final long head = readLong(data, HEAD_OFFSET);
+        final long count = readLong(data, COUNT_OFFSET);
+        final long latest = readLong(data, SEQ_NUM_OFFSET);
+        final long capacity = (data.length - EVENTS_OFFSET - TAIL_PADDING) / EVENT_SIZE;
+        // First read, or an older read than the last one
+        if (seqNum < 0 || latest < seqNum) {
+            seqNum = Math.max(seqNum, latest);
+            return 0;
+        }
+        final long pushed = latest - seqNum;
+        final long available = Math.min(pushed, count);
+        missed += pushed - available;
+        seqNum = latest;
+        int reported = 0;
+        for (long i = 0; i < available; i++) {
+            final int offset = EVENTS_OFFSET + (int) ((head + count - available + i) % capacity) * EVENT_SIZE;
+            final int flags = data[offset] & 0xFF;
+            if ((flags & (FLAG_FILL | FLAG_OUT)) == 0) {
+                continue;
+            }
+            listener.onEvent(decode(data, offset, flags, latest - available + i, slot));
+            reported++;
+        }
+        return reported;
+    }
+
+    /**
+     * Reports every event still waiting in the queue for the crank and positions the cursor after them. Together
+     * with the accounts the crank settles into, that's a consistent snapshot.
+     *
+     * @return number of events reported
+     */
+    public int replay(byte[] data, long slot, EventQueueListener listener) {
+        seqNum = readLong(data, SEQ_NUM_OFFSET) - readLong(data, COUNT_OFFSET);
+        return advance(data, slot, listener);
+    }
+
+    /**
+     * @return sequence number of the next event to report, -1 before the first read
+     */
+    public long getSeqNum() {
+        return seqNum;
+    }
+
+    /**
+     * @return events cranked out of the queue before a read saw them
+     */
+    public long getMissedCount() {
+        return missed;
+    }
+
+    private QueueEvent decode(byte[] data, int offset, int flags, long eventSeqNum, long slot) {
+        final boolean fill = (flags & FLAG_FILL) != 0;
+        final boolean bid = (flags & FLAG_BID) != 0;
+        final boolean maker = (flags & FLAG_MAKER) != 0;
+        final long released = readLong(data, offset + RELEASED_OFFSET);
+        final long paid = readLong(data, offset + PAID_OFFSET);
+        final long feeOrRebate = readLong(data, offset + FEE_OFFSET);
+        final int ownerId = owners.intern(data, offset + OWNER_OFFSET);
+        double price = 0;
+        double quantity = 0;
+        if (fill) {
+            // Makers earn a rebate, takers pay a fee, on the quote side
+            final long nativeQuote = bid ? (maker ? paid + feeOrRebate : paid - feeOrRebate) :
+                    (maker ? released - feeOrRebate : released + feeOrRebate);
+            final long nativeBase = bid ? released : paid;
+            if (nativeBase > 0) {
+                price = (nativeQuote / quoteMultiplier) / (nativeBase / baseMultiplier);
+                quantity = nativeBase / baseMultiplier;
+            }
+        }
+        return new QueueEvent(market.getOwnAddress(), eventSeqNum, slot, fill, bid, maker, owners.owner(ownerId),
+                owners.ownerClass(ownerId), readLong(data, offset + CLIENT_ORDER_ID_OFFSET), paid, released,
+                feeOrRebate, price, quantity);
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,150 @@
+package com.mmorrell.feeds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.book.OwnerIndex;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams new fills and outs of every followed market's event queue, read with a single
+ * {@code getMultipleAccounts} call per tick.
+ * <p>
+ * Each market keeps an {@link EventQueueCursor}, so only events pushed since the previous tick are decoded and
+ * reported, each exactly once. Events are attributed through the owner index given on {@link #follow}: our open
+ * orders account, fish, sharps or anyone else.
+ */
+@Component
+@Slf4j
+public class EventQueueFeed {
+
+    // getMultipleAccounts limit, more queues are split over several calls in the same batch
+    private static final int MAX_ACCOUNTS_PER_CALL = 100;
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final long pollIntervalMs;
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong pollErrors = new AtomicLong();
+
+    @Autowired
+    public EventQueueFeed(BatchingRpcClient batchingRpcClient) {
+        this(batchingRpcClient, OpenBookConfig.EVENT_QUEUE_POLL_MS);
+    }
+
+    public EventQueueFeed(BatchingRpcClient batchingRpcClient, long pollIntervalMs) {
+        this.batchingRpcClient = batchingRpcClient;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        pollExecutor.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollExecutor.shutdownNow();
+    }
+
+    /**
+     * Reports the market's fills and outs from the next tick on.
+     *
+     * @param owners classified up front, only used from the feed thread afterwards
+     * @param listener called on the feed thread, oldest event first
+     */
+    public void follow(Market market, OwnerIndex owners, EventQueueListener listener) {
+        subscriptions.add(new Subscription(market, new EventQueueCursor(market, owners), event -> {
+            try {
+                listener.onEvent(event);
+            } catch (Exception e) {
+                log.error("Event queue listener error: " + e.getMessage());
+            }
+        }));
+        log.info("Event queue feed: " + market.getOwnAddress().toBase58() + " followed");
+    }
+
+    public long getEventCount() {
+        return events.get();
+    }
+
+    /**
+     * @return events cranked out of a queue before the feed saw them, over all markets
+     */
+    public long getMissedCount() {
+        return subscriptions.stream().mapToLong(subscription -> subscription.cursor.getMissedCount()).sum();
+    }
+
+    public long getPollErrorCount() {
+        return pollErrors.get();
+    }
+
+    /**
+     * Reads every followed event queue in one round trip and reports what's new.
+     */
+    public void poll() throws Exception {
+        final List<Subscription> followed = new ArrayList<>(subscriptions);
+        if (followed.isEmpty()) {
+            return;
+        }
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        for (int from = 0; from < followed.size(); from += MAX_ACCOUNTS_PER_CALL) {
+            final List<String> keys = followed.subList(from, Math.min(from + MAX_ACCOUNTS_PER_CALL, followed.size()))
+                    .stream().map(subscription -> subscription.market.getEventQueueKey().toBase58()).toList();
+            calls.add(batchingRpcClient.call("getMultipleAccounts", List.of(keys,
+                    Map.of("encoding", "base64", "commitment", "processed"))));
+        }
+        int index = 0;
+        for (CompletableFuture<JsonNode> call : calls) {
+            final JsonNode result = batchingRpcClient.await(call);
+            final long slot = result.path("context").path("slot").asLong();
+            for (JsonNode value : result.path("value")) {
+                final Subscription subscription = followed.get(index++);
+                if (value.isNull()) {
+                    continue;
+                }
+                final byte[] data = Base64.getDecoder().decode(value.path("data").path(0).asText());
+                events.addAndGet(subscription.cursor.advance(data, slot, subscription.listener));
+            }
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            pollErrors.incrementAndGet();
+            log.debug("Event queue poll error: " + e.getMessage());
+        }
+    }
+
+    private static final class Subscription {
+        private final Market market;
+        private final EventQueueCursor cursor;
+        private final EventQueueListener listener;
+
+        private Subscription(Market market, EventQueueCursor cursor, EventQueueListener listener) {
+            this.market = market;
+            this.cursor = cursor;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.mmorrell.feeds;
+
+/**
+ * Receives the events an {@link EventQueueCursor} hasn't reported before, oldest first. Called on the feed thread,
+ * keep it cheap.
+ */
+@FunctionalInterface
+public interface EventQueueListener {
+
+    void onEvent(QueueEvent event);
+}
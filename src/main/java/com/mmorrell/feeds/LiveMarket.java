@@ -0,0 +1,92 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.serum.model.EventQueue;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.OrderBook;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A market plus the latest {@link MarketSnapshot} of its order books, as published by {@link OrderBookFeed} and
+ * {@link MarketDataHub}.
+ * <p>
+ * Updates for a side that are older than the slot already published are dropped, so a slow poll response can't
+ * overwrite a newer websocket update. Readers take {@link #snapshot()} once per iteration without locking. Accepted
+ * books are also set on the {@link Market} for code that still reads it directly.
+ */
+public class LiveMarket {
+
+    private final Market market;
+    private final AtomicLong staleUpdates = new AtomicLong();
+    private volatile MarketSnapshot snapshot;
+
+    public LiveMarket(Market market) {
+        this.market = market;
+        final long nowMs = System.currentTimeMillis();
+        this.snapshot = new MarketSnapshot(market.getBidOrderBook(), market.getAskOrderBook(), market.getEventQueue(),
+                0, 0, nowMs, nowMs);
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    public MarketSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return false if the update was older than the published bids and was dropped
+     */
+    public boolean publishBids(OrderBook bids, long slot) {
+        return publish(bids, null, null, slot);
+    }
+
+    /**
+     * @return false if the update was older than the published asks and was dropped
+     */
+    public boolean publishAsks(OrderBook asks, long slot) {
+        return publish(null, asks, null, slot);
+    }
+
+    /**
+     * Publishes any non-null part, all read at the same slot.
+     *
+     * @return false if the update was older than the published snapshot and was dropped
+     */
+    public synchronized boolean publish(OrderBook bids, OrderBook asks, EventQueue eventQueue, long slot) {
+        final MarketSnapshot current = snapshot;
+        // Several updates can land in one slot, only strictly older ones are stale
+        if ((bids != null && slot < current.bidsSlot()) || (asks != null && slot < current.asksSlot())) {
+            staleUpdates.incrementAndGet();
+            return false;
+        }
+        if (bids != null) {
+            market.setBidOrderBook(bids);
+        }
+        if (asks != null) {
+            market.setAskOrderBook(asks);
+        }
+        if (eventQueue != null) {
+            market.setEventQueue(eventQueue);
+        }
+        final long nowMs = System.currentTimeMillis();
+        snapshot = new MarketSnapshot(
+                bids != null ? bids : current.bids(),
+                asks != null ? asks : current.asks(),
+                eventQueue != null ? eventQueue : current.eventQueue(),
+                bids != null ? slot : current.bidsSlot(),
+                asks != null ? slot : current.asksSlot(),
+                bids != null ? nowMs : current.bidsPublishedAtMs(),
+                asks != null ? nowMs : current.asksPublishedAtMs()
+        );
+        return true;
+    }
+
+    /**
+     * @return updates dropped for being older than what was already published
+     */
+    public long getStaleUpdateCount() {
+        return staleUpdates.get();
+    }
+}
@@ -0,0 +1,217 @@
+package com.mmorrell.feeds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.EventQueue;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.OrderBook;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Refreshes the bids, asks and (optionally) event queue of every subscribed market with a single
+ * {@code getMultipleAccounts} call per tick, instead of each strategy polling {@code Market.reload()}.
+ * <p>
+ * A market's accounts are always read by the same call, so they come from the same slot, and are published to its
+ * {@link LiveMarket} as one snapshot stamped with that call's slot before its listener is called. Markets read by
+ * different calls of a tick can be at different slots. A tick older than what the market already holds (e.g. from
+ * its websocket feed) is dropped.
+ */
+@Component
+@Slf4j
+public class MarketDataHub {
+
+    // getMultipleAccounts limit, more accounts are split over several calls in the same batch
+    private static final int MAX_ACCOUNTS_PER_CALL = 100;
+    private static final int MAX_ACCOUNTS_PER_MARKET = 3;
+    private static final BooleanSupplier ALWAYS = () -> true;
+    private static final MarketDataListener NO_LISTENER = (market, slot) -> {
+    };
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final long refreshIntervalMs;
+    private final int maxAccountsPerCall;
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshErrors = new AtomicLong();
+
+    @Autowired
+    public MarketDataHub(BatchingRpcClient batchingRpcClient) {
+        this(batchingRpcClient, OpenBookConfig.MARKET_DATA_REFRESH_MS, MAX_ACCOUNTS_PER_CALL);
+    }
+
+    public MarketDataHub(BatchingRpcClient batchingRpcClient, long refreshIntervalMs, int maxAccountsPerCall) {
+        if (maxAccountsPerCall < MAX_ACCOUNTS_PER_MARKET) {
+            throw new IllegalArgumentException("maxAccountsPerCall must fit a market's " + MAX_ACCOUNTS_PER_MARKET +
+                    " accounts");
+        }
+        this.batchingRpcClient = batchingRpcClient;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.maxAccountsPerCall = maxAccountsPerCall;
+    }
+
+    @PostConstruct
+    public void start() {
+        refreshExecutor.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMs, refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Keeps the market's order books fresh, for strategies that read the market from their own loop.
+     */
+    public void subscribe(LiveMarket market) {
+        subscribe(market, false, ALWAYS, NO_LISTENER);
+    }
+
+    /**
+     * @param eventQueue also refresh the market's event queue
+     * @param active     checked every tick, the market is skipped while false (e.g. while a websocket feed is up)
+     * @param listener   called on the refresh thread after the market was updated
+     */
+    public void subscribe(LiveMarket market, boolean eventQueue, BooleanSupplier active,
+                          MarketDataListener listener) {
+        subscriptions.add(new Subscription(market, eventQueue, active, listener));
+        log.info("Market data hub: " + market.getMarket().getOwnAddress().toBase58() + " subscribed, " + subscriptions.size() +
+                " markets");
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getRefreshErrorCount() {
+        return refreshErrors.get();
+    }
+
+    /**
+     * Reads every active subscription's accounts in one round trip and publishes them.
+     */
+    public void refresh() throws Exception {
+        final List<List<Subscription>> chunks = new ArrayList<>();
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        List<Subscription> chunk = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.active.getAsBoolean()) {
+                continue;
+            }
+            // A market never straddles two calls
+            if (keys.size() + MAX_ACCOUNTS_PER_MARKET > maxAccountsPerCall) {
+                chunks.add(chunk);
+                calls.add(getMultipleAccounts(keys));
+                chunk = new ArrayList<>();
+                keys = new ArrayList<>();
+            }
+            chunk.add(subscription);
+            final Market market = subscription.market.getMarket();
+            keys.add(market.getBids().toBase58());
+            keys.add(market.getAsks().toBase58());
+            if (subscription.eventQueue) {
+                keys.add(market.getEventQueueKey().toBase58());
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+            calls.add(getMultipleAccounts(keys));
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            final JsonNode result = batchingRpcClient.await(calls.get(i));
+            final long slot = result.path("context").path("slot").asLong();
+            final JsonNode values = result.path("value");
+            int index = 0;
+            for (Subscription subscription : chunks.get(i)) {
+                final Market market = subscription.market.getMarket();
+                final OrderBook bids = readOrderBook(market, values.get(index++));
+                final OrderBook asks = readOrderBook(market, values.get(index++));
+                final EventQueue eventQueue = subscription.eventQueue ? readEventQueue(market, values.get(index++)) :
+                        null;
+                if (bids == null || asks == null || !subscription.market.publish(bids, asks, eventQueue, slot)) {
+                    continue;
+                }
+                subscription.listener.onMarketData(market, slot);
+            }
+        }
+        refreshes.incrementAndGet();
+    }
+
+    private CompletableFuture<JsonNode> getMultipleAccounts(List<String> keys) {
+        return batchingRpcClient.call("getMultipleAccounts", List.of(keys,
+                Map.of("encoding", "base64", "commitment", "processed")));
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            refreshErrors.incrementAndGet();
+            log.debug("Market data refresh error: " + e.getMessage());
+        }
+    }
+
+    private static OrderBook readOrderBook(Market market, JsonNode value) {
+        final byte[] data = accountData(value);
+        if (data == null) {
+            return null;
+        }
+        final OrderBook orderBook = OrderBook.readOrderBook(data);
+        orderBook.setBaseDecimals(market.getBaseDecimals());
+        orderBook.setQuoteDecimals(market.getQuoteDecimals());
+        orderBook.setBaseLotSize(market.getBaseLotSize());
+        orderBook.setQuoteLotSize(market.getQuoteLotSize());
+        return orderBook;
+    }
+
+    private static EventQueue readEventQueue(Market market, JsonNode value) {
+        final byte[] data = accountData(value);
+        return data == null ? null : EventQueue.readEventQueue(data, market.getBaseDecimals(),
+                market.getQuoteDecimals(), market.getBaseLotSize(), market.getQuoteLotSize());
+    }
+
+    private static byte[] accountData(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        return Base64.getDecoder().decode(value.path("data").path(0).asText());
+    }
+
+    private static final class Subscription {
+        private final LiveMarket market;
+        private final boolean eventQueue;
+        private final BooleanSupplier active;
+        private final MarketDataListener listener;
+
+        private Subscription(LiveMarket market, boolean eventQueue, BooleanSupplier active,
+                             MarketDataListener listener) {
+            this.market = market;
+            this.eventQueue = eventQueue;
+            this.active = active;
+            this.listener = listener;
+        }
+    }
+}
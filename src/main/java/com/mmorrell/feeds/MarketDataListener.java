@@ -0,0 +1,19 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.serum.model.Market;
+
+/**
+ * Callback for markets refreshed by {@link MarketDataHub}.
+ */
+@FunctionalInterface
+public interface MarketDataListener {
+
+    /**
+     * Called after the market's order books (and event queue, if subscribed) have been replaced.
+     *
+     * @param market the refreshed market
+     * @param slot   the slot every account in this refresh was read at
+     */
+    void onMarketData(Market market, long slot);
+
+}
@@ -0,0 +1,38 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.serum.model.EventQueue;
+import com.mmorrell.serum.model.OrderBook;
+
+/**
+ * Immutable view of a market's order books, each side stamped with the slot it was read at. Replaced as a whole by
+ * {@link LiveMarket}, so a reader that holds on to one snapshot never sees a half applied update.
+ *
+ * @param eventQueue        null unless the market's event queue is refreshed
+ * @param bidsPublishedAtMs wall clock time the bids were last accepted
+ * @param asksPublishedAtMs wall clock time the asks were last accepted
+ */
+public record MarketSnapshot(OrderBook bids, OrderBook asks, EventQueue eventQueue, long bidsSlot, long asksSlot,
+                             long bidsPublishedAtMs, long asksPublishedAtMs) {
+
+    /**
+     * @return slot both sides are at least as fresh as
+     */
+    public long slot() {
+        return Math.min(bidsSlot, asksSlot);
+    }
+
+    /**
+     * @param currentSlot latest slot seen on the network
+     * @return slots the older side is behind, 0 if unknown
+     */
+    public long ageSlots(long currentSlot) {
+        return slot() == 0 ? 0 : Math.max(0, currentSlot - slot());
+    }
+
+    /**
+     * @return millis since the older side was last accepted
+     */
+    public long ageMs(long nowMs) {
+        return nowMs - Math.min(bidsPublishedAtMs, asksPublishedAtMs);
+    }
+}
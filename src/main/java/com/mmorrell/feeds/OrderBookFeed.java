@@ -0,0 +1,254 @@
+package com.mmorrell.feeds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.OrderBook;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams bids/asks account updates over the RPC websocket ({@code accountSubscribe}) and decodes them
+ * straight into the subscribed {@link LiveMarket}, instead of polling {@code Market.reload()}. Other accounts, like
+ * oracles, share the same connection through {@link #subscribe(PublicKey, AccountListener)}.
+ */
+@Component
+@Slf4j
+public class OrderBookFeed extends WebSocketListener {
+
+    private static final long PING_INTERVAL_MS = 15_000L;
+
+    private final OkHttpClient okHttpClient;
+    private final ObjectMapper objectMapper;
+    private final String wsUrl;
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Map<Long, Subscription> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<Long, Subscription> activeSubscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+    private volatile WebSocket webSocket;
+    private volatile boolean connected;
+    private volatile boolean closed;
+
+    @Autowired
+    public OrderBookFeed(OkHttpClient okHttpClient, ObjectMapper objectMapper, OpenBookConfig openBookConfig) {
+        this(okHttpClient, objectMapper, openBookConfig.getWS_URL());
+    }
+
+    public OrderBookFeed(OkHttpClient okHttpClient, ObjectMapper objectMapper, String wsUrl) {
+        this.okHttpClient = okHttpClient.newBuilder()
+                .pingInterval(PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                .build();
+        this.objectMapper = objectMapper;
+        this.wsUrl = wsUrl;
+    }
+
+    /**
+     * Subscribes to both sides of the market. Updates are decoded on the websocket thread and published to the
+     * market before the listener is called. Updates older than the published side are dropped.
+     */
+    public void subscribe(LiveMarket market, OrderBookListener listener) {
+        subscribe(market.getMarket().getBids(), (data, slot) -> onOrderBookData(market, true, data, slot, listener));
+        subscribe(market.getMarket().getAsks(), (data, slot) -> onOrderBookData(market, false, data, slot, listener));
+    }
+
+    /**
+     * Subscribes to any account. Updates are passed on undecoded, on the websocket thread.
+     */
+    public void subscribe(PublicKey account, AccountListener listener) {
+        Subscription subscription = new Subscription(account, listener);
+        subscriptions.add(subscription);
+
+        if (connected) {
+            sendSubscribe(subscription);
+        } else {
+            connect();
+        }
+    }
+
+    /**
+     * @return true when connected and every subscription has been acknowledged by the node.
+     */
+    public boolean isStreaming() {
+        return connected && !subscriptions.isEmpty() && activeSubscriptions.size() == subscriptions.size();
+    }
+
+    /**
+     * @return true when connected and the account's subscription has been acknowledged by the node.
+     */
+    public boolean isStreaming(PublicKey account) {
+        return connected && activeSubscriptions.values().stream()
+                .anyMatch(subscription -> subscription.account.equals(account));
+    }
+
+    /**
+     * @return true when connected and both sides of the market are streaming, other subscriptions don't matter
+     */
+    public boolean isStreaming(LiveMarket market) {
+        return isStreaming(market.getMarket().getBids()) && isStreaming(market.getMarket().getAsks());
+    }
+
+    private synchronized void connect() {
+        if (closed || webSocket != null) {
+            return;
+        }
+        log.info("Connecting order book feed: " + wsUrl.replaceAll("api-key=.*", "api-key=***"));
+        Request request = new Request.Builder().url(wsUrl).build();
+        webSocket = okHttpClient.newWebSocket(request, this);
+    }
+
+    private void sendSubscribe(Subscription subscription) {
+        long requestId = requestIds.incrementAndGet();
+        pendingRequests.put(requestId, subscription);
+        Map<String, Object> request = Map.of(
+                "jsonrpc", "2.0",
+                "id", requestId,
+                "method", "accountSubscribe",
+                "params", List.of(
+                        subscription.account.toBase58(),
+                        Map.of("encoding", "base64", "commitment", "processed")
+                )
+        );
+        try {
+            webSocket.send(objectMapper.writeValueAsString(request));
+        } catch (Exception ex) {
+            log.error("Unable to subscribe to " + subscription.account.toBase58() + ": " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+        log.info("Order book feed connected.");
+        connected = true;
+        subscriptions.forEach(this::sendSubscribe);
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        try {
+            JsonNode message = objectMapper.readTree(text);
+            if (message.has("method")) {
+                if ("accountNotification".equals(message.get("method").asText())) {
+                    onAccountNotification(message.get("params"));
+                }
+            } else if (message.has("id")) {
+                Subscription subscription = pendingRequests.remove(message.get("id").asLong());
+                if (subscription == null) {
+                    return;
+                }
+                if (message.has("error")) {
+                    log.error("Subscribe rejected for " + subscription.account.toBase58() + ": " +
+                            message.get("error"));
+                    return;
+                }
+                activeSubscriptions.put(message.get("result").asLong(), subscription);
+            }
+        } catch (Exception ex) {
+            log.error("Order book feed message error: " + ex.getMessage());
+        }
+    }
+
+    private void onAccountNotification(JsonNode params) {
+        Subscription subscription = activeSubscriptions.get(params.get("subscription").asLong());
+        if (subscription == null) {
+            return;
+        }
+
+        JsonNode result = params.get("result");
+        long slot = result.get("context").get("slot").asLong();
+        byte[] data = Base64.getDecoder().decode(result.get("value").get("data").get(0).asText());
+        subscription.listener.onAccountUpdate(data, slot);
+    }
+
+    private static void onOrderBookData(LiveMarket liveMarket, boolean bids, byte[] data, long slot,
+                                        OrderBookListener listener) {
+        Market market = liveMarket.getMarket();
+        OrderBook orderBook = OrderBook.readOrderBook(data);
+        orderBook.setBaseDecimals(market.getBaseDecimals());
+        orderBook.setQuoteDecimals(market.getQuoteDecimals());
+        orderBook.setBaseLotSize(market.getBaseLotSize());
+        orderBook.setQuoteLotSize(market.getQuoteLotSize());
+        boolean published = bids ? liveMarket.publishBids(orderBook, slot) : liveMarket.publishAsks(orderBook, slot);
+        if (!published) {
+            return;
+        }
+
+        listener.onOrderBookUpdate(market, bids, slot);
+    }
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+        webSocket.close(code, null);
+    }
+
+    @Override
+    public void onClosed(WebSocket webSocket, int code, String reason) {
+        log.warn("Order book feed closed: " + code + " " + reason);
+        onDisconnect(webSocket);
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        log.warn("Order book feed failure: " + t.getMessage());
+        onDisconnect(webSocket);
+    }
+
+    private void onDisconnect(WebSocket disconnected) {
+        synchronized (this) {
+            if (disconnected != webSocket) {
+                return; // stale callback from a socket we already replaced
+            }
+            connected = false;
+            webSocket = null;
+            pendingRequests.clear();
+            activeSubscriptions.clear();
+        }
+        if (!closed && reconnectScheduled.compareAndSet(false, true)) {
+            reconnectExecutor.schedule(() -> {
+                reconnectScheduled.set(false);
+                connect();
+            }, OpenBookConfig.ORDER_BOOK_FEED_RECONNECT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        WebSocket current = webSocket;
+        if (current != null) {
+            current.close(1000, "shutdown");
+        }
+        reconnectExecutor.shutdownNow();
+    }
+
+    private static class Subscription {
+        private final PublicKey account;
+        private final AccountListener listener;
+
+        private Subscription(PublicKey account, AccountListener listener) {
+            this.account = account;
+            this.listener = listener;
+        }
+    }
+}
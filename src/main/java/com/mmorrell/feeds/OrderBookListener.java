@@ -0,0 +1,20 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.serum.model.Market;
+
+/**
+ * Callback for freshly decoded order book sides.
+ */
+@FunctionalInterface
+public interface OrderBookListener {
+
+    /**
+     * Called after the bids or asks {@link com.mmorrell.serum.model.OrderBook} of a market has been replaced.
+     *
+     * @param market the market whose order book was updated
+     * @param bids   true if the bid side changed, false for the ask side
+     * @param slot   the slot the account update was observed at
+     */
+    void onOrderBookUpdate(Market market, boolean bids, long slot);
+
+}
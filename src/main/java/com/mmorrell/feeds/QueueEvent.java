@@ -0,0 +1,36 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.book.OwnerClass;
+import org.p2p.solanaj.core.PublicKey;
+
+/**
+ * A fill or out from an OpenBook event queue, as decoded by {@link EventQueueCursor}.
+ * <p>
+ * Native quantities are as the program recorded them: for a fill, a bid paid quote and got base released, an ask
+ * the other way round. An out releases whatever the removed order still had locked.
+ *
+ * @param seqNum     position of the event in the queue's history, never reused
+ * @param slot       slot of the read the event was first seen in
+ * @param ownerClass {@link OwnerClass} bits of the owner
+ * @param price      fill price before fees, 0 for an out
+ * @param quantity   filled base quantity, 0 for an out
+ */
+public record QueueEvent(PublicKey market, long seqNum, long slot, boolean fill, boolean bid, boolean maker,
+                         PublicKey owner, byte ownerClass, long clientOrderId, long nativeQuantityPaid,
+                         long nativeQuantityReleased, long nativeFeeOrRebate, double price, double quantity) {
+
+    public boolean isOut() {
+        return !fill;
+    }
+
+    /**
+     * @return true if the event is on one of our open orders accounts
+     */
+    public boolean isSelf() {
+        return (ownerClass & OwnerClass.SELF) != 0;
+    }
+
+    public boolean isOwnerIn(int ownerClassMask) {
+        return (ownerClass & ownerClassMask) != 0;
+    }
+}
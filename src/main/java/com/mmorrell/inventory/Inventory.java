@@ -0,0 +1,44 @@
+package com.mmorrell.inventory;
+
+import org.p2p.solanaj.core.PublicKey;
+
+/**
+ * Our base and quote holdings on one market, in native units: wallets plus the open orders account. Locked is what
+ * our resting orders hold, free is the rest. Immutable, a new one is published on every change.
+ *
+ * @param slot   slot of the last reconciliation with the chain
+ * @param seqNum event queue sequence number the inventory includes events up to
+ */
+public record Inventory(PublicKey market, long baseTotal, long baseLocked, long quoteTotal, long quoteLocked,
+                        long slot, long seqNum, double baseUnit, double quoteUnit) {
+
+    public long baseFree() {
+        return baseTotal - baseLocked;
+    }
+
+    public long quoteFree() {
+        return quoteTotal - quoteLocked;
+    }
+
+    /**
+     * @return free base in tokens, e.g. SOL
+     */
+    public double baseFreeAmount() {
+        return baseFree() / baseUnit;
+    }
+
+    /**
+     * @return free quote in tokens, e.g. USDC
+     */
+    public double quoteFreeAmount() {
+        return quoteFree() / quoteUnit;
+    }
+
+    public double baseTotalAmount() {
+        return baseTotal / baseUnit;
+    }
+
+    public double quoteTotalAmount() {
+        return quoteTotal / quoteUnit;
+    }
+}
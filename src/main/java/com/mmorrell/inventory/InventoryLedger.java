@@ -0,0 +1,305 @@
+package com.mmorrell.inventory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.book.OwnerIndex;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.feeds.EventQueueCursor;
+import com.mmorrell.feeds.QueueEvent;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps our inventory per market up to date from fills instead of balance polling.
+ * <p>
+ * A reconciliation reads both wallets, the open orders account and the event queue in one
+ * {@code getMultipleAccounts} call, so all four are at the same slot. Our events still waiting for the crank are
+ * applied on top, since the open orders account doesn't reflect them yet. Between reconciliations our fills and
+ * outs from the {@link com.mmorrell.feeds.EventQueueFeed} move the inventory at once, gated by sequence number so
+ * none is counted twice, and orders that land lock their funds. Deposits, withdrawals and anything else outside
+ * the market show up at the next reconciliation.
+ */
+@Component
+@Slf4j
+public class InventoryLedger {
+
+    // SPL token account: mint, owner, amount u64
+    private static final int TOKEN_AMOUNT_OFFSET = 64;
+    // Open orders: "serum" padding, flags, market, owner, base free, base total, quote free, quote total
+    private static final int BASE_FREE_OFFSET = 77;
+    private static final int BASE_TOTAL_OFFSET = 85;
+    private static final int QUOTE_FREE_OFFSET = 93;
+    private static final int QUOTE_TOTAL_OFFSET = 101;
+
+    private final BatchingRpcClient batchingRpcClient;
+    private final long reconcileIntervalMs;
+    private final ScheduledExecutorService reconcileExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+    private final AtomicLong reconciles = new AtomicLong();
+    private final AtomicLong reconcileErrors = new AtomicLong();
+    private volatile boolean started;
+
+    @Autowired
+    public InventoryLedger(BatchingRpcClient batchingRpcClient) {
+        this(batchingRpcClient, OpenBookConfig.INVENTORY_RECONCILE_MS);
+    }
+
+    public InventoryLedger(BatchingRpcClient batchingRpcClient, long reconcileIntervalMs) {
+        this.batchingRpcClient = batchingRpcClient;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        started = true;
+        reconcileExecutor.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMs, reconcileIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reconcileExecutor.shutdownNow();
+    }
+
+    /**
+     * Keeps the inventory of our open orders account on the market, reconciled right away. Nothing is published
+     * before the first reconciliation.
+     *
+     * @param listener called on every change
+     */
+    public void track(Market market, PublicKey openOrders, PublicKey baseWallet, PublicKey quoteWallet,
+                      InventoryListener listener) {
+        positions.put(market.getOwnAddress().toBase58(),
+                new Position(market, openOrders, baseWallet, quoteWallet, listener));
+        if (started) {
+            reconcileExecutor.execute(this::reconcileQuietly);
+        }
+    }
+
+    /**
+     * @return latest inventory, null before the first reconciliation
+     */
+    public Inventory get(PublicKey market) {
+        final Position position = positions.get(market.toBase58());
+        return position == null ? null : position.inventory;
+    }
+
+    /**
+     * Applies a fill or out of the event queue feed, if it's ours and newer than the last reconciliation.
+     *
+     * @return true if the inventory changed
+     */
+    public boolean onEvent(QueueEvent event) {
+        final Position position = positions.get(event.market().toBase58());
+        if (position == null || !event.owner().equals(position.openOrders)) {
+            return false;
+        }
+        final Inventory inventory;
+        synchronized (position) {
+            if (position.inventory == null || event.seqNum() < position.seqNum) {
+                return false;
+            }
+            position.apply(event);
+            position.seqNum = event.seqNum() + 1;
+            inventory = position.publish();
+        }
+        position.listener.onInventory(inventory);
+        return true;
+    }
+
+    /**
+     * Locks the funds of an order that landed and rests on the book, unless the last reconciliation already saw it.
+     *
+     * @param slot slot the order's transaction landed in
+     * @return true if the inventory changed
+     */
+    public boolean onOrderRested(PublicKey market, boolean bid, long priceLots, long quantityLots, long slot) {
+        final Position position = positions.get(market.toBase58());
+        if (position == null) {
+            return false;
+        }
+        final Inventory inventory;
+        synchronized (position) {
+            if (position.inventory == null || slot <= position.slot) {
+                return false;
+            }
+            if (bid) {
+                position.quoteLocked += priceLots * quantityLots * position.market.getQuoteLotSize();
+            } else {
+                position.baseLocked += quantityLots * position.market.getBaseLotSize();
+            }
+            inventory = position.publish();
+        }
+        position.listener.onInventory(inventory);
+        return true;
+    }
+
+    public long getReconcileCount() {
+        return reconciles.get();
+    }
+
+    public long getReconcileErrorCount() {
+        return reconcileErrors.get();
+    }
+
+    /**
+     * Reads every tracked market's accounts in one round trip and replaces the inventory with what's on chain.
+     */
+    public void reconcile() throws Exception {
+        final List<Position> tracked = new ArrayList<>(positions.values());
+        final List<CompletableFuture<JsonNode>> calls = new ArrayList<>();
+        for (Position position : tracked) {
+            calls.add(batchingRpcClient.call("getMultipleAccounts", List.of(
+                    List.of(position.baseWallet.toBase58(), position.quoteWallet.toBase58(),
+                            position.openOrders.toBase58(), position.market.getEventQueueKey().toBase58()),
+                    Map.of("encoding", "base64", "commitment", "processed"))));
+        }
+        for (int i = 0; i < tracked.size(); i++) {
+            final JsonNode result = batchingRpcClient.await(calls.get(i));
+            final JsonNode values = result.path("value");
+            final byte[] baseWallet = accountData(values.get(0));
+            final byte[] quoteWallet = accountData(values.get(1));
+            final byte[] openOrders = accountData(values.get(2));
+            final byte[] eventQueue = accountData(values.get(3));
+            if (baseWallet == null || quoteWallet == null || openOrders == null || eventQueue == null) {
+                throw new IllegalStateException("Inventory account missing for " +
+                        tracked.get(i).market.getOwnAddress().toBase58());
+            }
+            reconcile(tracked.get(i), result.path("context").path("slot").asLong(), baseWallet, quoteWallet,
+                    openOrders, eventQueue);
+        }
+        reconciles.incrementAndGet();
+    }
+
+    private void reconcile(Position position, long slot, byte[] baseWallet, byte[] quoteWallet, byte[] openOrders,
+                           byte[] eventQueue) {
+        final Inventory inventory;
+        synchronized (position) {
+            final Inventory before = position.inventory;
+            position.baseTotal = readLong(baseWallet, TOKEN_AMOUNT_OFFSET) + readLong(openOrders, BASE_TOTAL_OFFSET);
+            position.baseLocked = readLong(openOrders, BASE_TOTAL_OFFSET) - readLong(openOrders, BASE_FREE_OFFSET);
+            position.quoteTotal = readLong(quoteWallet, TOKEN_AMOUNT_OFFSET) +
+                    readLong(openOrders, QUOTE_TOTAL_OFFSET);
+            position.quoteLocked = readLong(openOrders, QUOTE_TOTAL_OFFSET) -
+                    readLong(openOrders, QUOTE_FREE_OFFSET);
+            position.slot = slot;
+            // Our events the crank hasn't settled into the open orders account yet
+            position.pending.replay(eventQueue, slot, event -> {
+                if (event.owner().equals(position.openOrders)) {
+                    position.apply(event);
+                }
+            });
+            position.seqNum = position.pending.getSeqNum();
+            inventory = position.publish();
+            if (before != null && (before.baseTotal() != inventory.baseTotal() ||
+                    before.quoteTotal() != inventory.quoteTotal())) {
+                log.debug("Inventory drift on " + position.market.getOwnAddress().toBase58() + ": base " +
+                        (inventory.baseTotal() - before.baseTotal()) + ", quote " +
+                        (inventory.quoteTotal() - before.quoteTotal()));
+            }
+        }
+        position.listener.onInventory(inventory);
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            reconcileErrors.incrementAndGet();
+            log.debug("Inventory reconcile error: " + e.getMessage());
+        }
+    }
+
+    private static byte[] accountData(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        return Base64.getDecoder().decode(value.path("data").path(0).asText());
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static final class Position {
+        private final Market market;
+        private final PublicKey openOrders;
+        private final PublicKey baseWallet;
+        private final PublicKey quoteWallet;
+        private final InventoryListener listener;
+        private final double baseUnit;
+        private final double quoteUnit;
+        // Reconcile thread only
+        private final EventQueueCursor pending;
+        // All guarded by the position
+        private long baseTotal;
+        private long baseLocked;
+        private long quoteTotal;
+        private long quoteLocked;
+        private long slot;
+        private long seqNum;
+        private volatile Inventory inventory;
+
+        private Position(Market market, PublicKey openOrders, PublicKey baseWallet, PublicKey quoteWallet,
+                         InventoryListener listener) {
+            this.market = market;
+            this.openOrders = openOrders;
+            this.baseWallet = baseWallet;
+            this.quoteWallet = quoteWallet;
+            this.listener = listener;
+            this.baseUnit = Math.pow(10, market.getBaseDecimals());
+            this.quoteUnit = Math.pow(10, market.getQuoteDecimals());
+            this.pending = new EventQueueCursor(market, new OwnerIndex());
+        }
+
+        // A bid pays quote and gets base, an ask the other way round. A maker pays out of its resting order.
+        private void apply(QueueEvent event) {
+            if (event.fill()) {
+                final long paid = event.nativeQuantityPaid();
+                final long released = event.nativeQuantityReleased();
+                if (event.bid()) {
+                    baseTotal += released;
+                    quoteTotal -= paid;
+                    quoteLocked -= event.maker() ? paid : 0;
+                } else {
+                    baseTotal -= paid;
+                    quoteTotal += released;
+                    baseLocked -= event.maker() ? paid : 0;
+                }
+            } else if (event.bid()) {
+                quoteLocked -= event.nativeQuantityReleased();
+            } else {
+                baseLocked -= event.nativeQuantityReleased();
+            }
+            // Locks we didn't see land are picked up at the next reconciliation
+            baseLocked = Math.max(0, baseLocked);
+            quoteLocked = Math.max(0, quoteLocked);
+        }
+
+        private Inventory publish() {
+            inventory = new Inventory(market.getOwnAddress(), baseTotal, baseLocked, quoteTotal, quoteLocked, slot,
+                    seqNum, baseUnit, quoteUnit);
+            return inventory;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.mmorrell.inventory;
+
+/**
+ * Receives every new {@link Inventory} of a tracked market, on the thread that changed it (event queue feed,
+ * landing tracker or reconciliation). Keep it cheap.
+ */
+@FunctionalInterface
+public interface InventoryListener {
+
+    void onInventory(Inventory inventory);
+}
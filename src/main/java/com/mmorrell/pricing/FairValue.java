@@ -0,0 +1,36 @@
+package com.mmorrell.pricing;
+
+/**
+ * One fair value estimate of a market, blended by its {@link FairValueModel}.
+ *
+ * @param uncertainty    one standard deviation, in quote currency
+ * @param microprice     top of book price weighted by the opposite side's size, NaN without a book
+ * @param imbalance      (bid size - ask size) / (bid size + ask size) at the top of book, 0 without a book
+ * @param sources        {@link #PYTH}, {@link #JUPITER} and {@link #BOOK} bits of the sources that were blended in
+ * @param health         state of the market's {@link OracleHealth} at this blend
+ * @param outsideVersion bumped whenever the blended Pyth price, its confidence or the Jupiter price changes. The
+ *                       book and the sources' ages don't bump it.
+ * @param computedNanos  {@link System#nanoTime()} when it was blended
+ */
+public record FairValue(double price, double uncertainty, double microprice, double imbalance, int sources,
+                        OracleHealth.State health, long outsideVersion, long computedNanos) {
+
+    public static final int PYTH = 1;
+    public static final int JUPITER = 1 << 1;
+    public static final int BOOK = 1 << 2;
+
+    public double bid() {
+        return price - uncertainty;
+    }
+
+    public double ask() {
+        return price + uncertainty;
+    }
+
+    /**
+     * @return true if any of the source bits was blended in
+     */
+    public boolean hasAny(int sourceMask) {
+        return (sources & sourceMask) != 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mmorrell.pricing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link FairValueModel} per market, shared by every strategy quoting it. The model reads the market's
+ * {@link OracleRegistry} view and its tracked {@link JupiterPricingSource} price, strategies feed it their book.
+ */
+@Component
+@Slf4j
+public class FairValueEngine {
+
+    private final OracleRegistry oracleRegistry;
+    private final JupiterPricingSource jupiterPricingSource;
+    private final Map<PublicKey, FairValueModel> models = new ConcurrentHashMap<>();
+
+    public FairValueEngine(OracleRegistry oracleRegistry, JupiterPricingSource jupiterPricingSource) {
+        this.oracleRegistry = oracleRegistry;
+        this.jupiterPricingSource = jupiterPricingSource;
+    }
+
+    /**
+     * @param market       OpenBook market id
+     * @param oracleSymbol Pyth symbol, null if there's none
+     * @param jupiterId    Jupiter symbol or mint, null if there's none
+     * @return the market's model, created on first use
+     * @throws IllegalArgumentException if there's no Pyth price account for the symbol
+     */
+    public synchronized FairValueModel market(PublicKey market, String oracleSymbol, String jupiterId) {
+        final FairValueModel existing = models.get(market);
+        if (existing != null) {
+            return existing;
+        }
+        final PriceView oracle = oracleSymbol == null ? null : oracleRegistry.view(oracleSymbol);
+        if (jupiterId != null) {
+            jupiterPricingSource.track(jupiterId);
+        }
+        final FairValueModel model = new FairValueModel(market, oracle,
+                jupiterId == null ? null : () -> jupiterPricingSource.getPrice(jupiterId));
+        models.put(market, model);
+        log.info("Fair value " + market.toBase58() + ": Pyth " + oracleSymbol + ", Jupiter " + jupiterId + ", book");
+        return model;
+    }
+
+    /**
+     * @return the market's model, null if no strategy asked for it
+     */
+    public FairValueModel get(PublicKey market) {
+        return models.get(market);
+    }
+}
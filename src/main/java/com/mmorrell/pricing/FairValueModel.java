@@ -0,0 +1,169 @@
+package com.mmorrell.pricing;
+
+import com.mmorrell.config.OpenBookConfig;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.function.Supplier;
+
+/**
+ * Fair value of one market, blended from its Pyth price, its Jupiter price and the microprice of its own book.
+ * Sources are weighted by the inverse of their variance, and a source's uncertainty grows with its age, so a price
+ * that stopped updating fades out before it's dropped at its max age. Every blend also checks the market's
+ * {@link OracleHealth}.
+ * <p>
+ * Each source only replaces its own input, so blending is a handful of multiplications per {@link #update}. Created
+ * by the {@link FairValueEngine}. Updates are synchronized, {@link #get()} is a volatile read.
+ */
+public final class FairValueModel {
+
+    private static final double BPS = 10_000.0;
+
+    private final PublicKey market;
+    private final PriceView oracle;
+    private final Supplier<JupiterPrice> jupiterPrice;
+    private final double driftPerMs = OpenBookConfig.FAIR_VALUE_DRIFT_BPS_PER_SEC / BPS / 1_000.0;
+    private final double minUncertainty = OpenBookConfig.FAIR_VALUE_MIN_UNCERTAINTY_BPS / BPS;
+    private final double jupiterUncertainty = OpenBookConfig.JUPITER_UNCERTAINTY_BPS / BPS;
+    private final OracleHealth health;
+
+    // Top of book, replaced by onBook
+    private double microprice = Double.NaN;
+    private double mid = Double.NaN;
+    private double imbalance;
+    private double halfSpread;
+    private long bookNanos;
+
+    // Outside inputs of the last blend, NaN if left out
+    private double lastPyth = Double.NaN;
+    private double lastPythConfidence = Double.NaN;
+    private double lastJupiter = Double.NaN;
+    private long outsideVersion;
+
+    // Blend accumulators, only used inside update
+    private double weights;
+    private double weightedPrices;
+    private double weightedSquares;
+    private int sources;
+
+    private volatile FairValue current;
+
+    /**
+     * @param oracle       null if the market has no Pyth price
+     * @param jupiterPrice null if the market isn't priced by Jupiter
+     */
+    FairValueModel(PublicKey market, PriceView oracle, Supplier<JupiterPrice> jupiterPrice) {
+        this.market = market;
+        this.oracle = oracle;
+        this.jupiterPrice = jupiterPrice;
+        this.health = new OracleHealth(market.toBase58());
+    }
+
+    public PublicKey getMarket() {
+        return market;
+    }
+
+    public OracleHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * @return latest blend, null before the first one or if no source was fresh at the last {@link #update}
+     */
+    public FairValue get() {
+        return current;
+    }
+
+    /**
+     * Replaces the book input. An empty side or a crossed book leaves the book out until the next call.
+     */
+    public synchronized void onBook(double bidPrice, double bidQuantity, double askPrice, double askQuantity,
+                                    long nowNanos) {
+        if (bidPrice <= 0 || askPrice < bidPrice || bidQuantity <= 0 || askQuantity <= 0) {
+            microprice = Double.NaN;
+            mid = Double.NaN;
+            imbalance = 0;
+            return;
+        }
+        final double depth = bidQuantity + askQuantity;
+        // The side with less size left is the one about to move
+        microprice = (bidPrice * askQuantity + askPrice * bidQuantity) / depth;
+        mid = (bidPrice + askPrice) / 2.0;
+        imbalance = (bidQuantity - askQuantity) / depth;
+        halfSpread = (askPrice - bidPrice) / 2.0;
+        bookNanos = nowNanos;
+    }
+
+    /**
+     * Blends the latest input of every source. The uncertainty is the larger of the blend's own standard deviation
+     * and the sources' spread around it, so sources that disagree widen it.
+     *
+     * @param latestSlot latest slot seen on the network, 0 if unknown
+     * @return the new fair value, null if no source is fresh
+     * @see OracleHealth#check
+     */
+    public synchronized FairValue update(long nowNanos, long latestSlot) {
+        weights = 0;
+        weightedPrices = 0;
+        weightedSquares = 0;
+        sources = 0;
+
+        // A market without a Pyth price has no oracle age to check, one that never got its price is as old as it gets
+        long oracleAgeNanos = oracle == null ? 0 : Long.MAX_VALUE;
+        long oracleAgeSlots = 0;
+        double pyth = Double.NaN;
+        double pythConfidence = Double.NaN;
+        final OraclePrice oraclePrice = oracle == null ? null : oracle.get();
+        if (oraclePrice != null) {
+            oracleAgeNanos = nowNanos - oraclePrice.receiveNanos();
+            oracleAgeSlots = oraclePrice.ageSlots(latestSlot);
+            if (oraclePrice.ageMs(nowNanos) <= OpenBookConfig.PYTH_MAX_AGE_MS &&
+                    oracleAgeSlots <= OpenBookConfig.PYTH_MAX_AGE_SLOTS) {
+                pyth = oraclePrice.price();
+                pythConfidence = oraclePrice.confidence();
+                add(FairValue.PYTH, pyth, pythConfidence, oraclePrice.ageMs(nowNanos));
+            }
+        }
+        double jupiterUsdc = Double.NaN;
+        final JupiterPrice jupiter = jupiterPrice == null ? null : jupiterPrice.get();
+        if (jupiter != null && jupiter.ageMs(nowNanos) <= OpenBookConfig.JUPITER_MAX_AGE_MS) {
+            jupiterUsdc = jupiter.price();
+            add(FairValue.JUPITER, jupiterUsdc, jupiterUsdc * jupiterUncertainty, jupiter.ageMs(nowNanos));
+        }
+        double bookMid = Double.NaN;
+        final long bookAgeMs = (nowNanos - bookNanos) / 1_000_000L;
+        if (!Double.isNaN(microprice) && bookAgeMs <= OpenBookConfig.BOOK_MAX_AGE_MS) {
+            bookMid = mid;
+            add(FairValue.BOOK, microprice, halfSpread, bookAgeMs);
+        }
+        final OracleHealth.State state = health.check(oracleAgeNanos, oracleAgeSlots, pyth, jupiterUsdc, bookMid);
+        // Double.compare treats two NaNs as equal
+        if (Double.compare(pyth, lastPyth) != 0 || Double.compare(pythConfidence, lastPythConfidence) != 0 ||
+                Double.compare(jupiterUsdc, lastJupiter) != 0) {
+            outsideVersion++;
+            lastPyth = pyth;
+            lastPythConfidence = pythConfidence;
+            lastJupiter = jupiterUsdc;
+        }
+
+        if (sources == 0) {
+            current = null;
+            return null;
+        }
+        final double price = weightedPrices / weights;
+        final double dispersion = Math.max(0, weightedSquares / weights - price * price);
+        final double uncertainty = Math.sqrt(Math.max(1.0 / weights, dispersion));
+        final FairValue fairValue = new FairValue(price, uncertainty, microprice, imbalance, sources, state,
+                outsideVersion, nowNanos);
+        current = fairValue;
+        return fairValue;
+    }
+
+    private void add(int source, double price, double uncertainty, long ageMs) {
+        final double aged = Math.max(uncertainty, price * minUncertainty) + price * driftPerMs * Math.max(0, ageMs);
+        final double weight = 1.0 / (aged * aged);
+        weights += weight;
+        weightedPrices += weight * price;
+        weightedSquares += weight * price * price;
+        sources |= source;
+    }
+}
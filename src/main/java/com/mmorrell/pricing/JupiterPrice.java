@@ -0,0 +1,14 @@
+package com.mmorrell.pricing;
+
+/**
+ * One Jupiter price in USDC.
+ *
+ * @param id           symbol or mint it was requested by
+ * @param receiveNanos {@link System#nanoTime()} when we received it
+ */
+public record JupiterPrice(String id, double price, long receiveNanos) {
+
+    public long ageMs(long nowNanos) {
+        return (nowNanos - receiveNanos) / 1_000_000L;
+    }
+}
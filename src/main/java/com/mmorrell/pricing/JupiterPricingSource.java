@@ -1,56 +1,207 @@
 package com.mmorrell.pricing;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.config.OpenBookConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Jupiter USDC prices for every tracked symbol or mint, fetched together in one {@code ids=A,B,C} request by a single
+ * refresher. Requests don't block the refresher, and the response is streamed straight into the cache without
+ * building a tree. Strategies only read the cache.
+ */
 @Slf4j
 @Component
 public class JupiterPricingSource {
 
-    private final Map<String, Double> priceMap = new HashMap<>();
     private final OkHttpClient okHttpClient;
     private final ObjectMapper objectMapper;
+    private final String priceUrl;
+    private final long refreshMs;
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private final Map<String, JupiterPrice> prices = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<Integer>> inFlight = new AtomicReference<>();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshErrors = new AtomicLong();
+    private volatile boolean started;
 
+    @Autowired
     public JupiterPricingSource(OkHttpClient okHttpClient, ObjectMapper objectMapper) {
+        this(okHttpClient, objectMapper, OpenBookConfig.JUPITER_PRICE_URL, OpenBookConfig.JUPITER_REFRESH_MS);
+    }
+
+    public JupiterPricingSource(OkHttpClient okHttpClient, ObjectMapper objectMapper, String priceUrl,
+                                long refreshMs) {
         this.okHttpClient = okHttpClient;
         this.objectMapper = objectMapper;
+        this.priceUrl = priceUrl;
+        this.refreshMs = refreshMs;
     }
 
-    // https://price.jup.ag/v4/price?ids=ORCA&vsAmount=300
-    // https://price.jup.ag/v4/price?ids=DezXAZ8z7PnrnRJjz3wXBoRgixCa6xjnB7YaB1pPB263&vsAmount=1500
-    public Optional<Double> getUsdcPriceForSymbol(String symbol, long usdcAmount) {
-        Request request = new Request.Builder()
-                .url(String.format("https://price.jup.ag/v4/price?ids=%s&vsAmount=%d", symbol, usdcAmount))
-                .build();
+    @PostConstruct
+    public void start() {
+        started = true;
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshExecutor.shutdownNow();
+    }
 
-        try (Response response = okHttpClient.newCall(request).execute()) {
-            String json = response.body().string();
-            Map<String, Object> map = objectMapper.readValue(json, new TypeReference<>() {
-            });
+    /**
+     * Adds a symbol (ORCA) or mint to the shared refresh. Once started, a new id is fetched right away.
+     */
+    public void track(String id) {
+        if (ids.add(id) && started) {
+            refreshExecutor.execute(this::refresh);
+        }
+    }
+
+    /**
+     * @return latest price, null if there's none yet
+     */
+    public JupiterPrice getPrice(String id) {
+        return prices.get(id);
+    }
 
-            double price = (double)((Map<?, ?>)((Map<?, ?>) map.get("data")).get(symbol)).get("price");
-            return Optional.of(price);
+    public Optional<Double> getCachedPrice(String id) {
+        final JupiterPrice price = prices.get(id);
+        return price == null ? Optional.empty() : Optional.of(price.price());
+    }
 
-        } catch (Exception e) {
-            log.error("Error getting Jupiter price for " + symbol + ", " + e.getMessage());
-            return Optional.empty();
+    /**
+     * @return latest price if it arrived within the last {@code maxAgeMs}
+     */
+    public Optional<Double> getCachedPrice(String id, long maxAgeMs) {
+        final JupiterPrice price = prices.get(id);
+        return price == null || price.ageMs(System.nanoTime()) > maxAgeMs ? Optional.empty() :
+                Optional.of(price.price());
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getRefreshErrorCount() {
+        return refreshErrors.get();
+    }
+
+    /**
+     * Requests every tracked id at once. While a request is in flight, callers share it instead of sending another.
+     *
+     * @return completes with the number of prices received, 0 if nothing is tracked
+     */
+    public CompletableFuture<Integer> refresh() {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        final CompletableFuture<Integer> received = new CompletableFuture<>();
+        final CompletableFuture<Integer> pending = inFlight.compareAndExchange(null, received);
+        if (pending != null) {
+            return pending;
         }
+        final Request request = new Request.Builder()
+                .url(priceUrl + "?ids=" + String.join(",", ids) + "&vsAmount=" + OpenBookConfig.JUPITER_VS_AMOUNT)
+                .build();
+        okHttpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                inFlight.set(null);
+                refreshErrors.incrementAndGet();
+                log.error("Error getting Jupiter prices: " + e.getMessage());
+                received.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                final int count;
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        throw new IOException("HTTP " + response.code());
+                    }
+                    count = read(response.body().byteStream(), System.nanoTime());
+                } catch (Exception e) {
+                    inFlight.set(null);
+                    refreshErrors.incrementAndGet();
+                    log.error("Error reading Jupiter prices: " + e.getMessage());
+                    received.completeExceptionally(e);
+                    return;
+                }
+                inFlight.set(null);
+                refreshes.incrementAndGet();
+                received.complete(count);
+            }
+        });
+        return received;
     }
 
-    public void updatePriceMap(String symbol, double price) {
-        priceMap.put(symbol, price);
+    // {"data":{"ORCA":{"id":"orcaEKTd...","mintSymbol":"ORCA","vsToken":"EPjF...","vsTokenSymbol":"USDC",
+    // "price":1.23},...},"timeTaken":0.001}. Ids Jupiter doesn't know are left out.
+    private int read(InputStream body, long receiveNanos) throws IOException {
+        int count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Jupiter response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT || !"data".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String id = parser.getCurrentName();
+                    parser.nextToken();
+                    final double price = readPrice(parser);
+                    if (!Double.isNaN(price)) {
+                        prices.put(id, new JupiterPrice(id, price, receiveNanos));
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
     }
 
-    public Optional<Double> getCachedPrice(String symbol) {
-        return Optional.ofNullable(priceMap.get(symbol));
+    private static double readPrice(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return Double.NaN;
+        }
+        double price = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            if (parser.nextToken().isNumeric() && "price".equals(field)) {
+                price = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return price;
     }
 }
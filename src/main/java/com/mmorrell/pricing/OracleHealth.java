@@ -0,0 +1,108 @@
+package com.mmorrell.pricing;
+
+import com.mmorrell.config.OpenBookConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Health of one market's outside prices: how old Pyth is, how many slots it lags, and how far apart Pyth, Jupiter
+ * and the book mid are. Thresholds are converted once up front, so a check is a handful of comparisons. Checked by
+ * the market's {@link FairValueModel} on every blend.
+ */
+@Slf4j
+public final class OracleHealth {
+
+    /**
+     * Fraction quotes move further out while {@link State#WIDEN}.
+     */
+    public static final double WIDEN = OpenBookConfig.ORACLE_WIDEN_BPS / 10_000.0;
+
+    public enum State {
+        HEALTHY,
+        /** Quote further out by {@link OracleHealth#WIDEN} */
+        WIDEN,
+        /** Don't quote */
+        PAUSE
+    }
+
+    private final String label;
+    private final long widenAgeNanos;
+    private final long pauseAgeNanos;
+    private final long widenSlots;
+    private final long pauseSlots;
+    private final double widenDivergence;
+    private final double pauseDivergence;
+    private final AtomicLong trips = new AtomicLong();
+    private volatile State state = State.HEALTHY;
+
+    public OracleHealth(String label) {
+        this(label, OpenBookConfig.ORACLE_WIDEN_AGE_MS, OpenBookConfig.ORACLE_PAUSE_AGE_MS,
+                OpenBookConfig.ORACLE_WIDEN_SLOTS, OpenBookConfig.ORACLE_PAUSE_SLOTS,
+                OpenBookConfig.ORACLE_WIDEN_DIVERGENCE_BPS, OpenBookConfig.ORACLE_PAUSE_DIVERGENCE_BPS);
+    }
+
+    public OracleHealth(String label, long widenAgeMs, long pauseAgeMs, long widenSlots, long pauseSlots,
+                        double widenDivergenceBps, double pauseDivergenceBps) {
+        this.label = label;
+        this.widenAgeNanos = widenAgeMs * 1_000_000L;
+        this.pauseAgeNanos = pauseAgeMs * 1_000_000L;
+        this.widenSlots = widenSlots;
+        this.pauseSlots = pauseSlots;
+        this.widenDivergence = widenDivergenceBps / 10_000.0;
+        this.pauseDivergence = pauseDivergenceBps / 10_000.0;
+    }
+
+    /**
+     * @param oracleAgeNanos time since Pyth was received, {@link Long#MAX_VALUE} if it never was
+     * @param oracleAgeSlots slots Pyth lags the network
+     * @param pyth           NaN if it isn't fresh
+     * @param jupiter        NaN if it isn't fresh
+     * @param bookMid        NaN without a book
+     * @return the new state, also kept for {@link #getState()}
+     */
+    public State check(long oracleAgeNanos, long oracleAgeSlots, double pyth, double jupiter, double bookMid) {
+        final double low = Math.min(orMax(pyth), Math.min(orMax(jupiter), orMax(bookMid)));
+        final double high = Math.max(orMin(pyth), Math.max(orMin(jupiter), orMin(bookMid)));
+        // Less than two prices to compare is no divergence
+        final double divergence = high > low ? (high - low) / low : 0;
+
+        final State next;
+        if (oracleAgeNanos > pauseAgeNanos || oracleAgeSlots > pauseSlots || divergence > pauseDivergence) {
+            next = State.PAUSE;
+        } else if (oracleAgeNanos > widenAgeNanos || oracleAgeSlots > widenSlots || divergence > widenDivergence) {
+            next = State.WIDEN;
+        } else {
+            next = State.HEALTHY;
+        }
+        if (next != state) {
+            if (state == State.HEALTHY) {
+                trips.incrementAndGet();
+            }
+            log.warn("Oracle health " + label + ": " + state + " -> " + next + ", Pyth " +
+                    (oracleAgeNanos == Long.MAX_VALUE ? "missing" : oracleAgeNanos / 1_000_000L + "ms") + ", " +
+                    oracleAgeSlots + " slots, " + String.format("%.1f", divergence * 10_000.0) + " bps apart");
+            state = next;
+        }
+        return next;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return times the market left {@link State#HEALTHY}
+     */
+    public long getTripCount() {
+        return trips.get();
+    }
+
+    private static double orMax(double price) {
+        return Double.isNaN(price) ? Double.MAX_VALUE : price;
+    }
+
+    private static double orMin(double price) {
+        return Double.isNaN(price) ? -Double.MAX_VALUE : price;
+    }
+}
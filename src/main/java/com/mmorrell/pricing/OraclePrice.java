@@ -0,0 +1,29 @@
+package com.mmorrell.pricing;
+
+/**
+ * One oracle update, published as a whole so price and confidence are never read from different updates.
+ *
+ * @param publishSlot  slot the oracle aggregated the price at
+ * @param receiveNanos {@link System#nanoTime()} when we received it
+ */
+public record OraclePrice(double price, double confidence, long publishSlot, long receiveNanos) {
+
+    public double bid() {
+        return price - confidence;
+    }
+
+    public double ask() {
+        return price + confidence;
+    }
+
+    public long ageMs(long nowNanos) {
+        return (nowNanos - receiveNanos) / 1_000_000L;
+    }
+
+    /**
+     * @return slots since the oracle published, 0 if the latest slot isn't known yet
+     */
+    public long ageSlots(long latestSlot) {
+        return Math.max(0, latestSlot - publishSlot);
+    }
+}
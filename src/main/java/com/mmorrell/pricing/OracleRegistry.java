@@ -0,0 +1,133 @@
+package com.mmorrell.pricing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.feeds.OrderBookFeed;
+import com.mmorrell.rpc.BatchingRpcClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.p2p.solanaj.core.PublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pyth prices by symbol. Each symbol is streamed over the websocket once the first {@link #view(String)} asks for
+ * it, and published through its {@link PriceView}. Symbols the websocket isn't streaming are polled together in one
+ * {@code getMultipleAccounts} call, so another market doesn't add another polling loop.
+ */
+@Component
+@Slf4j
+public class OracleRegistry {
+
+    private final OrderBookFeed orderBookFeed;
+    private final BatchingRpcClient batchingRpcClient;
+    private final Map<String, PublicKey> priceAccounts;
+    private final long fallbackPollMs;
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, PriceView> views = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong pollErrors = new AtomicLong();
+
+    @Autowired
+    public OracleRegistry(OrderBookFeed orderBookFeed, BatchingRpcClient batchingRpcClient) {
+        this(orderBookFeed, batchingRpcClient, OpenBookConfig.PYTH_PRICE_ACCOUNTS,
+                OpenBookConfig.PYTH_FALLBACK_POLL_MS);
+    }
+
+    public OracleRegistry(OrderBookFeed orderBookFeed, BatchingRpcClient batchingRpcClient,
+                          Map<String, PublicKey> priceAccounts, long fallbackPollMs) {
+        this.orderBookFeed = orderBookFeed;
+        this.batchingRpcClient = batchingRpcClient;
+        this.priceAccounts = priceAccounts;
+        this.fallbackPollMs = fallbackPollMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        pollExecutor.scheduleWithFixedDelay(this::pollQuietly, 0, fallbackPollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the symbol's view, subscribed on first use
+     * @throws IllegalArgumentException if there's no price account for the symbol
+     */
+    public synchronized PriceView view(String symbol) {
+        PriceView view = views.get(symbol);
+        if (view != null) {
+            return view;
+        }
+        final PublicKey account = priceAccounts.get(symbol);
+        if (account == null) {
+            throw new IllegalArgumentException("No Pyth price account for " + symbol);
+        }
+        final PriceView created = new PriceView(symbol, account);
+        views.put(symbol, created);
+        orderBookFeed.subscribe(account, (data, slot) -> onPriceAccount(created, data));
+        log.info("Oracle " + symbol + ": " + account.toBase58());
+        return created;
+    }
+
+    public long getUpdateCount() {
+        return updates.get();
+    }
+
+    public long getPollErrorCount() {
+        return pollErrors.get();
+    }
+
+    /**
+     * Reads every symbol the websocket isn't streaming in one round trip.
+     */
+    public void poll() throws Exception {
+        final List<PriceView> polled = views.values().stream()
+                .filter(view -> !orderBookFeed.isStreaming(view.getAccount()))
+                .toList();
+        if (polled.isEmpty()) {
+            return;
+        }
+        final JsonNode result = batchingRpcClient.await(batchingRpcClient.call("getMultipleAccounts", List.of(
+                polled.stream().map(view -> view.getAccount().toBase58()).toList(),
+                Map.of("encoding", "base64", "commitment", "processed"))));
+        final JsonNode values = result.path("value");
+        for (int i = 0; i < polled.size(); i++) {
+            final JsonNode value = values.path(i);
+            if (value.isNull() || value.isMissingNode()) {
+                log.debug("Oracle account missing: " + polled.get(i).getSymbol());
+                continue;
+            }
+            onPriceAccount(polled.get(i), Base64.getDecoder().decode(value.path("data").path(0).asText()));
+        }
+    }
+
+    // Websocket or poll thread
+    private void onPriceAccount(PriceView view, byte[] data) {
+        final OraclePrice price = PythPriceAccount.decode(data, System.nanoTime());
+        if (price != null && view.publish(price)) {
+            updates.incrementAndGet();
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            pollErrors.incrementAndGet();
+            log.debug("Oracle poll error: " + e.getMessage());
+        }
+    }
+}
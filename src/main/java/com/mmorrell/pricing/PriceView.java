@@ -0,0 +1,71 @@
+package com.mmorrell.pricing;
+
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latest oracle price of one symbol, handed out by the {@link OracleRegistry}. Reads are a single volatile load, any
+ * thread can hold on to a view.
+ */
+public final class PriceView {
+
+    private final String symbol;
+    private final PublicKey account;
+    private final AtomicReference<OraclePrice> price = new AtomicReference<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    PriceView(String symbol, PublicKey account) {
+        this.symbol = symbol;
+        this.account = account;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public PublicKey getAccount() {
+        return account;
+    }
+
+    /**
+     * @return latest price, null before the first one
+     */
+    public OraclePrice get() {
+        return price.get();
+    }
+
+    /**
+     * @return latest price if it arrived within the last {@code maxAgeMs}, null otherwise
+     */
+    public OraclePrice fresh(long maxAgeMs) {
+        final OraclePrice current = price.get();
+        return current == null || current.ageMs(System.nanoTime()) > maxAgeMs ? null : current;
+    }
+
+    /**
+     * Listener is called on the websocket or poll thread for every new price.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publishes the price if the oracle published it after the current one.
+     *
+     * @return true if published
+     */
+    boolean publish(OraclePrice next) {
+        OraclePrice current;
+        do {
+            current = price.get();
+            if (current != null && next.publishSlot() <= current.publishSlot()) {
+                return false;
+            }
+        } while (!price.compareAndSet(current, next));
+        listeners.forEach(Runnable::run);
+        return true;
+    }
+}
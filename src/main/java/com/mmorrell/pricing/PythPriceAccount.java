@@ -0,0 +1,51 @@
+package com.mmorrell.pricing;
+
+/**
+ * Reads the aggregate price straight out of a Pyth v2 price account, without decoding every publisher's component.
+ */
+public final class PythPriceAccount {
+
+    // Price account: magic u32, version u32, type u32, size u32, price type u32, exponent i32, ...
+    private static final int TYPE_OFFSET = 8;
+    private static final int EXPONENT_OFFSET = 20;
+    // Aggregate: price i64, confidence u64, status u32, corporate action u32, publish slot u64
+    private static final int AGGREGATE_PRICE_OFFSET = 208;
+    private static final int AGGREGATE_CONFIDENCE_OFFSET = 216;
+    private static final int AGGREGATE_STATUS_OFFSET = 224;
+    private static final int AGGREGATE_PUBLISH_SLOT_OFFSET = 232;
+    private static final int MIN_SIZE = 240;
+    private static final int MAGIC = 0xa1b2c3d4;
+    private static final int TYPE_PRICE = 3;
+    private static final int STATUS_TRADING = 1;
+
+    private PythPriceAccount() {
+    }
+
+    /**
+     * @return the aggregate price, or null if it isn't a price account or the price isn't trading (halted, auction,
+     * not enough publishers)
+     */
+    public static OraclePrice decode(byte[] data, long receiveNanos) {
+        if (data.length < MIN_SIZE || readInt(data, 0) != MAGIC || readInt(data, TYPE_OFFSET) != TYPE_PRICE ||
+                readInt(data, AGGREGATE_STATUS_OFFSET) != STATUS_TRADING) {
+            return null;
+        }
+        final double scale = Math.pow(10, readInt(data, EXPONENT_OFFSET));
+        return new OraclePrice(readLong(data, AGGREGATE_PRICE_OFFSET) * scale,
+                readLong(data, AGGREGATE_CONFIDENCE_OFFSET) * scale,
+                readLong(data, AGGREGATE_PUBLISH_SLOT_OFFSET), receiveNanos);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16 |
+                (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
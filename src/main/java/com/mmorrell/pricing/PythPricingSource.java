@@ -1,63 +1,67 @@
 package com.mmorrell.pricing;
 
-import com.mmorrell.pyth.manager.PythManager;
-import com.mmorrell.pyth.model.PriceDataAccount;
-import lombok.extern.slf4j.Slf4j;
-import org.p2p.solanaj.core.PublicKey;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.mmorrell.config.OpenBookConfig;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
 
-
-// Auto feed SOL price into a cache from Pyth
+/**
+ * SOL/USD from the {@link OracleRegistry}, for the strategies quoting against SOL.
+ */
 @Component
-@Slf4j
 public class PythPricingSource {
 
-    private final PythManager pythManager;
-    private final PublicKey solUsdPriceDataAccount = new PublicKey("H6ARHf6YXhGYeQfUzQNGk6rDNnLBQKrenN712K4AQJEG");
-    private static Optional<Float> solPrice = Optional.empty();
-    private static Optional<Float> solPriceConfidence = Optional.empty();
+    public static final String SOL_SYMBOL = "SOL";
+
+    private final PriceView solPrice;
 
-    public PythPricingSource(PythManager pythManager) {
-        this.pythManager = pythManager;
+    public PythPricingSource(OracleRegistry oracleRegistry) {
+        this.solPrice = oracleRegistry.view(SOL_SYMBOL);
     }
 
-    @Scheduled(fixedRate = 190L)
-    public void updateSolPriceCache() {
-        final PriceDataAccount priceDataAccount = pythManager.getPriceDataAccount(solUsdPriceDataAccount);
+    /**
+     * Listener is called on the websocket or poll thread for every new SOL price.
+     */
+    public void addPriceListener(Runnable listener) {
+        solPrice.addListener(listener);
+    }
 
-        solPrice = Optional.of(priceDataAccount.getAggregatePriceInfo().getPrice());
-        solPriceConfidence = Optional.of(priceDataAccount.getAggregatePriceInfo().getConfidence());
+    /**
+     * @return latest SOL/USD price however old it is, null before the first one. The other getters only return fresh
+     * prices.
+     */
+    public OraclePrice getSolPrice() {
+        return solPrice.get();
     }
 
-    public double getSolBidPrice() {
-        if (solPrice.isPresent() && solPriceConfidence.isPresent()) {
-            return solPrice.get() - solPriceConfidence.get();
-        } else {
-            return 0.0;
-        }
+    /**
+     * @return fresh SOL/USD price minus its confidence, empty if the oracle stopped updating
+     */
+    public Optional<Double> getSolBidPrice() {
+        final OraclePrice price = solPrice.fresh(OpenBookConfig.PYTH_MAX_AGE_MS);
+        return price == null ? Optional.empty() : Optional.of(price.bid());
     }
 
-    public double getSolAskPrice() {
-        if (solPrice.isPresent() && solPriceConfidence.isPresent()) {
-            return solPrice.get() + solPriceConfidence.get();
-        } else {
-            return 999999.9;
-        }
+    /**
+     * @return fresh SOL/USD price plus its confidence, empty if the oracle stopped updating
+     */
+    public Optional<Double> getSolAskPrice() {
+        final OraclePrice price = solPrice.fresh(OpenBookConfig.PYTH_MAX_AGE_MS);
+        return price == null ? Optional.empty() : Optional.of(price.ask());
     }
 
     public Optional<Float> getSolMidpointPrice() {
-        return solPrice;
+        final OraclePrice price = solPrice.fresh(OpenBookConfig.PYTH_MAX_AGE_MS);
+        return price == null ? Optional.empty() : Optional.of((float) price.price());
     }
 
     public Optional<Float> getSolPriceConfidence() {
-        return solPriceConfidence;
+        final OraclePrice price = solPrice.fresh(OpenBookConfig.PYTH_MAX_AGE_MS);
+        return price == null ? Optional.empty() : Optional.of((float) price.confidence());
     }
 
     public boolean hasSolPrice() {
-        return solPrice.isPresent() && solPriceConfidence.isPresent();
+        return solPrice.fresh(OpenBookConfig.PYTH_MAX_AGE_MS) != null;
     }
 
 }
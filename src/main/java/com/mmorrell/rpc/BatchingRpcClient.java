@@ -0,0 +1,237 @@
+package com.mmorrell.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mmorrell.config.OpenBookConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcClient;
+import org.p2p.solanaj.rpc.RpcException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces reads into JSON-RPC batches against the data RPC node. Calls made within
+ * {@link OpenBookConfig#RPC_BATCH_WINDOW_MS} of each other, from any strategy, go out as one HTTP request; each
+ * caller gets a future for its own result.
+ * <p>
+ * Only for reads, order sends stay on the order path.
+ */
+@Component
+@Slf4j
+public class BatchingRpcClient {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final String endpoint;
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentLinkedQueue<Call> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    @Autowired
+    public BatchingRpcClient(@Qualifier("data") RpcClient dataRpcClient,
+                             @Qualifier("dataHttp") OkHttpClient httpClient,
+                             ObjectMapper objectMapper) {
+        this(dataRpcClient.getEndpoint(), httpClient, objectMapper, OpenBookConfig.RPC_BATCH_WINDOW_MS,
+                OpenBookConfig.RPC_BATCH_MAX_SIZE);
+    }
+
+    public BatchingRpcClient(String endpoint, OkHttpClient httpClient, ObjectMapper objectMapper, long windowMs,
+                             int maxBatchSize) {
+        this.endpoint = endpoint;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushExecutor.shutdownNow();
+    }
+
+    /**
+     * @return JSON {@code result} of the call
+     */
+    public CompletableFuture<JsonNode> call(String method, List<Object> params) {
+        final Call call = new Call(requestIds.incrementAndGet(), method, params);
+        pending.add(call);
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushExecutor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+        return call.result;
+    }
+
+    /**
+     * @return UI amount of the token account, at processed commitment
+     */
+    public CompletableFuture<Double> getTokenAccountBalance(PublicKey tokenAccount) {
+        return call("getTokenAccountBalance", List.of(tokenAccount.toBase58(), Map.of("commitment", "processed")))
+                .thenApply(result -> result.path("value").path("uiAmountString").asDouble());
+    }
+
+    /**
+     * @return account data, or null if the account doesn't exist
+     */
+    public CompletableFuture<byte[]> getAccountData(PublicKey account) {
+        return call("getAccountInfo", List.of(account.toBase58(), accountConfig()))
+                .thenApply(result -> decodeAccountData(result.path("value")));
+    }
+
+    /**
+     * @return data per account in the order given, null entries for accounts that don't exist
+     */
+    public CompletableFuture<List<byte[]>> getMultipleAccountsData(List<PublicKey> accounts) {
+        final List<String> keys = accounts.stream().map(PublicKey::toBase58).toList();
+        return call("getMultipleAccounts", List.of(keys, accountConfig()))
+                .thenApply(result -> {
+                    final List<byte[]> data = new ArrayList<>(accounts.size());
+                    result.path("value").forEach(value -> data.add(decodeAccountData(value)));
+                    return data;
+                });
+    }
+
+    /**
+     * Waits for a batched result, with the same failure type as a direct RPC call.
+     */
+    public <T> T await(CompletableFuture<T> result) throws RpcException {
+        try {
+            return result.get(OpenBookConfig.DATA_HTTP_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RpcException rpcException ? rpcException :
+                    new RpcException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new RpcException("Batched call timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Batched call interrupted");
+        }
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<Call> batch = new ArrayList<>();
+        for (Call call = pending.poll(); call != null; call = pending.poll()) {
+            batch.add(call);
+            if (batch.size() == maxBatchSize) {
+                send(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<Call> batch) {
+        batches.incrementAndGet();
+        calls.addAndGet(batch.size());
+        final Map<Long, Call> byId = new HashMap<>();
+        final ArrayNode requests = objectMapper.createArrayNode();
+        for (Call call : batch) {
+            byId.put(call.id, call);
+            final ObjectNode request = requests.addObject();
+            request.put("jsonrpc", "2.0");
+            request.put("id", call.id);
+            request.put("method", call.method);
+            request.set("params", objectMapper.valueToTree(call.params));
+        }
+
+        try {
+            final Request request = new Request.Builder()
+                    .url(endpoint)
+                    .post(RequestBody.create(objectMapper.writeValueAsString(requests), JSON))
+                    .build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                final ResponseBody body = response.body();
+                final JsonNode responses = body == null ? null : objectMapper.readTree(body.string());
+                if (responses == null || !responses.isArray()) {
+                    throw new IOException("unexpected batch response, HTTP " + response.code());
+                }
+                for (JsonNode entry : responses) {
+                    final Call call = byId.remove(entry.path("id").asLong());
+                    if (call == null) {
+                        continue;
+                    }
+                    if (entry.hasNonNull("error")) {
+                        call.result.completeExceptionally(new RpcException(entry.path("error").path("message")
+                                .asText()));
+                    } else {
+                        call.result.complete(entry.path("result"));
+                    }
+                }
+            }
+            byId.values().forEach(call -> call.result.completeExceptionally(
+                    new RpcException(call.method + ": missing from batch response")));
+        } catch (Exception e) {
+            log.error("RPC batch of " + batch.size() + " failed: " + e.getMessage());
+            batch.forEach(call -> call.result.completeExceptionally(new RpcException(call.method + ": " +
+                    e.getMessage())));
+        }
+    }
+
+    private static Map<String, String> accountConfig() {
+        return Map.of("encoding", "base64", "commitment", "processed");
+    }
+
+    private static byte[] decodeAccountData(JsonNode value) {
+        if (value.isNull() || value.isMissingNode()) {
+            return null;
+        }
+        return Base64.getDecoder().decode(value.path("data").path(0).asText());
+    }
+
+    private static final class Call {
+        private final long id;
+        private final String method;
+        private final List<Object> params;
+        private final CompletableFuture<JsonNode> result = new CompletableFuture<>();
+
+        private Call(long id, String method, List<Object> params) {
+            this.id = id;
+            this.method = method;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.mmorrell.rpc;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.p2p.solanaj.rpc.RpcClient;
+import org.p2p.solanaj.rpc.RpcException;
+import org.p2p.solanaj.rpc.types.RpcRequest;
+import org.p2p.solanaj.rpc.types.RpcResponse;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * {@link RpcClient} that sends through a shared, configured {@link OkHttpClient} instead of building its own, so
+ * timeouts, connection pool and protocols are set in one place (see {@code BeanConfig}). Requests and responses
+ * are the same as solanaj's, {@link #getApi()} works unchanged.
+ */
+@Slf4j
+public class PooledRpcClient extends RpcClient {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Moshi MOSHI = new Moshi.Builder().build();
+    private static final JsonAdapter<RpcRequest> REQUEST_ADAPTER = MOSHI.adapter(RpcRequest.class);
+
+    private final OkHttpClient httpClient;
+
+    public PooledRpcClient(String endpoint, OkHttpClient httpClient) {
+        super(endpoint);
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public <T> T call(String method, List<Object> params, Class<T> clazz) throws RpcException {
+        final JsonAdapter<RpcResponse<T>> resultAdapter =
+                MOSHI.adapter(Types.newParameterizedType(RpcResponse.class, (Type) clazz));
+        final Request request = new Request.Builder()
+                .url(getEndpoint())
+                .post(RequestBody.create(REQUEST_ADAPTER.toJson(new RpcRequest(method, params)), JSON))
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            final ResponseBody body = response.body();
+            if (body == null) {
+                throw new RpcException(method + ": empty response, HTTP " + response.code());
+            }
+            final RpcResponse<T> rpcResult = resultAdapter.fromJson(body.string());
+            if (rpcResult == null) {
+                throw new RpcException(method + ": empty response, HTTP " + response.code());
+            }
+            if (rpcResult.getError() != null) {
+                throw new RpcException(rpcResult.getError().getMessage());
+            }
+            return rpcResult.getResult();
+        } catch (IOException e) {
+            throw new RpcException(method + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens (TLS handshake, HTTP/2 negotiation) and pools a connection to the endpoint ahead of the first real call.
+     */
+    public void warmUp() {
+        final long start = System.currentTimeMillis();
+        try {
+            call("getHealth", List.of(), String.class);
+            log.info("Warmed up " + host() + " in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (RpcException e) {
+            // The connection is pooled all the same, an unhealthy node still answers
+            log.warn("Warm up " + host() + ": " + e.getMessage());
+        }
+    }
+
+    // Endpoint without the query string, which usually holds the api key
+    private String host() {
+        final String endpoint = getEndpoint();
+        final int query = endpoint.indexOf('?');
+        return query < 0 ? endpoint : endpoint.substring(0, query);
+    }
+}
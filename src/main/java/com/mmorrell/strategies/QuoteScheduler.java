@@ -0,0 +1,114 @@
+package com.mmorrell.strategies;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a quoting loop once per coalesced burst of change signals (book, oracle) instead of on a fixed timer.
+ * <p>
+ * A signal schedules a single run after {@code debounceMs}, never sooner than {@code minIntervalMs} after the
+ * previous run. Signals arriving before that run starts are folded into it. If nothing signals for
+ * {@code maxIdleMs} the loop runs anyway, so time-based logic (adversity decay, re-quotes) still ticks.
+ * <p>
+ * The executor's thread is the only writer of the loop's state. Other threads hand changes over with
+ * {@link #submit(Runnable)}, a lock-free queue that is drained in order on the quoting thread before each run.
+ */
+@Slf4j
+public class QuoteScheduler {
+
+    private final Runnable task;
+    private final ScheduledExecutorService executor;
+    private final long minIntervalMs;
+    private final long debounceMs;
+    private final long maxIdleMs;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final Queue<Command> inbox = new ConcurrentLinkedQueue<>();
+    private volatile long lastRunNanos = System.nanoTime();
+
+    /**
+     * @param executor should be single threaded, runs are not guarded against overlap otherwise
+     */
+    public QuoteScheduler(Runnable task, ScheduledExecutorService executor, long minIntervalMs, long debounceMs,
+                          long maxIdleMs) {
+        this.task = task;
+        this.executor = executor;
+        this.minIntervalMs = minIntervalMs;
+        this.debounceMs = debounceMs;
+        this.maxIdleMs = maxIdleMs;
+    }
+
+    public void start() {
+        signal();
+        executor.scheduleWithFixedDelay(() -> {
+            if (millisSinceLastRun() >= maxIdleMs) {
+                signal();
+            }
+        }, maxIdleMs, maxIdleMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Requests a run. Cheap and thread-safe, call it on every change.
+     */
+    public void signal() {
+        if (pending.compareAndSet(false, true)) {
+            long delay = Math.max(debounceMs, minIntervalMs - millisSinceLastRun());
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Applies {@code command} on the quoting thread before the next run and requests that run. Safe from any thread.
+     *
+     * @return completed once the command was applied, exceptionally if it threw
+     */
+    public CompletableFuture<Void> submit(Runnable command) {
+        final Command queued = new Command(command);
+        inbox.add(queued);
+        signal();
+        return queued.done;
+    }
+
+    private void run() {
+        // Cleared before running, so changes seen during this run trigger the next one
+        pending.set(false);
+        lastRunNanos = System.nanoTime();
+        drainInbox();
+        try {
+            task.run();
+        } catch (Exception ex) {
+            log.error("Quote loop error: " + ex.getMessage());
+        }
+    }
+
+    private void drainInbox() {
+        Command command;
+        while ((command = inbox.poll()) != null) {
+            try {
+                command.action.run();
+                command.done.complete(null);
+            } catch (Exception ex) {
+                log.error("Quote command error: " + ex.getMessage());
+                command.done.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private long millisSinceLastRun() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastRunNanos);
+    }
+
+    private static final class Command {
+        private final Runnable action;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Command(Runnable action) {
+            this.action = action;
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package com.mmorrell.strategies.openbook.eth;
 
 import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.execution.QuoteCanceller;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.pricing.FairValue;
+import com.mmorrell.pricing.FairValueEngine;
+import com.mmorrell.pricing.FairValueModel;
+import com.mmorrell.pricing.OracleHealth;
+import com.mmorrell.rpc.BatchingRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
 import com.mmorrell.serum.model.Market;
 import com.mmorrell.serum.model.MarketBuilder;
@@ -18,7 +28,6 @@ import org.p2p.solanaj.programs.ComputeBudgetProgram;
 import org.p2p.solanaj.programs.MemoProgram;
 import org.p2p.solanaj.rpc.RpcClient;
 import org.p2p.solanaj.rpc.RpcException;
-import org.p2p.solanaj.rpc.types.config.Commitment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.PathResource;
 import org.springframework.stereotype.Component;
@@ -28,6 +37,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +58,8 @@ public class OpenBookEthUsdc extends Strategy {
     private static final int EVENT_LOOP_DURATION_MS = 5000;
 
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final BatchingRpcClient batchingRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
 
@@ -58,10 +70,13 @@ public class OpenBookEthUsdc extends Strategy {
     // Finals
     private final Account mmAccount;
     private final Market solUsdcMarket;
-    private final MarketBuilder solUsdcMarketBuilder;
+    private final LiveMarket liveMarket;
+    private final QuoteCanceller quoteCanceller;
+    private final FairValueModel fairValue;
     public static final PublicKey MARKET_ID =
             new PublicKey("BbJgE7HZMaDp5NTYvRh5jZSkQPVDTU8ubPFtpogUkEj4");
 
+    private static final String ORACLE_SYMBOL = "ETH";
     private static final PublicKey MARKET_OOA = new PublicKey("4jkDXY6YXt4aLnZNiHCqneCscBZVc74v92861vQfnJhT");
     private static final PublicKey ETH_BASE_WALLET = new PublicKey("9mKDakPNoJR2SD9q8pFEwTj5L2CDWx2PCNZwHuaqsaek");
     private static final PublicKey USDC_QUOTE_WALLET = new PublicKey("A6Jcj1XV6QqDpdimmL7jm1gQtSP62j8BWbyqkdhe4eLe");
@@ -88,17 +103,28 @@ public class OpenBookEthUsdc extends Strategy {
 
     public OpenBookEthUsdc(final SerumManager serumManager,
                            final RpcClient rpcClient,
+                           final BlockhashProvider blockhashProvider,
+                           final BatchingRpcClient batchingRpcClient,
+                           final MarketDataHub marketDataHub,
+                           final FairValueEngine fairValueEngine,
+                           final QuoteCanceller quoteCanceller,
                            final OpenBookConfig openBookConfig) {
         this.executorService = Executors.newSingleThreadScheduledExecutor();
 
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.quoteCanceller = quoteCanceller;
+        this.batchingRpcClient = batchingRpcClient;
 
-        this.solUsdcMarketBuilder = new MarketBuilder()
+        final MarketBuilder solUsdcMarketBuilder = new MarketBuilder()
                 .setClient(rpcClient)
                 .setPublicKey(MARKET_ID)
                 .setRetrieveOrderBooks(true);
-        this.solUsdcMarket = this.solUsdcMarketBuilder.build();
+        this.solUsdcMarket = solUsdcMarketBuilder.build();
+        this.liveMarket = new LiveMarket(solUsdcMarket);
+        marketDataHub.subscribe(liveMarket);
+        this.fairValue = fairValueEngine.market(MARKET_ID, ORACLE_SYMBOL, ORACLE_SYMBOL);
         this.bestBidPrice = this.solUsdcMarket.getBidOrderBook().getBestBid().getFloatPrice();
         this.bestAskPrice = this.solUsdcMarket.getAskOrderBook().getBestAsk().getFloatPrice();
 
@@ -126,16 +152,46 @@ public class OpenBookEthUsdc extends Strategy {
         executorService.scheduleAtFixedRate(
                 () -> {
                     try {
-                        // Get latest prices
-                        solUsdcMarket.reload(solUsdcMarketBuilder);
-                        Order bestBid = solUsdcMarket.getBidOrderBook().getBestBid();
-                        Order bestAsk = solUsdcMarket.getAskOrderBook().getBestAsk();
+                        // Books are refreshed by the MarketDataHub. Read once, it can replace them mid-iteration.
+                        final MarketSnapshot book = liveMarket.snapshot();
+                        Order bestBid = book.bids().getBestBid();
+                        Order bestAsk = book.asks().getBestAsk();
 
                         this.bestBidPrice = bestBid.getFloatPrice();
                         this.bestAskPrice = bestAsk.getFloatPrice();
 
+                        // Never quote through a fair value that has an outside price in it, a thin book can be off
+                        // on its own. It gets the book without us, our quotes would drag it towards themselves.
+                        final Optional<Order> bookBid = book.bids().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        final Optional<Order> bookAsk = book.asks().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        if (bookBid.isPresent() && bookAsk.isPresent()) {
+                            fairValue.onBook(bookBid.get().getFloatPrice(), bookBid.get().getFloatQuantity(),
+                                    bookAsk.get().getFloatPrice(), bookAsk.get().getFloatQuantity(), System.nanoTime());
+                        }
+                        final FairValue fair = fairValue.update(System.nanoTime(), blockhashProvider.getLatestSlot());
+                        if (fair != null && fair.hasAny(FairValue.PYTH | FairValue.JUPITER)) {
+                            this.bestBidPrice = Math.min(bestBidPrice, fair.price());
+                            this.bestAskPrice = Math.max(bestAskPrice, fair.price());
+                        }
+                        // Outside prices too old or too far apart, pull our quotes until they recover
+                        if (fair != null && fair.health() == OracleHealth.State.PAUSE) {
+                            quoteCanceller.cancel(solUsdcMarket, book, MARKET_OOA, mmAccount,
+                                    ETH_BASE_WALLET, USDC_QUOTE_WALLET);
+                            lastPlacedBidPrice = 0;
+                            lastPlacedAskPrice = 0;
+                            return;
+                        }
+                        if (fair != null && fair.health() == OracleHealth.State.WIDEN) {
+                            this.bestBidPrice = bestBidPrice * (1 - OracleHealth.WIDEN);
+                            this.bestAskPrice = bestAskPrice * (1 + OracleHealth.WIDEN);
+                        }
+
                         boolean isCancelBid =
-                                solUsdcMarket.getBidOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                book.bids().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                         float percentageChangeFromLastBid =
                                 1.00f - (lastPlacedBidPrice / ((float) bestBidPrice * BID_SPREAD_MULTIPLIER));
@@ -147,7 +203,7 @@ public class OpenBookEthUsdc extends Strategy {
                         }
 
                         boolean isCancelAsk =
-                                solUsdcMarket.getAskOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                book.asks().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                         float percentageChangeFromLastAsk =
                                 1.00f - (lastPlacedAskPrice / ((float) bestAskPrice * ASK_SPREAD_MULTIPLIER));
@@ -256,7 +312,7 @@ public class OpenBookEthUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("ETH Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -340,20 +396,16 @@ public class OpenBookEthUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
         }
     }
 
-    private Optional<Double> getUsdcBalance() {
+    private Optional<Double> getUsdcBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            USDC_QUOTE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get USDC balance: " + e.getMessage());
@@ -361,13 +413,9 @@ public class OpenBookEthUsdc extends Strategy {
         }
     }
 
-    private Optional<Double> getBaseBalance() {
+    private Optional<Double> getBaseBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            ETH_BASE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get Base balance: " + e.getMessage());
@@ -378,8 +426,11 @@ public class OpenBookEthUsdc extends Strategy {
     //@Scheduled(initialDelay = 30_000L, fixedRate = 30_000L)
     public void updateLeanSizes() {
         // Lean WSOL is USDC balance is low.
-        USDC_BALANCE = getUsdcBalance();
-        ETH_BALANCE = getBaseBalance();
+        // Both reads share one RPC batch
+        final CompletableFuture<Double> usdcBalance = batchingRpcClient.getTokenAccountBalance(USDC_QUOTE_WALLET);
+        final CompletableFuture<Double> baseBalance = batchingRpcClient.getTokenAccountBalance(ETH_BASE_WALLET);
+        USDC_BALANCE = getUsdcBalance(usdcBalance);
+        ETH_BALANCE = getBaseBalance(baseBalance);
 
         if (USDC_BALANCE.isPresent()) {
             double amount = USDC_BALANCE.get();
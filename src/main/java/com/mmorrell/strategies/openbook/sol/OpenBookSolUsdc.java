@@ -1,9 +1,36 @@
 package com.mmorrell.strategies.openbook.sol;
 
-import com.google.common.collect.ImmutableList;
+import com.mmorrell.book.BookDeltaListener;
+import com.mmorrell.book.BookDiff;
+import com.mmorrell.book.BookSnapshot;
+import com.mmorrell.book.OwnerClass;
+import com.mmorrell.book.OwnerIndex;
 import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.execution.ComputeUnitProfiler;
+import com.mmorrell.execution.LandingTracker;
+import com.mmorrell.execution.OrderIntent;
+import com.mmorrell.execution.OrderIntentCoalescer;
+import com.mmorrell.execution.OrderTemplateCache;
+import com.mmorrell.execution.OrderTransactionTemplate;
+import com.mmorrell.execution.PriorityFeeModel;
+import com.mmorrell.execution.TransactionBroadcaster;
+import com.mmorrell.feeds.EventQueueFeed;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.feeds.OrderBookFeed;
+import com.mmorrell.feeds.QueueEvent;
+import com.mmorrell.inventory.Inventory;
+import com.mmorrell.inventory.InventoryLedger;
+import com.mmorrell.pricing.FairValue;
+import com.mmorrell.pricing.FairValueEngine;
+import com.mmorrell.pricing.FairValueModel;
+import com.mmorrell.pricing.OracleHealth;
 import com.mmorrell.pricing.PythPricingSource;
+import com.mmorrell.rpc.BatchingRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
+import com.mmorrell.serum.model.Market;
 import com.mmorrell.serum.model.MarketBuilder;
 import com.mmorrell.serum.model.Order;
 import com.mmorrell.serum.model.OrderBook;
@@ -11,6 +38,7 @@ import com.mmorrell.serum.model.OrderTypeLayout;
 import com.mmorrell.serum.model.SelfTradeBehaviorLayout;
 import com.mmorrell.serum.model.SerumUtils;
 import com.mmorrell.serum.program.SerumProgram;
+import com.mmorrell.strategies.QuoteScheduler;
 import com.mmorrell.strategies.Strategy;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
@@ -29,7 +57,6 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.PathResource;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -38,19 +65,16 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
 
-import static com.mmorrell.config.OpenBookConfig.ADVERSITY_BASE_PRIORITY_RATE_TO_ADD;
-import static com.mmorrell.config.OpenBookConfig.ADVERSITY_BASE_REDUCTION;
 import static com.mmorrell.config.OpenBookConfig.ALLOWED_PRICING_BPS_MISMATCH;
 import static com.mmorrell.config.OpenBookConfig.ASK_API_TUNING_FACTOR;
 import static com.mmorrell.config.OpenBookConfig.ASK_SPREAD_MULTIPLIER;
@@ -66,7 +90,6 @@ import static com.mmorrell.config.OpenBookConfig.KNOWN_SHARPS;
 import static com.mmorrell.config.OpenBookConfig.MIN_MIDPOINT_CHANGE;
 import static com.mmorrell.config.OpenBookConfig.NEW_ORDER_DELAY_DURATION_SECONDS;
 import static com.mmorrell.config.OpenBookConfig.PRIORITY_MICRO_LAMPORTS;
-import static com.mmorrell.config.OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT;
 import static com.mmorrell.config.OpenBookConfig.PRIORITY_UNITS;
 import static com.mmorrell.config.OpenBookConfig.PYTH_CONFIDENCE_INTERVAL_CONFIDENCE;
 import static com.mmorrell.config.OpenBookConfig.PYTH_PREDICTIVE_FACTOR;
@@ -75,37 +98,67 @@ import static com.mmorrell.config.OpenBookConfig.SOL_ASK_AMOUNT;
 import static com.mmorrell.config.OpenBookConfig.SOL_QUOTE_SIZE;
 import static com.mmorrell.config.OpenBookConfig.SOL_USDC_MARKET_ID;
 import static com.mmorrell.config.OpenBookConfig.SPACE_MONKEY;
-import static com.mmorrell.config.OpenBookConfig.START_SOL_PRICE;
 import static com.mmorrell.config.OpenBookConfig.TARGET_MAX_UNITS;
 import static com.mmorrell.config.OpenBookConfig.USDC_BID_AMOUNT_IN_WSOL;
 import static com.mmorrell.config.OpenBookConfig.USDC_THRESHOLD_TO_LEAN_WSOL;
 import static com.mmorrell.config.OpenBookConfig.generateLeanFactor;
-import static com.mmorrell.config.OpenBookConfig.getPriorityMicroLamports;
 import static com.mmorrell.config.OpenBookConfig.solUsdcMarket;
 
 @Component
 @Slf4j
 public class OpenBookSolUsdc extends Strategy {
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final BatchingRpcClient batchingRpcClient;
+    private final TransactionBroadcaster transactionBroadcaster;
     private final RpcClient dataRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
-    private final ExecutorService orderExecutorService = Executors.newFixedThreadPool(64);
+    private final OrderIntentCoalescer orderIntents;
+    private final LandingTracker landingTracker;
+    private final PriorityFeeModel priorityFeeModel;
+    private final ComputeUnitProfiler computeUnitProfiler;
+    private final EventQueueFeed eventQueueFeed;
+    private final InventoryLedger inventoryLedger;
+    private final FairValueModel fairValue;
+    // Hard cancels and market sells only, quotes go through orderIntents
+    private final ExecutorService orderExecutorService = Executors.newCachedThreadPool();
     private final PythPricingSource pythPricingSource;
+    private final OrderBookFeed orderBookFeed;
+    private final LiveMarket liveMarket;
+    private final QuoteScheduler quoteScheduler;
+    private final OrderTemplateCache orderTemplates;
     private double bestBidPrice;
     private double bestAskPrice;
     private float lastPlacedBidPrice = 0.0f, lastPlacedAskPrice = 0.0f;
-    private static Instant bidAdversityTimestamp = Instant.now();
-    private static Instant askAdversityTimestamp = Instant.now();
-    private static Instant lastHardCancelBidTimestamp = Instant.now();     // Hard cancel timers
-    private static Instant lastHardCancelAskTimestamp = Instant.now();
-    private static Instant lastBidTimestamp = Instant.now();
-    private static Instant lastAskTimestamp = Instant.now();
-    private static final Deque<Float> smaValues = new ArrayDeque<>(5);
-    private static final Deque<Float> askSmaValues = new ArrayDeque<>(4);
-    private List<Order> bidOrders;
-    private List<Order> askOrders;
+    // Quoting state below is only touched on the quoting thread, other threads go through quoteScheduler.submit()
+    private Instant bidAdversityTimestamp = Instant.now();
+    private Instant askAdversityTimestamp = Instant.now();
+    private Instant lastHardCancelBidTimestamp = Instant.now();     // Hard cancel timers
+    private Instant lastHardCancelAskTimestamp = Instant.now();
+    private Instant lastBidTimestamp = Instant.now();
+    private Instant lastAskTimestamp = Instant.now();
+    private final Deque<Float> smaValues = new ArrayDeque<>(5);
+    private final Deque<Float> askSmaValues = new ArrayDeque<>(4);
+    private final OwnerIndex owners = new OwnerIndex();
+    private final BookDiff bookDiff = new BookDiff();
+    // Current and previous decode of each side, swapped on every change
+    private BookSnapshot bidSnapshot = new BookSnapshot(true, owners);
+    private BookSnapshot spareBidSnapshot = new BookSnapshot(true, owners);
+    private BookSnapshot askSnapshot = new BookSnapshot(false, owners);
+    private BookSnapshot spareAskSnapshot = new BookSnapshot(false, owners);
+    private OrderBook lastBidOrderBook;
+    private OrderBook lastAskOrderBook;
+    private long lastQuotedOutsideVersion = -1;
+    private Instant lastFullQuoteTimestamp = Instant.EPOCH;
+    private boolean quotingPaused;
+    private Instant lastPauseCancelTimestamp = Instant.EPOCH;
+    private int selfOwnerId;
+    private int asxOwnerId;
     private OpenBookConfig openBookConfig;
+    // Age of the book the current iteration quotes off
+    private long bookAgeMs;
+    private long bookAgeSlots;
 
     private PublicKey solUsdcOoaPubkey;
     private PublicKey solUsdcQuoteWalletPubkey;
@@ -114,14 +167,45 @@ public class OpenBookSolUsdc extends Strategy {
                            final RpcClient rpcClient,
                            @Qualifier("data") final RpcClient dataRpcClient,
                            final PythPricingSource pythPricingSource,
+                           final OrderBookFeed orderBookFeed,
+                           final MarketDataHub marketDataHub,
+                           final BlockhashProvider blockhashProvider,
+                           final BatchingRpcClient batchingRpcClient,
+                           final TransactionBroadcaster transactionBroadcaster,
+                           final OrderIntentCoalescer orderIntents,
+                           final LandingTracker landingTracker,
+                           final PriorityFeeModel priorityFeeModel,
+                           final ComputeUnitProfiler computeUnitProfiler,
+                           final EventQueueFeed eventQueueFeed,
+                           final InventoryLedger inventoryLedger,
+                           final FairValueEngine fairValueEngine,
                            final OpenBookConfig openBookConfig) {
         this.openBookConfig = openBookConfig;
-        this.executorService = Executors.newScheduledThreadPool(128);
+        this.orderBookFeed = orderBookFeed;
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.batchingRpcClient = batchingRpcClient;
+        this.transactionBroadcaster = transactionBroadcaster;
+        this.orderIntents = orderIntents;
+        this.landingTracker = landingTracker;
+        this.priorityFeeModel = priorityFeeModel;
+        this.computeUnitProfiler = computeUnitProfiler;
+        this.eventQueueFeed = eventQueueFeed;
+        this.inventoryLedger = inventoryLedger;
         this.dataRpcClient = dataRpcClient;
         this.pythPricingSource = pythPricingSource;
+        this.fairValue = fairValueEngine.market(SOL_USDC_MARKET_ID, PythPricingSource.SOL_SYMBOL, "SOL");
+        this.quoteScheduler = new QuoteScheduler(
+                this::eventLoopWithCatch,
+                executorService,
+                OpenBookConfig.QUOTE_MIN_INTERVAL_MS,
+                OpenBookConfig.QUOTE_DEBOUNCE_MS,
+                OpenBookConfig.EVENT_LOOP_DURATION_MS
+        );
         OpenBookConfig.mmAccount = readMmAccountFromPrivateKey();
+        this.orderTemplates = new OrderTemplateCache(OpenBookConfig.mmAccount, PRIORITY_UNITS);
         initializeWrappedSolAccount();
         OpenBookConfig.solUsdcMarketBuilder = new MarketBuilder()
                 .setClient(dataRpcClient)
@@ -131,7 +215,11 @@ public class OpenBookSolUsdc extends Strategy {
         solUsdcMarket = OpenBookConfig.solUsdcMarketBuilder.build();
         this.bestBidPrice = solUsdcMarket.getBidOrderBook().getBestBid().getFloatPrice();
         this.bestAskPrice = solUsdcMarket.getAskOrderBook().getBestAsk().getFloatPrice();
-        updateOb();
+        this.liveMarket = new LiveMarket(solUsdcMarket);
+        priorityFeeModel.watch(solUsdcMarket);
+        // Fallback for when the websocket feed is down, book is pushed by OrderBookFeed otherwise
+        marketDataHub.subscribe(liveMarket, false, () -> !orderBookFeed.isStreaming(liveMarket),
+                (market, slot) -> onOrderBookUpdate(market, true, slot));
     }
 
     @PostConstruct
@@ -139,255 +227,316 @@ public class OpenBookSolUsdc extends Strategy {
         this.solUsdcOoaPubkey = new PublicKey(openBookConfig.getOOA_ADDRESS());
         this.solUsdcQuoteWalletPubkey = new PublicKey(openBookConfig.getQUOTE_WALLET());
         log.info("SOL/USDC OOA: " + solUsdcOoaPubkey.toBase58());
+
+        // Owners are classified once, the loop filters on each order's class tag
+        owners.classify(KNOWN_FISH, OwnerClass.FISH);
+        owners.classify(KNOWN_SHARPS, OwnerClass.SHARP | OwnerClass.ASK_SHARP);
+        this.selfOwnerId = owners.classify(solUsdcOoaPubkey, OwnerClass.SELF);
+        this.asxOwnerId = owners.classify(SPACE_MONKEY, OwnerClass.ASX);
+
+        // Fills and outs straight from the event queue. The feed thread gets its own owner index.
+        final OwnerIndex queueOwners = new OwnerIndex();
+        queueOwners.classify(KNOWN_FISH, OwnerClass.FISH);
+        queueOwners.classify(KNOWN_SHARPS, OwnerClass.SHARP | OwnerClass.ASK_SHARP);
+        queueOwners.classify(solUsdcOoaPubkey, OwnerClass.SELF);
+        queueOwners.classify(SPACE_MONKEY, OwnerClass.ASX);
+        eventQueueFeed.follow(solUsdcMarket, queueOwners, this::onQueueEvent);
+
+        // Inventory moves with our fills and landed orders, the lean state follows on the quoting thread
+        inventoryLedger.track(solUsdcMarket, solUsdcOoaPubkey, OpenBookConfig.WSOL_BASE_WALLET,
+                solUsdcQuoteWalletPubkey, inventory -> quoteScheduler.submit(() -> applyInventory(inventory)));
+
+        // Compute limits per transaction shape, from simulations of these samples
+        computeUnitProfiler.register(ComputeUnitProfiler.Shape.PLACE, PRIORITY_UNITS, () -> sampleQuote(false));
+        computeUnitProfiler.register(ComputeUnitProfiler.Shape.CANCEL_PLACE, PRIORITY_UNITS, () -> sampleQuote(true));
+        computeUnitProfiler.register(ComputeUnitProfiler.Shape.MARKET_SELL, PRIORITY_UNITS, this::sampleMarketSell);
+        computeUnitProfiler.register(ComputeUnitProfiler.Shape.HARD_CANCEL, PRIORITY_UNITS * 2,
+                this::sampleHardCancel);
     }
 
+    // Runs on the quoting thread, which owns all quoting state. Orders are handed to orderExecutorService.
     private void solUsdcEventLoop() {
-        // Whole block synchronized, dont want diff states sent at same time. Orders are async/instant / non-blocking
-        synchronized (this) {
-            OrderBook bidOrderBook;
-            OrderBook askOrderBook;
-            Optional<Float> pythSolPrice;
-            Optional<Float> pythSolPriceConfidence;
-            bidOrderBook = solUsdcMarket.getBidOrderBook();
-            bidOrders = ImmutableList.copyOf(bidOrderBook.getOrders());
-            askOrderBook = solUsdcMarket.getAskOrderBook();
-            askOrders = ImmutableList.copyOf(askOrderBook.getOrders());
-            pythSolPrice = pythPricingSource.getSolMidpointPrice(); //25
-            pythSolPriceConfidence = pythPricingSource.getSolPriceConfidence(); //0.03
-
-            final Order bestBid = bidOrderBook.getBestBid();
-            final Order bestAsk = askOrderBook.getBestAsk();
-            final Optional<Order> topOfBookFish = askOrders.stream()
-                    .filter(order -> KNOWN_FISH.contains(order.getOwner()))
-                    .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
-            this.bestBidPrice = bidOrders.stream()
-                    .filter(order -> !KNOWN_FISH.contains(order.getOwner()))
-                    .filter(order -> !order.getOwner().equals(solUsdcOoaPubkey)) // not us either
-                    .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
-                    .map(Order::getFloatPrice)
-                    .orElse(bestBid.getFloatPrice());
-            this.bestAskPrice = askOrders.stream()
-                    .filter(order -> !KNOWN_FISH.contains(order.getOwner()))
-                    .filter(order -> !order.getOwner().equals(solUsdcOoaPubkey)) // not us either
-                    .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
-                    .map(Order::getFloatPrice)
-                    .orElse(bestAsk.getFloatPrice());
-
-            if (topOfBookFish.isPresent()) {
-                Order fishOrder = topOfBookFish.get(); // Average it with the next best quote
-                if (fishOrder.getFloatPrice() <= bestAskPrice) {
-                    Optional<Order> topOfBookNotFish = askOrders.stream()
-                            .filter(order -> !KNOWN_FISH.contains(order.getOwner()))
-                            .filter(order -> !order.getOwner().equals(solUsdcOoaPubkey)) // not us either
-                            .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
-                    topOfBookNotFish.ifPresent(order -> this.bestAskPrice =
-                            (fishOrder.getFloatPrice() + order.getFloatPrice()) / 2.0);
-                }
-            }
-            boolean isCancelBid, isReadyToNewBid, shouldCancelBid;
-            synchronized (this) {
-                isCancelBid = bidOrders.stream().anyMatch(order -> order.getOwner().equals(solUsdcOoaPubkey));
-                isReadyToNewBid = Math.abs(Duration.between(Instant.now(), lastBidTimestamp).toSeconds()) >=
-                        NEW_ORDER_DELAY_DURATION_SECONDS;
-                shouldCancelBid = isCancelBid || !isReadyToNewBid;
-            }
-            float nextPlacedBidPrice = (float) bestBidPrice * BID_SPREAD_MULTIPLIER;
-            if (pythSolPrice.isPresent() && pythSolPriceConfidence.isPresent()) {
-                float halfConfidence = pythSolPriceConfidence.get() * PYTH_CONFIDENCE_INTERVAL_CONFIDENCE;
-                float lowerBoundEstimation = pythSolPrice.get() - halfConfidence;
-                float pythSolPriceFloat = lowerBoundEstimation * (1.0f - PYTH_PREDICTIVE_FACTOR_BIDS); //DEJ
-                if (lastPlacedBidPrice != 0 && lastPlacedBidPrice >= pythSolPriceFloat) {
-                    lastPlacedBidPrice = 0;
-                    bidAdversityTimestamp = Instant.now();
-                    nextPlacedBidPrice =
-                            ((float) (Math.max(nextPlacedBidPrice, bestBidPrice) + pythSolPriceFloat) / 2.0f);
-                }
-            }
-            long durationSinceBidAdversity = Math.abs(Duration.between(Instant.now(), bidAdversityTimestamp).toSeconds());
-            long durationSinceBidAdversityMs = Math.abs(Duration.between(Instant.now(), bidAdversityTimestamp).toMillis());
-            long durationSinceBid = Math.abs(Duration.between(Instant.now(), lastBidTimestamp).toSeconds());
-            int bidSpreadAdversityDurationThreshold = 4;
-            if (durationSinceBidAdversityMs <= (bidSpreadAdversityDurationThreshold * 1_000L)) {
-                double bpsToRemove = 0.999999 - (.000003 * (4.001 - (durationSinceBidAdversityMs / 1_000.0)));
-                nextPlacedBidPrice = nextPlacedBidPrice * (float) bpsToRemove; //bug
-            }
-            int bidAdversityDurationThreshold = 3;
-            if (durationSinceBidAdversity < bidAdversityDurationThreshold) {
-                double rateToAdd = ((double) (bidAdversityDurationThreshold - (durationSinceBidAdversity - 1))
-                        * ADVERSITY_BASE_PRIORITY_RATE_TO_ADD) - ADVERSITY_BASE_REDUCTION;
-                double newRate = PRIORITY_MICRO_LAMPORTS_DEFAULT + rateToAdd;
-                OpenBookConfig.setPriorityMicroLamports((int) newRate);
-            } else {
-                OpenBookConfig.useDefaultPriorityMicroLamports();
-            }
-            float percentageChangeFromLastBid = 1.00f - (lastPlacedBidPrice / nextPlacedBidPrice);
-            boolean asxBidPresent = false;
-            for (Order bidOrder : bidOrders) {
-                if (bidOrder.getOwner().equals(SPACE_MONKEY) && bidOrder.getFloatPrice() >= nextPlacedBidPrice &&
-                        (bidOrder.getFloatQuantity() * bidOrder.getFloatPrice() >= 700)) {
-                    asxBidPresent = true; // If ASX isn't quoting (ABOVE YOU) widen
-                    OpenBookConfig.setPriorityMicroLamports(getPriorityMicroLamports() + 15_000);
-                    nextPlacedBidPrice = nextPlacedBidPrice * 1.00015f; // add bps if hes above us
-                }
+        Optional<Float> fairPrice;
+        Optional<Float> fairUncertainty;
+        // One snapshot per iteration, both sides stay consistent even if the feed publishes meanwhile
+        final MarketSnapshot book = liveMarket.snapshot();
+        bookAgeMs = book.ageMs(System.currentTimeMillis());
+        bookAgeSlots = book.ageSlots(blockhashProvider.getLatestSlot());
+        if (isBookStale()) {
+            log.debug("SOL/USDC book stale, not quoting: " + bookAgeMs + "ms, " + bookAgeSlots + " slots");
+            return;
+        }
+        final boolean bidsChanged = refreshBids(book);
+        final boolean asksChanged = refreshAsks(book);
+        if (bidSnapshot.best() == BookSnapshot.NONE || askSnapshot.best() == BookSnapshot.NONE) {
+            return;
+        }
+        // Best quotes that aren't fish, and not us either
+        final int bestBidNotFish = bidSnapshot.bestNotIn(OwnerClass.FISH | OwnerClass.SELF);
+        final int bestAskNotFish = askSnapshot.bestNotIn(OwnerClass.FISH | OwnerClass.SELF);
+        final int topOfBookFish = askSnapshot.bestIn(OwnerClass.FISH);
+        final int bookBid = bestBidNotFish != BookSnapshot.NONE ? bestBidNotFish : bidSnapshot.best();
+        final int bookAsk = bestAskNotFish != BookSnapshot.NONE ? bestAskNotFish : askSnapshot.best();
+        this.bestBidPrice = bidSnapshot.price(bookBid);
+        this.bestAskPrice = askSnapshot.price(bookAsk);
+
+        // One fair value per iteration, price and uncertainty always belong together
+        final long now = System.nanoTime();
+        fairValue.onBook(bestBidPrice, bidSnapshot.quantity(bookBid), bestAskPrice, askSnapshot.quantity(bookAsk),
+                now);
+        final FairValue fair = fairValue.update(now, blockhashProvider.getLatestSlot());
+        // Outside prices too old or too far apart: pull our quotes, then wait for them to recover
+        if (fair != null && fair.health() == OracleHealth.State.PAUSE) {
+            if (!quotingPaused) {
+                quotingPaused = true;
+                // Quotes still waiting to be sent would land after the cancels
+                log.warn("SOL/USDC paused, dropped " + orderIntents.drop(SOL_USDC_MARKET_ID) + " pending quotes");
+                lastPlacedBidPrice = 0;
+                lastPlacedAskPrice = 0;
+                lastPauseCancelTimestamp = Instant.EPOCH;
             }
+            pullQuotes();
+            return;
+        }
+        quotingPaused = false;
+        // The book on its own is what we quote off anyway, the bounds need an outside price
+        if (fair == null || !fair.hasAny(FairValue.PYTH | FairValue.JUPITER)) {
+            log.debug("SOL/USD oracle and Jupiter stale, quoting off the book");
+            fairPrice = Optional.empty();
+            fairUncertainty = Optional.empty();
+        } else {
+            fairPrice = Optional.of((float) fair.price());
+            fairUncertainty = Optional.of((float) fair.uncertainty());
+        }
 
-            Order ourCurrentBid = null;
-            for (Order bidOrder : bidOrders) {
-                if (bidOrder.getOwner().equals(solUsdcOoaPubkey)) {
-                    if (ourCurrentBid == null || bidOrder.getFloatPrice() >= ourCurrentBid.getFloatPrice()) {
-                        ourCurrentBid = bidOrder; // use this as our best bid
-                    }
-                }
+        // Only re-evaluate a side if its book changed. Outside price moves, forced re-quotes and the idle heartbeat
+        // re-evaluate both. The blend moves with the book and with every ms of age, so only a new outside price counts.
+        final long outsideVersion = fair == null ? 0 : fair.outsideVersion();
+        final boolean fairValueChanged = outsideVersion != lastQuotedOutsideVersion;
+        final boolean heartbeat = Math.abs(Duration.between(Instant.now(), lastFullQuoteTimestamp).toMillis()) >=
+                OpenBookConfig.EVENT_LOOP_DURATION_MS;
+        final boolean quoteBids = bidsChanged || fairValueChanged || heartbeat || lastPlacedBidPrice == 0;
+        final boolean quoteAsks = asksChanged || fairValueChanged || heartbeat || lastPlacedAskPrice == 0;
+        lastQuotedOutsideVersion = outsideVersion;
+        if (quoteBids && quoteAsks) {
+            lastFullQuoteTimestamp = Instant.now();
+        }
+
+        if (topOfBookFish != BookSnapshot.NONE) {
+            float fishPrice = askSnapshot.price(topOfBookFish); // Average it with the next best quote
+            if (fishPrice <= bestAskPrice && bestAskNotFish != BookSnapshot.NONE) {
+                this.bestAskPrice = (fishPrice + askSnapshot.price(bestAskNotFish)) / 2.0;
             }
-            boolean isOurBidInModel = true;
-            if (ourCurrentBid != null) {
-                float ourCurrentPrice = ourCurrentBid.getFloatPrice();
-                float difference = Math.abs(nextPlacedBidPrice - ourCurrentPrice);
-                float bpsDifference = difference / nextPlacedBidPrice;  // 0.01 cent / 25$
-                if (bpsDifference >= ALLOWED_PRICING_BPS_MISMATCH) {
-                    isOurBidInModel = false;
-                    //log.info("Bid stale. Ex: " + nextPlacedBidPrice + ", seen: " + ourCurrentPrice + ", diff: " +
-                    // bpsDifference);
-                }
+        }
+        if (fair != null && fair.health() == OracleHealth.State.WIDEN) {
+            this.bestBidPrice = bestBidPrice * (1 - OracleHealth.WIDEN);
+            this.bestAskPrice = bestAskPrice * (1 + OracleHealth.WIDEN);
+        }
+        if (quoteBids) {
+            quoteBids(fairPrice, fairUncertainty);
+        }
+        if (quoteAsks) {
+            quoteAsks(fairPrice, fairUncertainty);
+        }
+    }
+
+    // A streaming feed only pushes sides that changed, so age is only meaningful for polled books
+    private boolean isBookStale() {
+        return !orderBookFeed.isStreaming(liveMarket) && (bookAgeMs > OpenBookConfig.BOOK_MAX_AGE_MS ||
+                bookAgeSlots > OpenBookConfig.BOOK_MAX_AGE_SLOTS);
+    }
+
+    // Decodes the bids again only if the feed or the hub published a new OrderBook, true if any order changed
+    private boolean refreshBids(MarketSnapshot book) {
+        final OrderBook orderBook = book.bids();
+        if (orderBook == lastBidOrderBook) {
+            return false;
+        }
+        lastBidOrderBook = orderBook;
+        spareBidSnapshot.decode(orderBook);
+        final BookSnapshot previous = bidSnapshot;
+        bidSnapshot = spareBidSnapshot;
+        spareBidSnapshot = previous;
+        return bookDiff.diff(previous, bidSnapshot, book.bidsSlot()) > 0;
+    }
+
+    private boolean refreshAsks(MarketSnapshot book) {
+        final OrderBook orderBook = book.asks();
+        if (orderBook == lastAskOrderBook) {
+            return false;
+        }
+        lastAskOrderBook = orderBook;
+        spareAskSnapshot.decode(orderBook);
+        final BookSnapshot previous = askSnapshot;
+        askSnapshot = spareAskSnapshot;
+        spareAskSnapshot = previous;
+        return bookDiff.diff(previous, askSnapshot, book.asksSlot()) > 0;
+    }
+
+    /**
+     * Order level changes (adds, cancels, modifies, inferred fills) seen by the quoting loop, for recording and
+     * metrics. Called on the quoting thread.
+     */
+    public void addBookDeltaListener(BookDeltaListener listener) {
+        bookDiff.addListener(listener);
+    }
+
+    private void quoteBids(Optional<Float> fairPrice, Optional<Float> fairUncertainty) {
+        final boolean isCancelBid = bidSnapshot.hasOrders(selfOwnerId);
+        final boolean isReadyToNewBid = Math.abs(Duration.between(Instant.now(), lastBidTimestamp).toSeconds()) >=
+                NEW_ORDER_DELAY_DURATION_SECONDS;
+        final boolean shouldCancelBid = isCancelBid || !isReadyToNewBid;
+        float nextPlacedBidPrice = (float) bestBidPrice * BID_SPREAD_MULTIPLIER;
+        if (fairPrice.isPresent() && fairUncertainty.isPresent()) {
+            float halfUncertainty = fairUncertainty.get() * PYTH_CONFIDENCE_INTERVAL_CONFIDENCE;
+            float lowerBoundEstimation = fairPrice.get() - halfUncertainty;
+            float fairBound = lowerBoundEstimation * (1.0f - PYTH_PREDICTIVE_FACTOR_BIDS); //DEJ
+            if (lastPlacedBidPrice != 0 && lastPlacedBidPrice >= fairBound) {
+                lastPlacedBidPrice = 0;
+                bidAdversityTimestamp = Instant.now();
+                nextPlacedBidPrice =
+                        ((float) (Math.max(nextPlacedBidPrice, bestBidPrice) + fairBound) / 2.0f);
             }
-            if (!shouldCancelBid) {
-                OpenBookConfig.setPriorityMicroLamports((int) ((double) getPriorityMicroLamports() * 1.35)); // fresh order
+        }
+        long durationSinceBidAdversity = Math.abs(Duration.between(Instant.now(), bidAdversityTimestamp).toSeconds());
+        long durationSinceBidAdversityMs = Math.abs(Duration.between(Instant.now(), bidAdversityTimestamp).toMillis());
+        long durationSinceBid = Math.abs(Duration.between(Instant.now(), lastBidTimestamp).toSeconds());
+        int bidSpreadAdversityDurationThreshold = 4;
+        if (durationSinceBidAdversityMs <= (bidSpreadAdversityDurationThreshold * 1_000L)) {
+            double bpsToRemove = 0.999999 - (.000003 * (4.001 - (durationSinceBidAdversityMs / 1_000.0)));
+            nextPlacedBidPrice = nextPlacedBidPrice * (float) bpsToRemove; //bug
+        }
+        int bidAdversityDurationThreshold = 3;
+        final boolean isBidAdverse = durationSinceBidAdversity < bidAdversityDurationThreshold;
+        float percentageChangeFromLastBid = 1.00f - (lastPlacedBidPrice / nextPlacedBidPrice);
+        boolean asxBidPresent = false;
+        for (int i = bidSnapshot.bestOf(asxOwnerId); i != BookSnapshot.NONE; i = bidSnapshot.nextOfSameOwner(i)) {
+            if (bidSnapshot.price(i) >= nextPlacedBidPrice &&
+                    (bidSnapshot.quantity(i) * bidSnapshot.price(i) >= 700)) {
+                asxBidPresent = true; // If ASX isn't quoting (ABOVE YOU) widen
+                nextPlacedBidPrice = nextPlacedBidPrice * 1.00015f; // add bps if hes above us
             }
-            float smoothedBidPrice = nextPlacedBidPrice;
-            final float finalSmoothedBidPrice = smoothedBidPrice;
-            Optional<Order> sharpAboveBid = bidOrders.stream()
-                    .filter(order -> order.getFloatPrice() >= finalSmoothedBidPrice)
-                    .filter(order -> !order.getOwner().equals(solUsdcOoaPubkey))
-                    .filter(order -> KNOWN_SHARPS.contains(order.getOwner()))
-                    .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
-                    .stream().findAny();
-            if (sharpAboveBid.isPresent()) {
-                float jumpsPrice = sharpAboveBid.get().getFloatPrice();
-                if (Math.abs(jumpsPrice - smoothedBidPrice) <= 0.0058 && jumpsPrice >= smoothedBidPrice) {
-                    smoothedBidPrice += 0.0059f;
-                }
+        }
+
+        final int ourCurrentBid = bidSnapshot.bestOf(selfOwnerId); // use this as our best bid
+        boolean isOurBidInModel = true;
+        if (ourCurrentBid != BookSnapshot.NONE) {
+            float ourCurrentPrice = bidSnapshot.price(ourCurrentBid);
+            float difference = Math.abs(nextPlacedBidPrice - ourCurrentPrice);
+            float bpsDifference = difference / nextPlacedBidPrice;  // 0.01 cent / 25$
+            if (bpsDifference >= ALLOWED_PRICING_BPS_MISMATCH) {
+                isOurBidInModel = false;
+                //log.info("Bid stale. Ex: " + nextPlacedBidPrice + ", seen: " + ourCurrentPrice + ", diff: " +
+                // bpsDifference);
             }
-            // API tuning
-            if (BID_API_TUNING_FACTOR != 1f) {
-                smoothedBidPrice = smoothedBidPrice * BID_API_TUNING_FACTOR;
-                log.info("Tuning bid: " + smoothedBidPrice + ", " + BID_API_TUNING_FACTOR);
+        }
+        final PriorityFeeModel.Urgency bidUrgency = urgency(isBidAdverse || asxBidPresent,
+                !shouldCancelBid || !isOurBidInModel || Math.abs(percentageChangeFromLastBid) >= MIN_MIDPOINT_CHANGE);
+        float smoothedBidPrice = nextPlacedBidPrice;
+        final int sharpAboveBid = bidSnapshot.lastIn(OwnerClass.SHARP,
+                bidSnapshot.countAtOrBetter(smoothedBidPrice));
+        if (sharpAboveBid != BookSnapshot.NONE) {
+            float jumpsPrice = bidSnapshot.price(sharpAboveBid);
+            if (Math.abs(jumpsPrice - smoothedBidPrice) <= 0.0058 && jumpsPrice >= smoothedBidPrice) {
+                smoothedBidPrice += 0.0059f;
             }
-            float incomingBid = smoothedBidPrice;
-            if (lastPlacedBidPrice == 0 || (Math.abs(percentageChangeFromLastBid) >= MIN_MIDPOINT_CHANGE) ||
-                    (!asxBidPresent && durationSinceBid >= 1) || !isOurBidInModel) {
-                if ((incomingBid >= lastPlacedAskPrice * (1 - CROSS_DETECTION_PADDING)) && durationSinceBid <= 1) {
-                    log.info("USDC Bid cross: " + incomingBid + ", last ask: " + lastPlacedAskPrice);
-                } else {
-                    placeUsdcBid(USDC_BID_AMOUNT_IN_WSOL, incomingBid, shouldCancelBid);
-                    lastPlacedBidPrice = incomingBid;
-                }
+        }
+        // API tuning
+        if (BID_API_TUNING_FACTOR != 1f) {
+            smoothedBidPrice = smoothedBidPrice * BID_API_TUNING_FACTOR;
+            log.info("Tuning bid: " + smoothedBidPrice + ", " + BID_API_TUNING_FACTOR);
+        }
+        float incomingBid = smoothedBidPrice;
+        if (lastPlacedBidPrice == 0 || (Math.abs(percentageChangeFromLastBid) >= MIN_MIDPOINT_CHANGE) ||
+                (!asxBidPresent && durationSinceBid >= 1) || !isOurBidInModel) {
+            if ((incomingBid >= lastPlacedAskPrice * (1 - CROSS_DETECTION_PADDING)) && durationSinceBid <= 1) {
+                log.info("USDC Bid cross: " + incomingBid + ", last ask: " + lastPlacedAskPrice);
+            } else {
+                placeUsdcBid(USDC_BID_AMOUNT_IN_WSOL, incomingBid, shouldCancelBid, bidUrgency);
+                lastPlacedBidPrice = incomingBid;
             }
-            // Asks
-            boolean isCancelAsk, isReadyToPlaceNewAsk, shouldCancelAsk;
-            synchronized (this) {
-                isCancelAsk = askOrders.stream().anyMatch(order -> order.getOwner().equals(solUsdcOoaPubkey));
-                isReadyToPlaceNewAsk = Math.abs(Duration.between(Instant.now(), lastAskTimestamp).toSeconds()) >=
+        }
+    }
+
+    private void quoteAsks(Optional<Float> fairPrice, Optional<Float> fairUncertainty) {
+        final boolean isCancelAsk = askSnapshot.hasOrders(selfOwnerId);
+        final boolean isReadyToPlaceNewAsk =
+                Math.abs(Duration.between(Instant.now(), lastAskTimestamp).toSeconds()) >=
                         NEW_ORDER_DELAY_DURATION_SECONDS;
-                shouldCancelAsk = isCancelAsk || !isReadyToPlaceNewAsk;
-            }
-            float nextPlacedAskPrice = (float) bestAskPrice * ASK_SPREAD_MULTIPLIER;
-            if (pythSolPrice.isPresent() && pythSolPriceConfidence.isPresent()) {
-                float halfConfidence = pythSolPriceConfidence.get() * PYTH_CONFIDENCE_INTERVAL_CONFIDENCE;
-                float upperBoundEstimation = pythSolPrice.get() + halfConfidence;
-                float pythSolPriceFloat = upperBoundEstimation * (1 + PYTH_PREDICTIVE_FACTOR); // DEJ
-                if (lastPlacedAskPrice != 0 && lastPlacedAskPrice <= pythSolPriceFloat) {
-                    //log.info("Adv ask: " + nextPlacedAskPrice + " vs. Pyth " + pythSolPriceFloat);
-                    askAdversityTimestamp = Instant.now();
-                    nextPlacedAskPrice =
-                            ((float) (Math.min(nextPlacedAskPrice, bestAskPrice) + pythSolPriceFloat) / 2.0f);
-                    //log.info("Next ask:" + nextPlacedAskPrice);
-                    lastPlacedAskPrice = 0; // re-quote
-                }
-            }
-            long durationSinceAskAdversity = Math.abs(Duration.between(Instant.now(), askAdversityTimestamp).toSeconds());
-            long durationSinceAskAdversityMs = Math.abs(Duration.between(Instant.now(), askAdversityTimestamp).toMillis());
-            long durationSinceAsk = Math.abs(Duration.between(Instant.now(), lastAskTimestamp).toSeconds());
-            // If adversity in past 4 sec, widen
-            int askSpreadAdversityDurationThreshold = 3;
-            if (durationSinceAskAdversityMs <= (askSpreadAdversityDurationThreshold * 1_000L)) {
-                double bpsToAddMultiplier = 0.000001;
-                if (GIGA_LEANING) {
-                    bpsToAddMultiplier = 0.0000001;
-                }
-                float before = nextPlacedAskPrice;
-                double bpsToAdd =
-                        1.00000 + Math.abs(bpsToAddMultiplier * ((double) askSpreadAdversityDurationThreshold -
-                                (durationSinceBidAdversityMs / 1_000.0)));
-                nextPlacedAskPrice = nextPlacedAskPrice * (float) bpsToAdd; //bug
-                // log.info("Adv bps: " + bpsToAdd + ", new: " + nextPlacedAskPrice + ", old: " + before);
-            }
-            // If recent ask adversity, use a massive priority fee.
-            int askAdversityDurationThreshold = 2;
-            if (durationSinceAskAdversity < askAdversityDurationThreshold || GIGA_LEANING) {
-                double rateToAdd = ((double) (askAdversityDurationThreshold - (durationSinceAskAdversity - 1)) *
-                        ADVERSITY_BASE_PRIORITY_RATE_TO_ADD) - ADVERSITY_BASE_REDUCTION;
-                double newRate = PRIORITY_MICRO_LAMPORTS_DEFAULT + Math.abs(rateToAdd);
-                OpenBookConfig.setPriorityMicroLamports((int) newRate);
-            } else {
-                OpenBookConfig.useDefaultPriorityMicroLamports();
+        final boolean shouldCancelAsk = isCancelAsk || !isReadyToPlaceNewAsk;
+        float nextPlacedAskPrice = (float) bestAskPrice * ASK_SPREAD_MULTIPLIER;
+        if (fairPrice.isPresent() && fairUncertainty.isPresent()) {
+            float halfUncertainty = fairUncertainty.get() * PYTH_CONFIDENCE_INTERVAL_CONFIDENCE;
+            float upperBoundEstimation = fairPrice.get() + halfUncertainty;
+            float fairBound = upperBoundEstimation * (1 + PYTH_PREDICTIVE_FACTOR); // DEJ
+            if (lastPlacedAskPrice != 0 && lastPlacedAskPrice <= fairBound) {
+                //log.info("Adv ask: " + nextPlacedAskPrice + " vs. fair " + fairBound);
+                askAdversityTimestamp = Instant.now();
+                nextPlacedAskPrice =
+                        ((float) (Math.min(nextPlacedAskPrice, bestAskPrice) + fairBound) / 2.0f);
+                //log.info("Next ask:" + nextPlacedAskPrice);
+                lastPlacedAskPrice = 0; // re-quote
             }
-            float percentageChangeFromLastAsk = 1.00f - (lastPlacedAskPrice / nextPlacedAskPrice);
-            boolean asxAskPresent = false; // If ASX isn't quoting (BELOW YOU) raise proirity rate
-            for (Order askOrder : askOrders) {
-                if (askOrder.getOwner().equals(SPACE_MONKEY) && askOrder.getFloatPrice() <= nextPlacedAskPrice &&
-                        (askOrder.getFloatQuantity() * askOrder.getFloatPrice() >= 700)) {
-                    asxAskPresent = true;
-                    OpenBookConfig.setPriorityMicroLamports(getPriorityMicroLamports() + 15_000);
-                }
+        }
+        long durationSinceAskAdversity = Math.abs(Duration.between(Instant.now(), askAdversityTimestamp).toSeconds());
+        long durationSinceAskAdversityMs = Math.abs(Duration.between(Instant.now(), askAdversityTimestamp).toMillis());
+        long durationSinceBidAdversityMs = Math.abs(Duration.between(Instant.now(), bidAdversityTimestamp).toMillis());
+        long durationSinceAsk = Math.abs(Duration.between(Instant.now(), lastAskTimestamp).toSeconds());
+        // If adversity in past 4 sec, widen
+        int askSpreadAdversityDurationThreshold = 3;
+        if (durationSinceAskAdversityMs <= (askSpreadAdversityDurationThreshold * 1_000L)) {
+            double bpsToAddMultiplier = 0.000001;
+            if (GIGA_LEANING) {
+                bpsToAddMultiplier = 0.0000001;
             }
-            Order ourCurrentAsk = null;
-            for (Order askOrder : askOrders) {
-                if (askOrder.getOwner().equals(solUsdcOoaPubkey)) {
-                    if (ourCurrentAsk == null || askOrder.getFloatPrice() <= ourCurrentAsk.getFloatPrice()) {
-                        // use this as our best ask
-                        ourCurrentAsk = askOrder;
-                    }
-                }
+            float before = nextPlacedAskPrice;
+            double bpsToAdd =
+                    1.00000 + Math.abs(bpsToAddMultiplier * ((double) askSpreadAdversityDurationThreshold -
+                            (durationSinceBidAdversityMs / 1_000.0)));
+            nextPlacedAskPrice = nextPlacedAskPrice * (float) bpsToAdd; //bug
+            // log.info("Adv bps: " + bpsToAdd + ", new: " + nextPlacedAskPrice + ", old: " + before);
+        }
+        // If recent ask adversity, or we need to unload inventory, the ask needs to land first
+        int askAdversityDurationThreshold = 2;
+        final boolean isAskAdverse = durationSinceAskAdversity < askAdversityDurationThreshold || GIGA_LEANING;
+        float percentageChangeFromLastAsk = 1.00f - (lastPlacedAskPrice / nextPlacedAskPrice);
+        boolean asxAskPresent = false; // If ASX isn't quoting (BELOW YOU) raise proirity rate
+        for (int i = askSnapshot.bestOf(asxOwnerId); i != BookSnapshot.NONE; i = askSnapshot.nextOfSameOwner(i)) {
+            if (askSnapshot.price(i) <= nextPlacedAskPrice &&
+                    (askSnapshot.quantity(i) * askSnapshot.price(i) >= 700)) {
+                asxAskPresent = true;
             }
-            boolean isOurAskInModel = true;
-            if (ourCurrentAsk != null) {
-                float ourCurrentPrice = ourCurrentAsk.getFloatPrice();
-                float expectedAskPrice = nextPlacedAskPrice;
-                float difference = Math.abs(expectedAskPrice - ourCurrentPrice);
-                float bpsDifference = difference / expectedAskPrice;  // 0.01 cent / 25$
-                // half a bip of mispricing allowed for float fuckery
-                if (bpsDifference >= ALLOWED_PRICING_BPS_MISMATCH) {
-                    isOurAskInModel = false;
-                }
+        }
+        final int ourCurrentAsk = askSnapshot.bestOf(selfOwnerId); // use this as our best ask
+        boolean isOurAskInModel = true;
+        if (ourCurrentAsk != BookSnapshot.NONE) {
+            float ourCurrentPrice = askSnapshot.price(ourCurrentAsk);
+            float expectedAskPrice = nextPlacedAskPrice;
+            float difference = Math.abs(expectedAskPrice - ourCurrentPrice);
+            float bpsDifference = difference / expectedAskPrice;  // 0.01 cent / 25$
+            // half a bip of mispricing allowed for float fuckery
+            if (bpsDifference >= ALLOWED_PRICING_BPS_MISMATCH) {
+                isOurAskInModel = false;
             }
-            if (!shouldCancelAsk) {
-                // Add fee for fresh placements
-                OpenBookConfig.setPriorityMicroLamports((int) ((double) getPriorityMicroLamports() * 1.55));
+        }
+        final PriorityFeeModel.Urgency askUrgency = urgency(isAskAdverse || asxAskPresent,
+                !shouldCancelAsk || !isOurAskInModel || Math.abs(percentageChangeFromLastAsk) >= MIN_MIDPOINT_CHANGE);
+        // Cheat codes
+        final int jumpsBestAsk = askSnapshot.lastIn(OwnerClass.ASK_SHARP, askSnapshot.countBetter(nextPlacedAskPrice));
+        if (jumpsBestAsk != BookSnapshot.NONE) {
+            float jumpsPrice = askSnapshot.price(jumpsBestAsk);
+            if (Math.abs(jumpsPrice - nextPlacedAskPrice) <= 0.0058 && jumpsPrice <= nextPlacedAskPrice) {
+                nextPlacedAskPrice -= 0.0059f;
             }
-            // Cheat codes
-            final List<PublicKey> askSharps = new ArrayList<>(KNOWN_SHARPS);
-            final float nextPlacedAskFinal = nextPlacedAskPrice;
-            askSharps.add(PublicKey.valueOf("7pYyuhKrMTswQqZ9eXx813Qsx99yzvnbaUD3mUvX7wFm")); // ground
-            Optional<Order> jumpsBestAsk = askOrders.stream()
-                    .filter(order -> order.getFloatPrice() < nextPlacedAskFinal)
-                    .filter(order -> !order.getOwner().equals(solUsdcOoaPubkey))
-                    .filter(order -> askSharps.contains(order.getOwner()))
-                    .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
-                    .stream().findAny();
-            if (jumpsBestAsk.isPresent()) {
-                float jumpsPrice = jumpsBestAsk.get().getFloatPrice();
-                if (Math.abs(jumpsPrice - nextPlacedAskPrice) <= 0.0058 && jumpsPrice <= nextPlacedAskPrice) {
-                    nextPlacedAskPrice -= 0.0059f;
-                }
 
-            }
-            // API tuning
-            if (ASK_API_TUNING_FACTOR != 1f) {
-                nextPlacedAskPrice = nextPlacedAskPrice * ASK_API_TUNING_FACTOR;
-                log.info("Tuning ask: " + nextPlacedAskPrice + ", " + ASK_API_TUNING_FACTOR);
-            }
-            // Event Queue size-based tuning. If EQ >= 30 length, widen ask 1 bps
-            // 30 to be replaced by standard deviation or moving average
+        }
+        // API tuning
+        if (ASK_API_TUNING_FACTOR != 1f) {
+            nextPlacedAskPrice = nextPlacedAskPrice * ASK_API_TUNING_FACTOR;
+            log.info("Tuning ask: " + nextPlacedAskPrice + ", " + ASK_API_TUNING_FACTOR);
+        }
+        // Event Queue size-based tuning. If EQ >= 30 length, widen ask 1 bps
+        // 30 to be replaced by standard deviation or moving average
 //            int eventQueueSize = solUsdcMarket.getEventQueue().getEvents().size();
 //            if (eventQueueSize >= EVENT_QUEUE_SIZE_THRESHOLD_FOR_WIDEN) {
 //                float newAskPrice = nextPlacedAskPrice * EVENT_QUEUE_SIZE_ASK_WIDEN;
@@ -395,27 +544,34 @@ public class OpenBookSolUsdc extends Strategy {
 //                nextPlacedAskPrice = newAskPrice;
 //            }
 
-            // Only place ask if we haven't placed, or the change is >= 0.1% change
-            if (lastPlacedAskPrice == 0 || (Math.abs(percentageChangeFromLastAsk) >= MIN_MIDPOINT_CHANGE) ||
-                    (!asxAskPresent && durationSinceAsk >= 1) || !isOurAskInModel ) {
-                if (nextPlacedAskPrice <= lastPlacedBidPrice * (1 + CROSS_DETECTION_PADDING) /* padding */  && (durationSinceAsk <= 1)) {
-                    log.info("SOL Ask cross: " + nextPlacedAskPrice + ", last bid: " + lastPlacedBidPrice);
-                } else {
-                    placeSolAsk(SOL_ASK_AMOUNT, nextPlacedAskPrice, shouldCancelAsk);
-                    lastPlacedAskPrice = nextPlacedAskPrice;
-                }
+        // Only place ask if we haven't placed, or the change is >= 0.1% change
+        if (lastPlacedAskPrice == 0 || (Math.abs(percentageChangeFromLastAsk) >= MIN_MIDPOINT_CHANGE) ||
+                (!asxAskPresent && durationSinceAsk >= 1) || !isOurAskInModel ) {
+            if (nextPlacedAskPrice <= lastPlacedBidPrice * (1 + CROSS_DETECTION_PADDING) /* padding */  && (durationSinceAsk <= 1)) {
+                log.info("SOL Ask cross: " + nextPlacedAskPrice + ", last bid: " + lastPlacedBidPrice);
+            } else {
+                placeSolAsk(SOL_ASK_AMOUNT, nextPlacedAskPrice, shouldCancelAsk, askUrgency);
+                lastPlacedAskPrice = nextPlacedAskPrice;
             }
         }
     }
 
-    @Scheduled(
-            initialDelay = OpenBookConfig.LEAN_CALCULATION_INITIAL_DELAY,
-            fixedRate = OpenBookConfig.LEAN_CALCULATION_INTERVAL
-    )
-    public void updateLeanSizes() {
-        // Lean WSOL is USDC balance is low.
-        OpenBookConfig.USDC_BALANCE = getUsdcBalance();
-        OpenBookConfig.WSOL_BALANCE = getWSolBalance();
+    // Adverse: about to be picked off or quoted in front of. Requote: fresh order or the price moved.
+    private static PriorityFeeModel.Urgency urgency(boolean adverse, boolean requote) {
+        if (adverse) {
+            return PriorityFeeModel.Urgency.ADVERSE;
+        }
+        return requote ? PriorityFeeModel.Urgency.REQUOTE : PriorityFeeModel.Urgency.PASSIVE;
+    }
+
+    // Free balances, what our resting quotes hold is already taken out
+    private void applyInventory(Inventory inventory) {
+        applyBalances(Optional.of(inventory.quoteFreeAmount()), Optional.of(inventory.baseFreeAmount()));
+    }
+
+    private void applyBalances(Optional<Double> usdcBalance, Optional<Double> wSolBalance) {
+        OpenBookConfig.USDC_BALANCE = usdcBalance;
+        OpenBookConfig.WSOL_BALANCE = wSolBalance;
 
         if (OpenBookConfig.USDC_BALANCE.isPresent()) {
             double amount = OpenBookConfig.USDC_BALANCE.get();
@@ -461,54 +617,38 @@ public class OpenBookSolUsdc extends Strategy {
         }
     }
 
-    @Scheduled(fixedRate = OpenBookConfig.ORDER_BOOK_POLL_INTERVAL)
-    public void updateOb() {
-        try {
-            solUsdcMarket.reload(OpenBookConfig.solUsdcMarketBuilder);
-        } catch (Exception ex) {
-            log.debug("OB load error: " + ex.getClass().getName());
+    // Event queue feed thread
+    private void onQueueEvent(QueueEvent event) {
+        inventoryLedger.onEvent(event);
+        if (event.fill() && event.isSelf()) {
+            log.info("SOL/USDC fill: " + (event.bid() ? "bought " : "sold ") + event.quantity() + " @ $" +
+                    event.price() + (event.maker() ? ", maker" : ", taker") + ", client id " +
+                    event.clientOrderId());
         }
     }
 
-    private void placeSolAsk(float solAmount, float price, boolean cancel) {
+    private void onOrderBookUpdate(Market market, boolean bids, long slot) {
+        blockhashProvider.onSlot(slot);
+        quoteScheduler.signal();
+    }
+
+    private void placeSolAsk(float solAmount, float price, boolean cancel, PriorityFeeModel.Urgency urgency) {
         if (price <= lastPlacedBidPrice) {
             log.info("SOL Ask cross: " + price + ", last bid: " + lastPlacedBidPrice);
             return;
         }
 
-        final Transaction placeTx = new Transaction();
-        placeTx.addInstruction(
-                ComputeBudgetProgram.setComputeUnitPrice(
-                        PRIORITY_MICRO_LAMPORTS
-                )
-        );
-        placeTx.addInstruction(
-                ComputeBudgetProgram.setComputeUnitLimit(
-                        PRIORITY_UNITS
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.consumeEvents(
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        List.of(solUsdcOoaPubkey),
-                        solUsdcMarket,
-                        OpenBookConfig.WSOL_BASE_WALLET,
-                        solUsdcQuoteWalletPubkey
-                )
-        );
         float inputPrice = price;
         int smaPeriod = 4;
         // Price SMA calculation
-        synchronized (askSmaValues) {
-            if (askSmaValues.size() < smaPeriod) {
-                askSmaValues.push(price);
-                inputPrice = price;
-            } else if (askSmaValues.size() == smaPeriod) {
-                askSmaValues.removeLast();
-                askSmaValues.addFirst(inputPrice);
-                inputPrice = askSmaValues.stream().reduce(0f, Float::sum) / (float) smaPeriod;
-                //log.info("SMA ask: " + inputPrice);
-            }
+        if (askSmaValues.size() < smaPeriod) {
+            askSmaValues.push(price);
+            inputPrice = price;
+        } else if (askSmaValues.size() == smaPeriod) {
+            askSmaValues.removeLast();
+            askSmaValues.addFirst(inputPrice);
+            inputPrice = askSmaValues.stream().reduce(0f, Float::sum) / (float) smaPeriod;
+            //log.info("SMA ask: " + inputPrice);
         }
         Order askOrder = Order.builder()
                 .buy(false)
@@ -519,93 +659,48 @@ public class OpenBookSolUsdc extends Strategy {
                 .floatQuantity(solAmount)
                 .build();
         serumManager.setOrderPrices(askOrder, solUsdcMarket);
-        if (cancel) {
-            placeTx.addInstruction(
-                    SerumProgram.cancelOrderByClientId(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            OpenBookConfig.ASK_CLIENT_ID
-                    )
-            );
-        } else {
+        if (!cancel) {
             lastAskTimestamp = Instant.now();
         }
-        // Settle - base wallet gets created first then closed after
-        placeTx.addInstruction(
-                SerumProgram.consumeEvents(
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        List.of(solUsdcOoaPubkey),
-                        solUsdcMarket,
-                        OpenBookConfig.WSOL_BASE_WALLET,
-                        solUsdcQuoteWalletPubkey
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.settleFunds(
-                        solUsdcMarket,
-                        solUsdcOoaPubkey,
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        OpenBookConfig.WSOL_BASE_WALLET, //random wsol acct for settles
-                        solUsdcQuoteWalletPubkey
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.placeOrder(
-                        OpenBookConfig.mmAccount,
-                        OpenBookConfig.WSOL_BASE_WALLET,
-                        solUsdcOoaPubkey,
-                        solUsdcMarket,
-                        askOrder
-                )
-        );
-        Runnable runnable = () -> {
-            try {
-                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount);
-                log.info("SOL Ask: $" + askOrder.getFloatPrice() + " x " + askOrder.getFloatQuantity() + ": " +
-                        orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
-                        pythPricingSource.getSolPriceConfidence().orElse(0.0f));
-            } catch (RpcException e) {
-                log.error("SOL OrderTx Error = " + e.getMessage());
+        final OrderTransactionTemplate template = orderTemplates.get(solUsdcMarket, solUsdcOoaPubkey,
+                OpenBookConfig.WSOL_BASE_WALLET, solUsdcQuoteWalletPubkey, askOrder, cancel);
+        final int priorityMicroLamports = priorityFeeModel.feeFor(SOL_USDC_MARKET_ID, urgency);
+        // Only the latest ask is sent if several are waiting, a repeat of a pending one isn't sent again
+        orderIntents.submit(OrderIntent.of(SOL_USDC_MARKET_ID, askOrder, cancel), () -> {
+            String orderTx = transactionBroadcaster.broadcast(template.build(askOrder, priorityMicroLamports,
+                    computeUnitProfiler.limitFor(quoteShape(cancel)), blockhashProvider.getBlockhashBytes()));
+            log.info("SOL Ask: $" + askOrder.getFloatPrice() + " x " + askOrder.getFloatQuantity() + ": " +
+                    orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
+                    pythPricingSource.getSolPriceConfidence().orElse(0.0f));
+            return orderTx;
+        }).whenComplete((orderTx, error) -> {
+            if (error != null) {
+                log.error("SOL OrderTx Error = " + error.getMessage());
+            } else if (orderTx != null) {
+                landingTracker.track(orderTx, (signature, outcome, slot) -> {
+                    priorityFeeModel.onOutcome(SOL_USDC_MARKET_ID, urgency, outcome != LandingTracker.Outcome.EXPIRED);
+                    if (outcome == LandingTracker.Outcome.LANDED) {
+                        inventoryLedger.onOrderRested(SOL_USDC_MARKET_ID, false, askOrder.getPrice(),
+                                askOrder.getQuantity(), slot);
+                    }
+                    quoteScheduler.submit(() -> onAskOutcome(price, signature, outcome));
+                });
             }
-        };
-        orderExecutorService.submit(runnable);
+        });
     }
 
-    private void placeUsdcBid(float amount, float price, boolean cancel) {
-        final Transaction placeTx = new Transaction();
-        placeTx.addInstruction(
-                ComputeBudgetProgram.setComputeUnitPrice(
-                        PRIORITY_MICRO_LAMPORTS
-                )
-        );
-        placeTx.addInstruction(
-                ComputeBudgetProgram.setComputeUnitLimit(
-                        PRIORITY_UNITS
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.consumeEvents(
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        List.of(solUsdcOoaPubkey),
-                        solUsdcMarket,
-                        OpenBookConfig.WSOL_BASE_WALLET,
-                        solUsdcQuoteWalletPubkey
-                )
-        );
+    private void placeUsdcBid(float amount, float price, boolean cancel, PriorityFeeModel.Urgency urgency) {
         float inputPrice = price;
         int smaPeriod = 5;
         // Price SMA calculation
-        synchronized (smaValues) {
-            if (smaValues.size() < smaPeriod) {
-                smaValues.push(price);
-                inputPrice = price;
-            } else if (smaValues.size() == smaPeriod) {
-                smaValues.removeLast();
-                smaValues.addFirst(inputPrice);
-                inputPrice = smaValues.stream().reduce(0f, Float::sum) / (float) smaPeriod;
-                //log.info("SMA bid: " + inputPrice);
-            }
+        if (smaValues.size() < smaPeriod) {
+            smaValues.push(price);
+            inputPrice = price;
+        } else if (smaValues.size() == smaPeriod) {
+            smaValues.removeLast();
+            smaValues.addFirst(inputPrice);
+            inputPrice = smaValues.stream().reduce(0f, Float::sum) / (float) smaPeriod;
+            //log.info("SMA bid: " + inputPrice);
         }
         Order bidOrder = Order.builder()
                 .buy(true)
@@ -616,214 +711,187 @@ public class OpenBookSolUsdc extends Strategy {
                 .floatQuantity(amount)
                 .build();
         serumManager.setOrderPrices(bidOrder, solUsdcMarket);
-        if (cancel) {
-            placeTx.addInstruction(
-                    SerumProgram.cancelOrderByClientId(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            OpenBookConfig.BID_CLIENT_ID
-                    )
-            );
-        } else {
+        if (!cancel) {
             lastBidTimestamp = Instant.now();
         }
-        // Settle - base wallet gets created first then closed after
-        placeTx.addInstruction(
-                SerumProgram.consumeEvents(
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        List.of(solUsdcOoaPubkey),
-                        solUsdcMarket,
-                        OpenBookConfig.WSOL_BASE_WALLET,
-                        solUsdcQuoteWalletPubkey
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.settleFunds(
-                        solUsdcMarket,
-                        solUsdcOoaPubkey,
-                        OpenBookConfig.mmAccount.getPublicKey(),
-                        OpenBookConfig.WSOL_BASE_WALLET, //random wsol acct for settles
-                        solUsdcQuoteWalletPubkey
-                )
-        );
-        placeTx.addInstruction(
-                SerumProgram.placeOrder(
-                        OpenBookConfig.mmAccount,
-                        solUsdcQuoteWalletPubkey,
-                        solUsdcOoaPubkey,
-                        solUsdcMarket,
-                        bidOrder
-                )
-        );
-        Runnable runnable = () -> {
-            try {
-                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount);
-                log.info("USDC Bid: $" + bidOrder.getFloatPrice() + " x " + bidOrder.getFloatQuantity() + ": " +
-                        orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
-                        pythPricingSource.getSolPriceConfidence().orElse(0.0f));
-            } catch (RpcException e) {
-                log.error("BID OrderTx Error = " + e.getMessage());
+        final OrderTransactionTemplate template = orderTemplates.get(solUsdcMarket, solUsdcOoaPubkey,
+                OpenBookConfig.WSOL_BASE_WALLET, solUsdcQuoteWalletPubkey, bidOrder, cancel);
+        final int priorityMicroLamports = priorityFeeModel.feeFor(SOL_USDC_MARKET_ID, urgency);
+        // Only the latest bid is sent if several are waiting, a repeat of a pending one isn't sent again
+        orderIntents.submit(OrderIntent.of(SOL_USDC_MARKET_ID, bidOrder, cancel), () -> {
+            String orderTx = transactionBroadcaster.broadcast(template.build(bidOrder, priorityMicroLamports,
+                    computeUnitProfiler.limitFor(quoteShape(cancel)), blockhashProvider.getBlockhashBytes()));
+            log.info("USDC Bid: $" + bidOrder.getFloatPrice() + " x " + bidOrder.getFloatQuantity() + ": " +
+                    orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
+                    pythPricingSource.getSolPriceConfidence().orElse(0.0f));
+            return orderTx;
+        }).whenComplete((orderTx, error) -> {
+            if (error != null) {
+                log.error("BID OrderTx Error = " + error.getMessage());
+            } else if (orderTx != null) {
+                landingTracker.track(orderTx, (signature, outcome, slot) -> {
+                    priorityFeeModel.onOutcome(SOL_USDC_MARKET_ID, urgency, outcome != LandingTracker.Outcome.EXPIRED);
+                    if (outcome == LandingTracker.Outcome.LANDED) {
+                        inventoryLedger.onOrderRested(SOL_USDC_MARKET_ID, true, bidOrder.getPrice(),
+                                bidOrder.getQuantity(), slot);
+                    }
+                    quoteScheduler.submit(() -> onBidOutcome(price, signature, outcome));
+                });
             }
-        };
-        orderExecutorService.submit(runnable);
+        });
+    }
+
+    // lastPlacedBidPrice is set when the bid is sent. If it never made it onto the book, re-quote on the next run,
+    // unless a newer bid was placed meanwhile.
+    private void onBidOutcome(float price, String signature, LandingTracker.Outcome outcome) {
+        if (outcome == LandingTracker.Outcome.LANDED) {
+            return;
+        }
+        log.info("USDC Bid " + outcome + ": $" + price + ", " + signature);
+        if (lastPlacedBidPrice == price && orderIntents.isAuthoritative(SOL_USDC_MARKET_ID, true, signature)) {
+            lastPlacedBidPrice = 0;
+        }
+    }
+
+    private void onAskOutcome(float price, String signature, LandingTracker.Outcome outcome) {
+        if (outcome == LandingTracker.Outcome.LANDED) {
+            return;
+        }
+        log.info("SOL Ask " + outcome + ": $" + price + ", " + signature);
+        if (lastPlacedAskPrice == price && orderIntents.isAuthoritative(SOL_USDC_MARKET_ID, false, signature)) {
+            lastPlacedAskPrice = 0;
+        }
     }
 
+    /**
+     * Cancels our bid by client id and settles, at most once every 8 seconds. Safe from any thread.
+     */
     public void hardCancelSingleBid() {
+        quoteScheduler.submit(this::hardCancelBid);
+    }
+
+    private void hardCancelBid() {
         long durationSinceBidHardCxl = Math.abs(Duration.between(Instant.now(),
                 lastHardCancelBidTimestamp).toSeconds());
 
         if (durationSinceBidHardCxl >= 8) {
-            // do hard cxl
-            Account sessionWsolAccount = new Account();
-            Transaction newTx = new Transaction();
-            newTx.addInstruction(
-                    ComputeBudgetProgram.setComputeUnitPrice(
-                            210_000
-                    )
-            );
-            newTx.addInstruction(
-                    ComputeBudgetProgram.setComputeUnitLimit(
-                            PRIORITY_UNITS * 2
-                    )
-            );
-            // Create WSOL account for session. 0.5 to start
-            newTx.addInstruction(
-                    SystemProgram.createAccount(
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            sessionWsolAccount.getPublicKey(),
-                            (long) (0.01 * 1000000000.0) + 2039280, //.05 SOL
-                            165,
-                            TokenProgram.PROGRAM_ID
-                    )
-            );
-            newTx.addInstruction(
-                    TokenProgram.initializeAccount(
-                            sessionWsolAccount.getPublicKey(),
-                            SerumUtils.WRAPPED_SOL_MINT,
-                            OpenBookConfig.mmAccount.getPublicKey()
-                    )
-            );
-            newTx.addInstruction(
-                    SerumProgram.cancelOrderByClientId(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            OpenBookConfig.BID_CLIENT_ID
-                    )
-            );
-            newTx.addInstruction(
-                    SerumProgram.settleFunds(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            sessionWsolAccount.getPublicKey(), //random wsol acct for settles
-                            solUsdcQuoteWalletPubkey
-                    )
-            );
-            newTx.addInstruction(TokenProgram.closeAccount(
-                    sessionWsolAccount.getPublicKey(),
-                    OpenBookConfig.mmAccount.getPublicKey(),
-                    OpenBookConfig.mmAccount.getPublicKey()
-            ));
-            try {
-                log.info("hardSettle cxl = " + rpcClient.getApi().sendTransaction(
-                        newTx,
-                        List.of(
-                                OpenBookConfig.mmAccount,
-                                sessionWsolAccount
-                        ),
-                        rpcClient.getApi().getRecentBlockhash(Commitment.PROCESSED)
-                ));
-            } catch (RpcException e) {
-                log.error("hardCXL BID error: " + e.getMessage());
-            }
+            sendHardCancel(true);
         }
         lastHardCancelBidTimestamp = Instant.now();
     }
 
+    /**
+     * Cancels our ask by client id and settles, at most once every 8 seconds. Safe from any thread.
+     */
     public void hardCancelSingleAsk() {
+        quoteScheduler.submit(this::hardCancelAsk);
+    }
+
+    private void hardCancelAsk() {
         long durationSinceAskHardCxl = Math.abs(Duration.between(Instant.now(),
                 lastHardCancelAskTimestamp).toSeconds());
 
         if (durationSinceAskHardCxl >= 8) {
-            // do hard cxl
-            Account sessionWsolAccount = new Account();
-            Transaction newTx = new Transaction();
-            newTx.addInstruction(
-                    ComputeBudgetProgram.setComputeUnitPrice(
-                            210_000
-                    )
-            );
-
-            newTx.addInstruction(
-                    ComputeBudgetProgram.setComputeUnitLimit(
-                            PRIORITY_UNITS * 2
-                    )
-            );
-
-            // Create WSOL account for session. 0.5 to start
-            newTx.addInstruction(
-                    SystemProgram.createAccount(
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            sessionWsolAccount.getPublicKey(),
-                            (long) (0.01 * 1000000000.0) + 2039280, //.05 SOL
-                            165,
-                            TokenProgram.PROGRAM_ID
-                    )
-            );
-
-            newTx.addInstruction(
-                    TokenProgram.initializeAccount(
-                            sessionWsolAccount.getPublicKey(),
-                            SerumUtils.WRAPPED_SOL_MINT,
-                            OpenBookConfig.mmAccount.getPublicKey()
-                    )
-            );
-
-            newTx.addInstruction(
-                    SerumProgram.cancelOrderByClientId(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            OpenBookConfig.ASK_CLIENT_ID
-                    )
-            );
-
-            newTx.addInstruction(
-                    SerumProgram.settleFunds(
-                            solUsdcMarket,
-                            solUsdcOoaPubkey,
-                            OpenBookConfig.mmAccount.getPublicKey(),
-                            sessionWsolAccount.getPublicKey(), //random wsol acct for settles
-                            solUsdcQuoteWalletPubkey
-                    )
-            );
-
-            newTx.addInstruction(TokenProgram.closeAccount(
-                    sessionWsolAccount.getPublicKey(),
-                    OpenBookConfig.mmAccount.getPublicKey(),
-                    OpenBookConfig.mmAccount.getPublicKey()
-            ));
+            sendHardCancel(false);
+        }
+
+        lastHardCancelAskTimestamp = Instant.now();
+    }
 
+    // While paused, cancels every side the book still shows an order of ours on. Re-sent until both are gone, a
+    // quote that was already being sent can land after the first cancel.
+    private void pullQuotes() {
+        if (Duration.between(lastPauseCancelTimestamp, Instant.now()).toMillis() <
+                OpenBookConfig.ORACLE_PAUSE_CANCEL_RETRY_MS) {
+            return;
+        }
+        final boolean bidResting = bidSnapshot.hasOrders(selfOwnerId);
+        final boolean askResting = askSnapshot.hasOrders(selfOwnerId);
+        if (bidResting) {
+            sendHardCancel(true);
+        }
+        if (askResting) {
+            sendHardCancel(false);
+        }
+        if (bidResting || askResting) {
+            lastPauseCancelTimestamp = Instant.now();
+        }
+    }
 
+    // Not throttled, hardCancelBid and hardCancelAsk are
+    private void sendHardCancel(boolean bid) {
+        Account sessionWsolAccount = new Account();
+        Transaction newTx = hardCancelTransaction(bid ? OpenBookConfig.BID_CLIENT_ID : OpenBookConfig.ASK_CLIENT_ID,
+                sessionWsolAccount, computeUnitProfiler.limitFor(ComputeUnitProfiler.Shape.HARD_CANCEL));
+        orderExecutorService.submit(() -> {
             try {
-                log.info("ASK hardSettle cxl = " + rpcClient.getApi().sendTransaction(
+                log.info((bid ? "" : "ASK ") + "hardSettle cxl = " + rpcClient.getApi().sendTransaction(
                         newTx,
                         List.of(
                                 OpenBookConfig.mmAccount,
                                 sessionWsolAccount
                         ),
-                        rpcClient.getApi().getRecentBlockhash(Commitment.PROCESSED)
+                        blockhashProvider.getBlockhash()
                 ));
-
-
             } catch (RpcException e) {
-                log.error("hardCXL ASK error: " + e.getMessage());
+                log.error("hardCXL " + (bid ? "BID" : "ASK") + " error: " + e.getMessage());
             }
-        }
+        });
+    }
 
-        lastHardCancelAskTimestamp = Instant.now();
+    // Cancel by client id, settled into a throwaway WSOL account so nothing else has to be open
+    private Transaction hardCancelTransaction(long clientOrderId, Account sessionWsolAccount, int computeUnitLimit) {
+        Transaction newTx = new Transaction();
+        newTx.addInstruction(
+                ComputeBudgetProgram.setComputeUnitPrice(
+                        210_000
+                )
+        );
+        newTx.addInstruction(
+                ComputeBudgetProgram.setComputeUnitLimit(
+                        computeUnitLimit
+                )
+        );
+        // Create WSOL account for session. 0.5 to start
+        newTx.addInstruction(
+                SystemProgram.createAccount(
+                        OpenBookConfig.mmAccount.getPublicKey(),
+                        sessionWsolAccount.getPublicKey(),
+                        (long) (0.01 * 1000000000.0) + 2039280, //.05 SOL
+                        165,
+                        TokenProgram.PROGRAM_ID
+                )
+        );
+        newTx.addInstruction(
+                TokenProgram.initializeAccount(
+                        sessionWsolAccount.getPublicKey(),
+                        SerumUtils.WRAPPED_SOL_MINT,
+                        OpenBookConfig.mmAccount.getPublicKey()
+                )
+        );
+        newTx.addInstruction(
+                SerumProgram.cancelOrderByClientId(
+                        solUsdcMarket,
+                        solUsdcOoaPubkey,
+                        OpenBookConfig.mmAccount.getPublicKey(),
+                        clientOrderId
+                )
+        );
+        newTx.addInstruction(
+                SerumProgram.settleFunds(
+                        solUsdcMarket,
+                        solUsdcOoaPubkey,
+                        OpenBookConfig.mmAccount.getPublicKey(),
+                        sessionWsolAccount.getPublicKey(), //random wsol acct for settles
+                        solUsdcQuoteWalletPubkey
+                )
+        );
+        newTx.addInstruction(TokenProgram.closeAccount(
+                sessionWsolAccount.getPublicKey(),
+                OpenBookConfig.mmAccount.getPublicKey(),
+                OpenBookConfig.mmAccount.getPublicKey()
+        ));
+        return newTx;
     }
 
     private void initializeWrappedSolAccount() {
@@ -870,7 +938,8 @@ public class OpenBookSolUsdc extends Strategy {
                 )
         );
         try {
-            String txId = rpcClient.getApi().sendTransaction(newTx, List.of(OpenBookConfig.mmAccount, sessionWsolAccount), null);
+            String txId = rpcClient.getApi().sendTransaction(newTx, List.of(OpenBookConfig.mmAccount, sessionWsolAccount),
+                    blockhashProvider.getBlockhash());
             OpenBookConfig.WSOL_BASE_WALLET = sessionWsolAccount.getPublicKey();
             log.info("WSOL Base Wallet = " + OpenBookConfig.WSOL_BASE_WALLET.toBase58() + ", TXID + " + txId);
         } catch (RpcException e) {
@@ -878,45 +947,6 @@ public class OpenBookSolUsdc extends Strategy {
         }
     }
 
-    private Optional<Double> getUsdcBalance() {
-        try {
-            double amount = dataRpcClient.getApi().getTokenAccountBalance(
-                            solUsdcQuoteWalletPubkey,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
-
-            // For now, always assume a huge bid is sitting (2 units of notional)
-            double assumedQuotedSize = 1.5;
-            amount -= ((SOL_QUOTE_SIZE * assumedQuotedSize) * START_SOL_PRICE);
-
-            int nonNegativeSafeMinQuantity = 100 + ThreadLocalRandom.current().nextInt(1, 50);
-            // to avoid negative by any possibility
-            amount = Math.max(amount, nonNegativeSafeMinQuantity);
-
-            // todo Add balance from the current USDC quotes
-
-            return Optional.of(amount);
-        } catch (RpcException e) {
-            log.error("Unable to get USDC balance: " + e.getMessage());
-            return Optional.empty();
-        }
-    }
-
-    private Optional<Double> getWSolBalance() {
-        try {
-            double amount = dataRpcClient.getApi().getTokenAccountBalance(
-                            OpenBookConfig.WSOL_BASE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
-            return Optional.of(amount);
-        } catch (RpcException e) {
-            log.error("Unable to get WSOL balance: " + e.getMessage());
-            return Optional.empty();
-        }
-    }
-
     private Account readMmAccountFromPrivateKey() {
         final Account mmAccount;
         PathResource resource = new PathResource(
@@ -945,16 +975,59 @@ public class OpenBookSolUsdc extends Strategy {
         log.info(this.getClass().getSimpleName() + " started.");
         log.info("OOA: " + solUsdcOoaPubkey.toBase58());
         log.info("Quote Wallet: " + solUsdcQuoteWalletPubkey.toBase58());
-        final Runnable solUsdcEventLoopRunnable = this::eventLoopWithCatch;
-        executorService.scheduleAtFixedRate(
-                solUsdcEventLoopRunnable,
-                OpenBookConfig.EVENT_LOOP_INITIAL_DELAY_MS,
-                OpenBookConfig.EVENT_LOOP_DURATION_MS,
-                TimeUnit.MILLISECONDS
-        );
+        orderBookFeed.subscribe(liveMarket, this::onOrderBookUpdate);
+        pythPricingSource.addPriceListener(quoteScheduler::signal);
+        quoteScheduler.start();
     }
 
+    /**
+     * IOC sell just below our view of the best bid. Safe from any thread, priced on the quoting thread.
+     */
     public void marketSell(float floatSize) {
+        quoteScheduler.submit(() -> placeMarketSell(floatSize));
+    }
+
+    /**
+     * Runs {@code command} on the quoting thread before its next iteration, for changes to anything the loop reads
+     * (e.g. tuning from the REST API).
+     *
+     * @return completed once applied
+     */
+    public CompletableFuture<Void> submit(Runnable command) {
+        return quoteScheduler.submit(command);
+    }
+
+    private void placeMarketSell(float floatSize) {
+        final float sellPrice = (float) this.bestBidPrice;
+        final Transaction mktSellTx = marketSellTransaction(marketSellOrder(sellPrice, floatSize),
+                computeUnitProfiler.limitFor(ComputeUnitProfiler.Shape.MARKET_SELL));
+
+        Runnable runnable = () -> {
+            try {
+                String orderTx = rpcClient.getApi().sendTransaction(mktSellTx, OpenBookConfig.mmAccount,
+                        blockhashProvider.getBlockhash());
+                log.info("MKT SELL: " + floatSize + " @ " + (sellPrice * .9995f) + ", " + orderTx);
+            } catch (RpcException e) {
+                log.error("MKT SELL OrderTx Error = " + e.getMessage());
+            }
+        };
+        orderExecutorService.submit(runnable);
+    }
+
+    private Order marketSellOrder(float sellPrice, float floatSize) {
+        Order askOrder = Order.builder()
+                .buy(false)
+                .clientOrderId(OpenBookConfig.ASK_CLIENT_ID + ThreadLocalRandom.current().nextInt(1, 500))
+                .orderTypeLayout(OrderTypeLayout.IOC) // ONLY DO LIMIT WHEN WE HAVE CHECKANDSETSEQUENCENumber
+                .selfTradeBehaviorLayout(SelfTradeBehaviorLayout.CANCEL_PROVIDE)
+                .floatPrice(sellPrice * .9998f)
+                .floatQuantity(floatSize)
+                .build();
+        serumManager.setOrderPrices(askOrder, solUsdcMarket);
+        return askOrder;
+    }
+
+    private Transaction marketSellTransaction(Order askOrder, int computeUnitLimit) {
         final Transaction mktSellTx = new Transaction();
         mktSellTx.addInstruction(
                 ComputeBudgetProgram.setComputeUnitPrice(
@@ -963,7 +1036,7 @@ public class OpenBookSolUsdc extends Strategy {
         );
         mktSellTx.addInstruction(
                 ComputeBudgetProgram.setComputeUnitLimit(
-                        PRIORITY_UNITS
+                        computeUnitLimit
                 )
         );
         mktSellTx.addInstruction(
@@ -975,16 +1048,6 @@ public class OpenBookSolUsdc extends Strategy {
                         solUsdcQuoteWalletPubkey
                 )
         );
-
-        Order askOrder = Order.builder()
-                .buy(false)
-                .clientOrderId(OpenBookConfig.ASK_CLIENT_ID + ThreadLocalRandom.current().nextInt(1, 500))
-                .orderTypeLayout(OrderTypeLayout.IOC) // ONLY DO LIMIT WHEN WE HAVE CHECKANDSETSEQUENCENumber
-                .selfTradeBehaviorLayout(SelfTradeBehaviorLayout.CANCEL_PROVIDE)
-                .floatPrice((float) this.bestBidPrice * .9998f)
-                .floatQuantity(floatSize)
-                .build();
-        serumManager.setOrderPrices(askOrder, solUsdcMarket);
         // Settle - base wallet gets created first then closed after
         mktSellTx.addInstruction(
                 SerumProgram.consumeEvents(
@@ -1023,25 +1086,61 @@ public class OpenBookSolUsdc extends Strategy {
                         solUsdcQuoteWalletPubkey
                 )
         );
+        return mktSellTx;
+    }
 
-        Runnable runnable = () -> {
-            try {
-                String orderTx = rpcClient.getApi().sendTransaction(mktSellTx, OpenBookConfig.mmAccount);
-                log.info("MKT SELL: " + floatSize + " @ " + ((float) this.bestBidPrice * .9995f) + ", " + orderTx);
-            } catch (RpcException e) {
-                log.error("MKT SELL OrderTx Error = " + e.getMessage());
-            }
-        };
-        orderExecutorService.submit(runnable);
+    private static ComputeUnitProfiler.Shape quoteShape(boolean cancel) {
+        return cancel ? ComputeUnitProfiler.Shape.CANCEL_PLACE : ComputeUnitProfiler.Shape.PLACE;
+    }
+
+    // Compute profiling samples, built on the profiler thread. A deep bid rests without crossing anything.
+    private byte[] sampleQuote(boolean cancel) throws RpcException {
+        final Order bidOrder = Order.builder()
+                .buy(true)
+                .clientOrderId(OpenBookConfig.BID_CLIENT_ID)
+                .orderTypeLayout(OrderTypeLayout.POST_ONLY)
+                .selfTradeBehaviorLayout(SelfTradeBehaviorLayout.ABORT_TRANSACTION)
+                .floatPrice(sampleBestBid() * 0.5f)
+                .floatQuantity(SOL_QUOTE_SIZE)
+                .build();
+        serumManager.setOrderPrices(bidOrder, solUsdcMarket);
+        return orderTemplates.get(solUsdcMarket, solUsdcOoaPubkey, OpenBookConfig.WSOL_BASE_WALLET,
+                solUsdcQuoteWalletPubkey, bidOrder, cancel).build(bidOrder, 0,
+                ComputeUnitProfiler.SIMULATION_UNIT_LIMIT, blockhashProvider.getBlockhashBytes());
+    }
+
+    private byte[] sampleMarketSell() throws RpcException {
+        final Transaction transaction = marketSellTransaction(marketSellOrder(sampleBestBid(), SOL_QUOTE_SIZE),
+                ComputeUnitProfiler.SIMULATION_UNIT_LIMIT);
+        return signSample(transaction, List.of(OpenBookConfig.mmAccount));
+    }
+
+    private byte[] sampleHardCancel() throws RpcException {
+        final Account sessionWsolAccount = new Account();
+        final Transaction transaction = hardCancelTransaction(OpenBookConfig.BID_CLIENT_ID, sessionWsolAccount,
+                ComputeUnitProfiler.SIMULATION_UNIT_LIMIT);
+        return signSample(transaction, List.of(OpenBookConfig.mmAccount, sessionWsolAccount));
+    }
+
+    private byte[] signSample(Transaction transaction, List<Account> signers) throws RpcException {
+        transaction.setRecentBlockHash(blockhashProvider.getBlockhash());
+        transaction.sign(signers);
+        return transaction.serialize();
+    }
+
+    private float sampleBestBid() {
+        return liveMarket.snapshot().bids().getBestBid().getFloatPrice();
     }
 
     // @Scheduled(fixedRate = 5_000L)
     public void hardCxlDetectionLoop() {
-        if (bidOrders.stream().filter(order -> order.getOwner().equals(solUsdcOoaPubkey)).count() > 1) {
-            hardCancelSingleBid();
-        }
-        if (askOrders.stream().filter(order -> order.getOwner().equals(solUsdcOoaPubkey)).count() > 1) {
-            hardCancelSingleAsk();
-        }
+        quoteScheduler.submit(() -> {
+            if (bidSnapshot.countOf(selfOwnerId) > 1) {
+                hardCancelBid();
+            }
+            if (askSnapshot.countOf(selfOwnerId) > 1) {
+                hardCancelAsk();
+            }
+        });
     }
 }
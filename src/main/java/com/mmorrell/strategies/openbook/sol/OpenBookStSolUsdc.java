@@ -2,7 +2,15 @@ package com.mmorrell.strategies.openbook.sol;
 
 import com.google.common.collect.ImmutableList;
 import com.mmorrell.config.OpenBookConfig;
-import com.mmorrell.pricing.JupiterPricingSource;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.execution.QuoteCanceller;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.pricing.FairValue;
+import com.mmorrell.pricing.FairValueEngine;
+import com.mmorrell.pricing.FairValueModel;
+import com.mmorrell.pricing.OracleHealth;
 import com.mmorrell.pricing.PythPricingSource;
 import com.mmorrell.serum.manager.SerumManager;
 import com.mmorrell.serum.model.MarketBuilder;
@@ -23,7 +31,6 @@ import org.p2p.solanaj.rpc.RpcException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.PathResource;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -61,12 +68,15 @@ import static com.mmorrell.config.OpenBookConfig.stSolUsdcMarket;
 @Getter
 public class OpenBookStSolUsdc extends Strategy {
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
     private final RpcClient dataRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
     private final ExecutorService orderExecutorService = Executors.newFixedThreadPool(2);
     private final PythPricingSource pythPricingSource;
-    private final JupiterPricingSource jupiterPricingSource;
+    private final FairValueModel fairValue;
+    private final LiveMarket liveMarket;
+    private final QuoteCanceller quoteCanceller;
     private double bestBidPrice;
     private double bestAskPrice;
     private float lastPlacedBidPrice = 0.0f, lastPlacedAskPrice = 0.0f;
@@ -86,23 +96,29 @@ public class OpenBookStSolUsdc extends Strategy {
                              final RpcClient rpcClient,
                              @Qualifier("data") final RpcClient dataRpcClient,
                              final PythPricingSource pythPricingSource,
-                             final JupiterPricingSource jupiterPricingSource,
+                             final FairValueEngine fairValueEngine,
+                             final BlockhashProvider blockhashProvider,
+                             final MarketDataHub marketDataHub,
+                             final QuoteCanceller quoteCanceller,
                              final OpenBookConfig openBookConfig) {
         this.executorService = Executors.newScheduledThreadPool(2);
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.quoteCanceller = quoteCanceller;
         this.dataRpcClient = dataRpcClient;
         this.pythPricingSource = pythPricingSource;
-        this.jupiterPricingSource = jupiterPricingSource;
+        this.fairValue = fairValueEngine.market(STSOL_USDC_MARKET_ID, JUP_SYMBOL, JUP_SYMBOL);
         OpenBookConfig.mmAccount = readMmAccountFromPrivateKey();
         OpenBookConfig.stSolUsdcMarketBuilder = new MarketBuilder()
                 .setClient(dataRpcClient)
                 .setPublicKey(STSOL_USDC_MARKET_ID)
                 .setRetrieveOrderBooks(true);
         stSolUsdcMarket = OpenBookConfig.stSolUsdcMarketBuilder.build();
+        this.liveMarket = new LiveMarket(stSolUsdcMarket);
+        marketDataHub.subscribe(liveMarket);
         this.bestBidPrice = stSolUsdcMarket.getBidOrderBook().getBestBid().getFloatPrice();
         this.bestAskPrice = stSolUsdcMarket.getAskOrderBook().getBestAsk().getFloatPrice();
-        updateOb();
     }
 
     private void stSolUsdcEventLoop() {
@@ -110,22 +126,43 @@ public class OpenBookStSolUsdc extends Strategy {
         synchronized (this) {
             OrderBook bidOrderBook;
             OrderBook askOrderBook;
-            Optional<Float> pythSolPrice;
-            bidOrderBook = stSolUsdcMarket.getBidOrderBook();
+            Optional<Float> fairPrice;
+            // Read once, the MarketDataHub can replace the books mid-iteration
+            final MarketSnapshot book = liveMarket.snapshot();
+            bidOrderBook = book.bids();
             bidOrders = ImmutableList.copyOf(bidOrderBook.getOrders());
-            askOrderBook = stSolUsdcMarket.getAskOrderBook();
+            askOrderBook = book.asks();
             askOrders = ImmutableList.copyOf(askOrderBook.getOrders());
 
-            Optional<Double> jupiterPrice = jupiterPricingSource.getCachedPrice(JUP_SYMBOL);
-            if (jupiterPrice.isEmpty()) {
+            // Pyth, Jupiter and the top of book without us. Nothing to quote around without a healthy outside price.
+            final Optional<Order> bookBid = bidOrders.stream()
+                    .filter(order -> !order.getOwner().equals(OpenBookConfig.STSOL_USDC_OOA))
+                    .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+            final Optional<Order> bookAsk = askOrders.stream()
+                    .filter(order -> !order.getOwner().equals(OpenBookConfig.STSOL_USDC_OOA))
+                    .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+            if (bookBid.isPresent() && bookAsk.isPresent()) {
+                fairValue.onBook(bookBid.get().getFloatPrice(), bookBid.get().getFloatQuantity(),
+                        bookAsk.get().getFloatPrice(), bookAsk.get().getFloatQuantity(), System.nanoTime());
+            }
+            final FairValue fair = fairValue.update(System.nanoTime(), blockhashProvider.getLatestSlot());
+            // Outside prices too old or too far apart, pull our quotes until they recover
+            if (fair != null && fair.health() == OracleHealth.State.PAUSE) {
+                quoteCanceller.cancel(stSolUsdcMarket, book, OpenBookConfig.STSOL_USDC_OOA, OpenBookConfig.mmAccount,
+                        OpenBookConfig.STSOL_BASE_WALLET, OpenBookConfig.USDC_QUOTE_WALLET);
+                lastPlacedBidPrice = 0;
+                lastPlacedAskPrice = 0;
+                return;
+            }
+            if (fair == null || !fair.hasAny(FairValue.PYTH | FairValue.JUPITER)) {
                 return;
             }
-            pythSolPrice = Optional.of(jupiterPrice.get().floatValue());
+            fairPrice = Optional.of((float) fair.price());
             final Optional<Order> topOfBookFish = askOrders.stream()
                     .filter(order -> KNOWN_FISH.contains(order.getOwner()))
                     .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
-            this.bestBidPrice = pythSolPrice.get();
-            this.bestAskPrice = pythSolPrice.get();
+            this.bestBidPrice = fairPrice.get();
+            this.bestAskPrice = fairPrice.get();
 
             if (topOfBookFish.isPresent()) {
                 Order fishOrder = topOfBookFish.get(); // Average it with the next best quote
@@ -138,6 +175,10 @@ public class OpenBookStSolUsdc extends Strategy {
                             (fishOrder.getFloatPrice() + order.getFloatPrice()) / 2.0);
                 }
             }
+            if (fair.health() == OracleHealth.State.WIDEN) {
+                this.bestBidPrice = bestBidPrice * (1 - OracleHealth.WIDEN);
+                this.bestAskPrice = bestAskPrice * (1 + OracleHealth.WIDEN);
+            }
             boolean isCancelBid, isReadyToNewBid, shouldCancelBid;
             synchronized (this) {
                 isCancelBid = bidOrders.stream().anyMatch(order -> order.getOwner().equals(OpenBookConfig.STSOL_USDC_OOA));
@@ -258,15 +299,6 @@ public class OpenBookStSolUsdc extends Strategy {
         }
     }
 
-    @Scheduled(fixedRate = OpenBookConfig.ORDER_BOOK_POLL_INTERVAL * 5)
-    public void updateOb() {
-        try {
-            stSolUsdcMarket.reload(OpenBookConfig.stSolUsdcMarketBuilder);
-        } catch (Exception ex) {
-            log.debug(ex.getMessage());
-        }
-    }
-
     private void placeBaseAsk(float solAmount, float price, boolean cancel) {
         if (price <= lastPlacedBidPrice) {
             log.info(JUP_SYMBOL + " Ask cross: " + price + ", last bid: " + lastPlacedBidPrice);
@@ -358,7 +390,8 @@ public class OpenBookStSolUsdc extends Strategy {
         );
         Runnable runnable = () -> {
             try {
-                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount);
+                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount,
+                        blockhashProvider.getBlockhash());
                 log.info(JUP_SYMBOL + " Ask: $" + askOrder.getFloatPrice() + " x " + askOrder.getFloatQuantity() + ":" +
                         " " +
                         orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
@@ -456,7 +489,8 @@ public class OpenBookStSolUsdc extends Strategy {
         );
         Runnable runnable = () -> {
             try {
-                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount);
+                String orderTx = rpcClient.getApi().sendTransaction(placeTx, OpenBookConfig.mmAccount,
+                        blockhashProvider.getBlockhash());
                 log.info("USDC Bid: $" + bidOrder.getFloatPrice() + " x " + bidOrder.getFloatQuantity() + ": " +
                         orderTx + ", Pyth: " + pythPricingSource.getSolMidpointPrice().orElse(0.0f) + " +/-" +
                         pythPricingSource.getSolPriceConfidence().orElse(0.0f));
@@ -501,12 +535,4 @@ public class OpenBookStSolUsdc extends Strategy {
                 TimeUnit.MILLISECONDS
         );
     }
-
-    @Scheduled(fixedRate = 10_000L)
-    public void jupiterPriceUpdateLoop() {
-        String symbol = JUP_SYMBOL;
-        Optional<Double> orcaPrice = jupiterPricingSource.getUsdcPriceForSymbol(symbol, 500);
-        orcaPrice.ifPresent(aDouble -> jupiterPricingSource.updatePriceMap(symbol, aDouble));
-        orcaPrice.ifPresent(aDouble -> log.info(symbol + " Price: " + aDouble));
-    }
 }
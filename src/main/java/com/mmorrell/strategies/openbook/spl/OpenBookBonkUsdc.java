@@ -1,7 +1,16 @@
 package com.mmorrell.strategies.openbook.spl;
 
 import com.mmorrell.config.OpenBookConfig;
-import com.mmorrell.pricing.JupiterPricingSource;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.execution.QuoteCanceller;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.pricing.FairValue;
+import com.mmorrell.pricing.FairValueEngine;
+import com.mmorrell.pricing.FairValueModel;
+import com.mmorrell.pricing.OracleHealth;
+import com.mmorrell.rpc.BatchingRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
 import com.mmorrell.serum.model.Market;
 import com.mmorrell.serum.model.MarketBuilder;
@@ -19,7 +28,6 @@ import org.p2p.solanaj.programs.ComputeBudgetProgram;
 import org.p2p.solanaj.programs.MemoProgram;
 import org.p2p.solanaj.rpc.RpcClient;
 import org.p2p.solanaj.rpc.RpcException;
-import org.p2p.solanaj.rpc.types.config.Commitment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.PathResource;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -30,6 +38,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -50,14 +59,17 @@ public class OpenBookBonkUsdc extends Strategy {
     private static final int EVENT_LOOP_DURATION_MS = 5000;
 
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final BatchingRpcClient batchingRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
-    private final JupiterPricingSource jupiterPricingSource;
+    private final FairValueModel fairValue;
 
     // Finals
     private final Account mmAccount;
     private final Market market;
-    private final MarketBuilder marketBuilder;
+    private final LiveMarket liveMarket;
+    private final QuoteCanceller quoteCanceller;
     public static final PublicKey MARKET_ID =
             new PublicKey("8PhnCfgqpgFM7ZJvttGdBVMXHuU4Q23ACxCvWkbs1M71");
 
@@ -90,19 +102,29 @@ public class OpenBookBonkUsdc extends Strategy {
 
     public OpenBookBonkUsdc(final SerumManager serumManager,
                             final RpcClient rpcClient,
-                            final JupiterPricingSource jupiterPricingSource,
+                            final FairValueEngine fairValueEngine,
+                            final BlockhashProvider blockhashProvider,
+                            final BatchingRpcClient batchingRpcClient,
+                            final MarketDataHub marketDataHub,
+                            final QuoteCanceller quoteCanceller,
                             final OpenBookConfig openBookConfig) {
         this.executorService = Executors.newSingleThreadScheduledExecutor();
-        this.jupiterPricingSource = jupiterPricingSource;
 
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.quoteCanceller = quoteCanceller;
+        this.batchingRpcClient = batchingRpcClient;
 
-        this.marketBuilder = new MarketBuilder()
+        final MarketBuilder marketBuilder = new MarketBuilder()
                 .setClient(rpcClient)
                 .setPublicKey(MARKET_ID)
                 .setRetrieveOrderBooks(true);
-        this.market = this.marketBuilder.build();
+        this.market = marketBuilder.build();
+        this.liveMarket = new LiveMarket(market);
+        marketDataHub.subscribe(liveMarket);
+        // No Pyth price for it, Jupiter and the book only
+        this.fairValue = fairValueEngine.market(MARKET_ID, null, bonkMint);
 
         // Load private key
         PathResource resource = new PathResource(
@@ -115,8 +137,6 @@ public class OpenBookBonkUsdc extends Strategy {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        jupiterPriceUpdateLoop();
     }
 
     @Override
@@ -129,55 +149,78 @@ public class OpenBookBonkUsdc extends Strategy {
         executorService.scheduleAtFixedRate(
                 () -> {
                     try {
-                        // Get latest prices
-                        market.reload(marketBuilder);
+                        // Books are refreshed by the MarketDataHub. Read once, it can replace them mid-iteration.
+                        final MarketSnapshot book = liveMarket.snapshot();
 
                         boolean isCancelBid =
-                                market.getBidOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
-
-                        // Jupiter bid pricing
-                        Optional<Double> jupiterPriceOptional = jupiterPricingSource.getCachedPrice(bonkMint);
-                        boolean hasPricingSource = jupiterPriceOptional.isPresent();
+                                book.bids().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+
+                        // Jupiter and the book without us
+                        final Optional<Order> bookBid = book.bids().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        final Optional<Order> bookAsk = book.asks().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        if (bookBid.isPresent() && bookAsk.isPresent()) {
+                            fairValue.onBook(bookBid.get().getFloatPrice(), bookBid.get().getFloatQuantity(),
+                                    bookAsk.get().getFloatPrice(), bookAsk.get().getFloatQuantity(), System.nanoTime());
+                        }
+                        final FairValue fair = fairValue.update(System.nanoTime(), blockhashProvider.getLatestSlot());
+                        // Jupiter too far from the book, pull our quotes until they agree again
+                        if (fair != null && fair.health() == OracleHealth.State.PAUSE) {
+                            quoteCanceller.cancel(market, book, MARKET_OOA, mmAccount,
+                                    BASE_SPL_WALLET, USDC_QUOTE_WALLET);
+                            lastPlacedBidPrice = 0;
+                            lastPlacedAskPrice = 0;
+                            return;
+                        }
+                        boolean hasPricingSource = fair != null && fair.hasAny(FairValue.JUPITER);
                         if (hasPricingSource) {
-                            double jupiterPrice = jupiterPriceOptional.get();
+                            double bidPrice = fair.price();
+                            double askPrice = fair.price();
+                            if (fair.health() == OracleHealth.State.WIDEN) {
+                                bidPrice = bidPrice * (1 - OracleHealth.WIDEN);
+                                askPrice = askPrice * (1 + OracleHealth.WIDEN);
+                            }
 
                             float percentageChangeFromLastBid =
-                                    1.00f - (lastPlacedBidPrice / ((float) jupiterPrice * BID_SPREAD_MULTIPLIER));
+                                    1.00f - (lastPlacedBidPrice / ((float) bidPrice * BID_SPREAD_MULTIPLIER));
 
                             // Only place bid if we haven't placed, or the change is >= 0.1% change
                             if (lastPlacedBidPrice == 0 || (Math.abs(percentageChangeFromLastBid) >= MIN_MIDPOINT_CHANGE)) {
                                 // Top of book bid
                                 placeUsdcBid(
                                         USDC_BID_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * BID_SPREAD_MULTIPLIER,
+                                        (float) bidPrice * BID_SPREAD_MULTIPLIER,
                                         isCancelBid
                                 );
 
                                 // Bottom of book bid
                                 placeUsdcSecondBid(
                                         USDC_BID_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * (BID_SPREAD_MULTIPLIER * 0.9f),
+                                        (float) bidPrice * (BID_SPREAD_MULTIPLIER * 0.9f),
                                         isCancelBid
                                 );
 
-                                lastPlacedBidPrice = (float) jupiterPrice * BID_SPREAD_MULTIPLIER;
+                                lastPlacedBidPrice = (float) bidPrice * BID_SPREAD_MULTIPLIER;
                             }
 
                             boolean isCancelAsk =
-                                    market.getAskOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                    book.asks().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                             float percentageChangeFromLastAsk =
-                                    1.00f - (lastPlacedAskPrice / ((float) jupiterPrice * ASK_SPREAD_MULTIPLIER));
+                                    1.00f - (lastPlacedAskPrice / ((float) askPrice * ASK_SPREAD_MULTIPLIER));
 
                             // Only place ask if we haven't placed, or the change is >= 0.1% change
                             if (lastPlacedAskPrice == 0 || (Math.abs(percentageChangeFromLastAsk) >= MIN_MIDPOINT_CHANGE)) {
-                                placeTopBaseAsk(ASK_AMOUNT * 0.5f, (float) jupiterPrice * ASK_SPREAD_MULTIPLIER,
+                                placeTopBaseAsk(ASK_AMOUNT * 0.5f, (float) askPrice * ASK_SPREAD_MULTIPLIER,
                                         isCancelAsk);
 
                                 placeLowerBaseAsk(ASK_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * (ASK_SPREAD_MULTIPLIER * 1.1f),
+                                        (float) askPrice * (ASK_SPREAD_MULTIPLIER * 1.1f),
                                         isCancelAsk);
-                                lastPlacedAskPrice = (float) jupiterPrice * ASK_SPREAD_MULTIPLIER;
+                                lastPlacedAskPrice = (float) askPrice * ASK_SPREAD_MULTIPLIER;
                             }
 
                             if (!firstLoadComplete) {
@@ -287,7 +330,7 @@ public class OpenBookBonkUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info(BASE_SYMBOL + " Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -371,7 +414,7 @@ public class OpenBookBonkUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info(BASE_SYMBOL + " Low Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -455,7 +498,7 @@ public class OpenBookBonkUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -539,20 +582,16 @@ public class OpenBookBonkUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Low Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
         }
     }
 
-    private Optional<Double> getUsdcBalance() {
+    private Optional<Double> getUsdcBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            USDC_QUOTE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get USDC balance: " + e.getMessage());
@@ -560,13 +599,9 @@ public class OpenBookBonkUsdc extends Strategy {
         }
     }
 
-    private Optional<Double> getBaseBalance() {
+    private Optional<Double> getBaseBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            BASE_SPL_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get Base balance: " + e.getMessage());
@@ -576,8 +611,11 @@ public class OpenBookBonkUsdc extends Strategy {
 
     @Scheduled(initialDelay = 30_000L, fixedRate = 30_000L)
     public void updateLeanSizes() {
-        USDC_BALANCE = getUsdcBalance();
-        BASE_BALANCE = getBaseBalance();
+        // Both reads share one RPC batch
+        final CompletableFuture<Double> usdcBalance = batchingRpcClient.getTokenAccountBalance(USDC_QUOTE_WALLET);
+        final CompletableFuture<Double> baseBalance = batchingRpcClient.getTokenAccountBalance(BASE_SPL_WALLET);
+        USDC_BALANCE = getUsdcBalance(usdcBalance);
+        BASE_BALANCE = getBaseBalance(baseBalance);
 
         if (USDC_BALANCE.isPresent()) {
             double amount = USDC_BALANCE.get();
@@ -606,17 +644,4 @@ public class OpenBookBonkUsdc extends Strategy {
         }
     }
 
-    //@Scheduled(fixedRate = 6_000L)
-    public void jupiterPriceUpdateLoop() {
-        int bonkUsdcValue = 300;
-
-        Optional<Double> jupiterPrice = jupiterPricingSource.getUsdcPriceForSymbol(
-                bonkMint,
-                bonkUsdcValue
-        );
-
-        jupiterPrice.ifPresent(aDouble -> jupiterPricingSource.updatePriceMap(bonkMint, aDouble));
-        jupiterPrice.ifPresent(aDouble -> log.info(BASE_SYMBOL + " Price: " + aDouble));
-    }
-
 }
@@ -1,7 +1,16 @@
 package com.mmorrell.strategies.openbook.spl;
 
 import com.mmorrell.config.OpenBookConfig;
-import com.mmorrell.pricing.JupiterPricingSource;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.execution.QuoteCanceller;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.pricing.FairValue;
+import com.mmorrell.pricing.FairValueEngine;
+import com.mmorrell.pricing.FairValueModel;
+import com.mmorrell.pricing.OracleHealth;
+import com.mmorrell.rpc.BatchingRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
 import com.mmorrell.serum.model.Market;
 import com.mmorrell.serum.model.MarketBuilder;
@@ -19,7 +28,6 @@ import org.p2p.solanaj.programs.ComputeBudgetProgram;
 import org.p2p.solanaj.programs.MemoProgram;
 import org.p2p.solanaj.rpc.RpcClient;
 import org.p2p.solanaj.rpc.RpcException;
-import org.p2p.solanaj.rpc.types.config.Commitment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.PathResource;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -30,6 +38,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -50,14 +59,17 @@ public class OpenBookOrcaUsdc extends Strategy {
     private static final int EVENT_LOOP_DURATION_MS = 5000;
 
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final BatchingRpcClient batchingRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
-    private final JupiterPricingSource jupiterPricingSource;
+    private final FairValueModel fairValue;
 
     // Finals
     private final Account mmAccount;
     private final Market market;
-    private final MarketBuilder marketBuilder;
+    private final LiveMarket liveMarket;
+    private final QuoteCanceller quoteCanceller;
     public static final PublicKey MARKET_ID =
             new PublicKey("BEhRuJZiKwTdVTsGYjbHRh9RmGbKBtT6xo7yPqxLiSSY");
 
@@ -91,19 +103,29 @@ public class OpenBookOrcaUsdc extends Strategy {
 
     public OpenBookOrcaUsdc(final SerumManager serumManager,
                             final RpcClient rpcClient,
-                            final JupiterPricingSource jupiterPricingSource,
+                            final FairValueEngine fairValueEngine,
+                            final BlockhashProvider blockhashProvider,
+                            final BatchingRpcClient batchingRpcClient,
+                            final MarketDataHub marketDataHub,
+                            final QuoteCanceller quoteCanceller,
                             final OpenBookConfig openBookConfig) {
         this.executorService = Executors.newSingleThreadScheduledExecutor();
-        this.jupiterPricingSource = jupiterPricingSource;
 
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.quoteCanceller = quoteCanceller;
+        this.batchingRpcClient = batchingRpcClient;
 
-        this.marketBuilder = new MarketBuilder()
+        final MarketBuilder marketBuilder = new MarketBuilder()
                 .setClient(rpcClient)
                 .setPublicKey(MARKET_ID)
                 .setRetrieveOrderBooks(true);
-        this.market = this.marketBuilder.build();
+        this.market = marketBuilder.build();
+        this.liveMarket = new LiveMarket(market);
+        marketDataHub.subscribe(liveMarket);
+        // No Pyth price for it, Jupiter and the book only
+        this.fairValue = fairValueEngine.market(MARKET_ID, null, BASE_SYMBOL);
 
         // Load private key
         PathResource resource = new PathResource(
@@ -116,8 +138,6 @@ public class OpenBookOrcaUsdc extends Strategy {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        orcaPriceUpdateLoop();
     }
 
     @Override
@@ -130,55 +150,78 @@ public class OpenBookOrcaUsdc extends Strategy {
         executorService.scheduleAtFixedRate(
                 () -> {
                     try {
-                        // Get latest prices
-                        market.reload(marketBuilder);
+                        // Books are refreshed by the MarketDataHub. Read once, it can replace them mid-iteration.
+                        final MarketSnapshot book = liveMarket.snapshot();
 
                         boolean isCancelBid =
-                                market.getBidOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
-
-                        // Jupiter bid pricing
-                        Optional<Double> orcaJupiterPrice = jupiterPricingSource.getCachedPrice(BASE_SYMBOL);
-                        boolean hasPricingSource = orcaJupiterPrice.isPresent();
+                                book.bids().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+
+                        // Jupiter and the book without us
+                        final Optional<Order> bookBid = book.bids().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        final Optional<Order> bookAsk = book.asks().getOrders().stream()
+                                .filter(order -> !order.getOwner().equals(MARKET_OOA))
+                                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+                        if (bookBid.isPresent() && bookAsk.isPresent()) {
+                            fairValue.onBook(bookBid.get().getFloatPrice(), bookBid.get().getFloatQuantity(),
+                                    bookAsk.get().getFloatPrice(), bookAsk.get().getFloatQuantity(), System.nanoTime());
+                        }
+                        final FairValue fair = fairValue.update(System.nanoTime(), blockhashProvider.getLatestSlot());
+                        // Jupiter too far from the book, pull our quotes until they agree again
+                        if (fair != null && fair.health() == OracleHealth.State.PAUSE) {
+                            quoteCanceller.cancel(market, book, MARKET_OOA, mmAccount,
+                                    ORCA_BASE_WALLET, USDC_QUOTE_WALLET);
+                            lastPlacedBidPrice = 0;
+                            lastPlacedAskPrice = 0;
+                            return;
+                        }
+                        boolean hasPricingSource = fair != null && fair.hasAny(FairValue.JUPITER);
                         if (hasPricingSource) {
-                            double jupiterPrice = orcaJupiterPrice.get();
+                            double bidPrice = fair.price();
+                            double askPrice = fair.price();
+                            if (fair.health() == OracleHealth.State.WIDEN) {
+                                bidPrice = bidPrice * (1 - OracleHealth.WIDEN);
+                                askPrice = askPrice * (1 + OracleHealth.WIDEN);
+                            }
 
                             float percentageChangeFromLastBid =
-                                    1.00f - (lastPlacedBidPrice / ((float) jupiterPrice * BID_SPREAD_MULTIPLIER));
+                                    1.00f - (lastPlacedBidPrice / ((float) bidPrice * BID_SPREAD_MULTIPLIER));
 
                             // Only place bid if we haven't placed, or the change is >= 0.1% change
                             if (lastPlacedBidPrice == 0 || (Math.abs(percentageChangeFromLastBid) >= MIN_MIDPOINT_CHANGE)) {
                                 // Top of book bid
                                 placeUsdcBid(
                                         USDC_BID_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * BID_SPREAD_MULTIPLIER,
+                                        (float) bidPrice * BID_SPREAD_MULTIPLIER,
                                         isCancelBid
                                 );
 
                                 // Bottom of book bid
                                 placeUsdcSecondBid(
                                         USDC_BID_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * (BID_SPREAD_MULTIPLIER * 0.9f),
+                                        (float) bidPrice * (BID_SPREAD_MULTIPLIER * 0.9f),
                                         isCancelBid
                                 );
 
-                                lastPlacedBidPrice = (float) jupiterPrice * BID_SPREAD_MULTIPLIER;
+                                lastPlacedBidPrice = (float) bidPrice * BID_SPREAD_MULTIPLIER;
                             }
 
                             boolean isCancelAsk =
-                                    market.getAskOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                    book.asks().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                             float percentageChangeFromLastAsk =
-                                    1.00f - (lastPlacedAskPrice / ((float) jupiterPrice * ASK_SPREAD_MULTIPLIER));
+                                    1.00f - (lastPlacedAskPrice / ((float) askPrice * ASK_SPREAD_MULTIPLIER));
 
                             // Only place ask if we haven't placed, or the change is >= 0.1% change
                             if (lastPlacedAskPrice == 0 || (Math.abs(percentageChangeFromLastAsk) >= MIN_MIDPOINT_CHANGE)) {
-                                placeOrcaAsk(ASK_AMOUNT * 0.5f, (float) jupiterPrice * ASK_SPREAD_MULTIPLIER,
+                                placeOrcaAsk(ASK_AMOUNT * 0.5f, (float) askPrice * ASK_SPREAD_MULTIPLIER,
                                         isCancelAsk);
 
                                 placeOrcaSecondAsk(ASK_AMOUNT * 0.5f,
-                                        (float) jupiterPrice * (ASK_SPREAD_MULTIPLIER * 1.1f),
+                                        (float) askPrice * (ASK_SPREAD_MULTIPLIER * 1.1f),
                                         isCancelAsk);
-                                lastPlacedAskPrice = (float) jupiterPrice * ASK_SPREAD_MULTIPLIER;
+                                lastPlacedAskPrice = (float) askPrice * ASK_SPREAD_MULTIPLIER;
                             }
 
                             if (!firstLoadComplete) {
@@ -288,7 +331,7 @@ public class OpenBookOrcaUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info(BASE_SYMBOL + " Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -372,7 +415,7 @@ public class OpenBookOrcaUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info(BASE_SYMBOL + " Low Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -456,7 +499,7 @@ public class OpenBookOrcaUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -540,20 +583,16 @@ public class OpenBookOrcaUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Low Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
         }
     }
 
-    private Optional<Double> getUsdcBalance() {
+    private Optional<Double> getUsdcBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            USDC_QUOTE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get USDC balance: " + e.getMessage());
@@ -561,13 +600,9 @@ public class OpenBookOrcaUsdc extends Strategy {
         }
     }
 
-    private Optional<Double> getBaseBalance() {
+    private Optional<Double> getBaseBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            ORCA_BASE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get Base balance: " + e.getMessage());
@@ -578,8 +613,11 @@ public class OpenBookOrcaUsdc extends Strategy {
     @Scheduled(initialDelay = 30_000L, fixedRate = 30_000L)
     public void updateLeanSizes() {
         // Lean WSOL is USDC balance is low.
-        USDC_BALANCE = getUsdcBalance();
-        BASE_BALANCE = getBaseBalance();
+        // Both reads share one RPC batch
+        final CompletableFuture<Double> usdcBalance = batchingRpcClient.getTokenAccountBalance(USDC_QUOTE_WALLET);
+        final CompletableFuture<Double> baseBalance = batchingRpcClient.getTokenAccountBalance(ORCA_BASE_WALLET);
+        USDC_BALANCE = getUsdcBalance(usdcBalance);
+        BASE_BALANCE = getBaseBalance(baseBalance);
 
         if (USDC_BALANCE.isPresent()) {
             double amount = USDC_BALANCE.get();
@@ -609,15 +647,4 @@ public class OpenBookOrcaUsdc extends Strategy {
         }
     }
 
-    //@Scheduled(fixedRate = 6_000L)
-    public void orcaPriceUpdateLoop() {
-        Optional<Double> orcaPrice = jupiterPricingSource.getUsdcPriceForSymbol(
-                BASE_SYMBOL,
-                BASE_QUOTE_SIZE
-        );
-
-        orcaPrice.ifPresent(aDouble -> jupiterPricingSource.updatePriceMap(BASE_SYMBOL, aDouble));
-        orcaPrice.ifPresent(aDouble -> log.info("Orca Price: " + aDouble));
-    }
-
 }
@@ -1,6 +1,11 @@
 package com.mmorrell.strategies.openbook.spl;
 
 import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.execution.BlockhashProvider;
+import com.mmorrell.feeds.LiveMarket;
+import com.mmorrell.feeds.MarketDataHub;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.rpc.BatchingRpcClient;
 import com.mmorrell.serum.manager.SerumManager;
 import com.mmorrell.serum.model.Market;
 import com.mmorrell.serum.model.MarketBuilder;
@@ -18,7 +23,6 @@ import org.p2p.solanaj.programs.ComputeBudgetProgram;
 import org.p2p.solanaj.programs.MemoProgram;
 import org.p2p.solanaj.rpc.RpcClient;
 import org.p2p.solanaj.rpc.RpcException;
-import org.p2p.solanaj.rpc.types.config.Commitment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.PathResource;
 import org.springframework.stereotype.Component;
@@ -28,6 +32,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +53,8 @@ public class OpenBookRlbUsdc extends Strategy {
     private static final int EVENT_LOOP_DURATION_MS = 5000;
 
     private final RpcClient rpcClient;
+    private final BlockhashProvider blockhashProvider;
+    private final BatchingRpcClient batchingRpcClient;
     private final SerumManager serumManager;
     private final ScheduledExecutorService executorService;
 
@@ -58,7 +65,7 @@ public class OpenBookRlbUsdc extends Strategy {
     // Finals
     private final Account mmAccount;
     private final Market solUsdcMarket;
-    private final MarketBuilder solUsdcMarketBuilder;
+    private final LiveMarket liveMarket;
     public static final PublicKey MARKET_ID =
             new PublicKey("72h8rWaWwfPUL36PAFqyQZU8RT1V3FKG7Nc45aK89xTs");
 
@@ -88,17 +95,24 @@ public class OpenBookRlbUsdc extends Strategy {
 
     public OpenBookRlbUsdc(final SerumManager serumManager,
                            final RpcClient rpcClient,
+                           final BlockhashProvider blockhashProvider,
+                           final BatchingRpcClient batchingRpcClient,
+                           final MarketDataHub marketDataHub,
                            final OpenBookConfig openBookConfig) {
         this.executorService = Executors.newSingleThreadScheduledExecutor();
 
         this.serumManager = serumManager;
         this.rpcClient = rpcClient;
+        this.blockhashProvider = blockhashProvider;
+        this.batchingRpcClient = batchingRpcClient;
 
-        this.solUsdcMarketBuilder = new MarketBuilder()
+        final MarketBuilder solUsdcMarketBuilder = new MarketBuilder()
                 .setClient(rpcClient)
                 .setPublicKey(MARKET_ID)
                 .setRetrieveOrderBooks(true);
-        this.solUsdcMarket = this.solUsdcMarketBuilder.build();
+        this.solUsdcMarket = solUsdcMarketBuilder.build();
+        this.liveMarket = new LiveMarket(solUsdcMarket);
+        marketDataHub.subscribe(liveMarket);
         this.bestBidPrice = this.solUsdcMarket.getBidOrderBook().getBestBid().getFloatPrice();
         this.bestAskPrice = this.solUsdcMarket.getAskOrderBook().getBestAsk().getFloatPrice();
 
@@ -126,16 +140,16 @@ public class OpenBookRlbUsdc extends Strategy {
         executorService.scheduleAtFixedRate(
                 () -> {
                     try {
-                        // Get latest prices
-                        solUsdcMarket.reload(solUsdcMarketBuilder);
-                        Order bestBid = solUsdcMarket.getBidOrderBook().getBestBid();
-                        Order bestAsk = solUsdcMarket.getAskOrderBook().getBestAsk();
+                        // Books are refreshed by the MarketDataHub. Read once, it can replace them mid-iteration.
+                        final MarketSnapshot book = liveMarket.snapshot();
+                        Order bestBid = book.bids().getBestBid();
+                        Order bestAsk = book.asks().getBestAsk();
 
                         this.bestBidPrice = bestBid.getFloatPrice();
                         this.bestAskPrice = bestAsk.getFloatPrice();
 
                         boolean isCancelBid =
-                                solUsdcMarket.getBidOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                book.bids().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                         float percentageChangeFromLastBid =
                                 1.00f - (lastPlacedBidPrice / ((float) bestBidPrice * BID_SPREAD_MULTIPLIER));
@@ -147,7 +161,7 @@ public class OpenBookRlbUsdc extends Strategy {
                         }
 
                         boolean isCancelAsk =
-                                solUsdcMarket.getAskOrderBook().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
+                                book.asks().getOrders().stream().anyMatch(order -> order.getOwner().equals(MARKET_OOA));
 
                         float percentageChangeFromLastAsk =
                                 1.00f - (lastPlacedAskPrice / ((float) bestAskPrice * ASK_SPREAD_MULTIPLIER));
@@ -262,7 +276,7 @@ public class OpenBookRlbUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("RLB Ask: " + askOrder.getFloatQuantity() + " @ " + askOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
@@ -346,20 +360,16 @@ public class OpenBookRlbUsdc extends Strategy {
         );
 
         try {
-            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount);
+            String orderTx = rpcClient.getApi().sendTransaction(placeTx, mmAccount, blockhashProvider.getBlockhash());
             log.info("USDC Bid: " + bidOrder.getFloatQuantity() + " @ " + bidOrder.getFloatPrice());
         } catch (RpcException e) {
             log.error("OrderTx Error = " + e.getMessage());
         }
     }
 
-    private Optional<Double> getUsdcBalance() {
+    private Optional<Double> getUsdcBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            USDC_QUOTE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get USDC balance: " + e.getMessage());
@@ -367,13 +377,9 @@ public class OpenBookRlbUsdc extends Strategy {
         }
     }
 
-    private Optional<Double> getBaseBalance() {
+    private Optional<Double> getBaseBalance(CompletableFuture<Double> balance) {
         try {
-            double amount = rpcClient.getApi().getTokenAccountBalance(
-                            RLB_BASE_WALLET,
-                            Commitment.PROCESSED
-                    )
-                    .getUiAmount();
+            double amount = batchingRpcClient.await(balance);
             return Optional.of(amount);
         } catch (RpcException e) {
             log.error("Unable to get Base balance: " + e.getMessage());
@@ -384,8 +390,11 @@ public class OpenBookRlbUsdc extends Strategy {
     //@Scheduled(initialDelay = 30_000L, fixedRate = 30_000L)
     public void updateLeanSizes() {
         // Lean WSOL is USDC balance is low.
-        USDC_BALANCE = getUsdcBalance();
-        ETH_BALANCE = getBaseBalance();
+        // Both reads share one RPC batch
+        final CompletableFuture<Double> usdcBalance = batchingRpcClient.getTokenAccountBalance(USDC_QUOTE_WALLET);
+        final CompletableFuture<Double> baseBalance = batchingRpcClient.getTokenAccountBalance(RLB_BASE_WALLET);
+        USDC_BALANCE = getUsdcBalance(usdcBalance);
+        ETH_BALANCE = getBaseBalance(baseBalance);
 
         if (USDC_BALANCE.isPresent()) {
             double amount = USDC_BALANCE.get();
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static com.mmorrell.config.OpenBookConfig.PRIORITY_UNITS;
 import static com.mmorrell.config.OpenBookConfig.SOL_USDC_MARKET_ID;
@@ -43,16 +44,19 @@ public class OpenBookTest {
     private static final RpcClient rpcClient = new RpcClient("https://mainnet.helius-rpc.com/?api-key=" + System.getenv("API_KEY"));
 
     @Test
-    public void jupiterPricingTest() {
+    public void jupiterPricingTest() throws Exception {
         log.info("Jupiter pricing test.");
         JupiterPricingSource jupiterPricingSource = new JupiterPricingSource(
                 new OkHttpClient(),
                 new ObjectMapper()
         );
 
-        Optional<Double> price = jupiterPricingSource.getUsdcPriceForSymbol("ORCA", 1000);
+        jupiterPricingSource.track("ORCA");
+        jupiterPricingSource.refresh().exceptionally(e -> 0).get(10, TimeUnit.SECONDS);
+        jupiterPricingSource.stop();
+        Optional<Double> price = jupiterPricingSource.getCachedPrice("ORCA");
         if (price.isPresent()) {
-            log.info("ORCA Price ($100 worth): " + price);
+            log.info("ORCA Price ($500 worth): " + price);
             assertTrue(price.get() >= 0);
         } else {
             log.error("Unable to get ORCA price from Jupiter.");
@@ -0,0 +1,95 @@
+package com.mmorrell;
+
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.OrderBook;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds synthetic OpenBook slab accounts, so order book code can be tested without an RPC node.
+ */
+public class OrderBookFixtures {
+
+    private static final int HEADER_SIZE = 45;
+    private static final int NODE_SIZE = 72;
+    private static final int LEAF_NODE_TAG = 2;
+
+    // SOL/USDC lot sizes: 1 price lot = $0.001, 1 base lot = 0.001 SOL
+    public static final byte BASE_DECIMALS = 9;
+    public static final byte QUOTE_DECIMALS = 6;
+    public static final long BASE_LOT_SIZE = 1_000_000L;
+    public static final long QUOTE_LOT_SIZE = 1L;
+
+    public static Market market(PublicKey bids, PublicKey asks) {
+        Market market = new Market();
+        market.setBids(bids);
+        market.setAsks(asks);
+        market.setBaseDecimals(BASE_DECIMALS);
+        market.setQuoteDecimals(QUOTE_DECIMALS);
+        market.setBaseLotSize(BASE_LOT_SIZE);
+        market.setQuoteLotSize(QUOTE_LOT_SIZE);
+        return market;
+    }
+
+    public static OrderBook orderBook(Leaf... leaves) {
+        OrderBook orderBook = OrderBook.readOrderBook(slab(leaves));
+        orderBook.setBaseDecimals(BASE_DECIMALS);
+        orderBook.setQuoteDecimals(QUOTE_DECIMALS);
+        orderBook.setBaseLotSize(BASE_LOT_SIZE);
+        orderBook.setQuoteLotSize(QUOTE_LOT_SIZE);
+        return orderBook;
+    }
+
+    /**
+     * Raw account data for a slab holding only leaf nodes.
+     */
+    public static byte[] slab(Leaf... leaves) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + NODE_SIZE * leaves.length + 7)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("serum".getBytes());
+        buffer.putLong(0x40); // account flags: bids/asks
+        buffer.putLong(leaves.length); // bump index
+        buffer.putLong(0); // free list len
+        buffer.putInt(0); // free list head
+        buffer.putInt(0); // root
+        buffer.putLong(leaves.length); // leaf count
+
+        for (Leaf leaf : leaves) {
+            int start = buffer.position();
+            buffer.putInt(LEAF_NODE_TAG);
+            buffer.put((byte) 0); // owner slot
+            buffer.put((byte) 0); // fee tier
+            buffer.putShort((short) 0);
+            buffer.putLong(leaf.sequenceNumber);
+            buffer.putLong(leaf.priceLots);
+            buffer.put(leaf.owner.toByteArray());
+            buffer.putLong(leaf.quantityLots);
+            buffer.putLong(leaf.clientOrderId);
+            buffer.position(start + NODE_SIZE);
+        }
+
+        return buffer.array();
+    }
+
+    public static Leaf leaf(PublicKey owner, long priceLots, long quantityLots, long sequenceNumber) {
+        return new Leaf(owner, priceLots, quantityLots, sequenceNumber, 0L);
+    }
+
+    public static class Leaf {
+        private final PublicKey owner;
+        private final long priceLots;
+        private final long quantityLots;
+        private final long sequenceNumber;
+        private final long clientOrderId;
+
+        public Leaf(PublicKey owner, long priceLots, long quantityLots, long sequenceNumber, long clientOrderId) {
+            this.owner = owner;
+            this.priceLots = priceLots;
+            this.quantityLots = quantityLots;
+            this.sequenceNumber = sequenceNumber;
+            this.clientOrderId = clientOrderId;
+        }
+    }
+}
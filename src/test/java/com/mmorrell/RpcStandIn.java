@@ -0,0 +1,109 @@
+package com.mmorrell;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local HTTP stand-in for a JSON-RPC node. Each method answers with the JSON {@code result} its handler returns,
+ * given the request's params. JSON-RPC batches are answered entry by entry.
+ */
+public class RpcStandIn implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final Map<String, Function<JsonNode, String>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger httpRequests = new AtomicInteger();
+    private volatile long delayMs;
+
+    public RpcStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param handler params to the JSON result
+     */
+    public RpcStandIn on(String method, Function<JsonNode, String> handler) {
+        handlers.put(method, handler);
+        return this;
+    }
+
+    public RpcStandIn delay(long delayMs) {
+        this.delayMs = delayMs;
+        return this;
+    }
+
+    public int calls(String method) {
+        AtomicInteger count = calls.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return HTTP requests received, a JSON-RPC batch counts once
+     */
+    public int httpRequests() {
+        return httpRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        httpRequests.incrementAndGet();
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String body;
+        if (request.isArray()) {
+            StringJoiner responses = new StringJoiner(",", "[", "]");
+            request.forEach(entry -> responses.add(respond(entry)));
+            body = responses.toString();
+        } else {
+            body = respond(request);
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String respond(JsonNode request) {
+        String method = request.path("method").asText();
+        calls.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+        Function<JsonNode, String> handler = handlers.get(method);
+        return handler == null ?
+                "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Method not found\"},\"id\":" +
+                        request.path("id").toString() + "}" :
+                "{\"jsonrpc\":\"2.0\",\"result\":" + handler.apply(request.path("params")) + ",\"id\":" +
+                        request.path("id").toString() + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package com.mmorrell.book;
+
+import com.mmorrell.OrderBookFixtures;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BookDiffTest {
+
+    private static final PublicKey US = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+    private static final PublicKey MAKER = new PublicKey("D8nvp2VbmnMjk7pgAjvHbmwKG5ZDmGAJpUcgr4ia95s9");
+
+    private final OwnerIndex owners = new OwnerIndex();
+    private final BookSnapshot previous = new BookSnapshot(true, owners);
+    private final BookSnapshot current = new BookSnapshot(true, owners);
+    private final BookDiff bookDiff = new BookDiff();
+    private final List<String> deltas = new ArrayList<>();
+
+    public BookDiffTest() {
+        bookDiff.addListener((bids, type, owner, clientOrderId, priceLots, quantityLots, quantityChangeLots, slot) ->
+                deltas.add(type + "@" + priceLots + ":" + quantityLots + "/" + quantityChangeLots));
+    }
+
+    @Test
+    public void unchangedSideHasNoDeltas() {
+        previous.decode(OrderBookFixtures.orderBook(leaf(MAKER, 25_100, 1_000, 1), leaf(MAKER, 25_000, 500, 2)));
+        current.decode(OrderBookFixtures.orderBook(leaf(MAKER, 25_000, 500, 2), leaf(MAKER, 25_100, 1_000, 1)));
+
+        assertEquals(0, bookDiff.diff(previous, current, 1L));
+        assertEquals(0, deltas.size());
+    }
+
+    @Test
+    public void classifiesAddsCancelsAndFills() {
+        previous.decode(OrderBookFixtures.orderBook(
+                leaf(MAKER, 25_100, 1_000, 1),   // filled, top of book gone
+                leaf(MAKER, 25_050, 2_000, 2),   // partially filled
+                leaf(MAKER, 25_050, 700, 3),     // untouched, same level
+                leaf(MAKER, 24_900, 300, 4)      // cancelled behind the top
+        ));
+        current.decode(OrderBookFixtures.orderBook(
+                leaf(MAKER, 25_050, 1_200, 2),
+                leaf(MAKER, 25_050, 700, 3),
+                leaf(MAKER, 25_000, 400, 5)      // new
+        ));
+
+        assertEquals(4, bookDiff.diff(previous, current, 1L));
+        assertEquals(List.of(
+                BookDiff.FILL + "@25050:1200/-800",
+                BookDiff.FILL + "@25100:0/-1000",
+                BookDiff.CANCEL + "@24900:0/-300",
+                BookDiff.ADD + "@25000:400/400"
+        ), deltas);
+        assertEquals(2, bookDiff.total(BookDiff.FILL));
+    }
+
+    @Test
+    public void cancelReplaceWithSameClientIdIsOneModify() {
+        previous.decode(OrderBookFixtures.orderBook(
+                new OrderBookFixtures.Leaf(US, 25_000, 1_000, 1, 42L),
+                leaf(MAKER, 25_100, 1_000, 2)
+        ));
+        current.decode(OrderBookFixtures.orderBook(
+                new OrderBookFixtures.Leaf(US, 25_010, 1_500, 3, 42L),
+                leaf(MAKER, 25_100, 1_000, 2)
+        ));
+
+        assertEquals(1, bookDiff.diff(previous, current, 1L));
+        assertEquals(List.of(BookDiff.MODIFY + "@25010:1500/500"), deltas);
+    }
+}
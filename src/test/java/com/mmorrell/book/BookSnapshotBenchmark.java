@@ -0,0 +1,178 @@
+package com.mmorrell.book;
+
+import com.google.common.collect.ImmutableList;
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.serum.model.Order;
+import com.mmorrell.serum.model.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book queries of one SOL/USDC quoting tick: the {@code ImmutableList} + stream filters the loop used before,
+ * against a reused {@link BookSnapshot}. Run {@link #main} from the test classpath; add {@code -prof gc} to the
+ * options to compare allocation per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookSnapshotBenchmark {
+
+    private static final int ORDERS_PER_SIDE = 150;
+    private static final int OWNERS = 40;
+
+    private OrderBook bidOrderBook;
+    private OrderBook askOrderBook;
+    private PublicKey us;
+    private PublicKey asx;
+    private List<PublicKey> fish;
+    private List<PublicKey> sharps;
+
+    private final OwnerIndex owners = new OwnerIndex();
+    private final BookSnapshot bidSnapshot = new BookSnapshot(true, owners);
+    private final BookSnapshot askSnapshot = new BookSnapshot(false, owners);
+    private int usId;
+    private int asxId;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<PublicKey> makers = new ArrayList<>();
+        for (int i = 0; i < OWNERS; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            makers.add(new PublicKey(key));
+        }
+        us = makers.get(0);
+        asx = makers.get(1);
+        sharps = List.of(makers.get(1), makers.get(2), makers.get(3), makers.get(4));
+        fish = List.of(makers.get(5), makers.get(6));
+
+        bidOrderBook = OrderBookFixtures.orderBook(leaves(random, makers, 24_000, 25_000));
+        askOrderBook = OrderBookFixtures.orderBook(leaves(random, makers, 25_010, 26_010));
+
+        owners.classify(fish, OwnerClass.FISH);
+        owners.classify(sharps, OwnerClass.SHARP);
+        usId = owners.classify(us, OwnerClass.SELF);
+        asxId = owners.classify(asx, OwnerClass.ASX);
+    }
+
+    private static OrderBookFixtures.Leaf[] leaves(Random random, List<PublicKey> makers, long low, long high) {
+        OrderBookFixtures.Leaf[] leaves = new OrderBookFixtures.Leaf[ORDERS_PER_SIDE];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = OrderBookFixtures.leaf(
+                    makers.get(random.nextInt(makers.size())),
+                    low + random.nextInt((int) (high - low)),
+                    1 + random.nextInt(50_000),
+                    i
+            );
+        }
+        return leaves;
+    }
+
+    @Benchmark
+    public float streams() {
+        List<Order> bidOrders = ImmutableList.copyOf(bidOrderBook.getOrders());
+        List<Order> askOrders = ImmutableList.copyOf(askOrderBook.getOrders());
+        Optional<Order> topOfBookFish = askOrders.stream()
+                .filter(order -> fish.contains(order.getOwner()))
+                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+        float bestBid = bidOrders.stream()
+                .filter(order -> !fish.contains(order.getOwner()))
+                .filter(order -> !order.getOwner().equals(us))
+                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
+                .map(Order::getFloatPrice)
+                .orElse(0f);
+        float bestAsk = askOrders.stream()
+                .filter(order -> !fish.contains(order.getOwner()))
+                .filter(order -> !order.getOwner().equals(us))
+                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()))
+                .map(Order::getFloatPrice)
+                .orElse(0f);
+        boolean ourBid = bidOrders.stream().anyMatch(order -> order.getOwner().equals(us));
+        boolean ourAsk = askOrders.stream().anyMatch(order -> order.getOwner().equals(us));
+        float asxSize = 0;
+        for (Order bidOrder : bidOrders) {
+            if (bidOrder.getOwner().equals(asx) && bidOrder.getFloatPrice() >= bestBid) {
+                asxSize += bidOrder.getFloatQuantity();
+            }
+        }
+        Order ourCurrentBid = null;
+        for (Order bidOrder : bidOrders) {
+            if (bidOrder.getOwner().equals(us)) {
+                if (ourCurrentBid == null || bidOrder.getFloatPrice() >= ourCurrentBid.getFloatPrice()) {
+                    ourCurrentBid = bidOrder;
+                }
+            }
+        }
+        Optional<Order> sharpAboveBid = bidOrders.stream()
+                .filter(order -> order.getFloatPrice() >= bestBid)
+                .filter(order -> !order.getOwner().equals(us))
+                .filter(order -> sharps.contains(order.getOwner()))
+                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+        Optional<Order> sharpBelowAsk = askOrders.stream()
+                .filter(order -> order.getFloatPrice() < bestAsk)
+                .filter(order -> !order.getOwner().equals(us))
+                .filter(order -> sharps.contains(order.getOwner()))
+                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+
+        return bestBid + bestAsk + asxSize + (ourBid ? 1 : 0) + (ourAsk ? 1 : 0)
+                + topOfBookFish.map(Order::getFloatPrice).orElse(0f)
+                + (ourCurrentBid != null ? ourCurrentBid.getFloatPrice() : 0f)
+                + sharpAboveBid.map(Order::getFloatPrice).orElse(0f)
+                + sharpBelowAsk.map(Order::getFloatPrice).orElse(0f);
+    }
+
+    @Benchmark
+    public float snapshot() {
+        bidSnapshot.decode(bidOrderBook);
+        askSnapshot.decode(askOrderBook);
+        int topOfBookFish = askSnapshot.bestIn(OwnerClass.FISH);
+        int bestBidIndex = bidSnapshot.bestNotIn(OwnerClass.FISH | OwnerClass.SELF);
+        int bestAskIndex = askSnapshot.bestNotIn(OwnerClass.FISH | OwnerClass.SELF);
+        float bestBid = bestBidIndex != BookSnapshot.NONE ? bidSnapshot.price(bestBidIndex) : 0f;
+        float bestAsk = bestAskIndex != BookSnapshot.NONE ? askSnapshot.price(bestAskIndex) : 0f;
+        boolean ourBid = bidSnapshot.hasOrders(usId);
+        boolean ourAsk = askSnapshot.hasOrders(usId);
+        float asxSize = 0;
+        for (int i = bidSnapshot.bestOf(asxId); i != BookSnapshot.NONE; i = bidSnapshot.nextOfSameOwner(i)) {
+            if (bidSnapshot.price(i) >= bestBid) {
+                asxSize += bidSnapshot.quantity(i);
+            }
+        }
+        int ourCurrentBid = bidSnapshot.bestOf(usId);
+        int sharpAboveBid = bidSnapshot.lastIn(OwnerClass.SHARP, bidSnapshot.countAtOrBetter(bestBid));
+        int sharpBelowAsk = askSnapshot.lastIn(OwnerClass.SHARP, askSnapshot.countBetter(bestAsk));
+
+        return bestBid + bestAsk + asxSize + (ourBid ? 1 : 0) + (ourAsk ? 1 : 0)
+                + (topOfBookFish != BookSnapshot.NONE ? askSnapshot.price(topOfBookFish) : 0f)
+                + (ourCurrentBid != BookSnapshot.NONE ? bidSnapshot.price(ourCurrentBid) : 0f)
+                + (sharpAboveBid != BookSnapshot.NONE ? bidSnapshot.price(sharpAboveBid) : 0f)
+                + (sharpBelowAsk != BookSnapshot.NONE ? askSnapshot.price(sharpBelowAsk) : 0f);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(BookSnapshotBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,178 @@
+package com.mmorrell.book;
+
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.serum.model.Order;
+import com.mmorrell.serum.model.OrderBook;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookSnapshotTest {
+
+    private static final PublicKey US = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+    private static final PublicKey FISH = new PublicKey("D2ibD81iWxrwDYhKq6ZRDrWFLM675MH8mzY5uPUT5FoS");
+    private static final PublicKey SHARP = new PublicKey("D8nvp2VbmnMjk7pgAjvHbmwKG5ZDmGAJpUcgr4ia95s9");
+    private static final PublicKey OTHER = new PublicKey("5Di65JsuLU7n8RLZBPhWwHyxVTHM1feLXZnX6VjGpG7S");
+
+    private final OrderBookFixtures.Leaf[] leaves = {
+            leaf(OTHER, 25_040, 1_000, 1),
+            leaf(US, 25_060, 2_000, 2),
+            leaf(FISH, 25_100, 500, 3),
+            leaf(SHARP, 25_080, 3_000, 4),
+            leaf(OTHER, 25_070, 1_500, 5),
+            leaf(US, 25_020, 2_000, 6),
+            leaf(SHARP, 25_050, 1_000, 7)
+    };
+
+    @Test
+    public void rawAndParsedDecodeAgreeWithOrderList() {
+        OrderBook orderBook = OrderBookFixtures.orderBook(leaves);
+        OwnerIndex owners = new OwnerIndex();
+        BookSnapshot parsed = new BookSnapshot(true, owners);
+        BookSnapshot raw = new BookSnapshot(true, owners);
+        parsed.decode(orderBook);
+        raw.decode(OrderBookFixtures.slab(leaves), OrderBookFixtures.BASE_DECIMALS, OrderBookFixtures.QUOTE_DECIMALS,
+                OrderBookFixtures.BASE_LOT_SIZE, OrderBookFixtures.QUOTE_LOT_SIZE);
+
+        List<Order> orders = orderBook.getOrders();
+        orders.sort((o1, o2) -> Float.compare(o2.getFloatPrice(), o1.getFloatPrice()));
+        assertEquals(orders.size(), parsed.size());
+        assertEquals(orders.size(), raw.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(orders.get(i).getFloatPrice(), parsed.price(i));
+            assertEquals(orders.get(i).getFloatQuantity(), parsed.quantity(i));
+            assertEquals(parsed.priceLots(i), raw.priceLots(i));
+            assertEquals(parsed.price(i), raw.price(i));
+            assertEquals(parsed.quantity(i), raw.quantity(i));
+            assertEquals(parsed.owner(i), raw.owner(i));
+            if (i > 0) {
+                assertTrue(parsed.price(i - 1) >= parsed.price(i), "bids sorted best first");
+            }
+        }
+
+        Order bestBid = orderBook.getBestBid();
+        assertEquals(bestBid.getFloatPrice(), parsed.price(parsed.best()));
+        assertEquals(bestBid.getFloatQuantity(), parsed.quantity(parsed.best()));
+    }
+
+    @Test
+    public void ownerQueriesMatchStreamFilters() {
+        OrderBook orderBook = OrderBookFixtures.orderBook(leaves);
+        List<Order> orders = orderBook.getOrders();
+        OwnerIndex owners = new OwnerIndex();
+        int us = owners.classify(US, OwnerClass.SELF);
+        owners.classify(List.of(FISH), OwnerClass.FISH);
+        owners.classify(List.of(SHARP), OwnerClass.SHARP);
+        BookSnapshot bids = new BookSnapshot(true, owners);
+        bids.decode(orderBook);
+
+        Optional<Order> bestNotFish = orders.stream()
+                .filter(order -> !order.getOwner().equals(FISH))
+                .filter(order -> !order.getOwner().equals(US))
+                .max((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+        assertEquals(bestNotFish.get().getFloatPrice(), bids.price(bids.bestNotIn(OwnerClass.FISH | OwnerClass.SELF)));
+        assertEquals(25.1f, bids.price(bids.bestIn(OwnerClass.FISH)), 0.0001f);
+
+        assertTrue(bids.hasOrders(us));
+        assertEquals(2, bids.countOf(us));
+        int ourBest = bids.bestOf(us);
+        assertEquals(25.06f, bids.price(ourBest), 0.0001f);
+        assertEquals(25.02f, bids.price(bids.nextOfSameOwner(ourBest)), 0.0001f);
+        assertEquals(BookSnapshot.NONE, bids.nextOfSameOwner(bids.nextOfSameOwner(ourBest)));
+
+        // Lowest sharp bid at or above 25.05
+        float threshold = 25.05f;
+        Optional<Order> sharpAbove = orders.stream()
+                .filter(order -> order.getFloatPrice() >= threshold)
+                .filter(order -> order.getOwner().equals(SHARP))
+                .min((o1, o2) -> Float.compare(o1.getFloatPrice(), o2.getFloatPrice()));
+        assertEquals(sharpAbove.get().getFloatPrice(), bids.price(bids.lastIn(OwnerClass.SHARP, bids.countAtOrBetter(threshold))));
+    }
+
+    @Test
+    public void askQueriesUseAscendingOrder() {
+        OwnerIndex owners = new OwnerIndex();
+        owners.classify(SHARP, OwnerClass.SHARP);
+        BookSnapshot asks = new BookSnapshot(false, owners);
+        asks.decode(OrderBookFixtures.orderBook(leaves));
+
+        assertEquals(25.02f, asks.price(asks.best()), 0.0001f);
+        // Highest sharp ask strictly below 25.08
+        assertEquals(25.05f, asks.price(asks.lastIn(OwnerClass.SHARP, asks.countBetter(25.08f))), 0.0001f);
+        assertEquals(25.08f, asks.price(asks.lastIn(OwnerClass.SHARP, asks.countAtOrBetter(25.08f))), 0.0001f);
+    }
+
+    @Test
+    public void reuseShrinksAndForgetsOwners() {
+        OwnerIndex owners = new OwnerIndex();
+        BookSnapshot bids = new BookSnapshot(true, owners);
+        bids.decode(OrderBookFixtures.orderBook(leaves));
+        int us = owners.find(US);
+        assertTrue(bids.hasOrders(us));
+
+        bids.decode(OrderBookFixtures.orderBook(leaf(OTHER, 25_000, 100, 9)));
+        assertEquals(1, bids.size());
+        assertFalse(bids.hasOrders(us));
+        assertEquals(us, owners.find(US));
+
+        bids.decode(OrderBookFixtures.orderBook());
+        assertEquals(BookSnapshot.NONE, bids.best());
+        assertEquals(BookSnapshot.NONE, bids.bestNotIn(OwnerClass.OTHER));
+
+        // Owners interned through a shared index after this decode have no orders here
+        bids.decode(OrderBookFixtures.orderBook(leaves));
+        byte[] key = new byte[32];
+        int later = BookSnapshot.NONE;
+        for (int i = 0; i < 200; i++) {
+            key[0] = (byte) i;
+            later = owners.intern(key, 0);
+        }
+        assertFalse(bids.hasOrders(later));
+        assertTrue(bids.hasOrders(us));
+    }
+
+    @Test
+    public void ownerClassesAreTaggedAtDecode() {
+        OwnerIndex owners = new OwnerIndex();
+        owners.classify(SHARP, OwnerClass.SHARP | OwnerClass.ASX);
+        BookSnapshot bids = new BookSnapshot(true, owners);
+        bids.decode(OrderBookFixtures.orderBook(leaves));
+
+        int sharpBest = bids.bestIn(OwnerClass.ASX);
+        assertEquals(SHARP, bids.owner(sharpBest));
+        assertEquals(OwnerClass.SHARP | OwnerClass.ASX, bids.ownerClass(sharpBest));
+        assertEquals(bids.bestOf(owners.find(SHARP)), sharpBest);
+        assertEquals(OwnerClass.OTHER, bids.ownerClass(bids.best()));
+
+        // Owners classified after decode are picked up by the next decode
+        owners.classify(FISH, OwnerClass.FISH);
+        assertEquals(OwnerClass.OTHER, bids.ownerClass(bids.best()));
+        bids.decode(OrderBookFixtures.orderBook(leaves));
+        assertEquals(OwnerClass.FISH, bids.ownerClass(bids.best()));
+    }
+
+    @Test
+    public void ownerIndexGrowsPastInitialTable() {
+        OwnerIndex owners = new OwnerIndex();
+        byte[] key = new byte[32];
+        for (int i = 0; i < 1_000; i++) {
+            key[0] = (byte) i;
+            key[31] = (byte) (i >> 8);
+            assertEquals(i, owners.intern(key, 0));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            key[0] = (byte) i;
+            key[31] = (byte) (i >> 8);
+            assertEquals(i, owners.intern(key, 0));
+        }
+        assertEquals(1_000, owners.size());
+        assertEquals(-1, owners.find(US));
+    }
+}
@@ -0,0 +1,87 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.RpcStandIn;
+import org.bitcoinj.core.Base58;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.rpc.RpcClient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link BlockhashProvider} against a local stand-in for the RPC node.
+ */
+public class BlockhashProviderTest {
+
+    private static final String[] HASHES = {
+            "EETubP5AKHgjPAhzPAFcb8BAY1hMH639CWCFTqi3hq1k",
+            "4sGjMW1sUnHzSxGspuhpqLDx6wiyjNtZAMdL4VZHirAn",
+            "9zrUHnA1nCByPksy3aL8tQ47vqdaG2vnFs4HrxgcZj4F"
+    };
+
+    private final AtomicLong slot = new AtomicLong(100);
+    private RpcStandIn node;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn().on("getLatestBlockhash", params -> "{\"context\":{\"slot\":" + slot.get() +
+                "},\"value\":{\"blockhash\":\"" + HASHES[(int) (slot.get() % HASHES.length)] +
+                "\",\"lastValidBlockHeight\":1}}");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        node.close();
+    }
+
+    @Test
+    public void servesCachedBlockhashWithoutRoundTrips() throws Exception {
+        BlockhashProvider provider = new BlockhashProvider(new RpcClient(node.url()), 5, 60_000, 60_000);
+
+        assertEquals(HASHES[1], provider.getBlockhash());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(HASHES[1], Base58.encode(provider.getBlockhashBytes()));
+        }
+        assertEquals(1, node.calls("getLatestBlockhash"));
+        assertEquals(11, provider.getServedCount());
+        assertEquals(1, provider.getStaleFetchCount());
+    }
+
+    @Test
+    public void refreshesInTheBackgroundOnceSlotsAdvance() throws Exception {
+        BlockhashProvider provider = new BlockhashProvider(new RpcClient(node.url()), 5, 60_000, 60_000);
+        provider.getBlockhash();
+
+        slot.set(104);
+        provider.onSlot(104);
+        Thread.sleep(100);
+        assertEquals(1, node.calls("getLatestBlockhash"));
+
+        slot.set(105);
+        provider.onSlot(105);
+        for (int i = 0; i < 50 && node.calls("getLatestBlockhash") < 2; i++) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(50);
+        assertEquals(HASHES[0], provider.getBlockhash());
+        assertEquals(2, node.calls("getLatestBlockhash"));
+        provider.stop();
+    }
+
+    @Test
+    public void neverServesStaleBlockhash() throws Exception {
+        BlockhashProvider provider = new BlockhashProvider(new RpcClient(node.url()), 5, 60_000, 50);
+        provider.getBlockhash();
+
+        slot.set(102);
+        Thread.sleep(80);
+        assertEquals(HASHES[0], provider.getBlockhash());
+        assertEquals(2, node.calls("getLatestBlockhash"));
+        assertEquals(2, provider.getStaleFetchCount());
+        assertTrue(provider.getMaxServedAgeMs() < 50);
+    }
+}
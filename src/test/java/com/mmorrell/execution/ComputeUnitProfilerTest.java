@@ -0,0 +1,104 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.rpc.BatchingRpcClient;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link ComputeUnitProfiler} against a local stand-in for the RPC node. Sample transactions are a single byte,
+ * the shape's ordinal, and the stand-in simulates them as consuming {@code unitsPerShape} per ordinal plus one.
+ */
+public class ComputeUnitProfilerTest {
+
+    private final PublicKey programId = new Account().getPublicKey();
+    private final PublicKey programDataKey = new Account().getPublicKey();
+    private final AtomicLong deploySlot = new AtomicLong(1_000);
+    private final AtomicLong unitsPerShape = new AtomicLong(20_000);
+    private volatile int failingShape = ComputeUnitProfiler.Shape.HARD_CANCEL.ordinal();
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private ComputeUnitProfiler profiler;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn()
+                .on("getAccountInfo", params -> {
+                    final byte[] data = params.get(0).asText().equals(programId.toBase58()) ?
+                            ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN).putInt(2)
+                                    .put(programDataKey.toByteArray()).array() :
+                            ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(3)
+                                    .putLong(deploySlot.get()).array();
+                    return "{\"context\":{\"slot\":1},\"value\":{\"data\":[\"" +
+                            Base64.getEncoder().encodeToString(data) + "\",\"base64\"]}}";
+                })
+                .on("simulateTransaction", params -> {
+                    final int shape = Base64.getDecoder().decode(params.get(0).asText())[0];
+                    final String err = shape == failingShape ?
+                            "{\"InstructionError\":[4,{\"Custom\":1}]}" : "null";
+                    return "{\"context\":{\"slot\":1},\"value\":{\"err\":" + err + ",\"logs\":[]," +
+                            "\"unitsConsumed\":" + unitsPerShape.get() * (shape + 1) + "}}";
+                });
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        profiler = new ComputeUnitProfiler(batchingRpcClient, programId, 60_000L, 0.1);
+        for (ComputeUnitProfiler.Shape shape : ComputeUnitProfiler.Shape.values()) {
+            profiler.register(shape, 54_800, () -> new byte[]{(byte) shape.ordinal()});
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void limitsFollowSimulatedUnitsWithMargin() throws Exception {
+        assertEquals(54_800, profiler.limitFor(ComputeUnitProfiler.Shape.PLACE));
+
+        profiler.profile();
+
+        assertEquals(22_000, profiler.limitFor(ComputeUnitProfiler.Shape.PLACE));
+        assertEquals(44_000, profiler.limitFor(ComputeUnitProfiler.Shape.CANCEL_PLACE));
+        assertEquals(66_000, profiler.limitFor(ComputeUnitProfiler.Shape.MARKET_SELL));
+        // Failed simulation, keeps its fallback
+        assertEquals(54_800, profiler.limitFor(ComputeUnitProfiler.Shape.HARD_CANCEL));
+        assertEquals(0, profiler.getUnits(ComputeUnitProfiler.Shape.HARD_CANCEL));
+        assertEquals(1, profiler.getSimulationErrorCount());
+        assertEquals(4, node.calls("simulateTransaction"));
+    }
+
+    @Test
+    public void redeployTriggersProfileAgain() throws Exception {
+        failingShape = -1;
+        profiler.refresh();
+        assertEquals(1_000, profiler.getDeploySlot());
+        assertEquals(1, profiler.getProfileCount());
+
+        // Same deploy, everything that can be profiled was
+        profiler.refresh();
+        assertEquals(1, profiler.getProfileCount());
+
+        deploySlot.set(2_000);
+        unitsPerShape.set(30_000);
+        profiler.refresh();
+
+        assertEquals(2, profiler.getProfileCount());
+        assertEquals(2_000, profiler.getDeploySlot());
+        assertEquals(33_000, profiler.limitFor(ComputeUnitProfiler.Shape.PLACE));
+        assertEquals(132_000, profiler.limitFor(ComputeUnitProfiler.Shape.HARD_CANCEL));
+        assertEquals(8, node.calls("simulateTransaction"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.rpc.BatchingRpcClient;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs {@link LandingTracker} against a local stand-in for the RPC node.
+ */
+public class LandingTrackerTest {
+
+    private final Map<String, String> statuses = new ConcurrentHashMap<>();
+    private final Map<String, LandingTracker.Outcome> outcomes = new ConcurrentHashMap<>();
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private TransactionBroadcaster broadcaster;
+    private LandingTracker tracker;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn()
+                .on("sendTransaction", params -> "\"accepted\"")
+                .on("getSignatureStatuses", this::signatureStatuses);
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        broadcaster = new TransactionBroadcaster(List.of(node.url()), new OkHttpClient(), 1, 0.0, 2_000, 60_000);
+        tracker = new LandingTracker(batchingRpcClient, broadcaster, 60_000L, 200L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        broadcaster.stop();
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void outcomesAreDecidedAtConfirmedAndReportedOnce() throws Exception {
+        String landed = send();
+        String failed = send();
+        String unseen = send();
+        statuses.put(landed, "{\"slot\":1,\"confirmations\":1,\"err\":null,\"confirmationStatus\":\"confirmed\"}");
+        statuses.put(failed, "{\"slot\":1,\"confirmations\":null,\"err\":{\"InstructionError\":[2,{\"Custom\":41}]}," +
+                "\"confirmationStatus\":\"finalized\"}");
+
+        tracker.poll();
+        tracker.poll();
+
+        assertEquals(2, node.calls("getSignatureStatuses"));
+        assertEquals(LandingTracker.Outcome.LANDED, outcomes.get(landed));
+        assertEquals(LandingTracker.Outcome.FAILED, outcomes.get(failed));
+        assertNull(outcomes.get(unseen));
+        assertEquals(1, tracker.getLandedCount());
+        assertEquals(1, tracker.getFailedCount());
+        // Landed waits for finalized, the failed one already was
+        assertEquals(2, tracker.getPendingCount());
+        assertEquals(2, tracker.getLatency("confirmed").getCount());
+        assertEquals(1, tracker.getLatency("finalized").getCount());
+        assertEquals(2, broadcaster.getEndpoints().get(0).getLanded());
+    }
+
+    @Test
+    public void unconfirmedSignatureExpires() throws Exception {
+        String signature = send();
+        statuses.put(signature, "{\"slot\":1,\"confirmations\":0,\"err\":null,\"confirmationStatus\":\"processed\"}");
+        tracker.poll();
+        statuses.remove(signature);
+
+        Thread.sleep(300);
+        tracker.poll();
+
+        assertEquals(LandingTracker.Outcome.EXPIRED, outcomes.get(signature));
+        assertEquals(1, tracker.getExpiredCount());
+        assertEquals(0, tracker.getPendingCount());
+        assertEquals(1, tracker.getLatency("processed").getCount());
+        assertEquals(0.0, tracker.getLandingRate());
+    }
+
+    @Test
+    public void signatureStuckAtProcessedExpires() throws Exception {
+        String signature = send();
+        statuses.put(signature, "{\"slot\":1,\"confirmations\":0,\"err\":null,\"confirmationStatus\":\"processed\"}");
+        tracker.poll();
+        assertNull(outcomes.get(signature));
+
+        Thread.sleep(300);
+        tracker.poll();
+
+        assertEquals(LandingTracker.Outcome.EXPIRED, outcomes.get(signature));
+        assertEquals(1, tracker.getExpiredCount());
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    private String send() throws Exception {
+        byte[] transaction = new byte[1 + 64 + 100];
+        ThreadLocalRandom.current().nextBytes(transaction);
+        transaction[0] = 1;
+        String signature = broadcaster.broadcast(transaction);
+        tracker.track(signature, (sent, outcome, slot) -> outcomes.put(sent, outcome));
+        return signature;
+    }
+
+    private String signatureStatuses(JsonNode params) {
+        StringJoiner values = new StringJoiner(",", "[", "]");
+        params.path(0).forEach(signature -> values.add(statuses.getOrDefault(signature.asText(), "null")));
+        return "{\"context\":{\"slot\":1},\"value\":" + values + "}";
+    }
+}
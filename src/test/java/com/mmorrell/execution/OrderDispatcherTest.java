@@ -0,0 +1,81 @@
+package com.mmorrell.execution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderDispatcherTest {
+
+    private static final PublicKey MARKET = new PublicKey("8BnEgHoWFysVcuFFX7QztDmzuH8r5ZFvyP3sYwn1XTh6");
+
+    private final OrderDispatcher dispatcher = new OrderDispatcher(1);
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void newerOrderReplacesTheWaitingOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger built = new AtomicInteger();
+        CompletableFuture<String> first = dispatcher.dispatch(MARKET, true, () -> {
+            awaitQuietly(release);
+            return "first";
+        });
+        CompletableFuture<String> second = dispatcher.dispatch(MARKET, true, () -> {
+            built.incrementAndGet();
+            return "second";
+        });
+        CompletableFuture<String> third = dispatcher.dispatch(MARKET, true, () -> "third");
+
+        assertNull(second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, dispatcher.getInFlight(MARKET, true));
+        release.countDown();
+
+        assertEquals("first", first.get(1, TimeUnit.SECONDS));
+        assertEquals("third", third.get(1, TimeUnit.SECONDS));
+        assertEquals(0, built.get());
+        assertEquals(2, dispatcher.getSentCount());
+        assertEquals(1, dispatcher.getSupersededCount());
+    }
+
+    @Test
+    public void sidesAreLimitedSeparatelyAndFailuresFreeTheSlot() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> bid = dispatcher.dispatch(MARKET, true, () -> {
+            awaitQuietly(release);
+            return "bid";
+        });
+        CompletableFuture<String> failed = dispatcher.dispatch(MARKET, false, () -> {
+            throw new RpcException("rejected");
+        });
+
+        CompletableFuture<String> ask = failed.handle((signature, error) -> error)
+                .thenCompose(error -> dispatcher.dispatch(MARKET, false, () -> "ask"));
+
+        assertEquals("ask", ask.get(1, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+        release.countDown();
+        assertEquals("bid", bid.get(1, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getSupersededCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
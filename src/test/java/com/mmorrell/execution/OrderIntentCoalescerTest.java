@@ -0,0 +1,126 @@
+package com.mmorrell.execution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderIntentCoalescerTest {
+
+    private static final PublicKey MARKET = new PublicKey("8BnEgHoWFysVcuFFX7QztDmzuH8r5ZFvyP3sYwn1XTh6");
+
+    private final OrderDispatcher dispatcher = new OrderDispatcher(2);
+    private final OrderIntentCoalescer coalescer = new OrderIntentCoalescer(dispatcher);
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void repeatOfPendingIntentIsNotSentAgain() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sends = new AtomicInteger();
+        CompletableFuture<String> first = coalescer.submit(bid(25_100, false), () -> {
+            sends.incrementAndGet();
+            awaitQuietly(release);
+            return "first";
+        });
+        CompletableFuture<String> repeat = coalescer.submit(bid(25_100, true), () -> {
+            sends.incrementAndGet();
+            return "repeat";
+        });
+
+        assertSame(first, repeat);
+        release.countDown();
+        assertEquals("first", first.get(1, TimeUnit.SECONDS));
+        assertEquals(1, sends.get());
+        assertEquals(1, coalescer.getCoalescedCount());
+
+        // Once the send finished the strategy may resend the same quote, e.g. if it never showed up on the book
+        assertEquals("again", coalescer.submit(bid(25_100, true), () -> "again").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void newestSentIntentIsAuthoritative() throws Exception {
+        CountDownLatch releaseOlder = new CountDownLatch(1);
+        CompletableFuture<String> older = coalescer.submit(bid(25_100, false), () -> {
+            awaitQuietly(releaseOlder);
+            return "older";
+        });
+        CompletableFuture<String> newer = coalescer.submit(bid(25_200, true), () -> "newer");
+        assertEquals("newer", newer.get(1, TimeUnit.SECONDS));
+
+        // The older send finishing last doesn't take over
+        releaseOlder.countDown();
+        assertEquals("older", older.get(1, TimeUnit.SECONDS));
+        assertEquals("newer", coalescer.getAuthoritativeSignature(MARKET, true));
+        assertEquals(25_200, coalescer.getAuthoritativeIntent(MARKET, true).priceLots());
+        assertTrue(coalescer.isAuthoritative(MARKET, true, "newer"));
+        assertFalse(coalescer.isAuthoritative(MARKET, true, "older"));
+        assertNull(coalescer.getAuthoritativeSignature(MARKET, false));
+    }
+
+    @Test
+    public void waitingIntentIsSupersededByNewerOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        OrderDispatcher single = new OrderDispatcher(1);
+        OrderIntentCoalescer coalescer = new OrderIntentCoalescer(single);
+        CompletableFuture<String> running = coalescer.submit(bid(25_100, false), () -> {
+            awaitQuietly(release);
+            return "running";
+        });
+        CompletableFuture<String> waiting = coalescer.submit(bid(25_200, true), () -> "waiting");
+        CompletableFuture<String> latest = coalescer.submit(bid(25_300, true), () -> "latest");
+
+        assertNull(waiting.get(1, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("running", running.get(1, TimeUnit.SECONDS));
+        assertEquals("latest", latest.get(1, TimeUnit.SECONDS));
+        assertEquals(1, coalescer.getSupersededCount());
+        assertEquals("latest", coalescer.getAuthoritativeSignature(MARKET, true));
+        single.stop();
+    }
+
+    @Test
+    public void droppedIntentIsNeverSent() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        OrderDispatcher single = new OrderDispatcher(1);
+        OrderIntentCoalescer coalescer = new OrderIntentCoalescer(single);
+        CompletableFuture<String> running = coalescer.submit(bid(25_100, false), () -> {
+            awaitQuietly(release);
+            return "running";
+        });
+        CompletableFuture<String> waiting = coalescer.submit(bid(25_200, true), () -> "waiting");
+
+        assertEquals(1, coalescer.drop(MARKET));
+        assertNull(waiting.get(1, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("running", running.get(1, TimeUnit.SECONDS));
+        assertEquals("running", coalescer.getAuthoritativeSignature(MARKET, true));
+        assertEquals(0, coalescer.drop(MARKET));
+        single.stop();
+    }
+
+    private static OrderIntent bid(long priceLots, boolean cancel) {
+        return new OrderIntent(MARKET, true, priceLots, 1_000, cancel);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.Order;
+import com.mmorrell.serum.model.OrderTypeLayout;
+import com.mmorrell.serum.model.SelfTradeBehaviorLayout;
+import com.mmorrell.serum.model.SerumUtils;
+import com.mmorrell.serum.program.SerumProgram;
+import org.bitcoinj.core.Base58;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.core.Transaction;
+import org.p2p.solanaj.programs.ComputeBudgetProgram;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderTransactionTemplateTest {
+
+    private static final int UNITS = 54_800;
+    private static final String BLOCKHASH = "EETubP5AKHgjPAhzPAFcb8BAY1hMH639CWCFTqi3hq1k";
+
+    private final Account owner = new Account();
+    private final PublicKey openOrders = new Account().getPublicKey();
+    private final PublicKey baseWallet = new Account().getPublicKey();
+    private final PublicKey quoteWallet = new Account().getPublicKey();
+    private final Market market = market();
+
+    @Test
+    public void patchedTemplateMatchesFreshlyBuiltTransaction() {
+        for (boolean buy : new boolean[]{true, false}) {
+            for (boolean cancel : new boolean[]{true, false}) {
+                OrderTransactionTemplate template = new OrderTransactionTemplate(owner, market, openOrders,
+                        baseWallet, quoteWallet, order(buy, 1, 1, 1), cancel, UNITS);
+                Order order = order(buy, 25_123, 1_500, 37_684_500L);
+
+                byte[] patched = template.build(order, 113_420, Base58.decode(BLOCKHASH));
+
+                assertTrue(Arrays.equals(expected(order, cancel, 113_420, UNITS), patched),
+                        "buy=" + buy + ", cancel=" + cancel);
+            }
+        }
+    }
+
+    @Test
+    public void patchedComputeLimitMatchesFreshlyBuiltTransaction() {
+        OrderTransactionTemplate template = new OrderTransactionTemplate(owner, market, openOrders, baseWallet,
+                quoteWallet, order(true, 1, 1, 1), true, UNITS);
+        Order order = order(true, 25_123, 1_500, 37_684_500L);
+
+        byte[] patched = template.build(order, 113_420, 31_337, Base58.decode(BLOCKHASH));
+
+        assertTrue(Arrays.equals(expected(order, true, 113_420, 31_337), patched));
+    }
+
+    @Test
+    public void cacheCompilesOneTemplatePerSideAndCancelFlag() {
+        OrderTemplateCache cache = new OrderTemplateCache(owner, UNITS);
+        for (int i = 0; i < 3; i++) {
+            cache.get(market, openOrders, baseWallet, quoteWallet, order(true, 25_000 + i, 1, 1), true);
+            cache.get(market, openOrders, baseWallet, quoteWallet, order(true, 25_000 + i, 1, 1), false);
+            cache.get(market, openOrders, baseWallet, quoteWallet, order(false, 25_000 + i, 1, 1), true);
+        }
+        assertEquals(3, cache.size());
+    }
+
+    private byte[] expected(Order order, boolean cancel, int priorityMicroLamports, int computeUnitLimit) {
+        Transaction transaction = new Transaction();
+        transaction.addInstruction(ComputeBudgetProgram.setComputeUnitPrice(priorityMicroLamports));
+        transaction.addInstruction(ComputeBudgetProgram.setComputeUnitLimit(computeUnitLimit));
+        transaction.addInstruction(SerumProgram.consumeEvents(owner.getPublicKey(), List.of(openOrders), market,
+                baseWallet, quoteWallet));
+        if (cancel) {
+            transaction.addInstruction(SerumProgram.cancelOrderByClientId(market, openOrders, owner.getPublicKey(),
+                    order.getClientOrderId()));
+        }
+        transaction.addInstruction(SerumProgram.consumeEvents(owner.getPublicKey(), List.of(openOrders), market,
+                baseWallet, quoteWallet));
+        transaction.addInstruction(SerumProgram.settleFunds(market, openOrders, owner.getPublicKey(), baseWallet,
+                quoteWallet));
+        transaction.addInstruction(SerumProgram.placeOrder(owner, order.isBuy() ? quoteWallet : baseWallet,
+                openOrders, market, order));
+        transaction.setRecentBlockHash(BLOCKHASH);
+        transaction.sign(owner);
+        return transaction.serialize();
+    }
+
+    private static Order order(boolean buy, long priceLots, long quantityLots, long maxQuoteLots) {
+        return Order.builder()
+                .buy(buy)
+                .clientOrderId(buy ? 113371L : 14201L)
+                .orderTypeLayout(OrderTypeLayout.POST_ONLY)
+                .selfTradeBehaviorLayout(SelfTradeBehaviorLayout.ABORT_TRANSACTION)
+                .price(priceLots)
+                .quantity(quantityLots)
+                .maxQuoteQuantity(maxQuoteLots)
+                .build();
+    }
+
+    private static Market market() {
+        Market market = OrderBookFixtures.market(new Account().getPublicKey(), new Account().getPublicKey());
+        market.setOwnAddress(new Account().getPublicKey());
+        market.setRequestQueue(new Account().getPublicKey());
+        market.setEventQueueKey(new Account().getPublicKey());
+        market.setBaseVault(new Account().getPublicKey());
+        market.setQuoteVault(new Account().getPublicKey());
+        // Settle derives the vault signer, pick a nonce that gives a valid program address
+        for (long nonce = 0; ; nonce++) {
+            market.setVaultSignerNonce(nonce);
+            try {
+                SerumUtils.getVaultSigner(market);
+                return market;
+            } catch (RuntimeException offCurve) {
+                // next nonce
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.mmorrell.execution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.config.OpenBookConfig;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link PriorityFeeModel} against a local stand-in for the RPC node.
+ */
+public class PriorityFeeModelTest {
+
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private PriorityFeeModel model;
+    private Market market;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // 100 slots paying 10_000, 20_000 ... 1_000_000
+        StringJoiner fees = new StringJoiner(",", "[", "]");
+        for (int slot = 1; slot <= 100; slot++) {
+            fees.add("{\"slot\":" + slot + ",\"prioritizationFee\":" + slot * 10_000 + "}");
+        }
+        node = new RpcStandIn().on("getRecentPrioritizationFees", params -> fees.toString());
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        model = new PriorityFeeModel(batchingRpcClient, 60_000L, 0.9);
+        market = OrderBookFixtures.market(new Account().getPublicKey(), new Account().getPublicKey());
+        market.setOwnAddress(new Account().getPublicKey());
+        market.setEventQueueKey(new Account().getPublicKey());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void urgencyClassesBidTheirPercentile() throws Exception {
+        assertEquals(OpenBookConfig.PRIORITY_MICRO_LAMPORTS_DEFAULT,
+                model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE));
+        model.watch(market);
+
+        model.sample();
+
+        assertEquals(500_000, model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE));
+        assertEquals(750_000, model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.REQUOTE));
+        assertEquals(900_000, model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.ADVERSE));
+        assertEquals(1, node.calls("getRecentPrioritizationFees"));
+    }
+
+    @Test
+    public void missedLandingsRaiseOnlyThatClass() throws Exception {
+        model.watch(market);
+        model.sample();
+
+        for (int i = 0; i < 3; i++) {
+            model.onOutcome(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE, false);
+        }
+        int raised = model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE);
+        assertTrue(raised > 500_000, "fee not raised: " + raised);
+        assertTrue(model.getLandingRate(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE) < 0.9);
+        assertEquals(750_000, model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.REQUOTE));
+
+        // Still below target, but a landing isn't a reason to pay more
+        model.onOutcome(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE, true);
+        assertTrue(model.getLandingRate(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE) < 0.9);
+        assertEquals(raised, model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE));
+
+        // Landing comfortably again eases it back down
+        for (int i = 0; i < 100; i++) {
+            model.onOutcome(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE, true);
+        }
+        assertTrue(model.feeFor(market.getOwnAddress(), PriorityFeeModel.Urgency.PASSIVE) < raised);
+    }
+}
@@ -0,0 +1,104 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.feeds.MarketSnapshot;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.SerumUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcClient;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link QuoteCanceller} against a local stand-in for the RPC node.
+ */
+public class QuoteCancellerTest {
+
+    private static final PublicKey OPEN_ORDERS = new PublicKey("4jkDXY6YXt4aLnZNiHCqneCscBZVc74v92861vQfnJhT");
+    private static final PublicKey OTHER = new PublicKey("5Di65JsuLU7n8RLZBPhWwHyxVTHM1feLXZnX6VjGpG7S");
+
+    private final Account owner = new Account();
+    private RpcStandIn node;
+    private QuoteCanceller canceller;
+    private Market market;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn()
+                .on("getLatestBlockhash", params -> "{\"context\":{\"slot\":1},\"value\":{\"blockhash\":" +
+                        "\"EETubP5AKHgjPAhzPAFcb8BAY1hMH639CWCFTqi3hq1k\",\"lastValidBlockHeight\":1}}")
+                .on("sendTransaction", params -> "\"cancelled\"");
+        final RpcClient rpcClient = new RpcClient(node.url());
+        canceller = new QuoteCanceller(rpcClient, new BlockhashProvider(rpcClient, 5, 60_000, 60_000), 200);
+        market = OrderBookFixtures.market(new Account().getPublicKey(), new Account().getPublicKey());
+        market.setOwnAddress(new PublicKey("8BnEgHoWFysVcuFFX7QztDmzuH8r5ZFvyP3sYwn1XTh6"));
+        market.setEventQueueKey(new Account().getPublicKey());
+        market.setRequestQueue(new Account().getPublicKey());
+        market.setBaseVault(new Account().getPublicKey());
+        market.setQuoteVault(new Account().getPublicKey());
+        // Settling derives the vault signer, only some nonces give a valid address
+        for (long nonce = 0; ; nonce++) {
+            market.setVaultSignerNonce(nonce);
+            try {
+                SerumUtils.getVaultSigner(market);
+                break;
+            } catch (RuntimeException invalidSeeds) {
+                // next nonce
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        canceller.stop();
+        node.close();
+    }
+
+    @Test
+    public void cancelsOncePerRetryInterval() throws Exception {
+        final MarketSnapshot book = book(new OrderBookFixtures.Leaf(OPEN_ORDERS, 25_000, 1_000, 1, 113371L));
+
+        assertTrue(cancel(book));
+        assertFalse(cancel(book));
+        awaitSent(1);
+        assertEquals(1, node.calls("sendTransaction"));
+
+        Thread.sleep(250);
+        assertTrue(cancel(book));
+        awaitSent(2);
+        assertEquals(2, node.calls("sendTransaction"));
+    }
+
+    @Test
+    public void nothingToCancelSendsNothing() throws Exception {
+        assertFalse(cancel(book(leaf(OTHER, 25_000, 1_000, 1))));
+
+        // An empty run doesn't use up the interval
+        assertTrue(cancel(book(new OrderBookFixtures.Leaf(OPEN_ORDERS, 25_000, 1_000, 1, 113371L))));
+        awaitSent(1);
+        assertEquals(1, node.calls("sendTransaction"));
+    }
+
+    private boolean cancel(MarketSnapshot book) {
+        return canceller.cancel(market, book, OPEN_ORDERS, owner, new Account().getPublicKey(),
+                new Account().getPublicKey());
+    }
+
+    private static MarketSnapshot book(OrderBookFixtures.Leaf bid) {
+        return new MarketSnapshot(OrderBookFixtures.orderBook(bid), OrderBookFixtures.orderBook(), null, 1, 1, 0, 0);
+    }
+
+    private void awaitSent(long count) throws InterruptedException {
+        for (int i = 0; i < 100 && canceller.getSentCount() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.mmorrell.execution;
+
+import com.mmorrell.RpcStandIn;
+import okhttp3.OkHttpClient;
+import org.bitcoinj.core.Base58;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.rpc.RpcException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link TransactionBroadcaster} against several local stand-ins for RPC nodes.
+ */
+public class TransactionBroadcasterTest {
+
+    private RpcStandIn fast;
+    private RpcStandIn slow;
+    private RpcStandIn rejecting;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fast = new RpcStandIn().on("sendTransaction", params -> "\"accepted\"");
+        slow = new RpcStandIn().on("sendTransaction", params -> "\"accepted\"").delay(1_000);
+        rejecting = new RpcStandIn();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fast.close();
+        slow.close();
+        rejecting.close();
+    }
+
+    @Test
+    public void firstAcceptanceWinsAndEveryEndpointIsTracked() throws Exception {
+        TransactionBroadcaster broadcaster = broadcaster(3, fast, slow, rejecting);
+        byte[] transaction = transaction();
+
+        long start = System.currentTimeMillis();
+        String signature = broadcaster.broadcast(transaction);
+
+        assertTrue(System.currentTimeMillis() - start < 1_000, "waited for the slow endpoint");
+        assertEquals(Base58.encode(Arrays.copyOfRange(transaction, 1, 65)), signature);
+        Thread.sleep(1_200);
+        List<TransactionBroadcaster.Endpoint> endpoints = broadcaster.getEndpoints();
+        assertEquals(1, endpoints.get(0).getAccepted());
+        assertEquals(1, endpoints.get(1).getAccepted());
+        assertTrue(endpoints.get(1).getLatencyMs() >= 1_000);
+        assertEquals(1, endpoints.get(2).getErrors());
+        assertEquals(1, rejecting.calls("sendTransaction"));
+        broadcaster.stop();
+    }
+
+    @Test
+    public void resendOfTheSameSignatureIsDeduplicated() throws Exception {
+        TransactionBroadcaster broadcaster = broadcaster(3, fast, slow, rejecting);
+        byte[] transaction = transaction();
+
+        String signature = broadcaster.broadcast(transaction);
+        assertEquals(signature, broadcaster.broadcast(transaction));
+
+        assertEquals(1, fast.calls("sendTransaction"));
+        assertEquals(1, broadcaster.getDuplicateCount());
+        broadcaster.stop();
+    }
+
+    @Test
+    public void routesAwayFromEndpointsWhoseTransactionsDontLand() throws Exception {
+        RpcStandIn other = new RpcStandIn().on("sendTransaction", params -> "\"accepted\"");
+        TransactionBroadcaster broadcaster = broadcaster(1, fast, other);
+
+        broadcaster.onExpired(broadcaster.broadcast(transaction()));
+        broadcaster.onLanded(broadcaster.broadcast(transaction()));
+        broadcaster.broadcast(transaction());
+
+        assertEquals(1, fast.calls("sendTransaction"));
+        assertEquals(2, other.calls("sendTransaction"));
+        assertEquals(1, broadcaster.getEndpoints().get(1).getLanded());
+        other.close();
+        broadcaster.stop();
+    }
+
+    @Test
+    public void failsWhenEveryEndpointRejects() {
+        TransactionBroadcaster broadcaster = broadcaster(1, rejecting);
+        assertThrows(RpcException.class, () -> broadcaster.broadcast(transaction()));
+        broadcaster.stop();
+    }
+
+    @Test
+    public void rejectedTransactionIsSentAgain() {
+        TransactionBroadcaster broadcaster = broadcaster(1, rejecting);
+        byte[] transaction = transaction();
+
+        assertThrows(RpcException.class, () -> broadcaster.broadcast(transaction));
+        assertThrows(RpcException.class, () -> broadcaster.broadcast(transaction));
+
+        assertEquals(2, rejecting.calls("sendTransaction"));
+        assertEquals(0, broadcaster.getDuplicateCount());
+        broadcaster.stop();
+    }
+
+    private static TransactionBroadcaster broadcaster(int fanOut, RpcStandIn... nodes) {
+        return new TransactionBroadcaster(Arrays.stream(nodes).map(RpcStandIn::url).toList(), new OkHttpClient(),
+                fanOut, 0.0, 2_000, 60_000);
+    }
+
+    private static byte[] transaction() {
+        byte[] transaction = new byte[1 + 64 + 100];
+        ThreadLocalRandom.current().nextBytes(transaction);
+        transaction[0] = 1;
+        return transaction;
+    }
+}
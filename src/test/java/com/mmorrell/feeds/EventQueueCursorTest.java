@@ -0,0 +1,121 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.book.OwnerClass;
+import com.mmorrell.book.OwnerIndex;
+import com.mmorrell.serum.model.Market;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventQueueCursorTest {
+
+    private static final int CAPACITY = 4;
+
+    private final PublicKey self = new Account().getPublicKey();
+    private final PublicKey sharp = new Account().getPublicKey();
+    private final Market market = OrderBookFixtures.market(new Account().getPublicKey(),
+            new Account().getPublicKey());
+    private final List<QueueEvent> events = new ArrayList<>();
+    // Ring contents, by slot
+    private final byte[][] ring = new byte[CAPACITY][];
+    private EventQueueCursor cursor;
+
+    @BeforeEach
+    public void setUp() {
+        market.setOwnAddress(new Account().getPublicKey());
+        OwnerIndex owners = new OwnerIndex();
+        owners.classify(self, OwnerClass.SELF);
+        owners.classify(sharp, OwnerClass.SHARP);
+        cursor = new EventQueueCursor(market, owners);
+    }
+
+    @Test
+    public void onlyEventsPushedSinceLastReadAreReported() {
+        ring[0] = event(EventQueueCursor.FLAG_FILL, self, 0, 0, 0, 1);
+        assertEquals(0, cursor.advance(queue(0, 1, 1), 10, events::add));
+        assertEquals(1, cursor.getSeqNum());
+
+        // Our bid filled as maker: paid $150 (less a $0.03 rebate) for 1 SOL; the sharp took it
+        ring[1] = event(EventQueueCursor.FLAG_FILL | EventQueueCursor.FLAG_BID | EventQueueCursor.FLAG_MAKER, self,
+                1_000_000_000L, 149_970_000L, 30_000L, 113371L);
+        ring[2] = event(EventQueueCursor.FLAG_FILL, sharp, 149_940_000L, 1_000_000_000L, 60_000L, 7L);
+        assertEquals(2, cursor.advance(queue(0, 3, 3), 11, events::add));
+        // Nothing new
+        assertEquals(0, cursor.advance(queue(1, 2, 3), 12, events::add));
+
+        assertEquals(2, events.size());
+        QueueEvent ours = events.get(0);
+        assertTrue(ours.fill() && ours.bid() && ours.maker() && ours.isSelf());
+        assertEquals(1, ours.seqNum());
+        assertEquals(11, ours.slot());
+        assertEquals(113371L, ours.clientOrderId());
+        assertEquals(150.0, ours.price(), 1e-9);
+        assertEquals(1.0, ours.quantity(), 1e-9);
+        assertEquals(market.getOwnAddress(), ours.market());
+
+        QueueEvent theirs = events.get(1);
+        assertFalse(theirs.bid() || theirs.maker() || theirs.isSelf());
+        assertTrue(theirs.isOwnerIn(OwnerClass.SHARP));
+        assertEquals(sharp, theirs.owner());
+        assertEquals(150.0, theirs.price(), 1e-9);
+        assertEquals(2, theirs.seqNum());
+    }
+
+    @Test
+    public void readsAcrossTheEndOfTheRingAndCountsCrankedEvents() {
+        cursor.advance(queue(0, 0, 2), 10, events::add);
+
+        // Seq 2..7 pushed, slots 2, 3, 0, 1, 2, 3; the crank already removed all but the last three
+        ring[1] = event(EventQueueCursor.FLAG_OUT | EventQueueCursor.FLAG_BID, self, 5_000_000L, 0, 0, 5);
+        ring[2] = event(EventQueueCursor.FLAG_OUT, sharp, 0, 0, 0, 6);
+        ring[3] = event(EventQueueCursor.FLAG_OUT, self, 0, 0, 0, 7);
+        assertEquals(3, cursor.advance(queue(5, 3, 8), 11, events::add));
+
+        assertEquals(List.of(5L, 6L, 7L), events.stream().map(QueueEvent::clientOrderId).toList());
+        assertEquals(List.of(5L, 6L, 7L), events.stream().map(QueueEvent::seqNum).toList());
+        assertTrue(events.get(0).isOut());
+        assertEquals(5_000_000L, events.get(0).nativeQuantityReleased());
+        assertEquals(0, events.get(0).quantity());
+        assertEquals(3, cursor.getMissedCount());
+    }
+
+    private byte[] queue(long head, long count, long seqNum) {
+        ByteBuffer buffer = ByteBuffer.allocate(37 + CAPACITY * EventQueueCursor.EVENT_SIZE + 7)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("serum".getBytes());
+        buffer.putLong(0x11); // account flags: initialized, event queue
+        buffer.putLong(head);
+        buffer.putLong(count);
+        buffer.putLong(seqNum);
+        for (byte[] event : ring) {
+            buffer.put(event == null ? new byte[EventQueueCursor.EVENT_SIZE] : event);
+        }
+        buffer.put("padding".getBytes());
+        return buffer.array();
+    }
+
+    private static byte[] event(int flags, PublicKey owner, long released, long paid, long feeOrRebate,
+                                long clientOrderId) {
+        ByteBuffer buffer = ByteBuffer.allocate(EventQueueCursor.EVENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) flags);
+        buffer.put(new byte[7]); // owner slot, fee tier, padding
+        buffer.putLong(released);
+        buffer.putLong(paid);
+        buffer.putLong(feeOrRebate);
+        buffer.put(new byte[16]); // order id
+        buffer.put(owner.toByteArray());
+        buffer.putLong(clientOrderId);
+        return buffer.array();
+    }
+}
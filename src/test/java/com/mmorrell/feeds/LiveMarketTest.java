@@ -0,0 +1,74 @@
+package com.mmorrell.feeds;
+
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.OrderBook;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LiveMarketTest {
+
+    private static final PublicKey BIDS = new PublicKey("14ivtgssEBoBjuZJtSAPKYgpUK7DmnSwuPMqJoVTSgKJ");
+    private static final PublicKey ASKS = new PublicKey("CEQdAFKdycHugujQg9k2wbmxjcpdYZyVLfV9WerTnafJ");
+    private static final PublicKey MAKER = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+
+    @Test
+    public void olderUpdatesAreDropped() {
+        Market market = OrderBookFixtures.market(BIDS, ASKS);
+        LiveMarket liveMarket = new LiveMarket(market);
+        OrderBook newer = OrderBookFixtures.orderBook(leaf(MAKER, 25_100, 1_000, 2));
+        OrderBook older = OrderBookFixtures.orderBook(leaf(MAKER, 25_000, 1_000, 1));
+
+        assertTrue(liveMarket.publishBids(newer, 101));
+        assertFalse(liveMarket.publishBids(older, 100));
+        // Sides are stamped separately, an older slot is still news for the other side
+        assertTrue(liveMarket.publishAsks(older, 100));
+        // Same slot is accepted, an account can change more than once per slot
+        assertTrue(liveMarket.publishBids(newer, 101));
+
+        assertSame(newer, liveMarket.snapshot().bids());
+        assertSame(newer, market.getBidOrderBook());
+        assertEquals(1, liveMarket.getStaleUpdateCount());
+        assertEquals(100, liveMarket.snapshot().slot());
+        assertEquals(5, liveMarket.snapshot().ageSlots(105));
+    }
+
+    @Test
+    public void heldSnapshotIsNotAffectedByLaterUpdates() {
+        LiveMarket liveMarket = new LiveMarket(OrderBookFixtures.market(BIDS, ASKS));
+        OrderBook bids = OrderBookFixtures.orderBook(leaf(MAKER, 25_100, 1_000, 1));
+        OrderBook asks = OrderBookFixtures.orderBook(leaf(MAKER, 25_200, 1_000, 2));
+        liveMarket.publish(bids, asks, null, 100);
+
+        MarketSnapshot held = liveMarket.snapshot();
+        liveMarket.publishBids(OrderBookFixtures.orderBook(leaf(MAKER, 25_150, 1_000, 3)), 101);
+
+        assertSame(bids, held.bids());
+        assertSame(asks, held.asks());
+        assertEquals(100, held.bidsSlot());
+        assertEquals(101, liveMarket.snapshot().bidsSlot());
+        assertSame(asks, liveMarket.snapshot().asks());
+    }
+
+    @Test
+    public void ageFollowsTheStalerSide() throws Exception {
+        LiveMarket liveMarket = new LiveMarket(OrderBookFixtures.market(BIDS, ASKS));
+        liveMarket.publish(OrderBookFixtures.orderBook(leaf(MAKER, 25_100, 1_000, 1)),
+                OrderBookFixtures.orderBook(leaf(MAKER, 25_200, 1_000, 2)), null, 100);
+        final long asksPublishedAtMs = liveMarket.snapshot().asksPublishedAtMs();
+
+        Thread.sleep(20);
+        liveMarket.publishBids(OrderBookFixtures.orderBook(leaf(MAKER, 25_150, 1_000, 3)), 101);
+
+        final MarketSnapshot snapshot = liveMarket.snapshot();
+        assertTrue(snapshot.bidsPublishedAtMs() > asksPublishedAtMs);
+        assertEquals(asksPublishedAtMs, snapshot.asksPublishedAtMs());
+        assertEquals(1_000, snapshot.ageMs(asksPublishedAtMs + 1_000));
+    }
+}
@@ -0,0 +1,114 @@
+package com.mmorrell.feeds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs {@link MarketDataHub} against a local stand-in for the RPC node.
+ */
+public class MarketDataHubTest {
+
+    private static final PublicKey MAKER = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+    private static final long SLOT = 250_000_123L;
+
+    private final Map<String, byte[]> accounts = new ConcurrentHashMap<>();
+    // Every call is read one slot later than the previous one
+    private final AtomicLong callSlots = new AtomicLong();
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private MarketDataHub marketDataHub;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn().on("getMultipleAccounts", this::multipleAccounts);
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        marketDataHub = new MarketDataHub(batchingRpcClient, 60_000L, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void refreshesEveryMarketWithOneCall() throws Exception {
+        Market first = market(25_100);
+        Market second = market(1_250);
+        AtomicLong firstSlot = new AtomicLong();
+        marketDataHub.subscribe(new LiveMarket(first), false, () -> true, (market, slot) -> firstSlot.set(slot));
+        marketDataHub.subscribe(new LiveMarket(second));
+
+        marketDataHub.refresh();
+
+        assertEquals(1, node.httpRequests());
+        assertEquals(1, node.calls("getMultipleAccounts"));
+        assertEquals(SLOT, firstSlot.get());
+        assertEquals(25.1f, first.getBidOrderBook().getBestBid().getFloatPrice(), 0.0001f);
+        assertEquals(25.2f, first.getAskOrderBook().getBestAsk().getFloatPrice(), 0.0001f);
+        assertEquals(1.25f, second.getBidOrderBook().getBestBid().getFloatPrice(), 0.0001f);
+    }
+
+    @Test
+    public void marketsSplitOverCallsKeepTheirCallsSlot() throws Exception {
+        MarketDataHub smallCalls = new MarketDataHub(batchingRpcClient, 60_000L, 4);
+        AtomicLong firstSlot = new AtomicLong();
+        AtomicLong secondSlot = new AtomicLong();
+        smallCalls.subscribe(new LiveMarket(market(25_100)), false, () -> true, (market, slot) -> firstSlot.set(slot));
+        smallCalls.subscribe(new LiveMarket(market(1_250)), false, () -> true, (market, slot) -> secondSlot.set(slot));
+
+        smallCalls.refresh();
+
+        // Room is kept for an event queue, so the second market goes to the next call of the same batch
+        assertEquals(1, node.httpRequests());
+        assertEquals(2, node.calls("getMultipleAccounts"));
+        assertEquals(SLOT, firstSlot.get());
+        assertEquals(SLOT + 1, secondSlot.get());
+    }
+
+    @Test
+    public void inactiveMarketsAreNotRead() throws Exception {
+        Market market = market(25_100);
+        marketDataHub.subscribe(new LiveMarket(market), false, () -> false, (updated, slot) -> { });
+
+        marketDataHub.refresh();
+
+        assertEquals(0, node.httpRequests());
+        assertNull(market.getBidOrderBook());
+    }
+
+    private Market market(long bidPriceLots) {
+        Market market = OrderBookFixtures.market(new Account().getPublicKey(), new Account().getPublicKey());
+        market.setOwnAddress(new Account().getPublicKey());
+        accounts.put(market.getBids().toBase58(), OrderBookFixtures.slab(leaf(MAKER, bidPriceLots, 1_000, 1)));
+        accounts.put(market.getAsks().toBase58(), OrderBookFixtures.slab(leaf(MAKER, bidPriceLots + 100, 1_000, 2)));
+        return market;
+    }
+
+    private String multipleAccounts(JsonNode params) {
+        StringJoiner values = new StringJoiner(",", "[", "]");
+        params.path(0).forEach(key -> values.add("{\"data\":[\"" +
+                Base64.getEncoder().encodeToString(accounts.get(key.asText())) + "\",\"base64\"]}"));
+        return "{\"context\":{\"slot\":" + (SLOT + callSlots.getAndIncrement()) + "},\"value\":" + values + "}";
+    }
+}
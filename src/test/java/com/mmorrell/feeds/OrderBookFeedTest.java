@@ -0,0 +1,226 @@
+package com.mmorrell.feeds;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.serum.model.Market;
+import com.mmorrell.serum.model.Order;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.net.InetSocketAddress;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.mmorrell.OrderBookFixtures.leaf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link OrderBookFeed} against a local websocket stand-in for the RPC node.
+ */
+@Slf4j
+public class OrderBookFeedTest {
+
+    private static final PublicKey BIDS = new PublicKey("14ivtgssEBoBjuZJtSAPKYgpUK7DmnSwuPMqJoVTSgKJ");
+    private static final PublicKey ASKS = new PublicKey("CEQdAFKdycHugujQg9k2wbmxjcpdYZyVLfV9WerTnafJ");
+    private static final PublicKey MAKER = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+    private static final PublicKey ORACLE = new PublicKey("H6ARHf6YXhGYeQfUzQNGk6rDNnLBQKrenN712K4AQJEG");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StandInNode node;
+    private OrderBookFeed orderBookFeed;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        node = new StandInNode();
+        node.start();
+        assertTrue(node.started.await(5, TimeUnit.SECONDS));
+        orderBookFeed = new OrderBookFeed(new OkHttpClient(), objectMapper, "ws://127.0.0.1:" + node.getPort());
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        orderBookFeed.close();
+        node.stop(1000);
+    }
+
+    @Test
+    public void decodesAccountNotificationsIntoMarket() throws Exception {
+        Market market = OrderBookFixtures.market(BIDS, ASKS);
+        CountDownLatch bidUpdate = new CountDownLatch(1);
+        AtomicLong updateSlot = new AtomicLong();
+        AtomicBoolean bidSide = new AtomicBoolean();
+
+        orderBookFeed.subscribe(new LiveMarket(market), (updatedMarket, bids, slot) -> {
+            bidSide.set(bids);
+            updateSlot.set(slot);
+            bidUpdate.countDown();
+        });
+        assertTrue(node.subscribed.await(5, TimeUnit.SECONDS));
+        waitUntilStreaming();
+
+        node.notifyAccount(BIDS, 250_000_123L, OrderBookFixtures.slab(
+                leaf(MAKER, 25_100, 1_500, 7),
+                leaf(MAKER, 25_050, 2_000, 8)
+        ));
+
+        assertTrue(bidUpdate.await(5, TimeUnit.SECONDS));
+        assertTrue(bidSide.get());
+        assertEquals(250_000_123L, updateSlot.get());
+
+        Order bestBid = market.getBidOrderBook().getBestBid();
+        assertEquals(25.1f, bestBid.getFloatPrice(), 0.0001f);
+        assertEquals(1.5f, bestBid.getFloatQuantity(), 0.0001f);
+        assertEquals(MAKER, bestBid.getOwner());
+    }
+
+    @Test
+    public void resubscribesAfterDisconnect() throws Exception {
+        Market market = OrderBookFixtures.market(BIDS, ASKS);
+        orderBookFeed.subscribe(new LiveMarket(market), (updatedMarket, bids, slot) -> { });
+        assertTrue(node.subscribed.await(5, TimeUnit.SECONDS));
+        waitUntilStreaming();
+
+        node.subscribed = new CountDownLatch(2);
+        node.getConnections().forEach(WebSocket::close);
+
+        assertTrue(node.subscribed.await(10, TimeUnit.SECONDS));
+        waitUntilStreaming();
+    }
+
+    @Test
+    public void passesOtherAccountsThroughUndecoded() throws Exception {
+        Market market = OrderBookFixtures.market(BIDS, ASKS);
+        CountDownLatch oracleUpdate = new CountDownLatch(1);
+        AtomicReference<byte[]> oracleData = new AtomicReference<>();
+        node.subscribed = new CountDownLatch(3);
+        orderBookFeed.subscribe(new LiveMarket(market), (updatedMarket, bids, slot) -> { });
+        orderBookFeed.subscribe(ORACLE, (data, slot) -> {
+            oracleData.set(data);
+            oracleUpdate.countDown();
+        });
+        assertTrue(node.subscribed.await(5, TimeUnit.SECONDS));
+        waitUntilStreaming();
+        assertTrue(orderBookFeed.isStreaming(ORACLE));
+
+        node.notifyAccount(ORACLE, 250_000_124L, new byte[]{1, 2, 3});
+
+        assertTrue(oracleUpdate.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{1, 2, 3}, oracleData.get());
+    }
+
+    @Test
+    public void marketStreamsWhileOtherAccountsWait() throws Exception {
+        LiveMarket market = new LiveMarket(OrderBookFixtures.market(BIDS, ASKS));
+        node.subscribed = new CountDownLatch(3);
+        node.ignored.add(ORACLE.toBase58());
+        orderBookFeed.subscribe(market, (updatedMarket, bids, slot) -> { });
+        orderBookFeed.subscribe(ORACLE, (data, slot) -> { });
+        assertTrue(node.subscribed.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!orderBookFeed.isStreaming(market) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(orderBookFeed.isStreaming(market));
+        assertFalse(orderBookFeed.isStreaming(ORACLE));
+        assertFalse(orderBookFeed.isStreaming());
+    }
+
+    private void waitUntilStreaming() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!orderBookFeed.isStreaming() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(orderBookFeed.isStreaming());
+    }
+
+    private class StandInNode extends WebSocketServer {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final Map<String, Long> subscriptionIds = new ConcurrentHashMap<>();
+        private final AtomicLong nextSubscriptionId = new AtomicLong(100);
+        private volatile CountDownLatch subscribed = new CountDownLatch(2);
+        // Subscriptions to these accounts are never acknowledged
+        private final Set<String> ignored = ConcurrentHashMap.newKeySet();
+
+        private StandInNode() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+        }
+
+        private void notifyAccount(PublicKey account, long slot, byte[] data) throws Exception {
+            Map<String, Object> notification = Map.of(
+                    "jsonrpc", "2.0",
+                    "method", "accountNotification",
+                    "params", Map.of(
+                            "subscription", subscriptionIds.get(account.toBase58()),
+                            "result", Map.of(
+                                    "context", Map.of("slot", slot),
+                                    "value", Map.of("data", new String[]{
+                                            Base64.getEncoder().encodeToString(data), "base64"
+                                    })
+                            )
+                    )
+            );
+            broadcast(objectMapper.writeValueAsString(notification));
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            try {
+                JsonNode request = objectMapper.readTree(message);
+                assertEquals("accountSubscribe", request.get("method").asText());
+                assertEquals("base64", request.get("params").get(1).get("encoding").asText());
+                if (ignored.contains(request.get("params").get(0).asText())) {
+                    subscribed.countDown();
+                    return;
+                }
+
+                long subscriptionId = nextSubscriptionId.incrementAndGet();
+                subscriptionIds.put(request.get("params").get(0).asText(), subscriptionId);
+                conn.send(objectMapper.writeValueAsString(Map.of(
+                        "jsonrpc", "2.0",
+                        "result", subscriptionId,
+                        "id", request.get("id").asLong()
+                )));
+                subscribed.countDown();
+            } catch (Exception ex) {
+                log.error("Stand-in node error: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            log.error("Stand-in node error: " + ex.getMessage());
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
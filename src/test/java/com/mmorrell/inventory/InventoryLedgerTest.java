@@ -0,0 +1,171 @@
+package com.mmorrell.inventory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.OrderBookFixtures;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.book.OwnerClass;
+import com.mmorrell.feeds.QueueEvent;
+import com.mmorrell.rpc.BatchingRpcClient;
+import com.mmorrell.serum.model.Market;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link InventoryLedger} against a local stand-in for the RPC node, at slot 100. We hold 2 SOL and $300 in the
+ * wallets, and the open orders account holds 1.5 SOL (1 of it in an ask) and $150 in a bid. The bid filled for
+ * 1 SOL as maker, but the event is still in the queue at sequence number 4.
+ */
+public class InventoryLedgerTest {
+
+    private static final int EVENT_SIZE = 88;
+    private static final long SOL = 1_000_000_000L;
+    private static final long USDC = 1_000_000L;
+
+    private final PublicKey openOrders = new Account().getPublicKey();
+    private final PublicKey baseWallet = new Account().getPublicKey();
+    private final PublicKey quoteWallet = new Account().getPublicKey();
+    private final Market market = OrderBookFixtures.market(new Account().getPublicKey(),
+            new Account().getPublicKey());
+    private final List<Inventory> published = new ArrayList<>();
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        market.setOwnAddress(new Account().getPublicKey());
+        market.setEventQueueKey(new Account().getPublicKey());
+        final String accounts = "[" + account(tokenAccount(2 * SOL)) + "," + account(tokenAccount(300 * USDC)) +
+                "," + account(openOrders(SOL / 2, 3 * SOL / 2, 0, 150 * USDC)) + "," +
+                account(eventQueue(0, 1, 5, event(1 | 4 | 8, openOrders, SOL, 149_970_000L))) + "]";
+        node = new RpcStandIn()
+                .on("getMultipleAccounts", params -> "{\"context\":{\"slot\":100},\"value\":" + accounts + "}");
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        ledger = new InventoryLedger(batchingRpcClient, 60_000L);
+        ledger.track(market, openOrders, baseWallet, quoteWallet, published::add);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void reconcileAppliesOurEventsTheCrankHasNotSettled() throws Exception {
+        assertNull(ledger.get(market.getOwnAddress()));
+
+        ledger.reconcile();
+
+        final Inventory inventory = ledger.get(market.getOwnAddress());
+        assertEquals(List.of(inventory), published);
+        assertEquals(9 * SOL / 2, inventory.baseTotal());
+        assertEquals(SOL, inventory.baseLocked());
+        assertEquals(300_030_000L, inventory.quoteTotal());
+        // The maker's rebate stays behind in the bid until the crank settles it
+        assertEquals(30_000L, inventory.quoteLocked());
+        assertEquals(3.5, inventory.baseFreeAmount(), 1e-9);
+        assertEquals(300.0, inventory.quoteFreeAmount(), 1e-9);
+        assertEquals(100, inventory.slot());
+        assertEquals(5, inventory.seqNum());
+    }
+
+    @Test
+    public void feedEventsCountOnceAfterReconciliation() throws Exception {
+        final QueueEvent askFill = fill(5, false, openOrders, SOL, 150_030_000L);
+        assertFalse(ledger.onEvent(askFill));
+
+        ledger.reconcile();
+        // Already part of the reconciliation, and someone else's fill
+        assertFalse(ledger.onEvent(fill(4, true, openOrders, SOL, 149_970_000L)));
+        assertFalse(ledger.onEvent(fill(5, false, new Account().getPublicKey(), SOL, 150_030_000L)));
+
+        // Our ask filled as maker: 1 SOL out of the ask for $150.03
+        assertTrue(ledger.onEvent(askFill));
+        assertFalse(ledger.onEvent(askFill));
+
+        final Inventory inventory = ledger.get(market.getOwnAddress());
+        assertEquals(2, published.size());
+        assertEquals(7 * SOL / 2, inventory.baseTotal());
+        assertEquals(0, inventory.baseLocked());
+        assertEquals(450_060_000L, inventory.quoteTotal());
+        assertEquals(6, inventory.seqNum());
+    }
+
+    @Test
+    public void ordersLandingAfterReconciliationLockFunds() throws Exception {
+        ledger.reconcile();
+
+        // $150 x 1 SOL: 150_000 quote lots per base lot, 1_000 base lots
+        assertFalse(ledger.onOrderRested(market.getOwnAddress(), true, 150_000L, 1_000L, 100));
+        assertTrue(ledger.onOrderRested(market.getOwnAddress(), true, 150_000L, 1_000L, 101));
+        assertTrue(ledger.onOrderRested(market.getOwnAddress(), false, 150_000L, 500L, 101));
+
+        final Inventory inventory = ledger.get(market.getOwnAddress());
+        assertEquals(150_030_000L, inventory.quoteLocked());
+        assertEquals(3 * SOL / 2, inventory.baseLocked());
+        assertEquals(150.0, inventory.quoteFreeAmount(), 1e-9);
+        assertEquals(3.0, inventory.baseFreeAmount(), 1e-9);
+    }
+
+    private QueueEvent fill(long seqNum, boolean bid, PublicKey owner, long paid, long released) {
+        return new QueueEvent(market.getOwnAddress(), seqNum, 101, true, bid, true, owner, OwnerClass.SELF, 1L,
+                paid, released, 0, 150.0, 1.0);
+    }
+
+    private static String account(byte[] data) {
+        return "{\"data\":[\"" + Base64.getEncoder().encodeToString(data) + "\",\"base64\"]}";
+    }
+
+    private static byte[] tokenAccount(long amount) {
+        return ByteBuffer.allocate(165).order(ByteOrder.LITTLE_ENDIAN).putLong(64, amount).array();
+    }
+
+    private static byte[] openOrders(long baseFree, long baseTotal, long quoteFree, long quoteTotal) {
+        return ByteBuffer.allocate(3228).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(77, baseFree)
+                .putLong(85, baseTotal)
+                .putLong(93, quoteFree)
+                .putLong(101, quoteTotal)
+                .array();
+    }
+
+    private static byte[] eventQueue(long head, long count, long seqNum, byte[] event) {
+        ByteBuffer buffer = ByteBuffer.allocate(37 + 4 * EVENT_SIZE + 7).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("serum".getBytes());
+        buffer.putLong(0x11); // account flags: initialized, event queue
+        buffer.putLong(head);
+        buffer.putLong(count);
+        buffer.putLong(seqNum);
+        buffer.put(event);
+        return buffer.array();
+    }
+
+    private static byte[] event(int flags, PublicKey owner, long released, long paid) {
+        ByteBuffer buffer = ByteBuffer.allocate(EVENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) flags);
+        buffer.put(new byte[7]); // owner slot, fee tier, padding
+        buffer.putLong(released);
+        buffer.putLong(paid);
+        buffer.putLong(0); // fee or rebate
+        buffer.put(new byte[16]); // order id
+        buffer.put(owner.toByteArray());
+        buffer.putLong(1L);
+        return buffer.array();
+    }
+}
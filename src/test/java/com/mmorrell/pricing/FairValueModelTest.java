@@ -0,0 +1,103 @@
+package com.mmorrell.pricing;
+
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Blends a market around $100. Pyth and Jupiter are both priced to 10 bps unless a test says otherwise, and the
+ * clock is fixed at {@code NOW}.
+ */
+public class FairValueModelTest {
+
+    private static final long NOW = 1_000_000_000_000L;
+    private static final long MS = 1_000_000L;
+
+    private final PriceView oracle = new PriceView("SOL", new Account().getPublicKey());
+    private final AtomicReference<JupiterPrice> jupiter = new AtomicReference<>();
+    private final FairValueModel model = new FairValueModel(new Account().getPublicKey(), oracle, jupiter::get);
+
+    @Test
+    public void bookAloneIsTheMicroprice() {
+        assertNull(model.update(NOW, 0));
+
+        // 3 bid against 1 ask: the ask is the side about to go
+        model.onBook(100.0, 3.0, 101.0, 1.0, NOW);
+        final FairValue fairValue = model.update(NOW, 0);
+
+        assertEquals(100.75, fairValue.price(), 1e-9);
+        assertEquals(100.75, fairValue.microprice(), 1e-9);
+        assertEquals(0.5, fairValue.imbalance(), 1e-9);
+        assertEquals(0.5, fairValue.uncertainty(), 1e-9);
+        assertEquals(FairValue.BOOK, fairValue.sources());
+        // Pyth never arrived
+        assertEquals(OracleHealth.State.PAUSE, fairValue.health());
+        assertFalse(fairValue.hasAny(FairValue.PYTH | FairValue.JUPITER));
+        assertSame(fairValue, model.get());
+
+        // Crossed, the book is left out
+        model.onBook(101.0, 1.0, 100.0, 1.0, NOW);
+        assertNull(model.update(NOW, 0));
+    }
+
+    @Test
+    public void agreeingSourcesNarrowTheUncertainty() {
+        oracle.publish(new OraclePrice(100.0, 0.1, 10, NOW));
+        jupiter.set(new JupiterPrice("SOL", 100.0, NOW));
+
+        final FairValue fairValue = model.update(NOW, 12);
+
+        assertEquals(100.0, fairValue.price(), 1e-9);
+        assertEquals(0.1 / Math.sqrt(2), fairValue.uncertainty(), 1e-9);
+        assertEquals(OracleHealth.State.HEALTHY, fairValue.health());
+        assertTrue(fairValue.hasAny(FairValue.PYTH));
+        assertTrue(fairValue.hasAny(FairValue.JUPITER));
+        assertTrue(Double.isNaN(fairValue.microprice()));
+    }
+
+    @Test
+    public void olderSourcesWeighLessThenDrop() {
+        oracle.publish(new OraclePrice(100.0, 0.1, 10, NOW));
+        jupiter.set(new JupiterPrice("SOL", 101.0, NOW + 2_000 * MS));
+
+        // Pyth is 2 s old: 0.1 + 4 bps of drift against Jupiter's 0.101
+        final FairValue aged = model.update(NOW + 2_000 * MS, 12);
+        assertEquals((100.0 / (0.14 * 0.14) + 101.0 / (0.101 * 0.101)) /
+                (1 / (0.14 * 0.14) + 1 / (0.101 * 0.101)), aged.price(), 1e-9);
+        // 100 bps apart: quoted wider, not paused yet
+        assertEquals(OracleHealth.State.WIDEN, aged.health());
+        // More age is no new outside price
+        assertEquals(aged.outsideVersion(), model.update(NOW + 3_000 * MS, 12).outsideVersion());
+
+        // Past the max age, and too many slots behind
+        assertEquals(101.0, model.update(NOW + 6_000 * MS, 12).price(), 1e-9);
+        final FairValue withoutPyth = model.update(NOW + 2_000 * MS, 100);
+        assertEquals(FairValue.JUPITER, withoutPyth.sources());
+        assertTrue(withoutPyth.outsideVersion() > aged.outsideVersion());
+
+        // A book move isn't either
+        model.onBook(100.0, 1.0, 101.0, 2.0, NOW + 2_000 * MS);
+        assertEquals(withoutPyth.outsideVersion(), model.update(NOW + 2_000 * MS, 100).outsideVersion());
+    }
+
+    @Test
+    public void disagreeingSourcesWidenTheUncertainty() {
+        oracle.publish(new OraclePrice(100.0, 0.01, 10, NOW));
+        jupiter.set(new JupiterPrice("SOL", 102.0, NOW));
+        model.onBook(101.9, 1.0, 102.1, 1.0, NOW);
+
+        final FairValue fairValue = model.update(NOW, 12);
+
+        // Pyth is 10x as confident, so it wins the price, but not the uncertainty
+        assertTrue(fairValue.price() < 100.1);
+        assertTrue(fairValue.uncertainty() > 0.1);
+        assertEquals(FairValue.PYTH | FairValue.JUPITER | FairValue.BOOK, fairValue.sources());
+    }
+}
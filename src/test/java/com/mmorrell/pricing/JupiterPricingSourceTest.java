@@ -0,0 +1,105 @@
+package com.mmorrell.pricing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link JupiterPricingSource} against a local stand-in for the price API, which knows ORCA and BONK.
+ */
+public class JupiterPricingSourceTest {
+
+    private static final String PRICES = "{\"data\":{" +
+            "\"ORCA\":{\"id\":\"orcaEKTdK7LKz57vaAYr9QeNsVEPfiu6QeMU1kektZE\",\"mintSymbol\":\"ORCA\"," +
+            "\"vsToken\":\"EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v\",\"vsTokenSymbol\":\"USDC\"," +
+            "\"price\":1.2345,\"extra\":{\"nested\":[1,2]}}," +
+            "\"BONK\":{\"id\":\"DezXAZ8z7PnrnRJjz3wXBoRgixCa6xjnB7YaB1pPB263\",\"price\":0.0000123}}," +
+            "\"timeTaken\":0.0012}";
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> query = new AtomicReference<>();
+    private final AtomicReference<String> body = new AtomicReference<>(PRICES);
+    private HttpServer server;
+    private JupiterPricingSource jupiterPricingSource;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/price", exchange -> {
+            requests.incrementAndGet();
+            query.set(exchange.getRequestURI().getQuery());
+            final byte[] response = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        jupiterPricingSource = new JupiterPricingSource(new OkHttpClient(), new ObjectMapper(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/price", 60_000L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jupiterPricingSource.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void trackedIdsShareOneRequest() throws Exception {
+        assertEquals(0, (int) jupiterPricingSource.refresh().get(5, TimeUnit.SECONDS));
+        assertEquals(0, requests.get());
+
+        jupiterPricingSource.track("ORCA");
+        jupiterPricingSource.track("BONK");
+        jupiterPricingSource.track("RLB");
+        final int received = jupiterPricingSource.refresh().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, received);
+        assertEquals(1, requests.get());
+        assertTrue(query.get().contains("ORCA,") || query.get().contains(",ORCA"));
+        assertTrue(query.get().contains("RLB"));
+        assertTrue(query.get().endsWith("&vsAmount=500"));
+        assertEquals(Optional.of(1.2345), jupiterPricingSource.getCachedPrice("ORCA"));
+        assertEquals(0.0000123, jupiterPricingSource.getPrice("BONK").price(), 1e-12);
+        // Jupiter doesn't know it
+        assertNull(jupiterPricingSource.getPrice("RLB"));
+        assertEquals(Optional.empty(), jupiterPricingSource.getCachedPrice("RLB"));
+    }
+
+    @Test
+    public void oldPricesAreNotServed() throws Exception {
+        jupiterPricingSource.track("ORCA");
+        jupiterPricingSource.refresh().get(5, TimeUnit.SECONDS);
+
+        assertEquals(Optional.of(1.2345), jupiterPricingSource.getCachedPrice("ORCA", 60_000L));
+        Thread.sleep(5);
+        assertEquals(Optional.empty(), jupiterPricingSource.getCachedPrice("ORCA", 1L));
+    }
+
+    @Test
+    public void badResponsesKeepTheLastPrices() throws Exception {
+        jupiterPricingSource.track("ORCA");
+        jupiterPricingSource.refresh().get(5, TimeUnit.SECONDS);
+        body.set("[\"not\",\"prices\"]");
+
+        assertThrows(Exception.class, () -> jupiterPricingSource.refresh().get(5, TimeUnit.SECONDS));
+
+        assertEquals(Optional.of(1.2345), jupiterPricingSource.getCachedPrice("ORCA"));
+        assertEquals(1, jupiterPricingSource.getRefreshErrorCount());
+    }
+}
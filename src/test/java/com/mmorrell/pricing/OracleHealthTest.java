@@ -0,0 +1,39 @@
+package com.mmorrell.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Widens past 1 s, 10 slots or 10 bps apart, and pauses past 5 s, 50 slots or 50 bps apart.
+ */
+public class OracleHealthTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final OracleHealth health = new OracleHealth("test", 1_000L, 5_000L, 10L, 50L, 10.0, 50.0);
+
+    @Test
+    public void ageAndSlotLagWidenThenPause() {
+        assertEquals(OracleHealth.State.HEALTHY, health.check(1_000 * MS, 10, 100.0, 100.0, 100.0));
+        assertEquals(OracleHealth.State.WIDEN, health.check(1_001 * MS, 0, 100.0, 100.0, 100.0));
+        assertEquals(OracleHealth.State.WIDEN, health.check(0, 11, 100.0, 100.0, 100.0));
+        assertEquals(OracleHealth.State.PAUSE, health.check(0, 51, 100.0, 100.0, 100.0));
+        assertEquals(OracleHealth.State.PAUSE, health.check(Long.MAX_VALUE, 0, Double.NaN, 100.0, 100.0));
+        assertEquals(OracleHealth.State.HEALTHY, health.check(0, 0, 100.0, Double.NaN, Double.NaN));
+
+        assertEquals(OracleHealth.State.HEALTHY, health.getState());
+        assertEquals(1, health.getTripCount());
+    }
+
+    @Test
+    public void widestGapBetweenFreshPricesDecides() {
+        // Jupiter 8 bps over Pyth, the book 8 bps under: 16 bps apart
+        assertEquals(OracleHealth.State.WIDEN, health.check(0, 0, 100.0, 100.08, 99.92));
+        assertEquals(OracleHealth.State.PAUSE, health.check(0, 0, 100.0, Double.NaN, 100.6));
+        // Nothing to compare it with
+        assertEquals(OracleHealth.State.HEALTHY, health.check(0, 0, Double.NaN, Double.NaN, 100.6));
+        // Widen then pause is one trip
+        assertEquals(1, health.getTripCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.mmorrell.pricing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.RpcStandIn;
+import com.mmorrell.feeds.OrderBookFeed;
+import com.mmorrell.rpc.BatchingRpcClient;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.Account;
+import org.p2p.solanaj.core.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link OracleRegistry} with the websocket down, so price accounts are polled from a local stand-in for the
+ * RPC node.
+ */
+public class OracleRegistryTest {
+
+    private final PublicKey solAccount = new Account().getPublicKey();
+    private final PublicKey ethAccount = new Account().getPublicKey();
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+    private OrderBookFeed orderBookFeed;
+    private OracleRegistry oracleRegistry;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        final Map<String, String> accounts = Map.of(
+                solAccount.toBase58(), account(priceAccount(15_012_345_678L, 5_000_000L, 1, 1234)),
+                ethAccount.toBase58(), account(priceAccount(230_000_000_000L, 90_000_000L, 1, 1235)));
+        node = new RpcStandIn()
+                .on("getMultipleAccounts", params -> {
+                    final StringBuilder values = new StringBuilder();
+                    params.get(0).forEach(key -> values.append(values.length() == 0 ? "" : ",")
+                            .append(accounts.get(key.asText())));
+                    return "{\"context\":{\"slot\":1240},\"value\":[" + values + "]}";
+                });
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 1, 100);
+        orderBookFeed = new OrderBookFeed(new OkHttpClient(), new ObjectMapper(), "ws://127.0.0.1:1");
+        oracleRegistry = new OracleRegistry(orderBookFeed, batchingRpcClient,
+                Map.of("SOL", solAccount, "ETH", ethAccount), 60_000L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        oracleRegistry.stop();
+        orderBookFeed.close();
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void decodesTheTradingAggregateOnly() {
+        final OraclePrice price = PythPriceAccount.decode(priceAccount(15_012_345_678L, 5_000_000L, 1, 1234), 7L);
+        assertEquals(150.12345678, price.price(), 1e-9);
+        assertEquals(0.05, price.confidence(), 1e-9);
+        assertEquals(150.07345678, price.bid(), 1e-9);
+        assertEquals(1234, price.publishSlot());
+        assertEquals(7L, price.receiveNanos());
+        assertEquals(6, price.ageSlots(1240));
+
+        // Halted, and not a price account at all
+        assertNull(PythPriceAccount.decode(priceAccount(15_012_345_678L, 5_000_000L, 2, 1234), 7L));
+        assertNull(PythPriceAccount.decode(new byte[3312], 7L));
+    }
+
+    @Test
+    public void symbolsTheWebsocketIsNotStreamingArePolledTogether() throws Exception {
+        final PriceView sol = oracleRegistry.view("SOL");
+        final PriceView eth = oracleRegistry.view("ETH");
+        final AtomicInteger ticks = new AtomicInteger();
+        sol.addListener(ticks::incrementAndGet);
+        assertSame(sol, oracleRegistry.view("SOL"));
+        assertThrows(IllegalArgumentException.class, () -> oracleRegistry.view("BONK"));
+
+        oracleRegistry.poll();
+
+        assertEquals(1, node.httpRequests());
+        assertEquals(150.12345678, sol.get().price(), 1e-9);
+        assertEquals(2300.0, eth.get().price(), 1e-9);
+        assertEquals(0.9, eth.fresh(60_000L).confidence(), 1e-9);
+        // Same publish slots again, nothing new
+        oracleRegistry.poll();
+        assertEquals(1, ticks.get());
+        assertEquals(2, oracleRegistry.getUpdateCount());
+    }
+
+    @Test
+    public void olderUpdatesAreDropped() throws Exception {
+        final PriceView view = oracleRegistry.view("SOL");
+        assertTrue(view.publish(new OraclePrice(150.0, 0.05, 10, 1L)));
+        assertFalse(view.publish(new OraclePrice(149.0, 0.05, 9, 2L)));
+        assertFalse(view.publish(new OraclePrice(149.0, 0.05, 10, 2L)));
+        assertTrue(view.publish(new OraclePrice(151.0, 0.04, 11, System.nanoTime())));
+
+        assertEquals(151.0, view.get().price());
+        assertEquals(151.04, view.get().ask(), 1e-9);
+        assertEquals(151.0, new PythPricingSource(oracleRegistry).getSolMidpointPrice().orElseThrow(), 1e-4);
+        Thread.sleep(5);
+        assertNull(view.fresh(1L));
+
+        // Frozen for 10 s: still the latest price, but not one to quote off
+        final PythPricingSource pythPricingSource = new PythPricingSource(oracleRegistry);
+        assertTrue(view.publish(new OraclePrice(152.0, 0.04, 12, System.nanoTime() - 10_000_000_000L)));
+        assertEquals(152.0, pythPricingSource.getSolPrice().price());
+        assertTrue(pythPricingSource.getSolBidPrice().isEmpty());
+        assertTrue(pythPricingSource.getSolAskPrice().isEmpty());
+        assertFalse(pythPricingSource.hasSolPrice());
+    }
+
+    private static String account(byte[] data) {
+        return "{\"data\":[\"" + Base64.getEncoder().encodeToString(data) + "\",\"base64\"]}";
+    }
+
+    private static byte[] priceAccount(long price, long confidence, int status, long publishSlot) {
+        return ByteBuffer.allocate(3312).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0, 0xa1b2c3d4) // magic
+                .putInt(4, 2) // version
+                .putInt(8, 3) // price account
+                .putInt(20, -8) // exponent
+                .putLong(208, price)
+                .putLong(216, confidence)
+                .putInt(224, status)
+                .putLong(232, publishSlot)
+                .array();
+    }
+}
@@ -0,0 +1,94 @@
+package com.mmorrell.rpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmorrell.RpcStandIn;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcException;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs {@link BatchingRpcClient} against a local stand-in for the RPC node.
+ */
+public class BatchingRpcClientTest {
+
+    private static final PublicKey USDC_WALLET = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+    private static final PublicKey BASE_WALLET = new PublicKey("8HbSDSvM5gxi5sPbXgYNDJQ9mBhHz1nSaMmQUFK6ruzC");
+
+    private RpcStandIn node;
+    private BatchingRpcClient batchingRpcClient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn()
+                .on("getTokenAccountBalance", params -> {
+                    String amount = params.path(0).asText().equals(USDC_WALLET.toBase58()) ? "1250.5" : "3.25";
+                    return "{\"context\":{\"slot\":1},\"value\":{\"uiAmountString\":\"" + amount + "\"}}";
+                })
+                .on("getMultipleAccounts", params -> "{\"context\":{\"slot\":1},\"value\":[{\"data\":[\"" +
+                        Base64.getEncoder().encodeToString(new byte[]{1, 2, 3}) + "\",\"base64\"]},null]}");
+        batchingRpcClient = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 20, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchingRpcClient.stop();
+        node.close();
+    }
+
+    @Test
+    public void concurrentReadsShareOneHttpRequest() throws Exception {
+        CompletableFuture<Double> usdc = batchingRpcClient.getTokenAccountBalance(USDC_WALLET);
+        CompletableFuture<Double> base = batchingRpcClient.getTokenAccountBalance(BASE_WALLET);
+        CompletableFuture<List<byte[]>> accounts = batchingRpcClient.getMultipleAccountsData(
+                List.of(USDC_WALLET, BASE_WALLET));
+
+        assertEquals(1250.5, batchingRpcClient.await(usdc));
+        assertEquals(3.25, batchingRpcClient.await(base));
+        List<byte[]> data = batchingRpcClient.await(accounts);
+        assertArrayEquals(new byte[]{1, 2, 3}, data.get(0));
+        assertNull(data.get(1));
+
+        assertEquals(1, node.httpRequests());
+        assertEquals(2, node.calls("getTokenAccountBalance"));
+        assertEquals(1, batchingRpcClient.getBatchCount());
+    }
+
+    @Test
+    public void failedEntryOnlyFailsItsOwnCaller() throws Exception {
+        CompletableFuture<Double> usdc = batchingRpcClient.getTokenAccountBalance(USDC_WALLET);
+        CompletableFuture<Long> slot = batchingRpcClient.call("getSlot", List.of()).thenApply(r -> r.asLong());
+
+        assertEquals(1250.5, batchingRpcClient.await(usdc));
+        assertThrows(RpcException.class, () -> batchingRpcClient.await(slot));
+        assertEquals(1, node.httpRequests());
+    }
+
+    @Test
+    public void batchesAreCappedInSize() throws Exception {
+        BatchingRpcClient small = new BatchingRpcClient(node.url(), new OkHttpClient(), new ObjectMapper(), 20, 2);
+        try {
+            CompletableFuture<Double> first = small.getTokenAccountBalance(USDC_WALLET);
+            CompletableFuture<Double> second = small.getTokenAccountBalance(BASE_WALLET);
+            CompletableFuture<Double> third = small.getTokenAccountBalance(USDC_WALLET);
+
+            assertEquals(1250.5, small.await(first));
+            assertEquals(3.25, small.await(second));
+            assertEquals(1250.5, small.await(third));
+            assertEquals(2, node.httpRequests());
+        } finally {
+            small.stop();
+        }
+    }
+}
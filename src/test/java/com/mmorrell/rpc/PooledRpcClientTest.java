@@ -0,0 +1,56 @@
+package com.mmorrell.rpc;
+
+import com.mmorrell.RpcStandIn;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.p2p.solanaj.core.PublicKey;
+import org.p2p.solanaj.rpc.RpcException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link PooledRpcClient} against a local stand-in for the RPC node.
+ */
+public class PooledRpcClientTest {
+
+    private static final PublicKey WALLET = new PublicKey("AvNg4pMC9nHAHoAGzKamxnaGhJDmgYXDFWiD9KzJZLz2");
+
+    private RpcStandIn node;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        node = new RpcStandIn().on("getBalance", params -> "{\"context\":{\"slot\":1},\"value\":42}");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        node.close();
+    }
+
+    @Test
+    public void solanajApiRunsOverTheSharedClient() throws Exception {
+        PooledRpcClient rpcClient = new PooledRpcClient(node.url(), new OkHttpClient());
+
+        assertEquals(42L, rpcClient.getApi().getBalance(WALLET));
+        assertThrows(RpcException.class, () -> rpcClient.getApi().getSlot());
+        assertEquals(1, node.calls("getBalance"));
+    }
+
+    @Test
+    public void stuckNodeTimesOutInsteadOfPinningTheCaller() {
+        node.delay(2_000);
+        PooledRpcClient rpcClient = new PooledRpcClient(node.url(), new OkHttpClient.Builder()
+                .callTimeout(200, TimeUnit.MILLISECONDS)
+                .build());
+
+        long start = System.currentTimeMillis();
+        assertThrows(RpcException.class, () -> rpcClient.getApi().getBalance(WALLET));
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+    }
+}
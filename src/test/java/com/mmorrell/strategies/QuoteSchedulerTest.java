@@ -0,0 +1,107 @@
+package com.mmorrell.strategies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuoteSchedulerTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void commandsRunOnTheQuotingThreadBeforeTheLoop() throws Exception {
+        // Only ever touched on the quoting thread, the test reads it after the loop ran
+        final List<String> applied = new ArrayList<>();
+        final CountDownLatch looped = new CountDownLatch(1);
+        final QuoteScheduler scheduler = new QuoteScheduler(() -> {
+            applied.add("loop " + Thread.currentThread().getId());
+            looped.countDown();
+        }, executor, 0, 5, 60_000);
+        final long quotingThread = executor.submit(() -> Thread.currentThread().getId()).get();
+
+        final List<CompletableFuture<Void>> commands = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final int command = i;
+            commands.add(scheduler.submit(() -> applied.add(command + " " + Thread.currentThread().getId())));
+        }
+
+        assertTrue(looped.await(1, TimeUnit.SECONDS));
+        CompletableFuture.allOf(commands.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        assertEquals(List.of("0 " + quotingThread, "1 " + quotingThread, "2 " + quotingThread,
+                "loop " + quotingThread), applied);
+    }
+
+    @Test
+    public void failingCommandDoesNotStopTheLoop() throws Exception {
+        final CountDownLatch looped = new CountDownLatch(1);
+        final QuoteScheduler scheduler = new QuoteScheduler(looped::countDown, executor, 0, 5, 60_000);
+
+        final CompletableFuture<Void> failed = scheduler.submit(() -> {
+            throw new IllegalStateException("bad tuning");
+        });
+
+        assertTrue(looped.await(1, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void burstOfSignalsIsCoalescedIntoOneRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final QuoteScheduler scheduler = new QuoteScheduler(runs::incrementAndGet, executor, 0, 50, 60_000);
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.signal();
+        }
+        Thread.sleep(250);
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void runsAreSpacedByTheMinimumInterval() throws Exception {
+        final List<Long> runNanos = new ArrayList<>();
+        final CountDownLatch once = new CountDownLatch(1);
+        final CountDownLatch twice = new CountDownLatch(2);
+        final QuoteScheduler scheduler = new QuoteScheduler(() -> {
+            runNanos.add(System.nanoTime());
+            once.countDown();
+            twice.countDown();
+        }, executor, 200, 0, 60_000);
+
+        scheduler.signal();
+        assertTrue(once.await(1, TimeUnit.SECONDS));
+        // No debounce, so only the minimum interval can hold this one back
+        scheduler.signal();
+
+        assertTrue(twice.await(1, TimeUnit.SECONDS));
+        final long gapMs = TimeUnit.NANOSECONDS.toMillis(runNanos.get(1) - runNanos.get(0));
+        assertTrue(gapMs >= 190, "runs were " + gapMs + "ms apart");
+    }
+
+    @Test
+    public void idleLoopStillRunsOnTheHeartbeat() throws Exception {
+        final CountDownLatch runs = new CountDownLatch(3);
+        final QuoteScheduler scheduler = new QuoteScheduler(runs::countDown, executor, 0, 5, 100);
+
+        // start() runs once, the other two only come from the heartbeat since nothing signals
+        scheduler.start();
+
+        assertTrue(runs.await(1, TimeUnit.SECONDS));
+    }
+}